@@ -1,24 +1,32 @@
 package com.google.sitebricks.client;
 
+import com.google.common.base.Charsets;
+import com.google.common.base.Function;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
 import com.google.inject.Injector;
 import com.google.inject.TypeLiteral;
 import com.ning.http.client.AsyncHttpClient;
-import com.ning.http.client.AsyncHttpClientConfig;
 import com.ning.http.client.Realm;
 import com.ning.http.client.RequestBuilder;
 import com.ning.http.client.Response;
 import net.jcip.annotations.ThreadSafe;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @author Jeanfrancois Arcand (jfarcand@apache.org)
@@ -29,34 +37,65 @@ class AHCWebClient<T> implements WebClient<T> {
   private final String url;
   private final Map<String, String> headers;
   private final TypeLiteral<T> typeToTransform;
+  private final WebClientPool pool;
+  private final WebResponseCache cache;
   private final AsyncHttpClient httpClient;
+  private final Realm realm;
   private final Transport transport;
   private final Injector injector;
+  private final boolean streaming;
+  private final AtomicBoolean closed = new AtomicBoolean();
 
-  public AHCWebClient(Injector injector, Transport transport, Web.Auth authType, String username, String password, boolean usePreemptiveAuth, String url, Map<String, String> headers, TypeLiteral<T> typeToTransform) {
+  // Identifies the GET request this client sends, see WebClientPool#executeOnce().
+  private final List<Object> getKey;
+
+  public AHCWebClient(Injector injector, WebClientPool pool, WebResponseCache cache, Transport transport, Web.Auth authType, String username, String password, boolean usePreemptiveAuth, boolean streaming, String url, Map<String, String> headers, TypeLiteral<T> typeToTransform) {
     this.injector = injector;
+    this.streaming = streaming;
     this.url = url;
     this.headers = (null == headers) ? null : ImmutableMap.copyOf(headers);
     this.typeToTransform = typeToTransform;
     this.transport = transport;
 
-    // configure auth
-    AsyncHttpClientConfig.Builder c = new AsyncHttpClientConfig.Builder();
+    // configure auth, which is applied to each request as the client is shared.
     if (null != authType) {
       Realm.RealmBuilder b = new Realm.RealmBuilder();
       // TODO: Add support for Kerberos and SPNEGO
       Realm.AuthScheme scheme = authType.equals(Web.Auth.BASIC) ? Realm.AuthScheme.BASIC : Realm.AuthScheme.DIGEST;
       b.setPrincipal(username).setPassword(password).setScheme(scheme).setUsePreemptiveAuth(usePreemptiveAuth);
-      c.setRealm(b.build());
+      this.realm = b.build();
+    } else {
+      this.realm = null;
     }
 
-    this.httpClient = new AsyncHttpClient(c.build());
+    this.pool = pool;
+    this.cache = cache;
+    this.httpClient = pool.acquire();
+    this.getKey = Arrays.<Object>asList(url, this.headers, transport.contentType(), authType,
+        credentialsOf(username, password), usePreemptiveAuth);
+  }
+
+  // Tells clients' credentials apart in the keys of cached and in flight GETs,
+  // without keeping the password itself there.
+  private static String credentialsOf(String username, String password) {
+    if (null == username && null == password)
+      return null;
+
+    return Hashing.sha256().newHasher()
+        .putString(String.valueOf(username), Charsets.UTF_8)
+        .putByte((byte) 0)
+        .putString(String.valueOf(password), Charsets.UTF_8)
+        .hash()
+        .toString();
   }
 
   private WebResponse simpleRequest(RequestBuilder requestBuilder) {
-    requestBuilder = addHeadersToRequestBuilder(requestBuilder);
+    requestBuilder = prepareRequest(requestBuilder);
 
     try {
+      if (streaming)
+        return streamingRequest(requestBuilder);
+
       Response r = httpClient.executeRequest(requestBuilder.build()).get();
       return new WebResponseImpl(injector, r);
     } catch (IOException e) {
@@ -69,9 +108,12 @@ class AHCWebClient<T> implements WebClient<T> {
   }
 
   private ListenableFuture<WebResponse> simpleAsyncRequest(RequestBuilder requestBuilder, Executor executor) {
-    requestBuilder = addHeadersToRequestBuilder(requestBuilder);
+    requestBuilder = prepareRequest(requestBuilder);
 
     try {
+      if (streaming)
+        return streamingAsyncRequest(requestBuilder, executor);
+
       final SettableFuture<WebResponse> future = SettableFuture.create();
       final com.ning.http.client.ListenableFuture<Response> responseFuture = httpClient.executeRequest(
           requestBuilder.build());
@@ -95,63 +137,76 @@ class AHCWebClient<T> implements WebClient<T> {
   }
 
   private WebResponse request(RequestBuilder requestBuilder, T t) {
-    requestBuilder = addHeadersToRequestBuilder(requestBuilder);
+    invalidateCached();
+    requestBuilder = prepareRequest(requestBuilder);
 
+    //
+    // Read the entity from the transport plugin, and set it as the request body.
+    //
+    final RequestBody body = new RequestBody();
     try {
-      //
-      // Read the entity from the transport plugin.
-      //
-      final ByteArrayOutputStream stream = new ByteArrayOutputStream();
-      transport.out(stream, typeToTransform.getRawType(), t);
+      transport.out(body, typeToTransform.getRawType(), t);
+      body.setOn(requestBuilder);
 
-      // TODO worry about endian issues? Or will Content-Encoding be sufficient?
-      // OOM if the stream is too bug
-      final byte[] outBuffer = stream.toByteArray();
+      if (streaming)
+        return streamingRequest(requestBuilder, body);
 
-      //
-      // Set request body
-      //
-      requestBuilder.setBody(outBuffer);
-      Response r = httpClient.executeRequest(requestBuilder.build()).get();
-      return new WebResponseImpl(injector, r);
+      try {
+        Response r = httpClient.executeRequest(requestBuilder.build()).get();
+        return new WebResponseImpl(injector, r);
+      } finally {
+        body.discard();
+      }
     } catch (IOException e) {
+      body.discard();
       throw new TransportException(e);
     } catch (InterruptedException e) {
       throw new TransportException(e);
     } catch (ExecutionException e) {
       throw new TransportException(e);
+    } catch (RuntimeException e) {
+      body.discard();
+      throw e;
     }
   }
 
-  @SuppressWarnings("deprecation")
   private ListenableFuture<WebResponse> requestAsync(RequestBuilder requestBuilder, T t,
-                                                     Executor executor) {
-    requestBuilder = addHeadersToRequestBuilder(requestBuilder);
+                                                     final Executor executor) {
+    invalidateCached();
+    final RequestBuilder prepared = prepareRequest(requestBuilder);
+
+    // AHC can't send a stream as it reads it (see RequestBody), so it is drained on the
+    // given executor instead, as it may take as long as the request itself.
+    if (t instanceof InputStream)
+      return Futures.transform(Futures.immediateFuture(t), new AsyncFunction<T, WebResponse>() {
+        @Override
+        public ListenableFuture<WebResponse> apply(T stream) {
+          return sendAsync(prepared, stream, executor);
+        }
+      }, executor);
+    return sendAsync(prepared, t, executor);
+  }
 
+  private ListenableFuture<WebResponse> sendAsync(RequestBuilder requestBuilder, T t,
+                                                  Executor executor) {
+    //
+    // Read the entity from the transport plugin, and set it as the request body.
+    //
+    final RequestBody body = new RequestBody();
     try {
-      final SettableFuture<WebResponse> future = SettableFuture.create();
-
-
-      //
-      // Read the entity from the transport plugin.
-      //
-      InputStream in;
       if (t instanceof InputStream)
-        in = (InputStream) t;
-      else {
-        final ByteArrayOutputStream stream = new ByteArrayOutputStream();
-        transport.out(stream, typeToTransform.getRawType(), t);
+        ByteStreams.copy((InputStream) t, body);
+      else
+        transport.out(body, typeToTransform.getRawType(), t);
+      body.setOn(requestBuilder);
 
-        in = new ByteArrayInputStream(stream.toByteArray());
-      }
-
-      //
-      // Set request body
-      //
-      requestBuilder.setBody(in);
+      if (streaming)
+        return streamingAsyncRequest(requestBuilder, executor, body);
 
+      final SettableFuture<WebResponse> future = SettableFuture.create();
       final com.ning.http.client.ListenableFuture<Response> responseFuture = httpClient.executeRequest(
           requestBuilder.build());
+      responseFuture.addListener(discarding(body), MoreExecutors.sameThreadExecutor());
       responseFuture.addListener(new Runnable() {
         @Override
         public void run() {
@@ -166,11 +221,86 @@ class AHCWebClient<T> implements WebClient<T> {
       }, executor);
       return future;
     } catch (IOException e) {
+      body.discard();
       throw new TransportException(e);
+    } catch (RuntimeException e) {
+      body.discard();
+      throw e;
     }
   }
 
-  private RequestBuilder addHeadersToRequestBuilder(RequestBuilder requestBuilder) {
+  private WebResponse streamingRequest(RequestBuilder requestBuilder)
+      throws IOException, InterruptedException, ExecutionException {
+    return streamingRequest(requestBuilder, null);
+  }
+
+  /**
+   * Returns as soon as the response's status and headers have arrived, its body is
+   * then read from the connection as the caller reads it from the response.
+   */
+  private WebResponse streamingRequest(RequestBuilder requestBuilder, RequestBody body)
+      throws IOException, InterruptedException, ExecutionException {
+    return executeStreaming(requestBuilder, body).get();
+  }
+
+  private ListenableFuture<WebResponse> streamingAsyncRequest(RequestBuilder requestBuilder, Executor executor)
+      throws IOException {
+    return streamingAsyncRequest(requestBuilder, executor, null);
+  }
+
+  private ListenableFuture<WebResponse> streamingAsyncRequest(RequestBuilder requestBuilder, Executor executor,
+                                                              RequestBody body) throws IOException {
+    final SettableFuture<WebResponse> future = SettableFuture.create();
+    final ListenableFuture<WebResponse> response = executeStreaming(requestBuilder, body);
+    response.addListener(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          future.set(response.get());
+        } catch (ExecutionException e) {
+          future.setException(new TransportException(e.getCause()));
+        } catch (InterruptedException e) {
+          future.setException(new TransportException(e));
+        }
+      }
+    }, executor);
+    return future;
+  }
+
+  private ListenableFuture<WebResponse> executeStreaming(RequestBuilder requestBuilder, RequestBody body)
+      throws IOException {
+    //
+    // The client's I/O thread appends the response body to a buffer that never blocks
+    // it (see ResponseBody), and the response is aborted if it is closed early.
+    //
+    final StreamingResponseHandler handler = new StreamingResponseHandler();
+    final com.ning.http.client.ListenableFuture<Response> responseFuture = httpClient.executeRequest(
+        requestBuilder.build(), handler);
+    if (null != body)
+      responseFuture.addListener(discarding(body), MoreExecutors.sameThreadExecutor());
+
+    return Futures.transform(handler.headers(), new Function<Response, WebResponse>() {
+      @Override
+      public WebResponse apply(Response response) {
+        return new StreamingWebResponse(injector, response, handler.body(), responseFuture);
+      }
+    });
+  }
+
+  private static Runnable discarding(final RequestBody body) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        body.discard();
+      }
+    };
+  }
+
+  private RequestBuilder prepareRequest(RequestBuilder requestBuilder) {
+    if (null != realm) {
+      requestBuilder.setRealm(realm);
+    }
+
     //
     // The user may wish to override the Content-Type header for whatever reason. If they do so we just honour that header and make
     // sure we don't trample that header with the default Content-Type header as provided by the Transport.
@@ -198,6 +328,15 @@ class AHCWebClient<T> implements WebClient<T> {
   }
 
   public WebResponse get() {
+    if (null != cache) {
+      try {
+        return cachedGet().get();
+      } catch (InterruptedException e) {
+        throw new TransportException(e);
+      } catch (ExecutionException e) {
+        throw new TransportException(e);
+      }
+    }
     return simpleRequest(new RequestBuilder("GET").setUrl(url));
   }
 
@@ -214,11 +353,29 @@ class AHCWebClient<T> implements WebClient<T> {
   }
 
   public WebResponse delete() {
+    invalidateCached();
     return simpleRequest(new RequestBuilder("DELETE").setUrl(url));
   }
 
   @Override
   public ListenableFuture<WebResponse> get(Executor executor) {
+    if (null != cache) {
+      final SettableFuture<WebResponse> future = SettableFuture.create();
+      final ListenableFuture<WebResponse> cachedFuture = cachedGet();
+      cachedFuture.addListener(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            future.set(cachedFuture.get());
+          } catch (InterruptedException e) {
+            future.setException(new TransportException(e));
+          } catch (ExecutionException e) {
+            future.setException(new TransportException(e));
+          }
+        }
+      }, executor);
+      return future;
+    }
     return simpleAsyncRequest(new RequestBuilder("GET").setUrl(url), executor);
   }
 
@@ -239,11 +396,116 @@ class AHCWebClient<T> implements WebClient<T> {
 
   @Override
   public ListenableFuture<WebResponse> delete(Executor executor) {
+    invalidateCached();
     return simpleAsyncRequest(new RequestBuilder("DELETE").setUrl(url), executor);
   }
 
+  /**
+   * Sends a GET for a {@link WebBatch}, sharing the response of any identical GET
+   * that is already in flight. The returned future completes on the client's I/O thread.
+   */
+  ListenableFuture<WebResponse> batchGet() {
+    if (null != cache)
+      return cachedGet();
+
+    RequestBuilder requestBuilder = prepareRequest(new RequestBuilder("GET").setUrl(url));
+    return Futures.transform(pool.executeOnce(getKey, requestBuilder.build()),
+        new Function<Response, WebResponse>() {
+          @Override
+          public WebResponse apply(Response response) {
+            // Each caller gets its own view of a shared response.
+            return new WebResponseImpl(injector, response);
+          }
+        });
+  }
+
+  /**
+   * Answers a GET from the {@link WebResponseCache} if it can, otherwise sends it
+   * (conditionally, if there is a stale response that can be revalidated) and caches
+   * the response. The returned future completes on the client's I/O thread.
+   */
+  private ListenableFuture<WebResponse> cachedGet() {
+    long now = cache.now();
+    final WebResponseCache.CachedResponse cached = cache.get(getKey);
+    if (null != cached && cached.isFresh(now)) {
+      cache.hit();
+      return Futures.immediateFuture(cachedResponse(cached));
+    }
+
+    if (null != cached && cached.isStaleWhileRevalidate(now)) {
+      cache.hit();
+      if (cached.claimRevalidation()) {
+        revalidate(cached, false).addListener(new Runnable() {
+          @Override
+          public void run() {
+            cached.revalidated();
+          }
+        }, MoreExecutors.sameThreadExecutor());
+      }
+      return Futures.immediateFuture(cachedResponse(cached));
+    }
+
+    return revalidate(cached, true);
+  }
+
+  /**
+   * Sends the GET, conditionally if the given stale response can be revalidated.
+   * A miss is counted only if the response is for the caller, as refreshing a
+   * response in the background has already been counted as a hit.
+   */
+  private ListenableFuture<WebResponse> revalidate(final WebResponseCache.CachedResponse cached,
+                                                  boolean forCaller) {
+    RequestBuilder requestBuilder = prepareRequest(new RequestBuilder("GET").setUrl(url));
+
+    Object key = getKey;
+    if (null != cached && cached.canRevalidate()) {
+      cache.revalidating();
+      if (null != cached.etag)
+        requestBuilder.addHeader("If-None-Match", cached.etag);
+      if (null != cached.lastModified)
+        requestBuilder.addHeader("If-Modified-Since", cached.lastModified);
+      key = Arrays.asList(getKey, cached.etag, cached.lastModified);
+    } else if (forCaller) {
+      cache.miss();
+    }
+
+    return Futures.transform(pool.executeOnce(key, requestBuilder.build()), new Function<Response, WebResponse>() {
+      @Override
+      public WebResponse apply(Response response) {
+        if (304 == response.getStatusCode() && null != cached)
+          return cachedResponse(cache.notModified(getKey, cached, response));
+
+        WebResponseCache.CachedResponse stored = cache.put(getKey, response);
+        return null == stored ? new WebResponseImpl(injector, response) : cachedResponse(stored);
+      }
+    });
+  }
+
+  // Writes make whatever was cached for this URL out of date.
+  private void invalidateCached() {
+    if (null != cache)
+      cache.invalidate(getKey);
+  }
+
+  private WebResponse cachedResponse(WebResponseCache.CachedResponse cached) {
+    return new WebResponseImpl(injector, cached.response, cached.decoded);
+  }
+
+  /**
+   * @return The host and port this client sends its requests to.
+   */
+  String authority() {
+    return URI.create(url).getAuthority();
+  }
+
+  boolean isStreaming() {
+    return streaming;
+  }
+
   @Override
   public void close() {
-    httpClient.close();
+    // The underlying client is shared, so it is only closed along with the last of them.
+    if (closed.compareAndSet(false, true))
+      pool.release();
   }
 }
@@ -25,4 +25,8 @@ class CommonsWeb implements Web {
     public FormatBuilder clientOf(String url, Map<String, String> headers) {
         return builder.get().clientOf(url, headers);
     }
+
+    public Batch batch() {
+        return new WebBatch();
+    }
 }
@@ -0,0 +1,93 @@
+package com.google.sitebricks.client;
+
+import com.ning.http.client.RequestBuilder;
+import com.ning.http.client.generators.FileBodyGenerator;
+import net.jcip.annotations.NotThreadSafe;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The stream a {@link Transport} writes request entities into. Small entities are
+ * kept in memory, as before, but large ones are spilled to a temporary file which
+ * is then sent straight from disk, so that uploads take constant memory however
+ * big they are. Either way the request carries a {@code Content-Length}.
+ * <p>
+ * The temporary file must be {@link #discard()}ed once the response has arrived.
+ */
+@NotThreadSafe
+class RequestBody extends OutputStream {
+  static final int MEMORY_THRESHOLD = 64 * 1024;
+
+  private final int threshold;
+  private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+  private OutputStream out = memory;
+  private File file;
+
+  RequestBody() {
+    this(MEMORY_THRESHOLD);
+  }
+
+  RequestBody(int threshold) {
+    this.threshold = threshold;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    spillIfOver(1);
+    out.write(b);
+  }
+
+  @Override
+  public void write(byte[] bytes, int offset, int length) throws IOException {
+    spillIfOver(length);
+    out.write(bytes, offset, length);
+  }
+
+  private void spillIfOver(int length) throws IOException {
+    if (null != file || memory.size() + length <= threshold)
+      return;
+
+    file = File.createTempFile("sitebricks-request", ".body");
+    out = new BufferedOutputStream(new FileOutputStream(file));
+    memory.writeTo(out);
+    memory = null;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    out.close();
+  }
+
+  /**
+   * @return The temporary file this body was spilled to, or null if it is in memory.
+   */
+  File file() {
+    return file;
+  }
+
+  /**
+   * Closes this stream and makes what was written to it the body of the given request.
+   */
+  void setOn(RequestBuilder requestBuilder) throws IOException {
+    close();
+    if (null == file)
+      requestBuilder.setBody(memory.toByteArray());
+    else
+      requestBuilder.setBody(new FileBodyGenerator(file));
+  }
+
+  void discard() {
+    if (null != file && !file.delete() && file.exists())
+      file.deleteOnExit();
+  }
+}
@@ -0,0 +1,206 @@
+package com.google.sitebricks.client;
+
+import com.google.common.collect.Lists;
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.LinkedList;
+
+/**
+ * The body of a streamed response, as an input stream that the client's I/O thread
+ * appends to as the body arrives and that the caller reads from at its own pace.
+ * Appending never blocks: whatever arrives faster than it is read is buffered in
+ * memory up to a limit, and in a temporary file beyond that, so that a slow (or
+ * absent) reader never holds up the I/O thread that other clients share.
+ * <p>
+ * Closing the stream discards what is buffered, and makes {@link #append} return
+ * false, which tells the I/O thread to abort the rest of the response.
+ */
+@ThreadSafe
+class ResponseBody extends InputStream {
+  static final int MEMORY_LIMIT = 64 * 1024;
+
+  private final int memoryLimit;
+
+  @GuardedBy("this")
+  private final LinkedList<byte[]> chunks = Lists.newLinkedList();
+  @GuardedBy("this")
+  private int chunkOffset;
+  @GuardedBy("this")
+  private int buffered;
+  @GuardedBy("this")
+  private File file;
+  @GuardedBy("this")
+  private OutputStream fileOut;
+  @GuardedBy("this")
+  private long fileWritten;
+  @GuardedBy("this")
+  private boolean complete;
+  @GuardedBy("this")
+  private boolean closed;
+  @GuardedBy("this")
+  private Throwable failure;
+
+  // Only touched by the reading thread.
+  private RandomAccessFile fileIn;
+  private long fileRead;
+
+  ResponseBody() {
+    this(MEMORY_LIMIT);
+  }
+
+  ResponseBody(int memoryLimit) {
+    this.memoryLimit = memoryLimit;
+  }
+
+  /**
+   * Called by the I/O thread with each part of the body as it arrives.
+   *
+   * @return False if this body has been closed, and the rest of it isn't wanted.
+   */
+  synchronized boolean append(byte[] bytes) throws IOException {
+    if (closed)
+      return false;
+
+    if (null == file && buffered + bytes.length <= memoryLimit) {
+      chunks.add(bytes);
+      buffered += bytes.length;
+    } else {
+      // Once spilled, everything else goes to the file, which is read after the chunks.
+      if (null == file) {
+        file = File.createTempFile("sitebricks-response", ".body");
+        fileOut = new FileOutputStream(file);
+      }
+      fileOut.write(bytes);
+      fileWritten += bytes.length;
+    }
+
+    notifyAll();
+    return true;
+  }
+
+  synchronized void complete() {
+    complete = true;
+    closeFileOut();
+    notifyAll();
+  }
+
+  synchronized void fail(Throwable cause) {
+    failure = cause;
+    closeFileOut();
+    notifyAll();
+  }
+
+  @Override
+  public int read() throws IOException {
+    byte[] one = new byte[1];
+    int read = read(one, 0, 1);
+    return -1 == read ? -1 : one[0] & 0xFF;
+  }
+
+  @Override
+  public int read(byte[] bytes, int offset, int length) throws IOException {
+    if (0 == length)
+      return 0;
+
+    long inFile;
+    File spilled;
+    synchronized (this) {
+      while (chunks.isEmpty() && fileRead == fileWritten && !complete && null == failure && !closed) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IOException("Interrupted while waiting for the response body", e);
+        }
+      }
+
+      if (closed)
+        throw new IOException("Response body is closed");
+
+      if (!chunks.isEmpty()) {
+        byte[] chunk = chunks.getFirst();
+        int read = Math.min(length, chunk.length - chunkOffset);
+        System.arraycopy(chunk, chunkOffset, bytes, offset, read);
+        chunkOffset += read;
+        if (chunkOffset == chunk.length) {
+          chunks.removeFirst();
+          chunkOffset = 0;
+          buffered -= chunk.length;
+        }
+        return read;
+      }
+
+      if (null != failure)
+        throw new IOException("Response failed", failure);
+
+      inFile = fileWritten - fileRead;
+      if (0 == inFile) {
+        discardFile();
+        return -1;
+      }
+      spilled = file;
+    }
+
+    // The file is read outside the lock, so as not to hold up the I/O thread appending to it.
+    if (null == fileIn)
+      fileIn = new RandomAccessFile(spilled, "r");
+    fileIn.seek(fileRead);
+    int read = fileIn.read(bytes, offset, (int) Math.min(length, inFile));
+    if (read > 0)
+      fileRead += read;
+    return read;
+  }
+
+  @Override
+  public synchronized int available() {
+    return buffered - chunkOffset;
+  }
+
+  @Override
+  public synchronized void close() {
+    closed = true;
+    chunks.clear();
+    buffered = 0;
+    closeFileOut();
+    discardFile();
+    notifyAll();
+  }
+
+  private synchronized void closeFileOut() {
+    if (null == fileOut)
+      return;
+    try {
+      fileOut.close();
+    } catch (IOException e) {
+      // Nothing more will be written anyway.
+    }
+    fileOut = null;
+  }
+
+  private synchronized void discardFile() {
+    if (null != fileIn) {
+      try {
+        fileIn.close();
+      } catch (IOException e) {
+        // Only being read.
+      }
+      fileIn = null;
+    }
+    if (null != file && null == fileOut && !file.delete() && file.exists())
+      file.deleteOnExit();
+  }
+
+  /**
+   * @return The temporary file this body spilled to, or null if it fits in memory.
+   */
+  synchronized File file() {
+    return file;
+  }
+}
@@ -0,0 +1,68 @@
+package com.google.sitebricks.client;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.ning.http.client.AsyncHandler;
+import com.ning.http.client.HttpResponseBodyPart;
+import com.ning.http.client.HttpResponseHeaders;
+import com.ning.http.client.HttpResponseStatus;
+import com.ning.http.client.Response;
+
+/**
+ * Hands out a response as soon as its status and headers have arrived, and appends
+ * its body to a {@link ResponseBody} as it arrives, without ever blocking the I/O
+ * thread. The response is aborted if its body is closed before it has all arrived.
+ */
+class StreamingResponseHandler implements AsyncHandler<Response> {
+  private final Response.ResponseBuilder builder = new Response.ResponseBuilder();
+  private final SettableFuture<Response> headers = SettableFuture.create();
+  private final ResponseBody body = new ResponseBody();
+
+  /**
+   * @return The response without its body, which is set once the body starts to
+   *  arrive (rather than with the headers, as a redirect or an authentication
+   *  challenge may yet be followed by other headers).
+   */
+  ListenableFuture<Response> headers() {
+    return headers;
+  }
+
+  ResponseBody body() {
+    return body;
+  }
+
+  @Override
+  public STATE onStatusReceived(HttpResponseStatus status) {
+    builder.reset();
+    builder.accumulate(status);
+    return STATE.CONTINUE;
+  }
+
+  @Override
+  public STATE onHeadersReceived(HttpResponseHeaders headers) {
+    builder.accumulate(headers);
+    return STATE.CONTINUE;
+  }
+
+  @Override
+  public STATE onBodyPartReceived(HttpResponseBodyPart part) throws Exception {
+    if (!headers.isDone())
+      headers.set(builder.build());
+
+    return body.append(part.getBodyPartBytes()) ? STATE.CONTINUE : STATE.ABORT;
+  }
+
+  @Override
+  public Response onCompleted() {
+    Response response = builder.build();
+    headers.set(response);
+    body.complete();
+    return response;
+  }
+
+  @Override
+  public void onThrowable(Throwable t) {
+    headers.setException(t);
+    body.fail(t);
+  }
+}
@@ -0,0 +1,122 @@
+package com.google.sitebricks.client;
+
+import com.google.common.io.ByteStreams;
+import com.google.inject.Injector;
+import com.google.inject.TypeLiteral;
+import com.ning.http.client.Response;
+import com.ning.http.util.AsyncHttpProviderUtils;
+import net.jcip.annotations.NotThreadSafe;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * A response that is handed out as soon as its status and headers have arrived, with
+ * the body decoded by the transport as it comes off the wire, rather than after all
+ * of it has been buffered in memory. This means the body can only be read once,
+ * either with {@link #to(Class)} or with {@link #toString()}.
+ */
+@NotThreadSafe
+class StreamingWebResponse implements WebResponse, Closeable {
+  private final Injector injector;
+  private final Response response;
+  private final InputStream body;
+  private final Future<?> request;
+
+  private boolean read;
+
+  // memo field
+  private Map<String, String> headers;
+
+  public StreamingWebResponse(Injector injector, Response response, InputStream body, Future<?> request) {
+    this.injector = injector;
+    this.response = response;
+    this.body = body;
+    this.request = request;
+  }
+
+  public Map<String, String> getHeaders() {
+    if (null != this.headers)
+      return this.headers;
+
+    final Map<String, String> headers = new HashMap<String, String>();
+    for (Map.Entry<String, List<String>> header : response.getHeaders().entrySet()) {
+      for (String value : header.getValue()) {
+        headers.put(header.getKey(), value);
+      }
+    }
+
+    return this.headers = headers;
+  }
+
+  public <T> ResponseTransportBuilder<T> to(final Class<T> data) {
+    return to(TypeLiteral.get(data));
+  }
+
+  @Override
+  public <T> ResponseTransportBuilder<T> to(final TypeLiteral<T> data) {
+    return new ResponseTransportBuilder<T>() {
+      public T using(Class<? extends Transport> transportKey) {
+        InputStream in = readBody();
+        try {
+          return injector.getInstance(transportKey).in(in, data);
+        } catch (IOException e) {
+          throw new TransportException(e);
+        } finally {
+          close();
+        }
+      }
+    };
+  }
+
+  public int status() {
+    return response.getStatusCode();
+  }
+
+  private InputStream readBody() {
+    if (read)
+      throw new IllegalStateException("The body of a streamed response can only be read once");
+    read = true;
+    return body;
+  }
+
+  /**
+   * Discards whatever is left of the body, aborting the request if it is still
+   * arriving.
+   */
+  @Override
+  public void close() {
+    try {
+      body.close();
+    } catch (IOException e) {
+      Logger.getLogger(StreamingWebResponse.class.getName()).warning("Could not close response stream: " + e);
+    }
+
+    if (!request.isDone())
+      request.cancel(true);
+  }
+
+  @Override
+  public String toString() {
+    String charset = null;
+    String contentType = response.getContentType();
+    if (null != contentType)
+      charset = AsyncHttpProviderUtils.parseCharset(contentType);
+
+    InputStream in = readBody();
+    try {
+      return new String(ByteStreams.toByteArray(in),
+          null == charset ? AsyncHttpProviderUtils.DEFAULT_CHARSET : charset);
+    } catch (IOException e) {
+      throw new TransportException(e);
+    } finally {
+      close();
+    }
+  }
+}
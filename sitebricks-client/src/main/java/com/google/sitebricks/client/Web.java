@@ -1,11 +1,18 @@
 package com.google.sitebricks.client;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.inject.ImplementedBy;
 import com.google.inject.TypeLiteral;
 
+import java.util.List;
 import java.util.Map;
 
 /**
+ * Builds {@link WebClient}s, which share one {@link WebClientPool}. Close each web
+ * client when done with it; outside a Sitebricks application (which closes the pool
+ * on shutdown), {@code injector.getInstance(WebClientPool.class).close()} also stops
+ * the pool's threads in one go.
+ *
  * @author Dhanji R. Prasanna (dhanji@gmail.com)
  */
 @ImplementedBy(CommonsWeb.class)
@@ -18,6 +25,11 @@ public interface Web {
 
   FormatBuilder clientOf(String url, Map<String, String> headers);
 
+  /**
+   * Starts a batch of GETs, for fanning out many small requests at once.
+   */
+  Batch batch();
+
   static interface FormatBuilder {
     <T> ReadAsBuilder<T> transports(Class<T> clazz);
 
@@ -28,9 +40,51 @@ public interface Web {
     FormatBuilder auth(Auth auth, String username, String password);
       
     FormatBuilder auth(Auth auth, String username, String password, boolean usePreemptiveAuth);
+
+    /**
+     * Hands out responses as soon as their status and headers arrive, and decodes
+     * their bodies as they are read off the connection, so that they needn't fit in
+     * memory. Whatever arrives faster than it is read is buffered, in a temporary
+     * file beyond 64k. The body of such a response can be read only once, with
+     * {@link WebResponse#to} or {@link WebResponse#toString()}, or else the response
+     * (which is {@link java.io.Closeable}) must be closed to abort it and release its
+     * buffer.
+     */
+    FormatBuilder streaming();
+
+    /**
+     * Answers GETs from the shared {@link WebResponseCache} while the cached response
+     * is fresh, and revalidates it once it is stale. Other methods are never cached.
+     */
+    FormatBuilder cached();
   }
 
   static interface ReadAsBuilder<T> {
     WebClient<T> over(Class<? extends Transport> clazz);
   }
+
+  static interface Batch {
+    /**
+     * Sends at most this many of the batch's requests to any one host at a time,
+     * 8 unless set.
+     */
+    Batch limitPerHost(int requests);
+
+    /**
+     * Adds a GET with the given client to this batch. Identical GETs (with the same
+     * URL, headers and credentials) that are in flight together are sent only once,
+     * and their response shared.
+     */
+    Batch get(WebClient<?> client);
+
+    /**
+     * Sends every request in this batch.
+     *
+     * @return The responses, in the order their requests were added, or the first
+     *  failure. The future completes on the client's I/O thread, so that its
+     *  listeners added with {@link com.google.common.util.concurrent.MoreExecutors#sameThreadExecutor()}
+     *  run without a thread hop but must not block.
+     */
+    ListenableFuture<List<WebResponse>> send();
+  }
 }
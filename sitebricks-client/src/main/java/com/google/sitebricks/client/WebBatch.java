@@ -0,0 +1,144 @@
+package com.google.sitebricks.client;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import net.jcip.annotations.NotThreadSafe;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends a batch of GETs, at most {@link #limitPerHost(int)} at a time to any one
+ * host, with the next request to a host sent as soon as one of the previous ones
+ * completes. Identical GETs that are in flight at the same time, in this batch or
+ * any other, are sent only once. See {@link WebClientPool#executeOnce}.
+ */
+@NotThreadSafe
+class WebBatch implements Web.Batch {
+  static final int DEFAULT_LIMIT_PER_HOST = 8;
+
+  private final List<AHCWebClient<?>> clients = Lists.newArrayList();
+  private int limitPerHost = DEFAULT_LIMIT_PER_HOST;
+
+  public Web.Batch limitPerHost(int requests) {
+    Preconditions.checkArgument(requests > 0, "Limit must be positive: %s", requests);
+    this.limitPerHost = requests;
+    return this;
+  }
+
+  public Web.Batch get(WebClient<?> client) {
+    Preconditions.checkArgument(client instanceof AHCWebClient, "Only web clients made by Web can be batched");
+    AHCWebClient<?> webClient = (AHCWebClient<?>) client;
+    Preconditions.checkArgument(!webClient.isStreaming(), "Streaming web clients can't be batched");
+
+    clients.add(webClient);
+    return this;
+  }
+
+  public ListenableFuture<List<WebResponse>> send() {
+    SettableFuture<List<WebResponse>> batch = SettableFuture.create();
+    if (clients.isEmpty()) {
+      batch.set(Collections.<WebResponse>emptyList());
+      return batch;
+    }
+
+    Results results = new Results(batch, clients.size());
+    Map<String, Host> hosts = Maps.newLinkedHashMap();
+    for (int i = 0; i < clients.size(); i++) {
+      String authority = clients.get(i).authority();
+      Host host = hosts.get(authority);
+      if (null == host)
+        hosts.put(authority, host = new Host(results));
+      host.pending.add(i);
+    }
+
+    for (Host host : hosts.values()) {
+      for (int i = 0; i < limitPerHost; i++) {
+        host.sendNext();
+      }
+    }
+    return batch;
+  }
+
+  private static class Results {
+    private final SettableFuture<List<WebResponse>> batch;
+    private final WebResponse[] responses;
+    private final AtomicInteger remaining;
+
+    private Results(SettableFuture<List<WebResponse>> batch, int size) {
+      this.batch = batch;
+      this.responses = new WebResponse[size];
+      this.remaining = new AtomicInteger(size);
+    }
+
+    private void set(int index, WebResponse response) {
+      responses[index] = response;
+
+      // The last one to arrive sees all the others, as it decremented last.
+      if (0 == remaining.decrementAndGet())
+        batch.set(Arrays.asList(responses));
+    }
+
+    private void fail(Throwable cause) {
+      batch.setException(cause);
+    }
+  }
+
+  private class Host {
+    private final Queue<Integer> pending = new ConcurrentLinkedQueue<Integer>();
+    private final Results results;
+
+    // Sends asked for but not yet made, by whichever thread is already sending.
+    private final AtomicInteger sends = new AtomicInteger();
+
+    private Host(Results results) {
+      this.results = results;
+    }
+
+    /**
+     * Sends the next pending request. Responses that are already done (from the
+     * cache, say) complete inline and ask for the next send from within this one,
+     * so rather than recursing, only the outermost call sends, looping until every
+     * send asked for in the meantime has been made.
+     */
+    private void sendNext() {
+      if (sends.getAndIncrement() > 0)
+        return;
+
+      do {
+        send();
+      } while (sends.decrementAndGet() > 0);
+    }
+
+    private void send() {
+      final Integer index = pending.poll();
+      if (null == index || results.batch.isDone())
+        return;
+
+      final ListenableFuture<WebResponse> response = clients.get(index).batchGet();
+      response.addListener(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            results.set(index, response.get());
+          } catch (ExecutionException e) {
+            results.fail(new TransportException(e.getCause()));
+          } catch (InterruptedException e) {
+            results.fail(new TransportException(e));
+          }
+          sendNext();
+        }
+      }, MoreExecutors.sameThreadExecutor());
+    }
+  }
+}
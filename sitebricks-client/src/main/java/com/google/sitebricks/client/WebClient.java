@@ -22,6 +22,12 @@ public interface WebClient<T> {
 
     ListenableFuture<WebResponse> get(Executor executor);
 
+    /**
+     * Sends the request without waiting for its response, which is handed out (as are
+     * those of the other asynchronous methods) on the given executor. An
+     * {@link java.io.InputStream} entity is also read there, rather than on the
+     * calling thread.
+     */
     ListenableFuture<WebResponse> post(T t, Executor executor);
 
     ListenableFuture<WebResponse> put(T t, Executor executor);
@@ -31,7 +37,9 @@ public interface WebClient<T> {
     ListenableFuture<WebResponse> delete(Executor executor);
 
     /**
-     * Close the underlying client.
+     * Releases this client's hold on the connections (and threads) of the
+     * {@link WebClientPool} that all web clients share. They are closed once every
+     * client has been, or when the pool itself is closed.
      */
     void close();
 }
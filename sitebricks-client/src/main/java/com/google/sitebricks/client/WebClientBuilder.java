@@ -17,6 +17,7 @@ import java.util.Map;
 class WebClientBuilder implements Web.FormatBuilder {
 
   private final Injector injector;
+  private final WebClientPool pool;
 
   private String url;
   private Map<String, String> headers;
@@ -25,10 +26,13 @@ class WebClientBuilder implements Web.FormatBuilder {
   private String username;
   private String password;
   private boolean usePreemptiveAuth;
+  private boolean streaming;
+  private boolean cached;
 
   @Inject
-  public WebClientBuilder(Injector injector) {
+  public WebClientBuilder(Injector injector, WebClientPool pool) {
     this.injector = injector;
+    this.pool = pool;
   }
 
   public Web.FormatBuilder clientOf(String url) {
@@ -76,6 +80,16 @@ class WebClientBuilder implements Web.FormatBuilder {
     return this;
   }
 
+  public Web.FormatBuilder streaming() {
+    this.streaming = true;
+    return this;
+  }
+
+  public Web.FormatBuilder cached() {
+    this.cached = true;
+    return this;
+  }
+
   private class InternalReadAsBuilder<T> implements Web.ReadAsBuilder<T> {
     private final TypeLiteral<T> transporting;
 
@@ -84,8 +98,11 @@ class WebClientBuilder implements Web.FormatBuilder {
     }
 
     public WebClient<T> over(Class<? extends Transport> transport) {
-      return new AHCWebClient<T>(injector, injector.getInstance(transport), authType, username, password, 
-                                 usePreemptiveAuth, url, headers, transporting);
+      Preconditions.checkState(!(streaming && cached), "Streamed responses can't be cached.");
+      WebResponseCache cache = cached ? injector.getInstance(WebResponseCache.class) : null;
+
+      return new AHCWebClient<T>(injector, pool, cache, injector.getInstance(transport), authType, username, password,
+                                 usePreemptiveAuth, streaming, url, headers, transporting);
     }
   }
 }
@@ -0,0 +1,144 @@
+package com.google.sitebricks.client;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.ning.http.client.AsyncHttpClient;
+import com.ning.http.client.AsyncHttpClientConfig;
+import com.ning.http.client.Request;
+import com.ning.http.client.Response;
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * The HTTP client (with its threads and pool of keep-alive connections, per host)
+ * that every {@link WebClient} built by {@link Web} shares. It is started on first
+ * use and runs until every web client built on it has been closed, or until the
+ * pool itself is {@link #close()}d (which Sitebricks applications do on shutdown,
+ * and which code that uses web clients outside Sitebricks should do once it is done
+ * with all of them).
+ * <p>
+ * To configure connection limits and timeouts, bind an instance of your own:
+ * <pre>
+ *   bind(WebClientPool.class).toInstance(new WebClientPool(new AsyncHttpClientConfig.Builder()
+ *       .setMaximumConnectionsPerHost(50)
+ *       .setIdleConnectionInPoolTimeoutInMs(30000)
+ *       .setConnectionTimeoutInMs(2000)
+ *       .setRequestTimeoutInMs(10000)
+ *       .build()));
+ * </pre>
+ */
+@ThreadSafe @Singleton
+public class WebClientPool {
+  @GuardedBy("this")
+  private AsyncHttpClientConfig config;
+  private final ConcurrentMap<Object, ListenableFuture<Response>> inFlight =
+      new ConcurrentHashMap<Object, ListenableFuture<Response>>();
+
+  @GuardedBy("this")
+  private AsyncHttpClient client;
+  @GuardedBy("this")
+  private boolean closed;
+  @GuardedBy("this")
+  private int open;
+
+  @Inject
+  public WebClientPool() {
+    this(new AsyncHttpClientConfig.Builder().build());
+  }
+
+  public WebClientPool(AsyncHttpClientConfig config) {
+    this.config = config;
+  }
+
+  synchronized AsyncHttpClient client() {
+    if (closed)
+      throw new IllegalStateException("This WebClientPool has been closed");
+
+    if (null == client)
+      client = new AsyncHttpClient(config);
+    return client;
+  }
+
+  /**
+   * Called as each web client is built, returning the HTTP client it should use.
+   */
+  synchronized AsyncHttpClient acquire() {
+    AsyncHttpClient client = client();
+    open++;
+    return client;
+  }
+
+  /**
+   * Called as each web client is closed. Once all of them have been, the HTTP client
+   * is closed too (to be started afresh if another web client is built), so that its
+   * threads don't keep running after code that closes its web clients is done.
+   */
+  synchronized void release() {
+    if (open > 0 && 0 == --open && null != client) {
+      client.close();
+      client = null;
+
+      // Closing the client shut down the thread pools in its config, so start over with new ones.
+      AsyncHttpClientConfig defaults = new AsyncHttpClientConfig.Builder().build();
+      config = new AsyncHttpClientConfig.Builder(config)
+          .setExecutorService(defaults.executorService())
+          .setScheduledExecutorService(defaults.reaper())
+          .build();
+    }
+  }
+
+  /**
+   * Executes the given request, unless an identical one (with the same key) is
+   * already in flight, in which case its response is shared instead. Used to send
+   * each distinct GET of a {@link WebBatch} only once.
+   */
+  ListenableFuture<Response> executeOnce(final Object key, Request request) {
+    final SettableFuture<Response> future = SettableFuture.create();
+    ListenableFuture<Response> existing = inFlight.putIfAbsent(key, future);
+    if (null != existing)
+      return existing;
+
+    try {
+      final com.ning.http.client.ListenableFuture<Response> responseFuture = client().executeRequest(request);
+      responseFuture.addListener(new Runnable() {
+        @Override
+        public void run() {
+          // Later requests are sent afresh, rather than given this response.
+          inFlight.remove(key, future);
+          try {
+            future.set(responseFuture.get());
+          } catch (ExecutionException e) {
+            future.setException(e.getCause());
+          } catch (InterruptedException e) {
+            future.setException(e);
+          }
+        }
+      }, MoreExecutors.sameThreadExecutor());
+    } catch (IOException e) {
+      inFlight.remove(key, future);
+      future.setException(e);
+    } catch (RuntimeException e) {
+      inFlight.remove(key, future);
+      future.setException(e);
+    }
+    return future;
+  }
+
+  /**
+   * Closes all pooled connections and stops the client's threads. Web clients that
+   * use this pool can't make requests afterwards.
+   */
+  public synchronized void close() {
+    closed = true;
+    if (null != client)
+      client.close();
+  }
+}
@@ -0,0 +1,276 @@
+package com.google.sitebricks.client;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+import com.ning.http.client.Response;
+import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An in-memory cache of GET responses, shared by every web client that is built
+ * with {@link Web.FormatBuilder#cached()}. It follows the response's
+ * {@code Cache-Control} ({@code max-age}, {@code no-cache}, {@code no-store} and
+ * {@code stale-while-revalidate}) or {@code Expires} header to decide how long it
+ * is fresh for, and afterwards revalidates it with a conditional GET if it has an
+ * {@code ETag} or a {@code Last-Modified} date.
+ * <p>
+ * To change how many responses are kept, or to also keep the objects that
+ * transports decode from them, bind an instance of your own:
+ * <pre>
+ *   bind(WebResponseCache.class).toInstance(new WebResponseCache(5000, true));
+ * </pre>
+ */
+@ThreadSafe @Singleton
+public class WebResponseCache {
+  static final int DEFAULT_MAX_ENTRIES = 1000;
+
+  private final Cache<Object, CachedResponse> responses;
+  private final boolean cacheDecoded;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong revalidations = new AtomicLong();
+
+  @Inject
+  public WebResponseCache() {
+    this(DEFAULT_MAX_ENTRIES, false);
+  }
+
+  /**
+   * @param maxEntries How many responses to keep, the least recently used are
+   *  evicted beyond that.
+   * @param cacheDecoded Whether to also keep the objects transports decode from
+   *  cached responses, which are then shared by everyone who reads the same
+   *  response, so they must not be modified.
+   */
+  public WebResponseCache(int maxEntries, boolean cacheDecoded) {
+    this.responses = CacheBuilder.newBuilder().maximumSize(maxEntries).build();
+    this.cacheDecoded = cacheDecoded;
+  }
+
+  /**
+   * @return How many responses were served from the cache, whether they were fresh
+   *  or being revalidated in the background.
+   */
+  public long hits() {
+    return hits.get();
+  }
+
+  /**
+   * @return How many GETs could not be answered from the cache at all.
+   */
+  public long misses() {
+    return misses.get();
+  }
+
+  /**
+   * @return How many conditional GETs were sent to revalidate stale responses.
+   */
+  public long revalidations() {
+    return revalidations.get();
+  }
+
+  public void clear() {
+    responses.invalidateAll();
+  }
+
+  // Overridden in tests.
+  long now() {
+    return System.currentTimeMillis();
+  }
+
+  void invalidate(Object key) {
+    responses.invalidate(key);
+  }
+
+  CachedResponse get(Object key) {
+    return responses.getIfPresent(key);
+  }
+
+  void hit() {
+    hits.incrementAndGet();
+  }
+
+  void miss() {
+    misses.incrementAndGet();
+  }
+
+  void revalidating() {
+    revalidations.incrementAndGet();
+  }
+
+  /**
+   * Stores the given response, if it may be cached, and returns its cache entry
+   * (or null).
+   */
+  CachedResponse put(Object key, Response response) {
+    if (200 != response.getStatusCode() || "*".equals(response.getHeader("Vary"))) {
+      responses.invalidate(key);
+      return null;
+    }
+
+    Freshness freshness = Freshness.of(response, now());
+    String etag = response.getHeader("ETag");
+    String lastModified = response.getHeader("Last-Modified");
+    if (freshness.noStore || (!freshness.isFresh(now()) && null == etag && null == lastModified)) {
+      responses.invalidate(key);
+      return null;
+    }
+
+    CachedResponse cached = new CachedResponse(response, freshness, etag, lastModified,
+        cacheDecoded ? new ConcurrentHashMap<Object, Object>() : null);
+    responses.put(key, cached);
+    return cached;
+  }
+
+  /**
+   * Called with the 304 that revalidated the given response, which is then fresh
+   * again for as long as the new headers say (or the old ones, if there are none).
+   */
+  CachedResponse notModified(Object key, CachedResponse cached, Response notModified) {
+    Freshness freshness = null != notModified.getHeader("Cache-Control") || null != notModified.getHeader("Expires")
+        ? Freshness.of(notModified, now())
+        : Freshness.of(cached.response, now());
+
+    CachedResponse revalidated = new CachedResponse(cached.response, freshness, cached.etag,
+        cached.lastModified, cached.decoded);
+    responses.put(key, revalidated);
+    return revalidated;
+  }
+
+  static class CachedResponse {
+    final Response response;
+    final String etag;
+    final String lastModified;
+    final ConcurrentMap<Object, Object> decoded;
+    private final Freshness freshness;
+    private final AtomicBoolean revalidating = new AtomicBoolean();
+
+    private CachedResponse(Response response, Freshness freshness, String etag, String lastModified,
+                           ConcurrentMap<Object, Object> decoded) {
+      this.response = response;
+      this.freshness = freshness;
+      this.etag = etag;
+      this.lastModified = lastModified;
+      this.decoded = decoded;
+    }
+
+    boolean isFresh(long now) {
+      return freshness.isFresh(now);
+    }
+
+    /**
+     * Returns true if this response is stale, but may still be served while it is
+     * being revalidated.
+     */
+    boolean isStaleWhileRevalidate(long now) {
+      return now < freshness.staleUntil;
+    }
+
+    /**
+     * Returns true if the caller should revalidate this response in the background,
+     * which it must {@link #revalidated()} afterwards, as nobody else will meanwhile.
+     */
+    boolean claimRevalidation() {
+      return revalidating.compareAndSet(false, true);
+    }
+
+    void revalidated() {
+      revalidating.set(false);
+    }
+
+    boolean canRevalidate() {
+      return null != etag || null != lastModified;
+    }
+  }
+
+  @Immutable
+  private static class Freshness {
+    private final boolean noStore;
+    private final long freshUntil;
+    private final long staleUntil;
+
+    private Freshness(boolean noStore, long freshUntil, long staleUntil) {
+      this.noStore = noStore;
+      this.freshUntil = freshUntil;
+      this.staleUntil = staleUntil;
+    }
+
+    boolean isFresh(long now) {
+      return now < freshUntil;
+    }
+
+    static Freshness of(Response response, long now) {
+      boolean noStore = false, noCache = false;
+      long maxAge = -1, staleWhileRevalidate = 0;
+
+      String cacheControl = response.getHeader("Cache-Control");
+      if (null != cacheControl) {
+        for (String directive : cacheControl.split(",")) {
+          String[] pair = directive.trim().toLowerCase(Locale.ENGLISH).split("=", 2);
+          String name = pair[0].trim();
+          long value = pair.length > 1 ? seconds(pair[1]) : -1;
+
+          if ("no-store".equals(name))
+            noStore = true;
+          else if ("no-cache".equals(name))
+            noCache = true;
+          else if ("max-age".equals(name))
+            maxAge = value;
+          else if ("stale-while-revalidate".equals(name))
+            staleWhileRevalidate = Math.max(0, value);
+        }
+      }
+
+      long freshFor;
+      if (noCache) {
+        freshFor = 0;
+      } else if (maxAge >= 0) {
+        freshFor = maxAge * 1000 - Math.max(0, seconds(response.getHeader("Age"))) * 1000;
+      } else {
+        // Relative to the server's clock, as ours may well disagree with it.
+        long expires = httpDate(response.getHeader("Expires"));
+        long date = httpDate(response.getHeader("Date"));
+        freshFor = expires < 0 ? 0 : expires - (date < 0 ? now : date);
+      }
+
+      long freshUntil = now + Math.max(0, freshFor);
+      return new Freshness(noStore, freshUntil, noCache ? freshUntil : freshUntil + staleWhileRevalidate * 1000);
+    }
+
+    private static long seconds(String value) {
+      if (null == value)
+        return -1;
+      try {
+        return Long.parseLong(value.trim().replace("\"", ""));
+      } catch (NumberFormatException e) {
+        return -1;
+      }
+    }
+
+    private static long httpDate(String value) {
+      if (null == value)
+        return -1;
+
+      // RFC 1123, the only format HTTP/1.1 servers may send.
+      SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+      format.setTimeZone(TimeZone.getTimeZone("GMT"));
+      try {
+        return format.parse(value.trim()).getTime();
+      } catch (ParseException e) {
+        return -1;
+      }
+    }
+  }
+}
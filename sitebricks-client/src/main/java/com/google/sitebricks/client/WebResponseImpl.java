@@ -7,9 +7,11 @@ import net.jcip.annotations.NotThreadSafe;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Logger;
 
 /**
@@ -22,12 +24,20 @@ class WebResponseImpl implements WebResponse {
   private final Injector injector;
   private final Response response;
 
+  // Objects decoded from a cached response, shared by all its readers (may be null).
+  private final ConcurrentMap<Object, Object> decoded;
+
   // memo field
   private Map<String, String> headers;
 
   public WebResponseImpl(Injector injector, Response response) {
+    this(injector, response, null);
+  }
+
+  public WebResponseImpl(Injector injector, Response response, ConcurrentMap<Object, Object> decoded) {
     this.injector = injector;
     this.response = response;
+    this.decoded = decoded;
   }
 
   public Map<String, String> getHeaders() {
@@ -53,12 +63,24 @@ class WebResponseImpl implements WebResponse {
   @Override
   public <T> ResponseTransportBuilder<T> to(final TypeLiteral<T> data) {
     return new ResponseTransportBuilder<T>() {
+      @SuppressWarnings("unchecked")
       public T using(Class<? extends Transport> transportKey) {
+        Object key = null;
+        if (null != decoded) {
+          key = Arrays.asList(data, transportKey);
+          Object value = decoded.get(key);
+          if (null != value)
+            return (T) value;
+        }
+
         InputStream in = null;
         try {
           in = response.getResponseBodyAsStream();
 
-          return injector.getInstance(transportKey).in(in, data);
+          T value = injector.getInstance(transportKey).in(in, data);
+          if (null != key && null != value)
+            decoded.putIfAbsent(key, value);
+          return value;
         } catch (IOException e) {
           throw new TransportException(e);
           //
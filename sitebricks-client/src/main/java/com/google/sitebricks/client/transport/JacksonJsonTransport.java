@@ -3,20 +3,34 @@ package com.google.sitebricks.client.transport;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.type.TypeFactory;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.google.inject.TypeLiteral;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 
 /**
+ * Reads and writes JSON with a reader or writer per type, which is built (and finds
+ * its root (de)serializer) only the first time that type is seen. This means the
+ * {@link ObjectMapper} must be configured (or have modules like Afterburner
+ * registered) before this transport is first used, as later changes don't apply.
+ * <p>
+ * {@link Iterable}s and {@link java.util.Iterator}s are written out one element at a
+ * time, as they are iterated, so large lists needn't be held in memory.
+ *
  * @author Dhanji R. Prasanna (dhanji@gmail.com)
  */
 @Singleton
 public class JacksonJsonTransport extends Json {
 
   private final ObjectMapper objectMapper;
+  private final ConcurrentMap<Type, ObjectReader> readers = new ConcurrentHashMap<Type, ObjectReader>();
+  private final ConcurrentMap<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<Class<?>, ObjectWriter>();
 
   @Inject
   public JacksonJsonTransport(ObjectMapper objectMapper) {
@@ -28,21 +42,42 @@ public class JacksonJsonTransport extends Json {
   }
   
   public <T> T in(InputStream in, Class<T> type) throws IOException {
-    return objectMapper.readValue(in, type);
+    return reader(type).readValue(in);
   }
 
   @Override
   public <T> T in(InputStream in, TypeLiteral<T> type) throws IOException {
-    return objectMapper.readValue(in, TypeFactory.defaultInstance().constructType(type.getType()));
+    return reader(type.getType()).readValue(in);
   }
 
   public <T> void out(OutputStream out, Class<T> type, T data) {
     try {
-      objectMapper.writeValue(out, data);
+      // By the runtime type, as the declared one may be a supertype that lacks some
+      // of the data's properties.
+      if (null == data)
+        objectMapper.writeValue(out, null);
+      else
+        writer(data.getClass()).writeValue(out, data);
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
   }
 
+  private ObjectReader reader(Type type) {
+    ObjectReader reader = readers.get(type);
+    if (null == reader) {
+      reader = objectMapper.reader(objectMapper.getTypeFactory().constructType(type));
+      readers.put(type, reader);
+    }
+    return reader;
+  }
 
+  private ObjectWriter writer(Class<?> type) {
+    ObjectWriter writer = writers.get(type);
+    if (null == writer) {
+      writer = objectMapper.writerWithType(type);
+      writers.put(type, writer);
+    }
+    return writer;
+  }
 }
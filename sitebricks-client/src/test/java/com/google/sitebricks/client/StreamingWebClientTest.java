@@ -0,0 +1,225 @@
+package com.google.sitebricks.client;
+
+import com.google.common.collect.Sets;
+import com.google.common.io.ByteStreams;
+import com.google.inject.Guice;
+import com.google.sitebricks.client.transport.Raw;
+import com.google.sitebricks.client.transport.Text;
+import com.ning.http.client.RequestBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit test for sending and receiving bodies without holding them in memory.
+ */
+public class StreamingWebClientTest {
+  private static final int BODY_SIZE = 3 * RequestBody.MEMORY_THRESHOLD + 17;
+
+  private HttpServer server;
+  private String url;
+  private volatile String contentLength;
+  private final CountDownLatch clientHasHeaders = new CountDownLatch(1);
+  private final CountDownLatch largeBodySent = new CountDownLatch(1);
+
+  @BeforeMethod
+  public final void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+
+    // Echoes uploads back as their size in bytes.
+    server.createContext("/upload", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+        byte[] body = String.valueOf(count(exchange.getRequestBody())).getBytes("UTF-8");
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+      }
+    });
+
+    // Sends half its body, and the rest only once the client has seen the headers.
+    server.createContext("/download", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        out.write(filled(BODY_SIZE / 2));
+        out.flush();
+        try {
+          // A client that waits for the whole body gets only half of it.
+          if (clientHasHeaders.await(2, TimeUnit.SECONDS))
+            out.write(filled(BODY_SIZE - BODY_SIZE / 2));
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        exchange.close();
+      }
+    });
+    // Sends far more than fits in the socket buffers.
+    server.createContext("/large", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        byte[] chunk = filled(RequestBody.MEMORY_THRESHOLD);
+        for (int i = 0; i < 256; i++) {
+          out.write(chunk);
+        }
+        exchange.close();
+        largeBodySent.countDown();
+      }
+    });
+    server.start();
+    url = "http://localhost:" + server.getAddress().getPort();
+  }
+
+  @AfterMethod
+  public final void stopServer() {
+    server.stop(0);
+  }
+
+  @Test
+  public final void largeRequestBodiesAreSentWithTheirLength() {
+    WebClient<byte[]> client = Guice.createInjector().getInstance(Web.class)
+        .clientOf(url + "/upload")
+        .transports(byte[].class)
+        .over(Raw.class);
+
+    assert String.valueOf(BODY_SIZE).equals(client.post(filled(BODY_SIZE)).toString());
+    assert String.valueOf(BODY_SIZE).equals(contentLength) : contentLength;
+
+    assert "3".equals(client.post(filled(3)).toString());
+    assert "3".equals(contentLength) : contentLength;
+  }
+
+  @Test
+  public final void asyncStreamUploadsAreReadOnTheGivenExecutor() throws Exception {
+    WebClient<InputStream> client = Guice.createInjector().getInstance(Web.class)
+        .clientOf(url + "/upload")
+        .transports(InputStream.class)
+        .over(Raw.class);
+
+    final Set<Thread> readers = Collections.synchronizedSet(Sets.<Thread>newHashSet());
+    InputStream upload = new ByteArrayInputStream(filled(BODY_SIZE)) {
+      @Override
+      public synchronized int read(byte[] bytes, int offset, int length) {
+        readers.add(Thread.currentThread());
+        return super.read(bytes, offset, length);
+      }
+    };
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      WebResponse response = client.post(upload, executor).get(10, TimeUnit.SECONDS);
+      assert String.valueOf(BODY_SIZE).equals(response.toString()) : response.toString();
+      assert String.valueOf(BODY_SIZE).equals(contentLength) : contentLength;
+      assert !readers.isEmpty() && !readers.contains(Thread.currentThread()) : readers;
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public final void streamedResponsesArriveBeforeTheirBody() {
+    WebClient<String> client = Guice.createInjector().getInstance(Web.class)
+        .clientOf(url + "/download")
+        .streaming()
+        .transports(String.class)
+        .over(Text.class);
+
+    WebResponse response = client.get();
+    assert 200 == response.status();
+    clientHasHeaders.countDown();
+
+    String body = response.to(String.class).using(Text.class);
+    assert new String(filled(BODY_SIZE)).equals(body);
+
+    try {
+      response.toString();
+      assert false;
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  @Test
+  public final void unreadResponsesDoNotHoldUpTheClient() throws InterruptedException, IOException {
+    WebClient<String> client = Guice.createInjector().getInstance(Web.class)
+        .clientOf(url + "/large")
+        .streaming()
+        .transports(String.class)
+        .over(Text.class);
+
+    // Nobody reads the body, which must all arrive nonetheless (spilled to disk).
+    WebResponse response = client.get();
+    assert largeBodySent.await(10, TimeUnit.SECONDS);
+    ((Closeable) response).close();
+  }
+
+  @Test
+  public final void responseBodiesSpillToDiskAndStopWhenClosed() throws IOException {
+    ResponseBody body = new ResponseBody(8);
+    assert body.append("abcde".getBytes());
+    assert null == body.file();
+    assert body.append("fghij".getBytes());
+    assert body.append("kl".getBytes());
+    body.complete();
+
+    File file = body.file();
+    assert null != file && 7 == file.length();
+    assert "abcdefghijkl".equals(new String(ByteStreams.toByteArray(body)));
+    assert !file.exists();
+
+    ResponseBody closed = new ResponseBody(8);
+    assert closed.append(filled(10));
+    closed.close();
+    assert !closed.file().exists();
+    assert !closed.append(filled(1));
+  }
+
+  @Test
+  public final void requestBodiesSpillToDiskOnlyWhenLarge() throws IOException {
+    RequestBody small = new RequestBody(8);
+    small.write(filled(8));
+    assert null == small.file();
+
+    RequestBody large = new RequestBody(8);
+    large.write(filled(5));
+    large.write(filled(5));
+    large.setOn(new RequestBuilder("POST"));
+
+    File file = large.file();
+    assert null != file;
+    assert 10 == file.length();
+    large.discard();
+    assert !file.exists();
+  }
+
+  private static long count(InputStream in) throws IOException {
+    return ByteStreams.toByteArray(in).length;
+  }
+
+  private static byte[] filled(int length) {
+    byte[] bytes = new byte[length];
+    Arrays.fill(bytes, (byte) 'x');
+    return bytes;
+  }
+}
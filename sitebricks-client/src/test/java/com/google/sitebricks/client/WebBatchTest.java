@@ -0,0 +1,126 @@
+package com.google.sitebricks.client;
+
+import com.google.common.collect.Lists;
+import com.google.inject.Guice;
+import com.google.sitebricks.client.transport.Text;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unit test for batched GETs.
+ */
+public class WebBatchTest {
+  private HttpServer server;
+  private ExecutorService serverThreads;
+  private String url;
+  private Web web;
+
+  private final AtomicInteger requests = new AtomicInteger();
+  private final AtomicInteger concurrent = new AtomicInteger();
+  private final AtomicInteger maxConcurrent = new AtomicInteger();
+
+  @BeforeMethod
+  public final void startServer() throws IOException {
+    requests.set(0);
+    maxConcurrent.set(0);
+
+    // Answers slowly with the path that was asked for.
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        int now = concurrent.incrementAndGet();
+        for (int max = maxConcurrent.get(); now > max; max = maxConcurrent.get()) {
+          maxConcurrent.compareAndSet(max, now);
+        }
+
+        try {
+          Thread.sleep(100);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+
+        concurrent.decrementAndGet();
+        byte[] body = exchange.getRequestURI().getPath().getBytes("UTF-8");
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+      }
+    });
+    serverThreads = Executors.newCachedThreadPool();
+    server.setExecutor(serverThreads);
+    server.start();
+
+    url = "http://localhost:" + server.getAddress().getPort();
+    web = Guice.createInjector().getInstance(Web.class);
+  }
+
+  @AfterMethod
+  public final void stopServer() {
+    server.stop(0);
+    serverThreads.shutdown();
+  }
+
+  @Test
+  public final void identicalGetsInFlightAreSentOnce() throws Exception {
+    List<WebResponse> responses = web.batch()
+        .get(client("/same"))
+        .get(client("/other"))
+        .get(client("/same"))
+        .get(client("/same"))
+        .send()
+        .get(10, TimeUnit.SECONDS);
+
+    assert bodiesOf(responses).equals(Lists.newArrayList("/same", "/other", "/same", "/same"))
+        : bodiesOf(responses);
+    assert 2 == requests.get() : requests;
+
+    // Once the first has completed, the same GET is sent again.
+    assert "/same".equals(web.batch().get(client("/same")).send().get(10, TimeUnit.SECONDS).get(0).toString());
+    assert 3 == requests.get() : requests;
+  }
+
+  @Test
+  public final void requestsToAHostAreLimited() throws Exception {
+    Web.Batch batch = web.batch().limitPerHost(2);
+    List<String> paths = Lists.newArrayList();
+    for (int i = 0; i < 6; i++) {
+      batch.get(client("/" + i));
+      paths.add("/" + i);
+    }
+
+    assert paths.equals(bodiesOf(batch.send().get(10, TimeUnit.SECONDS)));
+    assert 6 == requests.get() : requests;
+    assert 2 == maxConcurrent.get() : maxConcurrent;
+  }
+
+  @Test
+  public final void emptyBatchesAreDoneAtOnce() throws Exception {
+    assert web.batch().send().get(0, TimeUnit.SECONDS).isEmpty();
+  }
+
+  private WebClient<String> client(String path) {
+    return web.clientOf(url + path).transports(String.class).over(Text.class);
+  }
+
+  private static List<String> bodiesOf(List<WebResponse> responses) {
+    List<String> bodies = Lists.newArrayList();
+    for (WebResponse response : responses) {
+      bodies.add(response.toString());
+    }
+    return bodies;
+  }
+}
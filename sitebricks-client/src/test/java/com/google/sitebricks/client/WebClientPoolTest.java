@@ -0,0 +1,110 @@
+package com.google.sitebricks.client;
+
+import com.google.common.collect.Lists;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.sitebricks.client.transport.Text;
+import com.ning.http.client.AsyncHttpClient;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Unit test for sharing one pooled HTTP client between web clients.
+ */
+public class WebClientPoolTest {
+  private HttpServer server;
+  private String url;
+  private final List<String> authorizations = Collections.synchronizedList(Lists.<String>newArrayList());
+
+  @BeforeMethod
+  public final void startServer() throws IOException {
+    authorizations.clear();
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        authorizations.add(String.valueOf(exchange.getRequestHeaders().getFirst("Authorization")));
+
+        byte[] body = "hello".getBytes("UTF-8");
+        exchange.sendResponseHeaders(200, body.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+      }
+    });
+    server.start();
+    url = "http://localhost:" + server.getAddress().getPort() + "/";
+  }
+
+  @AfterMethod
+  public final void stopServer() {
+    server.stop(0);
+  }
+
+  @Test
+  public final void clientsShareConnectionsButNotCredentials() {
+    Injector injector = Guice.createInjector();
+    WebClientPool pool = injector.getInstance(WebClientPool.class);
+    Web web = injector.getInstance(Web.class);
+
+    WebClient<String> anonymous = web.clientOf(url).transports(String.class).over(Text.class);
+    WebClient<String> authenticated = web.clientOf(url)
+        .auth(Web.Auth.BASIC, "user", "secret", true)
+        .transports(String.class)
+        .over(Text.class);
+
+    assert "hello".equals(authenticated.get().toString());
+    assert "hello".equals(anonymous.get().toString());
+
+    // Closing one client leaves the pool open for the others.
+    authenticated.close();
+    assert "hello".equals(anonymous.get().toString());
+
+    assert pool == injector.getInstance(WebClientPool.class);
+    assert authorizations.get(0).startsWith("Basic ") : authorizations;
+    assert "null".equals(authorizations.get(1)) : authorizations;
+
+    pool.close();
+    try {
+      web.clientOf(url).transports(String.class).over(Text.class);
+      assert false;
+    } catch (IllegalStateException expected) {
+    }
+  }
+
+  @Test
+  public final void closingEveryClientClosesTheSharedOne() {
+    Injector injector = Guice.createInjector();
+    WebClientPool pool = injector.getInstance(WebClientPool.class);
+    Web web = injector.getInstance(Web.class);
+
+    WebClient<String> first = web.clientOf(url).transports(String.class).over(Text.class);
+    WebClient<String> second = web.clientOf(url).transports(String.class).over(Text.class);
+    AsyncHttpClient shared = pool.client();
+
+    assert "hello".equals(first.get().toString());
+    first.close();
+    first.close();
+    assert !shared.isClosed();
+    assert "hello".equals(second.get().toString());
+
+    second.close();
+    assert shared.isClosed();
+
+    // Another client starts the shared one afresh.
+    WebClient<String> third = web.clientOf(url).transports(String.class).over(Text.class);
+    assert shared != pool.client();
+    assert "hello".equals(third.get().toString());
+    third.close();
+  }
+}
@@ -0,0 +1,196 @@
+package com.google.sitebricks.client;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.sitebricks.client.transport.Text;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Unit test for caching GET responses in the web client.
+ */
+public class WebResponseCacheTest {
+  private HttpServer server;
+  private String url;
+  private Web web;
+
+  private final AtomicInteger requests = new AtomicInteger();
+  private final AtomicInteger notModified = new AtomicInteger();
+  private final AtomicLong clock = new AtomicLong(1000000);
+  private WebResponseCache cache;
+
+  @BeforeMethod
+  public final void startServer() throws IOException {
+    requests.set(0);
+    notModified.set(0);
+
+    // Answers with the Cache-Control header given in the query, and version 1 of
+    // the body, which is tagged so that it can be revalidated (unless untagged).
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        String query = exchange.getRequestURI().getQuery();
+        if (!query.contains("untagged"))
+          exchange.getResponseHeaders().add("ETag", "\"v1\"");
+        exchange.getResponseHeaders().add("Cache-Control", query);
+
+        if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+          notModified.incrementAndGet();
+          exchange.sendResponseHeaders(304, -1);
+        } else {
+          byte[] body = "version 1".getBytes("UTF-8");
+          exchange.sendResponseHeaders(200, body.length);
+          exchange.getResponseBody().write(body);
+        }
+        exchange.close();
+      }
+    });
+    server.start();
+    url = "http://localhost:" + server.getAddress().getPort() + "/?";
+
+    cache = new WebResponseCache(10, true) {
+      @Override
+      long now() {
+        return clock.get();
+      }
+    };
+    web = Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(WebResponseCache.class).toInstance(cache);
+      }
+    }).getInstance(Web.class);
+  }
+
+  @AfterMethod
+  public final void stopServer() {
+    server.stop(0);
+  }
+
+  @Test
+  public final void freshResponsesAreServedFromTheCache() {
+    WebClient<String> client = client("max-age=60");
+
+    assert "version 1".equals(client.get().toString());
+    assert "version 1".equals(client.get().toString());
+    assert 1 == requests.get();
+    assert 1 == cache.hits();
+    assert 1 == cache.misses();
+
+    // Until they expire.
+    clock.addAndGet(TimeUnit.SECONDS.toMillis(61));
+    assert "version 1".equals(client.get().toString());
+    assert 2 == requests.get();
+    assert 1 == notModified.get();
+    assert 1 == cache.revalidations();
+
+    // Writes invalidate them.
+    client.post("version 2");
+    assert 3 == requests.get();
+    client.get();
+    assert 4 == requests.get();
+    assert 2 == cache.misses();
+  }
+
+  @Test
+  public final void noCacheResponsesAreRevalidatedEveryTime() throws Exception {
+    WebClient<String> client = client("no-cache");
+
+    assert "version 1".equals(client.get().toString());
+    assert "version 1".equals(client.get(MoreExecutors.sameThreadExecutor()).get().toString());
+    assert "version 1".equals(client.get().toString());
+    assert 3 == requests.get();
+    assert 2 == notModified.get();
+    assert 2 == cache.revalidations();
+    assert 0 == cache.hits();
+  }
+
+  @Test
+  public final void noStoreResponsesAreNeverCached() {
+    WebClient<String> client = client("no-store");
+
+    client.get();
+    client.get();
+    assert 2 == requests.get();
+    assert 2 == cache.misses();
+  }
+
+  @Test
+  public final void staleResponsesAreServedWhileRevalidating() throws InterruptedException {
+    WebClient<String> client = client("max-age=10,stale-while-revalidate=60");
+    client.get();
+
+    clock.addAndGet(TimeUnit.SECONDS.toMillis(20));
+    assert "version 1".equals(client.get().toString());
+    assert 1 == cache.hits();
+    for (int i = 0; i < 100 && notModified.get() == 0; i++) {
+      Thread.sleep(50);
+    }
+    assert 1 == notModified.get();
+    assert 1 == cache.revalidations();
+
+    // Fresh again, for another ten seconds.
+    client.get();
+    assert 2 == requests.get();
+    assert 2 == cache.hits();
+  }
+
+  @Test
+  public final void staleResponsesWithoutValidatorsAreCountedOnce() throws InterruptedException {
+    WebClient<String> client = client("max-age=10,stale-while-revalidate=60,untagged");
+    client.get();
+
+    clock.addAndGet(TimeUnit.SECONDS.toMillis(20));
+    assert "version 1".equals(client.get().toString());
+    for (int i = 0; i < 100 && requests.get() < 2; i++) {
+      Thread.sleep(50);
+    }
+    assert 2 == requests.get();
+    assert 1 == cache.hits();
+    assert 1 == cache.misses();
+    assert 0 == cache.revalidations();
+  }
+
+  @Test
+  public final void decodedObjectsAreShared() {
+    WebClient<String> client = client("max-age=60");
+
+    String first = client.get().to(String.class).using(Text.class);
+    String second = client.get().to(String.class).using(Text.class);
+    assert "version 1".equals(first);
+    assert first == second;
+  }
+
+  @Test
+  public final void batchesOfCachedResponsesDoNotRecurse() throws Exception {
+    WebClient<String> client = client("max-age=60");
+    client.get();
+
+    // Each cached response completes as soon as it is sent, one after the other.
+    Web.Batch batch = web.batch().limitPerHost(1);
+    for (int i = 0; i < 20000; i++) {
+      batch.get(client);
+    }
+
+    assert 20000 == batch.send().get(10, TimeUnit.SECONDS).size();
+    assert 1 == requests.get();
+    assert 20000 == cache.hits();
+  }
+
+  private WebClient<String> client(String cacheControl) {
+    return web.clientOf(url + cacheControl).cached().transports(String.class).over(Text.class);
+  }
+}
@@ -0,0 +1,113 @@
+package com.google.sitebricks.client.transport;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.TypeLiteral;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Unit test for the Jackson JSON transport.
+ */
+public class JsonTransportTest {
+
+  @Test
+  public final void readsAndWritesGenericTypes() throws IOException {
+    JacksonJsonTransport transport = new JacksonJsonTransport(new ObjectMapper());
+    TypeLiteral<Map<String, List<Person>>> type = new TypeLiteral<Map<String, List<Person>>>() {};
+
+    for (int i = 0; i < 3; i++) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      transport.out(out, Map.class,
+          ImmutableMap.of("people", ImmutableList.of(new Person("Dhanji", i), new Employee("Jason", i, "Sonatype"))));
+
+      assert ("{\"people\":[{\"name\":\"Dhanji\",\"age\":" + i + "},"
+          + "{\"name\":\"Jason\",\"age\":" + i + ",\"employer\":\"Sonatype\"}]}").equals(out.toString("UTF-8"))
+          : out.toString("UTF-8");
+
+      Map<String, List<Person>> people = transport.in(new ByteArrayInputStream(
+          "{\"people\":[{\"name\":\"Dhanji\",\"age\":30}]}".getBytes("UTF-8")), type);
+      assert "Dhanji".equals(people.get("people").get(0).getName());
+    }
+  }
+
+  @Test
+  public final void writesIteratorsIncrementally() throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final int count = 100000;
+
+    Iterator<Person> people = new Iterator<Person>() {
+      private int next;
+
+      @Override
+      public boolean hasNext() {
+        return next < count;
+      }
+
+      @Override
+      public Person next() {
+        // Well before the end, plenty must already have been written.
+        if (next == count / 2)
+          assert out.size() > 0;
+        return new Person("Person", next++);
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+
+    new JacksonJsonTransport(new ObjectMapper()).out(out, Iterator.class, people);
+    assert out.toString("UTF-8").endsWith("{\"name\":\"Person\",\"age\":" + (count - 1) + "}]");
+  }
+
+  public static class Person {
+    private String name;
+    private int age;
+
+    public Person() {
+    }
+
+    public Person(String name, int age) {
+      this.name = name;
+      this.age = age;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+
+    public int getAge() {
+      return age;
+    }
+
+    public void setAge(int age) {
+      this.age = age;
+    }
+  }
+
+  public static class Employee extends Person {
+    private final String employer;
+
+    public Employee(String name, int age, String employer) {
+      super(name, age);
+      this.employer = employer;
+    }
+
+    public String getEmployer() {
+      return employer;
+    }
+  }
+}
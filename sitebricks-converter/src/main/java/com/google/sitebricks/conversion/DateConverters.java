@@ -2,6 +2,7 @@ package com.google.sitebricks.conversion;
 
 import java.text.DateFormat;
 import java.text.ParseException;
+import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
@@ -9,6 +10,8 @@ import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 
@@ -54,6 +57,11 @@ public class DateConverters {
     }
   }
 
+  /**
+   * DateFormats are not thread-safe, so each conversion formats or parses with its
+   * own copy of the given format. Strings that the format can't parse are also
+   * accepted in ISO-8601 format.
+   */
   public static class DateStringConverter implements Converter<Date, String> {
 
     protected DateFormat format;
@@ -72,29 +80,49 @@ public class DateConverters {
     
     @Override
     public Date from(String source) {
-      try {
-        return getFormat().parse(source);
-      }
-      catch (ParseException e) {
-        throw new IllegalArgumentException("Invalid date format", e);
-      }
+      // Parsing with a position rather than catching ParseException, as failures
+      // are expected for ISO-8601 dates.
+      DateFormat format = getFormat();
+      ParsePosition position = new ParsePosition(0);
+      Date date = format.parse(source, position);
+      if (date != null && position.getIndex() != 0)
+        return date;
+
+      date = Iso8601.parse(source, format.getTimeZone());
+      if (date == null)
+        throw new IllegalArgumentException("Invalid date format",
+            new ParseException("Unparseable date: \"" + source + "\"", position.getErrorIndex()));
+      return date;
     }
 
     @Override
     public String to(Date target) {
-      return format.format(target);
+      return ((DateFormat) format.clone()).format(target);
     }
     
+    /**
+     * Returns a format that the caller may use without synchronizing, as nobody
+     * else has it.
+     */
     protected DateFormat getFormat() {
-      return format;
+      return (DateFormat) format.clone();
     }
   }
   
   public static class LocalizedDateStringConverter extends DateStringConverter {
+    // Enough for the locales an application actually sees, without letting arbitrary
+    // Accept-Language headers fill up memory.
+    private static final int MAX_LOCALES = 16;
    
     private int dateStyle;
     private int timeStyle;
     private Provider<Locale> provider;
+
+    // Creating a localized DateFormat is much slower than copying one, so we keep
+    // one of each to copy from.
+    private final Cache<Locale, DateFormat> localizedFormats = CacheBuilder.newBuilder()
+        .maximumSize(MAX_LOCALES)
+        .build();
     
     public LocalizedDateStringConverter() {
       this(DateFormat.LONG, DateFormat.LONG);
@@ -112,7 +140,13 @@ public class DateConverters {
     @Override
     protected DateFormat getFormat() {
       if (provider != null) {
-        return DateFormat.getDateTimeInstance(dateStyle, timeStyle, provider.get());
+        Locale locale = provider.get();
+        DateFormat format = localizedFormats.getIfPresent(locale);
+        if (format == null) {
+          format = DateFormat.getDateTimeInstance(dateStyle, timeStyle, locale);
+          localizedFormats.put(locale, format);
+        }
+        return (DateFormat) format.clone();
       }
       else {
         return super.getFormat();
@@ -1,7 +1,9 @@
 package com.google.sitebricks.conversion;
 
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Multimap;
+import com.google.common.primitives.Booleans;
 import com.google.common.primitives.Primitives;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
@@ -11,7 +13,11 @@ import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static com.google.sitebricks.conversion.generics.Generics.erase;
 import static com.google.sitebricks.conversion.generics.Generics.getExactSuperType;
@@ -26,6 +32,10 @@ public class StandardTypeConverter implements TypeConverter, ConverterRegistry {
   Multimap<Type, Converter<?, ?>> convertersByTarget = ArrayListMultimap.create();
 
   Multimap<SourceAndTarget, Converter<?, ?>> convertersBySourceAndTarget = ArrayListMultimap.create();
+  // resolved conversions, by target type and then source class
+  private final ConcurrentMap<Type, ConcurrentMap<Class<?>, Plan>> plans =
+      new ConcurrentHashMap<Type, ConcurrentMap<Class<?>, Plan>>();
+
   private static final TypeVariable<? extends Class<?>> sourceTypeParameter = Converter.class.getTypeParameters()[0];
   private static final TypeVariable<? extends Class<?>> targetTypeParameter = Converter.class.getTypeParameters()[1];
 
@@ -44,6 +54,9 @@ public class StandardTypeConverter implements TypeConverter, ConverterRegistry {
     convertersBySource.put(sourceType, converter);
     convertersByTarget.put(targetType, converter);
     convertersBySourceAndTarget.put(new SourceAndTarget(sourceType, targetType), converter);
+
+    // plans resolved so far may have missed this converter
+    plans.clear();
   }
 
   public static Type targetType(Converter<?, ?> converter) {
@@ -68,8 +81,11 @@ public class StandardTypeConverter implements TypeConverter, ConverterRegistry {
       return (T) source;
     }
     
+    Class<?> sourceClass = source.getClass();
+    Plan plan = planFor(sourceClass, type);
+
     // check if we already have a sub type
-    if (Generics.isSuperType(type, source.getClass()))
+    if (plan.assignable)
     {
       return (T) source;
     }
@@ -79,9 +95,6 @@ public class StandardTypeConverter implements TypeConverter, ConverterRegistry {
     	return null;
     }
     
-    Type sourceType = source.getClass();
-    Class<?> sourceClass = Generics.erase(sourceType);
-    
     // conversion of all array types to collections
     if (sourceClass.isArray() && Generics.isSuperType(Collection.class, type)) {
       return (T) Arrays.asList(source);
@@ -93,46 +106,77 @@ public class StandardTypeConverter implements TypeConverter, ConverterRegistry {
       // TODO: convert collections to arrays
       throw new UnsupportedOperationException("Not implemented yet");
     }
+
+    // stop at the first converter that returns non-null
+    Object result = null;
+    for (int i = 0; i < plan.converters.length && result == null; i++) {
+      result = plan.forwards[i]
+          ? typeSafeTo(plan.converters[i], source)
+          : typeSafeFrom(plan.converters[i], source);
+    }
+    
+    if (result == null)
+      throw new IllegalStateException("Cannot convert " + source.getClass() + " to " + type);
     
+    return (T) result;
+  }
+
+  private Plan planFor(Class<?> sourceClass, Type type) {
+    ConcurrentMap<Class<?>, Plan> plansBySource = plans.get(type);
+    if (plansBySource == null) {
+      ConcurrentMap<Class<?>, Plan> newPlans = new ConcurrentHashMap<Class<?>, Plan>();
+      plansBySource = plans.putIfAbsent(type, newPlans);
+      if (plansBySource == null)
+        plansBySource = newPlans;
+    }
+
+    Plan plan = plansBySource.get(sourceClass);
+    if (plan == null) {
+      // Racing threads resolve the same plan, so it doesn't matter whose is kept.
+      plan = plan(sourceClass, type);
+      plansBySource.put(sourceClass, plan);
+    }
+    return plan;
+  }
+
+  /**
+   * Works out, once per source class and target type, every converter that convert() must
+   * try and in what order.
+   */
+  private Plan plan(Class<?> sourceClass, Type type) {
+    if (Generics.isSuperType(type, sourceClass))
+      return Plan.ASSIGNABLE;
+
     // use primitive wrapper types
     if (type instanceof Class<?> && ((Class<?>) type).isPrimitive()) {
       type = Primitives.wrap((Class<?>) type);
     }
 
-    
-    // look for converters for exact types or super types  
-    Object result = null;
-    do {
-      
-      // first try to find a converter in the forward direction 
+    // look for converters for exact types or super types, in the forward direction
+    // first and then the reverse direction (target to source)
+    List<Converter<?, ?>> converters = Lists.newArrayList();
+    List<Boolean> forwards = Lists.newArrayList();
+    Type sourceType = sourceClass;
+    while (true) {
       SourceAndTarget key = new SourceAndTarget(sourceType, type);
-      Collection<Converter<?, ?>> forwards = convertersBySourceAndTarget.get(key);
-      
-      // stop at the first converter that returns non-null
-      for (Converter<?, ?> forward : forwards)
-        if ((result = typeSafeTo(forward, source)) != null) break;
-        
-      if (result == null) {
-        // try the reverse direction (target to source)
-        Collection<Converter<?,?>> reverses = convertersBySourceAndTarget.get(key.reverse());
-
-        // stop at the first converter that returns non-null
-        for (Converter<?, ?> reverse : reverses)
-          if ((result = typeSafeFrom(reverse, source)) != null) break;
+      for (Converter<?, ?> forward : convertersBySourceAndTarget.get(key)) {
+        converters.add(forward);
+        forwards.add(true);
+      }
+      for (Converter<?, ?> reverse : convertersBySourceAndTarget.get(key.reverse())) {
+        converters.add(reverse);
+        forwards.add(false);
       }
-      
+
       // we have no more super classes to try
       if (sourceType == Object.class) break;
-      
+
       // try every super type of the source
       Class<?> superClass = erase(sourceType).getSuperclass();
       sourceType = getExactSuperType(sourceType, superClass);
-    } while (result == null);
-    
-    if (result == null)
-      throw new IllegalStateException("Cannot convert " + source.getClass() + " to " + type);
-    
-    return (T) result;
+    }
+
+    return new Plan(converters, forwards);
   }
 
   @Override
@@ -172,6 +216,25 @@ public class StandardTypeConverter implements TypeConverter, ConverterRegistry {
     return convertersByTarget;
   }
 
+  private static final class Plan {
+    static final Plan ASSIGNABLE = new Plan(Collections.<Converter<?, ?>>emptyList(),
+        Collections.<Boolean>emptyList(), true);
+
+    private final boolean assignable;
+    private final Converter<?, ?>[] converters;
+    private final boolean[] forwards;
+
+    Plan(List<Converter<?, ?>> converters, List<Boolean> forwards) {
+      this(converters, forwards, false);
+    }
+
+    private Plan(List<Converter<?, ?>> converters, List<Boolean> forwards, boolean assignable) {
+      this.assignable = assignable;
+      this.converters = converters.toArray(new Converter<?, ?>[converters.size()]);
+      this.forwards = Booleans.toArray(forwards);
+    }
+  }
+
   private static final class SourceAndTarget {
     private Type source;
     private Type target;
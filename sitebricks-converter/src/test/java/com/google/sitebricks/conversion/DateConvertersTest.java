@@ -0,0 +1,105 @@
+package com.google.sitebricks.conversion;
+
+import com.google.common.collect.Lists;
+import com.google.inject.Provider;
+import com.google.sitebricks.conversion.DateConverters.DateStringConverter;
+import com.google.sitebricks.conversion.DateConverters.LocalizedDateStringConverter;
+import org.testng.annotations.Test;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Unit test for the date converters.
+ */
+public class DateConvertersTest {
+
+  @Test
+  public void formatsAndParsesConcurrently() throws Exception {
+    final DateStringConverter converter = new DateStringConverter("yyyy/MM/dd HH:mm:ss.SSS");
+
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    try {
+      List<Future<Boolean>> results = Lists.newArrayList();
+      for (int i = 0; i < 8; i++) {
+        final long seed = i * 86400000L * 397;
+        results.add(executor.submit(new Callable<Boolean>() {
+          @Override
+          public Boolean call() {
+            for (int j = 0; j < 2000; j++) {
+              Date date = new Date(seed + j * 3600017L);
+              if (!date.equals(converter.from(converter.to(date))))
+                return false;
+            }
+            return true;
+          }
+        }));
+      }
+
+      for (Future<Boolean> result : results) {
+        assert result.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void parsesIso8601() throws Exception {
+    SimpleDateFormat format = new SimpleDateFormat("dd.MM.yyyy");
+    format.setTimeZone(TimeZone.getTimeZone("UTC"));
+    DateStringConverter converter = new DateStringConverter(format);
+
+    SimpleDateFormat utc = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+    utc.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+    assert utc.parse("2013-07-04 00:00:00.000").equals(converter.from("04.07.2013"));
+    assert utc.parse("2013-07-04 00:00:00.000").equals(converter.from("2013-07-04"));
+    assert utc.parse("2013-07-04 13:45:00.000").equals(converter.from("2013-07-04T13:45"));
+    assert utc.parse("2013-07-04 13:45:30.120").equals(converter.from("2013-07-04T13:45:30.12Z"));
+    assert utc.parse("2013-07-04 11:45:30.000").equals(converter.from("2013-07-04T13:45:30+02:00"));
+    assert utc.parse("2013-07-04 19:15:30.000").equals(converter.from("2013-07-04T13:45:30-0530"));
+
+    for (String invalid : new String[] { "2013-02-30", "2013-07-04T25:00", "2013-07-04T13:45+2",
+        "not a date" }) {
+      try {
+        converter.from(invalid);
+        assert false : invalid;
+      } catch (IllegalArgumentException expected) {
+      }
+    }
+  }
+
+  @Test
+  public void localizedFormatsAreCopiedForEachCaller() {
+    final AtomicReference<Locale> locale = new AtomicReference<Locale>(Locale.FRANCE);
+    LocalizedDateStringConverter converter =
+        new LocalizedDateStringConverter(DateFormat.SHORT, DateFormat.SHORT);
+    converter.setLocaleProvider(new Provider<Locale>() {
+      @Override
+      public Locale get() {
+        return locale.get();
+      }
+    });
+
+    DateFormat french = converter.getFormat();
+    assert french.equals(DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT,
+        Locale.FRANCE));
+    assert french != converter.getFormat();
+    assert french.equals(converter.getFormat());
+
+    locale.set(Locale.US);
+    assert !french.equals(converter.getFormat());
+    assert converter.getFormat().equals(DateFormat.getDateTimeInstance(DateFormat.SHORT,
+        DateFormat.SHORT, Locale.US));
+  }
+}
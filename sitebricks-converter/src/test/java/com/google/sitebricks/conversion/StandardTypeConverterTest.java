@@ -12,6 +12,7 @@ import org.testng.annotations.Test;
 import java.math.BigDecimal;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 
 /**
@@ -91,4 +92,38 @@ public class StandardTypeConverterTest {
     Calendar answer = converter.convert(sdf.format(calendar.getTime()), Calendar.class);
     assert sdf.format(answer.getTime()).equals(sdf.format(calendar.getTime()));
   }
+
+  @Test
+  public void repeatedConversionsGiveTheSameAnswers() {
+    for (int i = 0; i < 3; i++) {
+      assert Integer.valueOf(42).equals(converter.convert("42", int.class));
+      assert "42".equals(converter.convert(42L, String.class));
+      assert converter.convert("", Integer.class) == null;
+      assert converter.convert(42, Number.class).equals(42);
+    }
+  }
+
+  @Test
+  public void convertersRegisteredLaterAreUsed() {
+    StandardTypeConverter standard = new StandardTypeConverter(Collections.<Converter>emptySet());
+    try {
+      standard.convert(new StringBuilder("x"), Character.class);
+      assert false;
+    } catch (IllegalStateException expected) {
+    }
+
+    // The first converter declines (by returning null), so the next one is tried.
+    standard.register(new ConverterAdaptor<StringBuilder, Character>() {
+      public Character to(StringBuilder source) {
+        return null;
+      }
+    });
+    standard.register(new ConverterAdaptor<Object, Character>() {
+      public Character to(Object source) {
+        return source.toString().charAt(0);
+      }
+    });
+    Character answer = standard.convert(new StringBuilder("x"), Character.class);
+    assert answer == 'x';
+  }
 }
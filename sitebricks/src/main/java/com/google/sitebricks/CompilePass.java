@@ -0,0 +1,271 @@
+package com.google.sitebricks;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.sitebricks.compiler.Compilers;
+import com.google.sitebricks.compiler.TemplateCompileException;
+import com.google.sitebricks.rendering.Templates;
+import com.google.sitebricks.rendering.control.HeadWrites;
+import com.google.sitebricks.routing.PageBook;
+import com.google.sitebricks.routing.CompileMetrics;
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Compiles all the pages and templates found at startup, fanned out across a
+ * {@link ForkJoinPool}. Template compile failures are collected as each page
+ * finishes and reported together once the whole pass is done, just as if the
+ * pages had been compiled one after the other.
+ * <p>
+ * When compiling in the background, every page is first given a placeholder
+ * widget so that the app may serve requests straight away. A request for a page
+ * that no worker has gotten to yet compiles it on the request thread, so the
+ * pages people actually ask for are ready first.
+ */
+@ThreadSafe
+class CompilePass {
+  private final Compilers compilers;
+  private final Templates templates;
+  private final CompileMetrics metrics;
+  private final int parallelism;
+
+  private final Queue<TemplateCompileException> failures =
+      new ConcurrentLinkedQueue<TemplateCompileException>();
+  private final Queue<RuntimeException> errors = new ConcurrentLinkedQueue<RuntimeException>();
+  private final AtomicInteger remaining = new AtomicInteger();
+  private volatile long started;
+
+  private final Logger log = Logger.getLogger(CompilePass.class.getName());
+
+  CompilePass(Compilers compilers, Templates templates, CompileMetrics metrics, int parallelism) {
+    this.compilers = compilers;
+    this.templates = templates;
+    this.metrics = metrics;
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Compiles the given pages and templates, returning once all of them are done.
+   * Errors other than template compile failures abort startup as before.
+   */
+  void compile(Set<PageBook.Page> pages, Set<Templates.Descriptor> descriptors) {
+    List<Task> tasks = tasksFor(pages, descriptors);
+    ForkJoinPool pool = start(tasks);
+
+    try {
+      pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while compiling pages", e);
+    }
+
+    if (!errors.isEmpty()) {
+      throw errors.peek();
+    }
+  }
+
+  /**
+   * Starts compiling the given pages and templates and returns immediately. Pages
+   * render through a placeholder until they are compiled.
+   */
+  void compileInBackground(Set<PageBook.Page> pages, Set<Templates.Descriptor> descriptors) {
+    List<Task> tasks = tasksFor(pages, descriptors);
+    for (Task task : tasks) {
+      if (null != task.page && !task.page.isHeadless()) {
+        task.page.apply(new PendingWidget(task));
+      }
+    }
+
+    start(tasks);
+  }
+
+  List<TemplateCompileException> failures() {
+    return ImmutableList.copyOf(failures);
+  }
+
+  private ForkJoinPool start(Collection<Task> tasks) {
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    remaining.set(tasks.size());
+    started = System.nanoTime();
+
+    if (tasks.isEmpty()) {
+      report();
+    }
+
+    for (Task task : tasks) {
+      pool.execute(task);
+    }
+
+    // Already submitted tasks still run, the workers then go away.
+    pool.shutdown();
+    return pool;
+  }
+
+  private List<Task> tasksFor(Set<PageBook.Page> pages, Set<Templates.Descriptor> descriptors) {
+    List<Task> tasks = Lists.newArrayListWithCapacity(pages.size() + descriptors.size());
+    for (final PageBook.Page page : pages) {
+      tasks.add(new Task(page, page.pageClass(), timed(page.pageClass(), new Callable<Void>() {
+        @Override
+        public Void call() {
+          // Headless web services need to be analyzed but not page-compiled.
+          if (!page.isHeadless()) {
+            if (log.isLoggable(Level.FINEST)) {
+              log.finest("Compiling template for page " + page.pageClass().getName());
+            }
+            compilers.compilePage(page);
+          }
+
+          // TODO(dhanji): Feedback errors as return rather than throwing.
+          compilers.analyze(page.pageClass());
+          return null;
+        }
+      })));
+    }
+
+    for (final Templates.Descriptor descriptor : descriptors) {
+      tasks.add(new Task(null, descriptor.getClazz(), timed(descriptor.getClazz(),
+          new Callable<Void>() {
+            @Override
+            public Void call() {
+              templates.load(descriptor.getClazz());
+              return null;
+            }
+          })));
+    }
+
+    return tasks;
+  }
+
+  private Callable<Void> timed(final Class<?> pageClass, final Callable<Void> compile) {
+    return new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        long start = System.nanoTime();
+        compile.call();
+        metrics.logPageCompileTime(pageClass,
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return null;
+      }
+    };
+  }
+
+  private void report() {
+    long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+    log.info(String.format("Compiled pages and templates in %d ms (%d threads)", millis,
+        parallelism));
+
+    //log failures if any (we don't abort the app startup)
+    if (!failures.isEmpty()) {
+      logFailures(failures);
+    }
+  }
+
+  private void logFailures(Collection<TemplateCompileException> failures) {
+    StringBuilder builder = new StringBuilder();
+    for (TemplateCompileException failure : failures) {
+      builder.append(failure.getMessage());
+      builder.append("\n\n");
+    }
+
+    log.severe(builder.toString());
+  }
+
+  /**
+   * Compiles a single page (or template), timing it and recording its outcome.
+   * May be run by a worker or by the first request to the page, whichever gets
+   * there first; running it again afterwards does nothing.
+   */
+  private class Task extends FutureTask<Void> {
+    private final PageBook.Page page;
+    private final Class<?> pageClass;
+
+    private Task(PageBook.Page page, Class<?> pageClass, Callable<Void> compile) {
+      super(compile);
+      this.page = page;
+      this.pageClass = pageClass;
+    }
+
+    @Override
+    protected void done() {
+      try {
+        get();
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof TemplateCompileException) {
+          failures.add((TemplateCompileException) cause);
+        } else {
+          log.log(Level.SEVERE, "Could not compile " + pageClass.getName(), cause);
+          errors.add(cause instanceof RuntimeException
+              ? (RuntimeException) cause
+              : new IllegalStateException(cause));
+        }
+      } catch (InterruptedException e) {
+        // Can't happen, we're done.
+        Thread.currentThread().interrupt();
+      }
+
+      if (0 == remaining.decrementAndGet()) {
+        report();
+      }
+    }
+
+    private void await() {
+      run();
+
+      try {
+        get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while compiling " + pageClass.getName(), e);
+      } catch (ExecutionException e) {
+        throw Throwables.propagate(e.getCause());
+      }
+    }
+  }
+
+  /**
+   * Stands in for a page's widget until it is compiled. The compiled widget
+   * replaces this one as soon as it is ready.
+   */
+  @ThreadSafe
+  private static class PendingWidget implements Renderable, HeadWrites.Deferred {
+    private final Task task;
+
+    private PendingWidget(Task task) {
+      this.task = task;
+    }
+
+    @Override
+    public void render(Object bound, Respond respond) {
+      task.await();
+      task.page.widget().render(bound, respond);
+    }
+
+    @Override
+    public <T extends Renderable> Set<T> collect(Class<T> clazz) {
+      task.await();
+      return task.page.widget().collect(clazz);
+    }
+
+    // Whether the page may be streamed depends on what it compiles to.
+    @Override
+    public Renderable resolve() {
+      task.await();
+      return task.page.widget();
+    }
+  }
+}
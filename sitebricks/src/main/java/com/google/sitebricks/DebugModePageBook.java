@@ -1,9 +1,7 @@
 package com.google.sitebricks;
 
 import com.google.inject.Inject;
-import com.google.inject.Provider;
 import com.google.inject.Singleton;
-import com.google.inject.servlet.RequestScoped;
 import com.google.sitebricks.compiler.Compilers;
 import com.google.sitebricks.routing.PageBook;
 import com.google.sitebricks.routing.Production;
@@ -11,15 +9,16 @@ import com.google.sitebricks.routing.SystemMetrics;
 import net.jcip.annotations.ThreadSafe;
 
 import java.lang.annotation.Annotation;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.Callable;
 
 /**
  * Used in the development stage to intercept the real pagebook so we can reload
- * & recompile templates on demand.
+ * & recompile templates on demand. Pages are recompiled only once any of the
+ * template files they were compiled from changes (see {@link TemplateWatcher}).
  *
  * @author Dhanji R. Prasanna (dhanji@gmail com)
  */
@@ -29,16 +28,16 @@ class DebugModePageBook implements PageBook {
   private final PageBook book;
   private final SystemMetrics metrics;
   private final Compilers compilers;
-  private final Provider<Memo> memo;
+  private final TemplateWatcher watcher;
 
   @Inject
   public DebugModePageBook(@Production PageBook book,
                            SystemMetrics metrics, Compilers compilers,
-                           Provider<Memo> memo) {
+                           TemplateWatcher watcher) {
     this.book = book;
     this.metrics = metrics;
     this.compilers = compilers;
-    this.memo = memo;
+    this.watcher = watcher;
   }
 
   public Page at(String uri, Class<?> myPageClass) {
@@ -48,8 +47,9 @@ class DebugModePageBook implements PageBook {
   public Page get(String uri) {
     final Page page = book.get(uri);
 
-    //reload template
-    reload(uri, page);
+    //reload template (keyed by the page's URI template, so all matching URIs share it)
+    if (null != page)
+      reload(Arrays.asList("at", page.getUri(), page.pageClass()), page);
 
     return page;
   }
@@ -58,7 +58,7 @@ class DebugModePageBook implements PageBook {
     final Page page = book.forName(name);
 
     //reload template
-    reload(name, page);
+    reload(Arrays.asList("name", name), page);
 
     return page;
   }
@@ -99,27 +99,24 @@ class DebugModePageBook implements PageBook {
     book.at(uri, actionDescriptor, methodSet);
   }
 
-  private void reload(String identifier, Page page) {
+  private void reload(List<?> key, final Page page) {
 
     // Do nothing on the first pass since the page is already compiled.
     // Also skips static resources and headless web services.
     if (null == page || !metrics.isActive() || page.isHeadless())
       return;
 
-    // Ensure we reload only once per request, per identifier.
-    final Memo memo = this.memo.get();
-    if (memo.uris.contains(identifier))
+    // Skip pages whose templates haven't changed since we last compiled them.
+    if (null != page.widget() && !watcher.isStale(key))
       return;
 
-    // Otherwise, remember that we already loaded it in this request.
-    memo.uris.add(identifier);
-
     // load template and compile
-    compilers.compilePage(page);
-  }
-
-  @RequestScoped
-  private static class Memo {
-    private final Set<String> uris = new HashSet<String>();
+    watcher.compile(key, new Callable<Void>() {
+      @Override
+      public Void call() {
+        compilers.compilePage(page);
+        return null;
+      }
+    });
   }
 }
@@ -5,6 +5,7 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.lang.reflect.Type;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -12,12 +13,14 @@ import java.util.Set;
 
 import javax.servlet.http.HttpServletRequest;
 
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.inject.Binder;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.name.Named;
+import com.google.sitebricks.compiler.EvaluatorCompiler;
 import com.google.sitebricks.compiler.ExpressionCompileException;
 import com.google.sitebricks.compiler.MvelEvaluatorCompiler;
 import com.google.sitebricks.compiler.Parsing;
@@ -32,8 +35,8 @@ public class Localizer {
   private final Binder binder;
   private final Set<Localization> localizations;
 
-  // These are the processed, individual message sets by locale.
-  private final Map<String, Map<String, MessageDescriptor>> localizedValues = Maps.newHashMap();
+  // These are the processed, individual message sets by interface and locale.
+  private final Map<Class<?>, MessageTable> tables = Maps.newHashMap();
 
   // A map to track if we have bound the proxy for a given i18n interface yet.
   private Set<Class<?>> i18nedSoFar = Sets.newHashSet();
@@ -66,6 +69,8 @@ public class Localizer {
 
   }
 
+  static final String LOCALE_ATTRIBUTE = Localizer.class.getName() + ".locale";
+
   static final Localization DEFAULT = new Localization(null, null, null);
 
   private Localizer(Binder binder, Set<Localization> localizations) {
@@ -89,7 +94,12 @@ public class Localizer {
 
   private void bindMessages(Localization localization) {
     Class<?> iface = localization.clazz;
-    Map<String, MessageDescriptor> messages = Maps.newHashMap();
+    MessageTable table = tables.get(iface);
+    if (null == table) {
+      table = new MessageTable(iface);
+      tables.put(iface, table);
+    }
+    MessageDescriptor[] messages = new MessageDescriptor[table.size()];
 
     for (Method method : iface.getMethods()) {
       Message message = method.getAnnotation(Message.class);
@@ -110,6 +120,7 @@ public class Localizer {
 
       int argumentCount = method.getParameterTypes().length;
       Map<String, Type> arguments = Maps.newLinkedHashMap();
+      Map<String, Integer> positions = Maps.newHashMap();
 
       for (int i = 0; i < argumentCount; i++) {
         Annotation[] annotations = method.getParameterAnnotations()[i];
@@ -124,7 +135,9 @@ public class Localizer {
             "Named annotation is missing from i18n interface method argument: ", iface, method);
 
         // Bind each argument to a template parameter a la Dynamic Finders.
-        arguments.put(((Named) annotations[0]).value(), method.getParameterTypes()[i]);
+        String name = ((Named) annotations[0]).value();
+        arguments.put(name, method.getParameterTypes()[i]);
+        positions.put(name, i);
       }
 
       // No point in throwing an NPE ourselves, but we want to keep processing errors so continue
@@ -134,31 +147,34 @@ public class Localizer {
 
       // Compile arg names against message template to ensure it works.
       List<Token> tokens = null;
+      List<String> expressions = Lists.newArrayList();
       try {
         MvelEvaluatorCompiler compiler = new MvelEvaluatorCompiler(arguments);
 
         // Compile both the default message as well as the provided localized one.
         Parsing.tokenize(message.message(), compiler);
-        tokens = Parsing.tokenize(template, compiler);
+        tokens = Parsing.tokenize(template, new RecordingCompiler(compiler, expressions));
       } catch (ExpressionCompileException e) {
         check(false, "Compile error in i18n message template: \n  " + e.getError().getError() +
             " in expression " + e.getError().getExpression() +"\n\n  ...in: ", iface, method);
+        continue;
       }
 
-      // OK now actually go through and build a map between method names and values.
-      messages.put(method.getName(), new MessageDescriptor(tokens, arguments));
+      // OK now actually go through and build a table between methods and values.
+      messages[table.indexOf(method)] = new MessageDescriptor(tokens, expressions, positions);
     }
 
-    bindMessageProvider(iface, localization, messages);
+    bindMessageProvider(iface, localization, table, messages);
   }
 
   @SuppressWarnings("unchecked") // We have a guarantee that Proxy will only return subtypes.
   private void bindMessageProvider(final Class<?> iface,
                                    Localization localization,
-                                   Map<String, MessageDescriptor> messages) {
+                                   final MessageTable table,
+                                   MessageDescriptor[] messages) {
 
-    // Add to the value map.
-    localizedValues.put(createLocaleInterfaceKey(iface, localization.locale), messages);
+    // Add to the value table.
+    table.put(localization.locale, messages);
 
     // Only need to bind the proxy once, for all locales.
     if (!i18nedSoFar.contains(iface)) {
@@ -179,30 +195,15 @@ public class Localizer {
                * Returns the localized message bundle value, keyed by the method name invoked.
                */
               public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-                Locale locale = requestProvider.get().getLocale();
-                Map<String, MessageDescriptor> messages = getMessagesWithFallback(locale);
+                MessageDescriptor[] messages = table.forLocale(localeOf(requestProvider.get()));
 
-                // Use default if we don't support the given locale.
-                if (null == messages) {
-                  messages = getMessagesWithFallback(Locale.getDefault());
+                Integer index = table.indexes.get(method);
+                if (null == index || null == messages[index]) {
+                  throw new IllegalStateException("Could not find message '"
+                      + method.getName() + "' in " + iface.getName());
                 }
-
-                MessageDescriptor descriptor = messages.get(method.getName());
-                if (descriptor == null) {
-                	throw new IllegalStateException("Could not find message '" 
-                			+ method.getName() + "' in " + messages);
-                }
-				return descriptor.render(args);
+                return messages[index].render(args);
               }
-
-			private Map<String, MessageDescriptor> getMessagesWithFallback(Locale locale) {
-				String localeInterfaceKey = createLocaleInterfaceKey(iface, locale);
-				Map<String, MessageDescriptor> result = localizedValues.get(localeInterfaceKey);
-				if (result == null) {
-					result = localizedValues.get(new Locale(locale.getLanguage()));
-				}
-				return result;
-			}
           });
 
         // return our proxy here.
@@ -215,31 +216,155 @@ public class Localizer {
 
   }
 
-  private String createLocaleInterfaceKey(final Class<?> iface, Locale locale) { 
-    return locale.toString() + ":" + iface.getName();
+  // Parsing the Accept-Language header is not free, and a page may well render dozens of
+  // messages in the same request.
+  private static Locale localeOf(HttpServletRequest request) {
+    Locale locale = (Locale) request.getAttribute(LOCALE_ATTRIBUTE);
+    if (null == locale) {
+      locale = request.getLocale();
+      if (null == locale)
+        locale = Locale.getDefault();
+
+      request.setAttribute(LOCALE_ATTRIBUTE, locale);
+    }
+    return locale;
   }
 
-  private static class MessageDescriptor {
-    private final List<Token> tokens;
-    private final Map<String, Type> argumentTypes;
+  /**
+   * All the localizations of a single i18n interface. Messages are kept in an array per
+   * locale, indexed by interface method so that a call need not look them up by name.
+   */
+  private static class MessageTable {
+    private final Map<Method, Integer> indexes = Maps.newHashMap();
+    private final Map<Locale, MessageDescriptor[]> byLocale = Maps.newHashMap();
+
+    // Localizations for a language alone (en, but not en_US), used as a fallback.
+    private final Map<String, MessageDescriptor[]> byLanguage = Maps.newHashMap();
 
-    private MessageDescriptor(List<Token> tokens, Map<String, Type> argumentTypes) {
-      this.tokens = tokens;
-      this.argumentTypes = argumentTypes;
+    private MessageTable(Class<?> iface) {
+      for (Method method : iface.getMethods()) {
+        indexes.put(method, indexes.size());
+      }
     }
 
-    public String render(Object[] args) {
-      Map<String, Object> arguments = Maps.newHashMap();
+    private int size() {
+      return indexes.size();
+    }
+
+    private int indexOf(Method method) {
+      return indexes.get(method);
+    }
+
+    private void put(Locale locale, MessageDescriptor[] messages) {
+      byLocale.put(locale, messages);
+      if (Strings.empty(locale.getCountry()) && Strings.empty(locale.getVariant()))
+        byLanguage.put(locale.getLanguage(), messages);
+    }
+
+    private MessageDescriptor[] forLocale(Locale locale) {
+      MessageDescriptor[] messages = withFallback(locale);
+
+      // Use default if we don't support the given locale.
+      if (null == messages)
+        messages = withFallback(Locale.getDefault());
+
+      if (null == messages)
+        throw new IllegalStateException("No localization available for locale " + locale);
+      return messages;
+    }
 
-      int i = 0;
-      for (String name : argumentTypes.keySet()) {
-        arguments.put(name, args[i]);
-        i++;
+    private MessageDescriptor[] withFallback(Locale locale) {
+      MessageDescriptor[] messages = byLocale.get(locale);
+      if (null == messages)
+        messages = byLanguage.get(locale.getLanguage());
+      return messages;
+    }
+  }
+
+  private static class MessageDescriptor {
+    private final Token[] tokens;
+
+    // For each token that simply names a method argument, the position of that argument
+    // (or -1 if the token is text or a more involved expression).
+    private final int[] arguments;
+    private final Map<String, Integer> positions;
+
+    private MessageDescriptor(List<Token> tokens, List<String> expressions,
+                              Map<String, Integer> positions) {
+      this.tokens = tokens.toArray(new Token[tokens.size()]);
+      this.arguments = new int[tokens.size()];
+      this.positions = positions;
+
+      Iterator<String> expression = expressions.iterator();
+      for (int i = 0; i < this.tokens.length; i++) {
+        Integer position = this.tokens[i].isExpression()
+            ? positions.get(expression.next().trim())
+            : null;
+
+        arguments[i] = (null == position) ? -1 : position;
       }
+    }
+
+    public String render(Object[] args) {
+      StringBuilder builder = new StringBuilder();
+      Map<String, Object> context = null;
+
+      for (int i = 0; i < tokens.length; i++) {
+        Token token = tokens[i];
+
+        if (arguments[i] >= 0) {
+          // Same as evaluating the bare argument name, without going through MVEL.
+          Object value = args[arguments[i]];
+          builder.append(value instanceof String
+              ? (String) value
+              : Parsing.getTypeConverter().convert(value, String.class));
+        } else if (!token.isExpression()) {
+          builder.append(token.render(null));
+        } else {
+          if (null == context) {
+            context = Maps.newHashMap();
+            for (Map.Entry<String, Integer> position : positions.entrySet()) {
+              context.put(position.getKey(), args[position.getValue()]);
+            }
+          }
+          builder.append(token.render(context));
+        }
+      }
+
+      return builder.toString();
+    }
+  }
+
+  /**
+   * Remembers the expressions compiled, in order, so that they can be matched up with
+   * the tokens of a message.
+   */
+  private static class RecordingCompiler implements EvaluatorCompiler {
+    private final EvaluatorCompiler delegate;
+    private final List<String> expressions;
+
+    private RecordingCompiler(EvaluatorCompiler delegate, List<String> expressions) {
+      this.delegate = delegate;
+      this.expressions = expressions;
+    }
 
-      return Parsing.render(tokens, arguments);
+    public Evaluator compile(String expression) throws ExpressionCompileException {
+      Evaluator evaluator = delegate.compile(expression);
+      expressions.add(expression);
+      return evaluator;
     }
 
+    public List<Token> tokenizeAndCompile(String template) throws ExpressionCompileException {
+      return Parsing.tokenize(template, this);
+    }
+
+    public Type resolveEgressType(String expression) throws ExpressionCompileException {
+      return delegate.resolveEgressType(expression);
+    }
+
+    public boolean isWritable(String property) throws ExpressionCompileException {
+      return delegate.isWritable(property);
+    }
   }
 
   private void check(boolean condition, String error, Class<?> key, Method method) {
@@ -1,29 +1,45 @@
 package com.google.sitebricks;
 
-import com.google.common.collect.MapMaker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
 import com.google.sitebricks.compiler.Parsing;
 import net.jcip.annotations.ThreadSafe;
 import org.jetbrains.annotations.Nullable;
 import org.mvel2.CompileException;
 import org.mvel2.MVEL;
+import org.mvel2.ParserContext;
 import org.mvel2.PropertyAccessException;
+import org.mvel2.integration.VariableResolver;
+import org.mvel2.integration.VariableResolverFactory;
+import org.mvel2.integration.impl.ImmutableDefaultFactory;
 
 import java.io.Serializable;
 import java.util.HashMap;
-import java.util.concurrent.ConcurrentMap;
 
 /**
  * @author Dhanji R. Prasanna (dhanji@gmail.com)
  */
 @ThreadSafe
 public class MvelEvaluator implements Evaluator {
+  // Expressions may come from user input (e.g. the names of request parameters), so
+  // we only keep the most recently used ones around.
+  static final int MAX_CACHED_EXPRESSIONS = 10000;
+
+  // Nearly all expressions just read (or write) properties, so they can share a single
+  // variable factory that never holds any variables.
+  private static final VariableResolverFactory NO_VARIABLES = new NoVariables();
 
   //lets do some caching of expressions to see if we cant go a bit faster
-  private final ConcurrentMap<String, Serializable> compiledExpressions = new MapMaker().makeMap();
+  private final Cache<String, Compiled> compiledExpressions = newCache();
+
+  // Compiled property reads and writes, see read() and write().
+  private final Cache<String, Compiled> compiledGetters = newCache();
+  private final Cache<String, Serializable> compiledSetters = newCache();
 
   @Nullable
-  public Object evaluate(String expr, Object bean) {
-    Serializable compiled = compiledExpressions.get(expr);
+  public Object evaluate(final String expr, Object bean) {
+    Compiled compiled = compiledExpressions.getIfPresent(expr);
 
     //compile and store the expr (warms up the expression cache)
     if (null == compiled) {
@@ -34,16 +50,14 @@ public class MvelEvaluator implements Evaluator {
         preparedExpression = Parsing.stripExpression(expr);
       }
 
-      //compile expression
-      compiled = MVEL.compileExpression(preparedExpression);
-
-      //place into map under original key (i.e. as it came in)
+      //compile expression, and place into cache under original key (i.e. as it came in)
+      compiled = compile(preparedExpression);
       compiledExpressions.put(expr, compiled);
     }
 
     //lets use mvel to retrieve an expression value instead of a prop
     try {
-      return MVEL.executeExpression(compiled, bean, new HashMap());
+      return compiled.execute(bean);
     } catch (PropertyAccessException e) {
       throw new IllegalArgumentException(
           String.format("Could not read property from expression %s (missing a getter?)", expr), e);
@@ -59,13 +73,105 @@ public class MvelEvaluator implements Evaluator {
   }
 
 
-  public void write(String expr, Object bean, Object value) {
+  public void write(final String expr, Object bean, Object value) {
     //lets use mvel to store an expression
-    MVEL.setProperty(bean, expr, value);
+    Serializable setter = compiledSetters.getIfPresent(expr);
+    if (null == setter) {
+      setter = MVEL.compileSetExpression(expr);
+      compiledSetters.put(expr, setter);
+    }
+
+    MVEL.executeSetExpression(setter, bean, NO_VARIABLES, value);
   }
 
   public Object read(String property, Object contextObject) {
-    return MVEL.getProperty(property, contextObject);
+    Compiled getter = compiledGetters.getIfPresent(property);
+    if (null == getter) {
+      getter = compile(property);
+      compiledGetters.put(property, getter);
+    }
+
+    return getter.execute(contextObject);
+  }
+
+  /**
+   * Returns hit, miss and eviction counts for compiled expressions (see {@link #evaluate}).
+   */
+  public CacheStats expressionStats() {
+    return compiledExpressions.stats();
+  }
+
+  /**
+   * Returns hit, miss and eviction counts for compiled property reads and writes.
+   */
+  public CacheStats propertyStats() {
+    return compiledGetters.stats().plus(compiledSetters.stats());
+  }
+
+  private static <V> Cache<String, V> newCache() {
+    return CacheBuilder.newBuilder()
+        .maximumSize(MAX_CACHED_EXPRESSIONS)
+        .recordStats()
+        .build();
+  }
+
+  private static Compiled compile(String expression) {
+    ParserContext context = new ParserContext();
+    Serializable compiled = MVEL.compileExpression(expression, context);
+
+    // The parser records every variable (or function) an expression declares or assigns.
+    boolean assignsVariables = !context.getVariables().isEmpty()
+        || (null != context.getFunctions() && !context.getFunctions().isEmpty());
+    return new Compiled(compiled, assignsVariables);
   }
 
+  /**
+   * A compiled expression, and whether it needs somewhere to keep variables.
+   */
+  private static class Compiled {
+    private final Serializable expression;
+    private final boolean assignsVariables;
+
+    private Compiled(Serializable expression, boolean assignsVariables) {
+      this.expression = expression;
+      this.assignsVariables = assignsVariables;
+    }
+
+    Object execute(Object bean) {
+      if (assignsVariables)
+        return MVEL.executeExpression(expression, bean, new HashMap());
+      return MVEL.executeExpression(expression, bean, NO_VARIABLES);
+    }
+  }
+
+  /**
+   * A variable factory without any variables, which can't create any either, so is
+   * safe to share. Unlike MVEL's own, it doesn't track {@code return} statements.
+   */
+  private static class NoVariables extends ImmutableDefaultFactory {
+    @Override
+    public VariableResolver createVariable(String name, Object value) {
+      throw new UnsupportedOperationException("Cannot assign variable: " + name);
+    }
+
+    @Override
+    public VariableResolver createIndexedVariable(int index, String name, Object value) {
+      throw new UnsupportedOperationException("Cannot assign variable: " + name);
+    }
+
+    @Override
+    public VariableResolver createVariable(String name, Object value, Class<?> type) {
+      throw new UnsupportedOperationException("Cannot assign variable: " + name);
+    }
+
+    @Override
+    public VariableResolver createIndexedVariable(int index, String name, Object value,
+                                                  Class<?> type) {
+      throw new UnsupportedOperationException("Cannot assign variable: " + name);
+    }
+
+    @Override
+    public void setTiltFlag(boolean tilt) {
+    }
+  }
 }
@@ -1,14 +1,14 @@
 package com.google.sitebricks;
 
 import com.google.common.collect.HashBiMap;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import com.google.inject.Binding;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
+import com.google.inject.Key;
 import com.google.inject.Stage;
+import com.google.inject.name.Names;
 import com.google.sitebricks.compiler.Compilers;
-import com.google.sitebricks.compiler.TemplateCompileException;
 import com.google.sitebricks.headless.Service;
 import com.google.sitebricks.rendering.Decorated;
 import com.google.sitebricks.rendering.EmbedAs;
@@ -16,6 +16,7 @@ import com.google.sitebricks.rendering.Templates;
 import com.google.sitebricks.rendering.With;
 import com.google.sitebricks.rendering.control.WidgetRegistry;
 import com.google.sitebricks.rendering.resource.ResourcesService;
+import com.google.sitebricks.routing.CompileMetrics;
 import com.google.sitebricks.routing.PageBook;
 import com.google.sitebricks.routing.PageBook.Page;
 import com.google.sitebricks.routing.SystemMetrics;
@@ -24,8 +25,6 @@ import java.lang.annotation.Annotation;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.logging.Level;
-import java.util.logging.Logger;
 
 import static com.google.inject.matcher.Matchers.annotatedWith;
 import static com.google.sitebricks.SitebricksModule.BindingKind.ACTION;
@@ -60,7 +59,8 @@ class ScanAndCompileBootstrapper implements Bootstrapper {
   @Inject
   private final Injector injector = null;
 
-  private final Logger log = Logger.getLogger(ScanAndCompileBootstrapper.class.getName());
+  @Inject
+  private final CompileMetrics compileMetrics = null;
 
   @Inject
   public ScanAndCompileBootstrapper(PageBook pageBook,
@@ -93,15 +93,17 @@ class ScanAndCompileBootstrapper implements Bootstrapper {
     }
 
     //we need to scan all the pages first (do not collapse into the next loop)
-    Set<PageBook.Page> pagesToCompile = scanPagesToCompile(set);
+    Set<Templates.Descriptor> templatesToLoad = Sets.newHashSet();
+    Set<PageBook.Page> pagesToCompile = scanPagesToCompile(set, templatesToLoad);
     collectBindings(bindings, pagesToCompile);
     extendedPages(pagesToCompile);
 
-    // Compile templates for scanned classes (except in dev mode, where faster startup
-    // time is more important and compiles are amortized across visits to each page).
+    // Compile templates for scanned classes and load all detected templates (except in dev
+    // mode, where faster startup time is more important and compiles are amortized across
+    // visits to each page).
     // TODO make this configurable separately to stage for GAE
     if (Stage.DEVELOPMENT != currentStage) {
-      compilePages(pagesToCompile);
+      compilePages(pagesToCompile, templatesToLoad);
     }
 
     // Start all services.
@@ -162,8 +164,8 @@ class ScanAndCompileBootstrapper implements Bootstrapper {
   }
 
   //goes through the set of scanned classes and builds pages out of them.
-  private Set<PageBook.Page> scanPagesToCompile(Set<Class<?>> set) {
-    Set<Templates.Descriptor> templates = Sets.newHashSet();
+  private Set<PageBook.Page> scanPagesToCompile(Set<Class<?>> set,
+                                                Set<Templates.Descriptor> templates) {
     Set<PageBook.Page> pagesToCompile = Sets.newHashSet();
     for (Class<?> pageClass : set) {
       EmbedAs embedAs = pageClass.getAnnotation(EmbedAs.class);
@@ -200,11 +202,6 @@ class ScanAndCompileBootstrapper implements Bootstrapper {
       }
     }
 
-    // Eagerly load all detected templates in production mode.
-    if (Stage.DEVELOPMENT != currentStage) {
-      this.templates.loadAll(templates);
-    }
-
     return pagesToCompile;
   }
 
@@ -227,36 +224,25 @@ class ScanAndCompileBootstrapper implements Bootstrapper {
     throw new IllegalStateException("Could not find super class annotated with @Show on parent of class: " + extendClassArgument);
   }
 
-  private void compilePages(Set<PageBook.Page> pagesToCompile) {
-    final List<TemplateCompileException> failures = Lists.newArrayList();
+  private void compilePages(Set<PageBook.Page> pagesToCompile,
+                            Set<Templates.Descriptor> templatesToLoad) {
+    CompilePass pass = new CompilePass(compilers, templates, compileMetrics,
+        constant(SitebricksModule.COMPILE_PARALLELISM, Runtime.getRuntime().availableProcessors()));
 
     //perform a compilation pass over all the pages and their templates
-    for (PageBook.Page page : pagesToCompile) {
-      Class<?> pageClass = page.pageClass();
-
-      // Headless web services need to be analyzed but not page-compiled.
-      if (page.isHeadless()) {
-        // TODO(dhanji): Feedback errors as return rather than throwing.
-        compilers.analyze(pageClass);
-        continue;
-      }
-
-      if (log.isLoggable(Level.FINEST)) {
-        log.finest("Compiling template for page " + pageClass.getName());
-      }
-
-      try {
-        compilers.compilePage(page);
-        compilers.analyze(pageClass);
-      } catch (TemplateCompileException e) {
-        failures.add(e);
-      }
+    if (constant(SitebricksModule.BACKGROUND_COMPILE, false)) {
+      pass.compileInBackground(pagesToCompile, templatesToLoad);
+    } else {
+      pass.compile(pagesToCompile, templatesToLoad);
     }
+  }
 
-    //log failures if any (we don't abort the app startup)
-    if (!failures.isEmpty()) {
-      logFailures(failures);
-    }
+  private <T> T constant(String name, T defaultValue) {
+    @SuppressWarnings("unchecked")
+    Binding<T> binding = (Binding<T>) injector.getExistingBinding(
+        Key.get(defaultValue.getClass(), Names.named(name)));
+
+    return null == binding ? defaultValue : binding.getProvider().get();
   }
 
   private PageBook.Page embed(String embedAs, Class<?> page) {
@@ -273,14 +259,4 @@ class ScanAndCompileBootstrapper implements Bootstrapper {
     //...add as an unbound (to URI) page
     return pageBook.embedAs(page, embedAs);
   }
-
-  private void logFailures(List<TemplateCompileException> failures) {
-    StringBuilder builder = new StringBuilder();
-    for (TemplateCompileException failure : failures) {
-      builder.append(failure.getMessage());
-      builder.append("\n\n");
-    }
-
-    log.severe(builder.toString());
-  }
 }
@@ -3,6 +3,8 @@ package com.google.sitebricks;
 import com.google.inject.Binding;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.sitebricks.client.WebClientPool;
 
 import java.util.List;
 
@@ -23,5 +25,17 @@ public class Shutdowner {
     for (Binding<Aware> binding : bindings) {
       injector.getInstance(binding.getKey()).shutdown();
     }
+
+    // Only if a web client was ever used, so as not to start one just to close it.
+    Binding<WebClientPool> pool = injector.getExistingBinding(Key.get(WebClientPool.class));
+    if (null != pool) {
+      pool.getProvider().get().close();
+    }
+
+    // Likewise, only if templates were ever watched (in the development stage).
+    Binding<TemplateWatcher> watcher = injector.getExistingBinding(Key.get(TemplateWatcher.class));
+    if (null != watcher) {
+      watcher.getProvider().get().close();
+    }
   }
 }
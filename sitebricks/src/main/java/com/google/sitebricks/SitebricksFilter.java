@@ -20,6 +20,8 @@ import com.google.inject.Singleton;
 import com.google.sitebricks.headless.Reply;
 import com.google.sitebricks.headless.ReplyBasedHeadlessRenderer;
 import com.google.sitebricks.headless.Request;
+import com.google.sitebricks.rendering.resource.ResourceRespond;
+import com.google.sitebricks.routing.RouteMetrics;
 import com.google.sitebricks.routing.RoutingDispatcher;
 import com.google.sitebricks.routing.RoutingDispatcher.Events;
 
@@ -64,9 +66,14 @@ class SitebricksFilter implements Filter {
     //was there any matching page? (if it was a headless response, we don't need to do anything).
     // Also we do not do anything if the page elected to do nothing.
     if (null != respondObject && null == request.getAttribute(Reply.NO_REPLY_ATTR)) {
+      long start = System.nanoTime();
+
+      // Static resources are written out as bytes, and may be conditional or partial.
+      if (respondObject instanceof ResourceRespond) {
+        ((ResourceRespond) respondObject).respond(request, response);
 
       // Only use the string rendering pipeline if this is not a headless request.
-      if (respondObject instanceof Respond) {
+      } else if (respondObject instanceof Respond) {
         Respond respond = (Respond) respondObject;
       
         //do we need to redirect or was this a successful render?
@@ -81,11 +88,20 @@ class SitebricksFilter implements Filter {
             response.setContentType(respond.getContentType());
           }
 
-          response.getWriter().write(respond.toString());
+          // write out directly, without copying the whole page into a string first
+          if (respond instanceof StringBuilderRespond) {
+            ((StringBuilderRespond) respond).writeTo(response.getWriter());
+          } else {
+            response.getWriter().write(respond.toString());
+          }
         }
       } else { // It must be a headless Reply. Render the headless response.
         headlessRenderer.render(response, respondObject);
       }
+
+      RouteMetrics route = (RouteMetrics) request.getAttribute(RouteMetrics.REQUEST_ATTRIBUTE);
+      if (null != route)
+        route.record(RouteMetrics.Phase.WRITE, System.nanoTime() - start);
     } else {
       //continue down filter-chain
       filterChain.doFilter(request, response);
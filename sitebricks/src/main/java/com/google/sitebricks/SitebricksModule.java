@@ -1,5 +1,6 @@
 package com.google.sitebricks;
 
+import java.io.File;
 import java.lang.annotation.Annotation;
 import java.util.Enumeration;
 import java.util.List;
@@ -20,6 +21,7 @@ import com.google.inject.Scope;
 import com.google.inject.TypeLiteral;
 import com.google.inject.binder.ScopedBindingBuilder;
 import com.google.inject.multibindings.Multibinder;
+import com.google.inject.name.Names;
 import com.google.sitebricks.compiler.FlatTemplateCompiler;
 import com.google.sitebricks.compiler.HtmlTemplateCompiler;
 import com.google.sitebricks.compiler.Parsing;
@@ -47,12 +49,78 @@ import com.google.sitebricks.routing.Action;
  * @author dhanji@gmail.com (Dhanji R. Prasanna)
  */
 public class SitebricksModule extends AbstractModule implements PageBinder {
+  /**
+   * Name of the boolean constant that switches event handler dispatch to plain
+   * reflection. See {@link #enableReflectiveDispatch(boolean)}.
+   */
+  public static final String REFLECTIVE_DISPATCH = "__SB:REFLECTIVE_DISPATCH";
+
+  /**
+   * Name of the int constant for the number of threads that compile pages at startup.
+   * See {@link #compilePagesWith(int)}.
+   */
+  public static final String COMPILE_PARALLELISM = "__SB:COMPILE_PARALLELISM";
+
+  /**
+   * Name of the boolean constant that lets pages compile while the app is already
+   * serving requests. See {@link #compilePagesInBackground(boolean)}.
+   */
+  public static final String BACKGROUND_COMPILE = "__SB:BACKGROUND_COMPILE";
+
+  /**
+   * Name of the string constant for the directory parsed templates are cached in.
+   * See {@link #cacheParsedTemplatesIn(File)}.
+   */
+  public static final String TEMPLATE_CACHE = "__SB:TEMPLATE_CACHE";
+
   private boolean enableServletSupport = true;
+  private boolean reflectiveDispatch = false;
+  private int compileParallelism = Runtime.getRuntime().availableProcessors();
+  private boolean backgroundCompile = false;
+  private File templateCache;
 
   protected void enableServletSupport(boolean bindServlets) {
     this.enableServletSupport = bindServlets;
   }
 
+  /**
+   * Call event handlers (methods marked {@literal @}Get, {@literal @}Post, etc.) via
+   * reflection rather than via invokers compiled at startup. This is slower, but can be
+   * easier to step through when debugging. Off by default.
+   */
+  protected void enableReflectiveDispatch(boolean reflective) {
+    this.reflectiveDispatch = reflective;
+  }
+
+  /**
+   * Compile page templates at startup on this many threads. Defaults to the number
+   * of available processors. Has no effect in development mode, where pages are
+   * compiled as they are visited.
+   */
+  protected void compilePagesWith(int threads) {
+    Preconditions.checkArgument(threads > 0, "Need at least one thread to compile pages with");
+    this.compileParallelism = threads;
+  }
+
+  /**
+   * Start serving requests straight away rather than waiting for all pages to compile
+   * at startup. Pages are compiled in the background, and any page that is requested
+   * before then is compiled on the spot. Off by default.
+   */
+  protected void compilePagesInBackground(boolean background) {
+    this.backgroundCompile = background;
+  }
+
+  /**
+   * Keep parsed HTML templates in the given directory, so that they need not be parsed
+   * again on restart unless they have changed. Templates cached at build time (see
+   * {@link com.google.sitebricks.compiler.ParsedTemplateCache#main(String[])}) are
+   * picked up from the classpath whether or not this is set.
+   */
+  protected void cacheParsedTemplatesIn(File directory) {
+    this.templateCache = directory;
+  }
+
   // Configure defaults via this contructor.
   public SitebricksModule() {
     // By default these are the method annotations we dispatch against.
@@ -109,6 +177,12 @@ public class SitebricksModule extends AbstractModule implements PageBinder {
         .annotatedWith(Bricks.class)
         .toInstance(methods);
 
+    bindConstant().annotatedWith(Names.named(REFLECTIVE_DISPATCH)).to(reflectiveDispatch);
+    bindConstant().annotatedWith(Names.named(COMPILE_PARALLELISM)).to(compileParallelism);
+    bindConstant().annotatedWith(Names.named(BACKGROUND_COMPILE)).to(backgroundCompile);
+    if (null != templateCache)
+      bindConstant().annotatedWith(Names.named(TEMPLATE_CACHE)).to(templateCache.getPath());
+
     // These are Content negotiation annotations.
     bind(new TypeLiteral<Map<String, Class<? extends Annotation>>>() {})
         .annotatedWith(Negotiation.class)
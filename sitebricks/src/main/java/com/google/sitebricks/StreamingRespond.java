@@ -0,0 +1,196 @@
+package com.google.sitebricks;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import javax.servlet.http.HttpServletResponse;
+
+import net.jcip.annotations.NotThreadSafe;
+
+/**
+ * A respond that writes the page out to the servlet response as it is rendered,
+ * in chunks, rather than holding the entire page in memory until rendering is
+ * complete. Everything before the head insertion point (see
+ * {@link HtmlTagBuilder#headerPlaceholder()}) can always be written out early.
+ * <p>
+ * Content after the head insertion point is only streamed if {@code streamBody}
+ * is set, i.e. when the page's template is known not to write to its head once the
+ * head has been closed (by a nested embed or require tag, for example, see
+ * {@link com.google.sitebricks.rendering.control.HeadWrites}). Otherwise it is
+ * buffered until rendering completes, exactly as {@link StringBuilderRespond}
+ * does. Empty writes to the head are ignored. Should a streamed page write to its
+ * head late after all, the write is emitted in place and
+ * {@link #wroteToClosedHead()} reports it.
+ * <p>
+ * Once anything has been flushed the response is committed, so a streaming
+ * respond can no longer redirect, nor turn into an error should rendering fail
+ * (see {@link #abort()}).
+ */
+@NotThreadSafe
+public class StreamingRespond extends StringBuilderRespond {
+  static final int CHUNK_SIZE = 8192;
+
+  private final HttpServletResponse response;
+  private final boolean streamBody;
+
+  private final char[] buffer = new char[CHUNK_SIZE];
+  private Writer writer;
+
+  private boolean headFlushed;
+  private boolean lateHead;
+
+  // True once everything up to the head has been flushed and the rest must be buffered.
+  private boolean holding;
+
+  public StreamingRespond(Object page, HttpServletResponse response, boolean streamBody) {
+    super(page);
+    this.response = response;
+    this.streamBody = streamBody;
+  }
+
+  @Override
+  public void write(String text) {
+    super.write(text);
+    if (!holding && out.length() >= CHUNK_SIZE) {
+      flush();
+    }
+  }
+
+  @Override
+  public void write(char c) {
+    super.write(c);
+    if (!holding && out.length() >= CHUNK_SIZE) {
+      flush();
+    }
+  }
+
+  @Override
+  public void writeToHead(String text) {
+    if (text.isEmpty()) {
+      return;
+    }
+
+    if (headFlushed) {
+      lateHead = true;
+      write(text);
+      return;
+    }
+
+    if (headIndex >= 0) {
+      lateHead = true;
+    }
+    super.writeToHead(text);
+  }
+
+  @Override
+  public void require(String require) {
+    if (require.isEmpty() || requires.contains(require)) {
+      return;
+    }
+
+    if (headFlushed) {
+      lateHead = true;
+      requires.add(require);
+      write(require);
+      return;
+    }
+
+    if (headIndex >= 0) {
+      lateHead = true;
+    }
+    super.require(require);
+  }
+
+  @Override
+  public void redirect(String to) {
+    if (isCommitted()) {
+      throw new IllegalStateException("Cannot redirect to " + to
+          + ", the response has already been committed");
+    }
+    super.redirect(to);
+  }
+
+  @Override
+  public void clear() {
+    if (isCommitted()) {
+      throw new IllegalStateException("Cannot clear, the response has already been committed");
+    }
+    super.clear();
+  }
+
+  @Override
+  void markHead() {
+    if (!headFlushed) {
+      super.markHead();
+    }
+  }
+
+  /**
+   * Returns true if any of the page has been written out to the response.
+   */
+  public boolean isCommitted() {
+    return null != writer;
+  }
+
+  /**
+   * Discards whatever is still buffered, when rendering fails. Returns true if part
+   * of the page has already gone out, in which case its status can no longer be
+   * changed, so the failure must be left to propagate to the container, which then
+   * aborts the response rather than completing it.
+   */
+  public boolean abort() {
+    out.setLength(0);
+    head.setLength(0);
+    requires.clear();
+    headIndex = -1;
+    holding = true;
+    return isCommitted();
+  }
+
+  /**
+   * Returns true if anything was written to the head after it was closed.
+   */
+  public boolean wroteToClosedHead() {
+    return lateHead;
+  }
+
+  // Always holds back the last character written, so that chew() still works.
+  private void flush() {
+    int end = out.length() - 1;
+
+    try {
+      if (null == writer) {
+        // by checking if a content type was set, we allow users to override content-type
+        if (null == response.getContentType()) {
+          response.setContentType(getContentType());
+        }
+        writer = response.getWriter();
+      }
+
+      int start = 0;
+      if (headIndex >= 0) {
+        if (!streamBody || headIndex > end) {
+          end = Math.min(end, headIndex);
+        } else {
+          writeRequiresToHead();
+          copy(out, 0, headIndex, writer, buffer);
+          copy(head, 0, head.length(), writer, buffer);
+          start = headIndex;
+
+          headIndex = -1;
+          headFlushed = true;
+        }
+      }
+
+      copy(out, start, end, writer, buffer);
+    } catch (IOException e) {
+      throw new RuntimeException("Could not write to the response", e);
+    }
+
+    out.delete(0, end);
+    if (headIndex >= 0) {
+      headIndex -= end;
+      holding = !streamBody;
+    }
+  }
+}
@@ -1,6 +1,7 @@
 package com.google.sitebricks;
 
 import java.io.IOException;
+import java.io.Writer;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -21,8 +22,7 @@ public class StringBuilderRespond implements Respond {
   private static final String TEXT_TAG_TEMPLATE = "sitebricks.template.textfield";
   private static final String TEXTAREA_TAG_TEMPLATE = "sitebricks.template.textarea";
 
-  //TODO Improve performance by using an insertion index rather than a placeholder string
-  private static final String HEADER_PLACEHOLDER = "__sb:PLACEhOlDeR:__";
+  private static final int COPY_BUFFER_SIZE = 8192;
 
   private static final AtomicReference<Map<String, String>> templates =
       new AtomicReference<Map<String, String>>();
@@ -48,12 +48,15 @@ public class StringBuilderRespond implements Respond {
     }
   }
 
-  private final StringBuilder out = new StringBuilder();
-  private final StringBuilder head = new StringBuilder();
+  final StringBuilder out = new StringBuilder();
+  final StringBuilder head = new StringBuilder();
 
-  private final Set<String> requires = new LinkedHashSet<String>();
+  final Set<String> requires = new LinkedHashSet<String>();
   private String redirect;
 
+  // Offset into out at which the head is inserted, or -1 if there is no head (yet).
+  int headIndex = -1;
+
   public String getHead() {
     return head.toString();
   }
@@ -105,6 +108,7 @@ public class StringBuilderRespond implements Respond {
     if (null != head) {
       head.delete(0, head.length());
     }
+    headIndex = -1;
   }
 
   @Override public Object pageObject() {
@@ -126,22 +130,60 @@ public class StringBuilderRespond implements Respond {
 
   @Override
   public String toString() {
-    //write requires to header first...
-    for (String require : requires) {
-      writeToHead(require);
+    writeRequiresToHead();
+
+    if (headIndex < 0) {
+      return out.toString();
     }
 
-    //write header to placeholder...
-    //TODO optimize by scanning upto <body> only (if no head)
-    int index = out.indexOf(HEADER_PLACEHOLDER);
+    //write header at the insertion point...
+    return new StringBuilder(out.length() + head.length())
+        .append(out, 0, headIndex)
+        .append(head)
+        .append(out, headIndex, out.length())
+        .toString();
+  }
+
+  /**
+   * Writes the rendered page (with its head in place) to the given writer. This is
+   * equivalent to writing out {@link #toString()}, but without first copying the
+   * entire page into a single string.
+   */
+  public void writeTo(Writer writer) throws IOException {
+    writeRequiresToHead();
+
+    char[] buffer = new char[COPY_BUFFER_SIZE];
+    if (headIndex < 0) {
+      copy(out, 0, out.length(), writer, buffer);
+      return;
+    }
 
-    String output = out.toString();
+    copy(out, 0, headIndex, writer, buffer);
+    copy(head, 0, head.length(), writer, buffer);
+    copy(out, headIndex, out.length(), writer, buffer);
+  }
 
-    if (index > 0) {
-      output = output.replaceFirst(HEADER_PLACEHOLDER, head.toString());
+  void writeRequiresToHead() {
+    for (String require : requires) {
+      head.append(require);
     }
+  }
 
-    return output;
+  // Records the head insertion point, only the first placeholder in a page counts.
+  void markHead() {
+    if (headIndex < 0) {
+      headIndex = out.length();
+    }
+  }
+
+  static void copy(StringBuilder from, int start, int end, Writer writer, char[] buffer)
+      throws IOException {
+    while (start < end) {
+      int length = Math.min(buffer.length, end - start);
+      from.getChars(start, start + length, buffer, 0);
+      writer.write(buffer, 0, length);
+      start += length;
+    }
   }
 
   //do NOT make this a static inner class!
@@ -152,7 +194,7 @@ public class StringBuilderRespond implements Respond {
     }
 
     public void headerPlaceholder() {
-      write(HEADER_PLACEHOLDER);
+      markHead();
     }
 
     public void textArea(String bind, String value) {
@@ -1,12 +1,14 @@
 package com.google.sitebricks;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.lang.reflect.Method;
+import java.net.URISyntaxException;
+import java.net.URL;
 import java.util.Arrays;
 
 import javax.servlet.ServletContext;
@@ -26,11 +28,18 @@ public class TemplateLoader {
 
   private final Provider<ServletContext> context;
   private final TemplateSystem templateSystem;
+  private final TemplateWatcher watcher;
 
-  @Inject
   public TemplateLoader(Provider<ServletContext> context, TemplateSystem templateSystem) {
+    this(context, templateSystem, new TemplateWatcher());
+  }
+
+  @Inject
+  public TemplateLoader(Provider<ServletContext> context, TemplateSystem templateSystem,
+                        TemplateWatcher watcher) {
     this.context = context;
     this.templateSystem = templateSystem;
+    this.watcher = watcher;
   }
 
   public Renderable compile(PageBook.Page page) {
@@ -105,6 +114,7 @@ public class TemplateLoader {
     }
 
     TemplateSource templateSource = null;
+    File file = null;
     String text;
 
     boolean appendExtension = false;
@@ -118,16 +128,24 @@ public class TemplateLoader {
 
       if (template.contains(".") || null != extension) {
         // Check class neighborhood for direct match
-        stream = pageClass.getResourceAsStream(template);
+        URL resource = pageClass.getResource(template);
+        if (null != resource) {
+          stream = resource.openStream();
+          file = fileOf(resource);
+        }
 
         // Check url conventions for direct match
         if (null == stream) {
-          stream = open(template, servletContext);
+          file = file(template, servletContext);
         }
 
         // Same as above, but checks in WEB-INF
-        if (null == stream) {
-          stream = openWebInf(template, servletContext);
+        if (null == stream && null == file) {
+          file = fileInWebInf(template, servletContext);
+        }
+
+        if (null == stream && null != file) {
+          stream = new FileInputStream(file);
         }
 
         // Finally, try to get the resource from the servlet context internally
@@ -146,9 +164,11 @@ public class TemplateLoader {
         for (String ext : templateSystem.getTemplateExtensions()) {
           String name = String.format(ext, template);
 
-          stream = pageClass.getResourceAsStream(name);
+          URL resource = pageClass.getResource(name);
 
-          if (null != stream) {
+          if (null != resource) {
+            stream = resource.openStream();
+            file = fileOf(resource);
             extension = ext;
             break;
           }
@@ -164,9 +184,10 @@ public class TemplateLoader {
         for (String ext : templateSystem.getTemplateExtensions()) {
           String name = String.format(ext, pageClass.getSimpleName());
 
-          stream = open(name, servletContext);
+          file = file(name, servletContext);
 
-          if (null != stream) {
+          if (null != file) {
+            stream = new FileInputStream(file);
             extension = ext;
             break;
           }
@@ -181,9 +202,10 @@ public class TemplateLoader {
         for (String ext : templateSystem.getTemplateExtensions()) {
           String name = String.format(ext, pageClass.getSimpleName());
 
-          stream = openWebInf(name, servletContext);
+          file = fileInWebInf(name, servletContext);
 
-          if (null != stream) {
+          if (null != file) {
+            stream = new FileInputStream(file);
             extension = ext;
             break;
           }
@@ -226,21 +248,40 @@ public class TemplateLoader {
     if (appendExtension)
       template += "." + extension;
 
-    return new Template(template, text, templateSource);
+    if (null != file)
+      templateSource = new FileTemplateSource(file);
+
+    Template loaded = new Template(template, text, templateSource);
+    watcher.loaded(loaded);
+    return loaded;
     
   }
 
-  private static InputStream open(String templateName, ServletContext context) {
-    try {
-      String path = context.getRealPath(templateName);
-      return path == null ? null : new FileInputStream(path);
-    } catch (FileNotFoundException e) {
+  private static File file(String templateName, ServletContext context) {
+    String path = context.getRealPath(templateName);
+    if (null == path)
       return null;
-    }
+
+    File file = new File(path);
+    return file.isFile() ? file : null;
   }
 
-  private static InputStream openWebInf(String templateName, ServletContext context) {
-    return open("/WEB-INF/" + templateName, context);
+  private static File fileInWebInf(String templateName, ServletContext context) {
+    return file("/WEB-INF/" + templateName, context);
+  }
+
+  // Templates on the classpath may be files too (when running from an IDE or exploded war).
+  private static File fileOf(URL resource) {
+    if (!"file".equals(resource.getProtocol()))
+      return null;
+
+    try {
+      return new File(resource.toURI());
+    } catch (URISyntaxException e) {
+      return null;
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
   }
 
   private static String read(InputStream stream) throws IOException {
@@ -0,0 +1,245 @@
+package com.google.sitebricks;
+
+import com.google.common.collect.Sets;
+import com.google.inject.Singleton;
+import net.jcip.annotations.ThreadSafe;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * Used in the development stage to recompile templates only when they change on
+ * disk, rather than on every request.
+ * <p>
+ * Each compile goes through {@link #compile(Object, Callable)} under some key (say,
+ * a page), which records every template file the {@link TemplateLoader} reads while
+ * it runs. The key then stays fresh until one of those files changes, which makes
+ * this a dependency graph from template files to the compiled pages that used them:
+ * a decorated page that was compiled from its parent's template is invalidated when
+ * the parent's template changes, just like the parent itself.
+ * <p>
+ * Templates that are not plain files (in a jar, say) can't be watched, so anything
+ * compiled from them is considered stale and is recompiled every time, as before.
+ */
+@ThreadSafe @Singleton
+public class TemplateWatcher {
+  private final ConcurrentMap<Object, Boolean> fresh = new ConcurrentHashMap<Object, Boolean>();
+  private final ConcurrentMap<Path, Set<Object>> dependents =
+      new ConcurrentHashMap<Path, Set<Object>>();
+  private final Set<Path> watchedDirectories = Sets.newSetFromMap(
+      new ConcurrentHashMap<Path, Boolean>());
+  private final ThreadLocal<Recording> recording = new ThreadLocal<Recording>();
+
+  private volatile WatchService watchService;
+  private volatile boolean unavailable;
+
+  private final Logger log = Logger.getLogger(TemplateWatcher.class.getName());
+
+  /**
+   * Returns true if whatever was compiled under the given key must be compiled
+   * again, because it never was or because one of its templates has since changed.
+   */
+  public boolean isStale(Object key) {
+    return !fresh.containsKey(key);
+  }
+
+  /**
+   * Runs the given compile, recording the templates it loads against the given key.
+   */
+  public <T> T compile(Object key, Callable<T> compile) {
+    // Marked fresh first, so that a change while we're compiling makes it stale again.
+    fresh.put(key, Boolean.TRUE);
+
+    Recording previous = recording.get();
+    Recording current = new Recording(key);
+    recording.set(current);
+    boolean compiled = false;
+    try {
+      T result = compile.call();
+      compiled = true;
+      return result;
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    } finally {
+      recording.set(previous);
+
+      if (!compiled || current.unwatchable || !current.watched) {
+        fresh.remove(key);
+      }
+    }
+  }
+
+  /**
+   * Called by the template loader with every template it reads.
+   */
+  void loaded(Template template) {
+    Recording current = recording.get();
+    if (null == current)
+      return;
+
+    TemplateSource source = template.getTemplateSource();
+    if (null == source || !watch(current.key, Paths.get(source.getLocation()))) {
+      current.unwatchable = true;
+    } else {
+      current.watched = true;
+    }
+  }
+
+  private boolean watch(Object key, Path file) {
+    WatchService service = watchService();
+    if (null == service)
+      return false;
+
+    file = file.toAbsolutePath().normalize();
+    Path directory = file.getParent();
+    try {
+      if (watchedDirectories.add(directory)) {
+        directory.register(service, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+      }
+    } catch (IOException e) {
+      watchedDirectories.remove(directory);
+      log.log(Level.FINE, "Could not watch " + directory + " for template changes", e);
+      return false;
+    } catch (ClosedWatchServiceException e) {
+      // Closed while we were registering, see close().
+      watchedDirectories.remove(directory);
+      return false;
+    }
+
+    Set<Object> keys = dependents.get(file);
+    if (null == keys) {
+      Set<Object> newKeys = Sets.newSetFromMap(new ConcurrentHashMap<Object, Boolean>());
+      keys = dependents.putIfAbsent(file, newKeys);
+      if (null == keys)
+        keys = newKeys;
+    }
+    keys.add(key);
+    return true;
+  }
+
+  // Started lazily, so that nothing is watched outside the development stage.
+  private WatchService watchService() {
+    if (null != watchService || unavailable)
+      return watchService;
+
+    synchronized (this) {
+      if (null == watchService && !unavailable) {
+        try {
+          WatchService service = FileSystems.getDefault().newWatchService();
+          Thread thread = new Thread(new Watcher(service), "sitebricks-template-watcher");
+          thread.setDaemon(true);
+          thread.start();
+
+          watchService = service;
+        } catch (IOException e) {
+          log.log(Level.WARNING, "Could not watch templates for changes, they will be"
+              + " recompiled on every request", e);
+          unavailable = true;
+        }
+      }
+    }
+    return watchService;
+  }
+
+  /**
+   * Stops watching templates, closing the watch service (if one was ever started)
+   * and with it the thread that waits on it. Anything compiled from here on is
+   * considered stale every time.
+   */
+  public synchronized void close() {
+    unavailable = true;
+    fresh.clear();
+
+    WatchService service = watchService;
+    watchService = null;
+    if (null == service)
+      return;
+
+    try {
+      service.close();
+    } catch (IOException e) {
+      log.log(Level.FINE, "Could not close the template watch service", e);
+    }
+  }
+
+  void changed(Path file) {
+    Set<Object> keys = dependents.get(file.toAbsolutePath().normalize());
+    if (null == keys)
+      return;
+
+    for (Object key : keys) {
+      fresh.remove(key);
+    }
+  }
+
+  private void changedAll() {
+    fresh.clear();
+  }
+
+  private static class Recording {
+    private final Object key;
+    private boolean watched;
+    private boolean unwatchable;
+
+    private Recording(Object key) {
+      this.key = key;
+    }
+  }
+
+  private class Watcher implements Runnable {
+    private final WatchService service;
+
+    private Watcher(WatchService service) {
+      this.service = service;
+    }
+
+    @Override
+    public void run() {
+      while (true) {
+        WatchKey watchKey;
+        try {
+          watchKey = service.take();
+        } catch (InterruptedException e) {
+          return;
+        } catch (ClosedWatchServiceException e) {
+          return;
+        }
+
+        Path directory = (Path) watchKey.watchable();
+        for (WatchEvent<?> event : watchKey.pollEvents()) {
+          if (OVERFLOW == event.kind()) {
+            // We lost track of what changed, so recompile everything.
+            changedAll();
+          } else {
+            changed(directory.resolve((Path) event.context()));
+          }
+        }
+
+        if (!watchKey.reset()) {
+          // The directory went away, it must be watched afresh if it comes back.
+          watchedDirectories.remove(directory);
+          changedAll();
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,152 @@
+package com.google.sitebricks.binding;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Primitives;
+import net.jcip.annotations.Immutable;
+import org.mvel2.DataConversion;
+
+/**
+ * How to bind request parameters to the top-level properties of a given class,
+ * worked out once per class: each settable property maps to a setter (or public
+ * field) handle, and the type its values must be converted to. Parameters that
+ * name no property at all are known up front, and can simply be skipped. Parameters naming
+ * a nested property (i.e. "person.name") are not planned, and are left to the
+ * {@link com.google.sitebricks.Evaluator} as before.
+ */
+@Immutable
+final class BindingPlan {
+  private static final MethodType SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+
+  private final Map<String, Setter> setters;
+  private final Set<String> properties;
+
+  private BindingPlan(Map<String, Setter> setters, Set<String> properties) {
+    this.setters = setters;
+    this.properties = properties;
+  }
+
+  static BindingPlan of(Class<?> clazz) {
+    Map<String, Setter> setters = Maps.newHashMap();
+    Set<String> properties = Sets.newHashSet();
+
+    // Public fields first, so that setters win where a class has both.
+    for (Field field : clazz.getFields()) {
+      int modifiers = field.getModifiers();
+      if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers))
+        continue;
+
+      properties.add(field.getName());
+      try {
+        field.setAccessible(true);
+        setters.put(field.getName(), new Setter(
+            MethodHandles.lookup().unreflectSetter(field), field.getType()));
+      } catch (IllegalAccessException e) {
+        // Leave it to the evaluator.
+      } catch (SecurityException e) {
+        // Leave it to the evaluator.
+      }
+    }
+
+    // Look for setters the way MVEL does: any public setFoo() taking one argument binds
+    // "foo" (and "Foo"), whatever it returns.
+    Multimap<String, Method> candidates = ArrayListMultimap.create();
+    for (Method method : clazz.getMethods()) {
+      String name = method.getName();
+      if (name.length() > 3 && name.startsWith("set") && 1 == method.getParameterTypes().length
+          && !Modifier.isStatic(method.getModifiers())) {
+        String property = name.substring(3);
+        candidates.put(property, method);
+        candidates.put(Character.toLowerCase(property.charAt(0)) + property.substring(1), method);
+      }
+    }
+
+    for (Map.Entry<String, Collection<Method>> candidate : candidates.asMap().entrySet()) {
+      String property = candidate.getKey();
+      properties.add(property);
+      setters.remove(property);
+
+      // Overloaded setters are ambiguous, so let the evaluator pick.
+      if (candidate.getValue().size() > 1)
+        continue;
+
+      Method setter = candidate.getValue().iterator().next();
+      try {
+        // Public setters on non-public page classes are fair game, as they are for MVEL.
+        setter.setAccessible(true);
+        setters.put(property, new Setter(
+            MethodHandles.lookup().unreflect(setter), setter.getParameterTypes()[0]));
+      } catch (IllegalAccessException e) {
+        // Leave it to the evaluator.
+      } catch (SecurityException e) {
+        // Leave it to the evaluator.
+      }
+    }
+
+    return new BindingPlan(ImmutableMap.copyOf(setters), ImmutableSet.copyOf(properties));
+  }
+
+  /**
+   * Returns the setter for the given top-level property, or null if there isn't one
+   * (in which case the evaluator may still be able to bind it, see {@link #binds}).
+   */
+  Setter setter(String property) {
+    return setters.get(property);
+  }
+
+  /**
+   * Returns true if the given name is a top-level property that can be bound at all.
+   */
+  boolean binds(String property) {
+    return properties.contains(property);
+  }
+
+  @Immutable
+  static final class Setter {
+    private final MethodHandle handle;
+    private final Class<?> type;
+    private final boolean primitive;
+
+    private Setter(MethodHandle handle, Class<?> type) {
+      this.handle = handle.asType(SETTER);
+      this.type = Primitives.wrap(type);
+      this.primitive = type.isPrimitive();
+    }
+
+    /**
+     * Returns true if the given value can be set by this setter, converting it using
+     * the same conversions as MVEL if necessary.
+     */
+    boolean accepts(Object value) {
+      if (null == value)
+        return !primitive;
+
+      return type.isInstance(value) || DataConversion.canConvert(type, value.getClass());
+    }
+
+    /**
+     * Sets the given value, which must be {@linkplain #accepts acceptable}. Throws
+     * whatever the setter throws.
+     */
+    void set(Object bean, Object value) throws Throwable {
+      if (null != value && !type.isInstance(value))
+        value = DataConversion.convert(value, type);
+
+      handle.invokeExact(bean, value);
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package com.google.sitebricks.binding;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Map;
+
+import com.google.common.collect.ForwardingCollection;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import net.jcip.annotations.ThreadSafe;
+
+/**
+ * The options a user was given to choose from (e.g. in a {@literal @}Choose widget),
+ * kept in the {@link FlashCache} until the choice comes back. An option is chosen
+ * by its hash code, see {@link RequestBinder#COLLECTION_BIND_PREFIX}.
+ */
+@ThreadSafe
+public final class Choices extends ForwardingCollection<Object> implements Serializable {
+  private static final long serialVersionUID = 1L;
+
+  private final ImmutableList<Object> options;
+
+  // Options by hash code, built on first use.
+  private transient volatile Map<Integer, Object> index;
+
+  private Choices(ImmutableList<Object> options) {
+    this.options = options;
+  }
+
+  /**
+   * Takes a snapshot of the given options, as they are being offered.
+   */
+  public static Choices of(Collection<?> options) {
+    return new Choices(ImmutableList.copyOf(options));
+  }
+
+  @Override
+  protected Collection<Object> delegate() {
+    return options;
+  }
+
+  /**
+   * Returns the first option with the given hash code, or null if there is none.
+   */
+  Object withHashCode(int hash) {
+    Map<Integer, Object> index = this.index;
+    if (null == index) {
+      index = Maps.newHashMapWithExpectedSize(options.size());
+      for (Object option : options) {
+        Integer hashCode = option.hashCode();
+        if (!index.containsKey(hashCode))
+          index.put(hashCode, option);
+      }
+      this.index = index;
+    }
+
+    return index.get(hash);
+  }
+}
@@ -2,6 +2,7 @@ package com.google.sitebricks.binding;
 
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.MapMaker;
 import com.google.common.collect.Multimap;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
@@ -15,8 +16,10 @@ import org.mvel2.PropertyAccessException;
 import java.lang.reflect.InvocationTargetException;
 import java.util.Collection;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
 
 /**
  * @author Dhanji R. Prasanna (dhanji@gmail.com)
@@ -28,7 +31,10 @@ public class MvelRequestBinder implements RequestBinder {
   private final Provider<FlashCache> cacheProvider;
   private final Logger log = Logger.getLogger(MvelRequestBinder.class.getName());
 
-  private static final String VALID_BINDING_REGEX = "[\\w\\.$]*";
+  // Binding plans, worked out the first time we bind to each class.
+  private final ConcurrentMap<Class<?>, BindingPlan> plans = new MapMaker().weakKeys().makeMap();
+
+  private static final Pattern VALID_BINDING = Pattern.compile("[\\w\\.$]*");
 
   @Inject
   public MvelRequestBinder(Evaluator evaluator, Provider<FlashCache> cacheProvider) {
@@ -38,18 +44,27 @@ public class MvelRequestBinder implements RequestBinder {
 
   public void bind(Request request, Object o) {
     final Multimap<String, String> map = request.params();
+    final BindingPlan plan = planFor(o);
 
     //bind iteratively (last incoming param-value per key, gets bound)
     for (Map.Entry<String, Collection<String>> entry : map.asMap().entrySet()) {
       String key = entry.getKey();
 
+      // Parameters naming one of the object's properties are safe by definition.
+      BindingPlan.Setter setter = (null == plan) ? null : plan.setter(key);
+      if (null == setter) {
+        // We guard against expression-injection with a regex validator.
+        if (!validate(key))
+          continue;
+
+        // Plain names that aren't properties can't be bound, so don't bother.
+        if (null != plan && key.indexOf('.') < 0 && !plan.binds(key))
+          continue;
+      }
+
       // If there are multiple entry, then this is a collection bind:
       final Collection<String> values = entry.getValue();
 
-      // We guard against expression-injection with a regex validator.
-      if (!validate(key))
-        continue;
-
       Object value;
 
       if (values.size() > 1) {
@@ -75,6 +90,15 @@ public class MvelRequestBinder implements RequestBinder {
       }
 
       //apply the bound value to the page object property
+      if (null != setter && setter.accepts(value)) {
+        try {
+          setter.set(o, value);
+        } catch (Throwable e) {
+          addContextAndThrow(o, key, value, e);
+        }
+        continue;
+      }
+
       try {
         evaluator.write(key, o, value);
       } catch (PropertyAccessException e) {
@@ -94,16 +118,33 @@ public class MvelRequestBinder implements RequestBinder {
     }
   }
 
+  // Maps are bound by key rather than by property, so have no plan.
+  private BindingPlan planFor(Object o) {
+    if (o instanceof Map)
+      return null;
+
+    Class<?> clazz = o.getClass();
+    BindingPlan plan = plans.get(clazz);
+    if (null == plan) {
+      plan = BindingPlan.of(clazz);
+      plans.putIfAbsent(clazz, plan);
+    }
+    return plan;
+  }
+
 	private void addContextAndThrow(Object bound, String key, Object value, Throwable cause) {
 	  throw new RuntimeException(String.format(
 	    "Problem setting [%s] on instance [%s] with value [%s]",
 	    key, bound, value), cause);
 	}
 
-  // Linear collection search by hashcode
+  // Collection search by hashcode (linear, unless we rendered the choices ourselves)
   private Object search(Collection<?> collection, String hashKey) {
     int hash = Integer.valueOf(hashKey);
 
+    if (collection instanceof Choices)
+      return ((Choices) collection).withHashCode(hash);
+
     for (Object o : collection) {
       if (o.hashCode() == hash)
         return o;
@@ -115,7 +156,7 @@ public class MvelRequestBinder implements RequestBinder {
 
   private boolean validate(String binding) {
     //Guards against expression-injection attacks.
-    if (Strings.empty(binding) || !binding.matches(VALID_BINDING_REGEX)) {
+    if (Strings.empty(binding) || !VALID_BINDING.matcher(binding).matches()) {
       log.warning(
           "Binding expression (request/form parameter) contained invalid characters: " + binding
               + " (ignoring)");
@@ -24,6 +24,7 @@ import org.jsoup.nodes.Node;
 import org.jsoup.nodes.TextNode;
 import org.jsoup.nodes.XmlDeclaration;
 
+import java.io.File;
 import java.lang.reflect.Type;
 import java.util.Collection;
 import java.util.Collections;
@@ -47,17 +48,24 @@ public class HtmlTemplateCompiler implements TemplateCompiler {
   private final WidgetRegistry registry;
     private final PageBook pageBook;
     private final SystemMetrics metrics;
+    private final ParsedTemplateCache parsed;
 
     //special widget types (built-in symbol table)
     private static final String REQUIRE_WIDGET = "@require";
     private static final String REPEAT_WIDGET = "repeat";
     private static final String CHOOSE_WIDGET = "choose";
 
-    @Inject
     public HtmlTemplateCompiler(WidgetRegistry registry, PageBook pageBook, SystemMetrics metrics) {
+        this(registry, pageBook, metrics, new ParsedTemplateCache((File) null));
+    }
+
+    @Inject
+    public HtmlTemplateCompiler(WidgetRegistry registry, PageBook pageBook, SystemMetrics metrics,
+                                ParsedTemplateCache parsed) {
         this.registry = registry;
         this.pageBook = pageBook;
         this.metrics = metrics;
+        this.parsed = parsed;
     }
     
     //
@@ -80,7 +88,7 @@ public class HtmlTemplateCompiler implements TemplateCompiler {
         pc.lexicalScopes.push(new MvelEvaluatorCompiler(page));
       
         WidgetChain widgetChain;
-        widgetChain = walk(pc, HtmlParser.parse(template.getText()));
+        widgetChain = walk(pc, parsed.parse(template.getText()));
 
         // TODO - get the errors when !(isValid)
         if (!pc.errors.isEmpty() || !pc.warnings.isEmpty()) {
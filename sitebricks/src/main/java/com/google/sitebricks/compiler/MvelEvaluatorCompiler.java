@@ -7,6 +7,8 @@ import com.google.sitebricks.Evaluator;
 import com.google.sitebricks.Visible;
 import com.google.sitebricks.conversion.generics.Generics;
 import com.google.sitebricks.conversion.generics.ParameterizedTypeImpl;
+import net.jcip.annotations.GuardedBy;
+import net.jcip.annotations.ThreadSafe;
 import org.jetbrains.annotations.Nullable;
 import org.mvel2.CompileException;
 import org.mvel2.MVEL;
@@ -28,14 +30,20 @@ import java.util.Map;
 import java.util.Set;
 
 /**
+ * Pages may be compiled on several threads at once, and a compiler may be shared
+ * between them, so everything that touches the (non thread-safe) MVEL parser
+ * context is guarded by this compiler's lock.
+ *
  * @author Dhanji R. Prasanna (dhanji@gmail com)
  */
-@Singleton
+@Singleton @ThreadSafe
 public class MvelEvaluatorCompiler implements EvaluatorCompiler {
   private final Class<?> backingType;
   private final Map<String, Type> backingTypes;
 
   private static final String CLASS = "class";
+
+  @GuardedBy("this") // All three following fields
   private final Set<String> writeableProperties = Sets.newHashSet();
   private final Map<String, Type> egressTypes = Maps.newHashMap();
   private ParserContext cachedParserContext;
@@ -51,11 +59,12 @@ public class MvelEvaluatorCompiler implements EvaluatorCompiler {
   }
 
   //memo field caches compiled expressions
+  @GuardedBy("this")
   private final Map<String, CompiledExpression> compiled =
       new HashMap<String, CompiledExpression>();
 
 
-  public Type resolveEgressType(String expression) throws ExpressionCompileException {
+  public synchronized Type resolveEgressType(String expression) throws ExpressionCompileException {
 
 		// try to get the type from the cache
 	    Type type = egressTypes.get(expression);
@@ -81,7 +90,7 @@ public class MvelEvaluatorCompiler implements EvaluatorCompiler {
 	    return type;
   }
 
-  public boolean isWritable(String property) throws ExpressionCompileException {
+  public synchronized boolean isWritable(String property) throws ExpressionCompileException {
     // Ensure we have introspected. Relying on sidefx, ugh.
     getParserContext();
 
@@ -110,7 +119,7 @@ public class MvelEvaluatorCompiler implements EvaluatorCompiler {
     };
   }
 
-  private CompiledExpression compileExpression(String expression)
+  private synchronized CompiledExpression compileExpression(String expression)
       throws ExpressionCompileException {
     final CompiledExpression compiledExpression = compiled.get(expression);
 
@@ -134,7 +143,7 @@ public class MvelEvaluatorCompiler implements EvaluatorCompiler {
     return tempCompiled;
   }
 
-  private ParserContext getParserContext() throws ExpressionCompileException {
+  private synchronized ParserContext getParserContext() throws ExpressionCompileException {
     if (null != cachedParserContext) {
       return cachedParserContext;
     }
@@ -0,0 +1,357 @@
+package com.google.sitebricks.compiler;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Lists;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Closeables;
+import com.google.common.io.Files;
+import com.google.inject.Binding;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Singleton;
+import com.google.inject.name.Names;
+import com.google.sitebricks.SitebricksModule;
+import net.jcip.annotations.ThreadSafe;
+import org.jsoup.nodes.Attribute;
+import org.jsoup.nodes.Attributes;
+import org.jsoup.nodes.Comment;
+import org.jsoup.nodes.DataNode;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.nodes.XmlDeclaration;
+import org.jsoup.parser.Tag;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps parsed HTML templates on disk, keyed by a hash of their text, so that a
+ * restart with unchanged templates need not run them through the {@link HtmlParser}
+ * again. Cached templates are looked up in the directory given to
+ * {@link SitebricksModule#cacheParsedTemplatesIn(File)} (if any) and then on the
+ * classpath under {@value #CLASSPATH_PREFIX}, where {@link #main(String[])} can put
+ * them at build time.
+ * <p>
+ * Entries carry a format version and are simply ignored (and rewritten) if they were
+ * written by a different version of this class. If there is neither a cache directory
+ * nor any cached templates on the classpath, templates are simply parsed, without
+ * hashing them or probing for cache entries.
+ */
+@ThreadSafe @Singleton
+public class ParsedTemplateCache {
+  static final String CLASSPATH_PREFIX = "META-INF/sitebricks/templates/";
+  private static final int MAGIC = 0x5B7E3C1A;
+  private static final int VERSION = 1;
+  private static final String SUFFIX = ".parsed";
+
+  private static final byte ELEMENT = 0;
+  private static final byte TEXT = 1;
+  private static final byte ANNOTATION = 2;
+  private static final byte DATA = 3;
+  private static final byte COMMENT = 4;
+  private static final byte DECLARATION = 5;
+
+  private static final Logger log = Logger.getLogger(ParsedTemplateCache.class.getName());
+
+  private final File directory;
+  private final boolean onClasspath = onClasspath();
+
+  @Inject
+  public ParsedTemplateCache(Injector injector) {
+    Binding<String> binding = injector.getExistingBinding(
+        Key.get(String.class, Names.named(SitebricksModule.TEMPLATE_CACHE)));
+
+    this.directory = (null == binding) ? null : new File(binding.getProvider().get());
+  }
+
+  /**
+   * @param directory Where to read and write cached templates, or null to
+   *   only read them from the classpath.
+   */
+  public ParsedTemplateCache(File directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * Returns the given template parsed, from the cache if it has been parsed
+   * before (parsing and caching it otherwise).
+   */
+  public List<Node> parse(String template) {
+    if (null == directory && !onClasspath)
+      return HtmlParser.parse(template);
+
+    String key = keyOf(template);
+
+    List<Node> nodes = fromDirectory(key);
+    if (null == nodes)
+      nodes = fromClasspath(key);
+
+    if (null == nodes) {
+      nodes = HtmlParser.parse(template);
+      store(key, nodes);
+    }
+
+    return nodes;
+  }
+
+  static String keyOf(String template) {
+    return Hashing.sha1().hashString(template, Charsets.UTF_8).toString();
+  }
+
+  private List<Node> fromDirectory(String key) {
+    if (null == directory)
+      return null;
+
+    File file = new File(directory, key + SUFFIX);
+    if (!file.isFile())
+      return null;
+
+    try {
+      return read(new BufferedInputStream(new FileInputStream(file)));
+    } catch (IOException e) {
+      log.log(Level.FINE, "Could not read cached template " + file + " (parsing it again)", e);
+      return null;
+    }
+  }
+
+  private List<Node> fromClasspath(String key) {
+    if (!onClasspath)
+      return null;
+
+    InputStream stream = ParsedTemplateCache.class.getClassLoader()
+        .getResourceAsStream(CLASSPATH_PREFIX + key + SUFFIX);
+    if (null == stream)
+      return null;
+
+    try {
+      return read(new BufferedInputStream(stream));
+    } catch (IOException e) {
+      log.log(Level.FINE, "Could not read cached template " + key + " (parsing it again)", e);
+      return null;
+    }
+  }
+
+  // Checked once, rather than probing the classpath for every template.
+  private static boolean onClasspath() {
+    try {
+      return ParsedTemplateCache.class.getClassLoader().getResources(CLASSPATH_PREFIX)
+          .hasMoreElements();
+    } catch (IOException e) {
+      log.log(Level.FINE, "Could not look for cached templates on the classpath", e);
+      return false;
+    }
+  }
+
+  private void store(String key, List<Node> nodes) {
+    if (null != directory) {
+      try {
+        store(directory, key, nodes);
+      } catch (IOException e) {
+        log.log(Level.WARNING, "Could not cache parsed template in " + directory, e);
+      }
+    }
+  }
+
+  // Writes to a temporary file first, so a template being compiled concurrently
+  // never sees a half written entry.
+  private static void store(File directory, String key, List<Node> nodes) throws IOException {
+    if (!directory.isDirectory() && !directory.mkdirs())
+      throw new IOException("Could not create directory " + directory);
+
+    File temp = File.createTempFile(key, ".tmp", directory);
+    OutputStream out = new BufferedOutputStream(new FileOutputStream(temp));
+    try {
+      write(nodes, out);
+    } finally {
+      out.close();
+    }
+
+    java.nio.file.Files.move(temp.toPath(), new File(directory, key + SUFFIX).toPath(),
+        java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  static void write(List<Node> nodes, OutputStream stream) throws IOException {
+    DataOutputStream out = new DataOutputStream(stream);
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    writeNodes(nodes, out);
+    out.flush();
+  }
+
+  static List<Node> read(InputStream stream) throws IOException {
+    DataInputStream in = new DataInputStream(stream);
+    try {
+      if (MAGIC != in.readInt() || VERSION != in.readInt())
+        throw new IOException("Not a cached template, or written by another version");
+
+      return readNodes(in, null);
+    } finally {
+      Closeables.closeQuietly(in);
+    }
+  }
+
+  private static void writeNodes(List<Node> nodes, DataOutputStream out) throws IOException {
+    out.writeInt(nodes.size());
+
+    for (Node node : nodes) {
+      if (node instanceof Element) {
+        out.writeByte(ELEMENT);
+        writeString(((Element) node).tagName(), out);
+      } else if (node instanceof AnnotationNode) {
+        out.writeByte(ANNOTATION);
+        writeString(node.attr(AnnotationNode.ANNOTATION), out);
+      } else if (node instanceof TextNode) {
+        out.writeByte(TEXT);
+        writeString(((TextNode) node).getWholeText(), out);
+      } else if (node instanceof DataNode) {
+        out.writeByte(DATA);
+        writeString(((DataNode) node).getWholeData(), out);
+      } else if (node instanceof Comment) {
+        out.writeByte(COMMENT);
+        writeString(((Comment) node).getData(), out);
+      } else if (node instanceof XmlDeclaration) {
+        out.writeByte(DECLARATION);
+        writeString(((XmlDeclaration) node).getWholeDeclaration(), out);
+        out.writeBoolean(node.outerHtml().startsWith("<!"));
+      } else {
+        throw new IOException("Unexpected node in parsed template: " + node.nodeName());
+      }
+
+      writeString(node.baseUri(), out);
+      out.writeInt(node.attributes().size());
+      for (Attribute attribute : node.attributes()) {
+        writeString(attribute.getKey(), out);
+        writeString(attribute.getValue(), out);
+      }
+
+      writeNodes(node.childNodes(), out);
+    }
+  }
+
+  private static List<Node> readNodes(DataInputStream in, Element parent) throws IOException {
+    int size = in.readInt();
+    List<Node> nodes = Lists.newArrayListWithCapacity(size);
+
+    for (int i = 0; i < size; i++) {
+      byte kind = in.readByte();
+      String value = readString(in);
+      boolean processingInstruction = (DECLARATION == kind) && in.readBoolean();
+      String baseUri = readString(in);
+
+      Attributes attributes = new Attributes();
+      int attributeCount = in.readInt();
+      for (int j = 0; j < attributeCount; j++) {
+        attributes.put(readString(in), readString(in));
+      }
+
+      Node node;
+      switch (kind) {
+        case ELEMENT:
+          node = new Element(Tag.valueOf(value), baseUri, attributes);
+          break;
+        case TEXT:
+          node = new TextNode(value, baseUri);
+          break;
+        case ANNOTATION:
+          node = new AnnotationNode(value, baseUri);
+          break;
+        case DATA:
+          node = new DataNode(value, baseUri);
+          break;
+        case COMMENT:
+          node = new Comment(value, baseUri);
+          break;
+        case DECLARATION:
+          node = new XmlDeclaration(value, baseUri, processingInstruction);
+          break;
+        default:
+          throw new IOException("Unexpected node kind in cached template: " + kind);
+      }
+
+      // Elements were given their attributes above, other nodes keep their text in them.
+      if (ELEMENT != kind) {
+        for (Attribute attribute : attributes) {
+          node.attr(attribute.getKey(), attribute.getValue());
+        }
+      }
+
+      if (null != parent)
+        parent.appendChild(node);
+      nodes.add(node);
+
+      List<Node> children = readNodes(in, (node instanceof Element) ? (Element) node : null);
+      if (!children.isEmpty() && !(node instanceof Element))
+        throw new IOException("Only elements may have children in a cached template");
+    }
+
+    return nodes;
+  }
+
+  private static void writeString(String string, DataOutputStream out) throws IOException {
+    byte[] bytes = string.getBytes(Charsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, Charsets.UTF_8);
+  }
+
+  /**
+   * Parses every {@code .html} template under the given directories ahead of time
+   * and writes the results into a cache directory. Meant to be run at build time
+   * (say, from the exec-maven-plugin), writing into the webapp's classes directory
+   * under {@value #CLASSPATH_PREFIX} so the cache ships inside the WAR.
+   *
+   * @param args The cache directory, followed by one or more template directories.
+   */
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("Usage: ParsedTemplateCache <cache directory> <template directory>...");
+      System.exit(1);
+    }
+
+    File cache = new File(args[0]);
+    int count = 0;
+    for (int i = 1; i < args.length; i++) {
+      count += precompile(new File(args[i]), cache);
+    }
+
+    System.out.println("Cached " + count + " parsed templates in " + cache);
+  }
+
+  private static int precompile(File file, File cache) throws IOException {
+    int count = 0;
+    if (file.isDirectory()) {
+      for (File child : file.listFiles()) {
+        count += precompile(child, cache);
+      }
+    } else if (file.getName().endsWith(".html")) {
+      // Read just as the TemplateLoader does, so that the hashes match.
+      StringBuilder template = new StringBuilder();
+      for (String line : Files.readLines(file, Charsets.UTF_8)) {
+        template.append(line).append('\n');
+      }
+
+      store(cache, keyOf(template.toString()), HtmlParser.parse(template.toString()));
+      count++;
+    }
+
+    return count;
+  }
+}
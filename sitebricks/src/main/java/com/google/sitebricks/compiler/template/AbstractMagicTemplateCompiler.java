@@ -10,7 +10,9 @@ import com.google.sitebricks.Template;
 public abstract class AbstractMagicTemplateCompiler implements MagicTemplateCompiler {
     
   public Renderable compile(final Class<?> page, final Template sitebricksTemplate) {
-            
+    // The transform only depends on the template, so it is done once, here.
+    final Template template = transform(sitebricksTemplate);
+
     return new Renderable() {
       @Override
       public void render(Object bound, Respond respond) {
@@ -21,7 +23,7 @@ public abstract class AbstractMagicTemplateCompiler implements MagicTemplateComp
         // 2. Process the XHTML however the client wishes
         // 3. Blow the processed XHTML out of pipe
         //
-        respond.write(process(page, bound, transform(sitebricksTemplate)));
+        respond.write(process(page, bound, template));
       }
 
       @Override
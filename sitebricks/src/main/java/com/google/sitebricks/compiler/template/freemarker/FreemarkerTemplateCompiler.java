@@ -1,6 +1,9 @@
 package com.google.sitebricks.compiler.template.freemarker;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.inject.Singleton;
+import com.google.sitebricks.Renderable;
+import com.google.sitebricks.Respond;
 import com.google.sitebricks.compiler.TemplateCompiler;
 import com.google.sitebricks.compiler.template.AbstractMagicTemplateCompiler;
 
@@ -14,10 +17,42 @@ import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.Set;
 
 @Singleton
 public class FreemarkerTemplateCompiler extends AbstractMagicTemplateCompiler implements TemplateCompiler {
 
+  // Shared by every template, along with its object wrapper (and so the wrapper's
+  // cache of introspected classes). A Configuration is safe to share once set up.
+  private final Configuration configuration = new Configuration();
+
+  public FreemarkerTemplateCompiler() {
+    configuration.setTemplateExceptionHandler(new SitebricksTemplateExceptionHandler());
+  }
+
+  /**
+   * Parses the template once, here, and renders it straight into the response on
+   * each request. Should rendering fail part way through, the dispatcher aborts
+   * whatever of the response is still buffered.
+   */
+  @Override
+  public Renderable compile(final Class<?> page, com.google.sitebricks.Template sitebricksTemplate) {
+    final Template template = getTemplate(page, transform(sitebricksTemplate));
+
+    return new Renderable() {
+      @Override
+      public void render(Object bound, Respond respond) {
+        assert page.isInstance(bound);
+        process(template, bound, new RespondWriter(respond));
+      }
+
+      @Override
+      public <T extends Renderable> Set<T> collect(Class<T> clazz) {
+        return ImmutableSet.of();
+      }
+    };
+  }
+
   @Override
   public String process(Class<?> page, Object bound, com.google.sitebricks.Template sitebricksTemplate) {
 
@@ -28,6 +63,12 @@ public class FreemarkerTemplateCompiler extends AbstractMagicTemplateCompiler im
     // produce output
 
     Writer writer = new StringWriter();
+    process(template, bound, writer);
+
+    return writer.toString();
+  }
+
+  private static void process(Template template, Object bound, Writer writer) {
     try {
       template.process(bound, writer);
     } catch (TemplateException e) {
@@ -35,14 +76,9 @@ public class FreemarkerTemplateCompiler extends AbstractMagicTemplateCompiler im
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
-
-    return writer.toString();
   }
 
   private Template getTemplate(Class<?> page, com.google.sitebricks.Template sitebricksTemplate) {
-    Configuration configuration = new Configuration();
-    configuration.setTemplateExceptionHandler(new SitebricksTemplateExceptionHandler());
-
     try {
       return new Template(page.getName(), new StringReader(sitebricksTemplate.getText()), configuration);
     } catch (IOException e) {
@@ -56,4 +92,44 @@ public class FreemarkerTemplateCompiler extends AbstractMagicTemplateCompiler im
       // We intentionally do nothing here
     }
   }
-}
\ No newline at end of file
+
+  /**
+   * Hands FreeMarker's output to the response as it is produced, rather than
+   * collecting it in a StringWriter first.
+   */
+  private static class RespondWriter extends Writer {
+    private final Respond respond;
+
+    private RespondWriter(Respond respond) {
+      this.respond = respond;
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int length) {
+      respond.write(new String(buffer, offset, length));
+    }
+
+    @Override
+    public void write(String text) {
+      respond.write(text);
+    }
+
+    @Override
+    public void write(String text, int offset, int length) {
+      respond.write(text.substring(offset, offset + length));
+    }
+
+    @Override
+    public void write(int c) {
+      respond.write((char) c);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
@@ -0,0 +1,140 @@
+package com.google.sitebricks.headless;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.common.collect.MapMaker;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * Sends replies that arrive later via the Servlet 3 async API, so that no container
+ * thread is held while we wait for them. The reply is rendered on whichever thread
+ * completes the future. This is the only place sitebricks touches the Servlet 3
+ * API, so it is only loaded when a handler actually returns a future.
+ */
+final class AsyncReplies {
+  private static final Logger log = Logger.getLogger(AsyncReplies.class.getName());
+
+  // Whether the servlet API we were given is version 3 or later at all.
+  private static final boolean ASYNC_API = hasAsyncApi();
+
+  // Requests of a Servlet 2.5 container may still not implement the async API, even if
+  // a later version of it is on the classpath, so we remember which ones don't.
+  private static final Set<Class<?>> notAsync = Collections.newSetFromMap(
+      new MapMaker().weakKeys().<Class<?>, Boolean>makeMap());
+
+  private AsyncReplies() {
+  }
+
+  static boolean supported(HttpServletRequest request) {
+    if (!ASYNC_API || notAsync.contains(request.getClass()))
+      return false;
+
+    try {
+      return request.isAsyncSupported();
+    } catch (LinkageError e) {
+      // AbstractMethodError or NoSuchMethodError, from a request older than the API.
+      notAsync.add(request.getClass());
+      return false;
+    }
+  }
+
+  private static boolean hasAsyncApi() {
+    try {
+      HttpServletRequest.class.getMethod("isAsyncSupported");
+      return true;
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  static void start(final ReplyBasedHeadlessRenderer renderer, HttpServletRequest request,
+                    HttpServletResponse response, final FutureReply reply) {
+    final AsyncContext context = request.startAsync(request, response);
+    if (reply.timeout() > 0)
+      context.setTimeout(reply.timeout());
+
+    // Whichever of the reply, a failure or the timeout gets here first, wins.
+    final AtomicBoolean done = new AtomicBoolean();
+
+    context.addListener(new AsyncListener() {
+      public void onTimeout(AsyncEvent event) throws IOException {
+        if (done.compareAndSet(false, true)) {
+          reply.future().cancel(true);
+          try {
+            response(context).sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+          } finally {
+            context.complete();
+          }
+        }
+      }
+
+      public void onError(AsyncEvent event) {
+        if (done.compareAndSet(false, true))
+          reply.future().cancel(true);
+      }
+
+      public void onComplete(AsyncEvent event) {
+      }
+
+      public void onStartAsync(AsyncEvent event) {
+      }
+    });
+
+    Futures.addCallback((ListenableFuture<Object>) reply.future(), new FutureCallback<Object>() {
+      public void onSuccess(Object result) {
+        if (!done.compareAndSet(false, true))
+          return;
+
+        try {
+          renderer.render((HttpServletRequest) context.getRequest(), response(context), result);
+        } catch (Exception e) {
+          fail(context, e);
+        } finally {
+          context.complete();
+        }
+      }
+
+      public void onFailure(Throwable t) {
+        if (!done.compareAndSet(false, true))
+          return;
+
+        try {
+          fail(context, t);
+        } finally {
+          context.complete();
+        }
+      }
+    });
+  }
+
+  private static HttpServletResponse response(AsyncContext context) {
+    return (HttpServletResponse) context.getResponse();
+  }
+
+  private static void fail(AsyncContext context, Throwable t) {
+    log.log(Level.SEVERE, "Asynchronous reply failed", t);
+
+    HttpServletResponse response = response(context);
+    if (!response.isCommitted()) {
+      try {
+        response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+      } catch (IOException e) {
+        log.log(Level.FINE, "Could not send error for failed reply", e);
+      }
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package com.google.sitebricks.headless;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.google.common.io.ByteStreams;
+
+/**
+ * Writes raw reply entities (streams, files and buffers) straight to the response,
+ * bypassing the transport. Files and channels are sent with
+ * {@link FileChannel#transferTo}, which spares us reading them into byte arrays of
+ * our own. The servlet API gives us no channel to write to though, only a stream
+ * wrapped in one, so the JDK still copies the bytes through a heap buffer on their
+ * way out.
+ */
+class Entities {
+  private Entities() {
+  }
+
+  /**
+   * Returns the number of bytes the given entity will write, or -1 if that is not
+   * known up front (i.e. it is not a raw entity, or is a stream).
+   */
+  static long lengthOf(Object entity) throws IOException {
+    if (entity instanceof File)
+      return ((File) entity).length();
+    if (entity instanceof Path)
+      return Files.size((Path) entity);
+    if (entity instanceof ByteBuffer)
+      return ((ByteBuffer) entity).remaining();
+    if (entity instanceof FileChannel) {
+      FileChannel channel = (FileChannel) entity;
+      return channel.size() - channel.position();
+    }
+
+    return -1;
+  }
+
+  /**
+   * Writes the given entity to the given stream if it is a raw entity, returning
+   * false if it isn't (and so must be sent through a transport).
+   */
+  static boolean write(Object entity, OutputStream out) throws IOException {
+    if (entity instanceof InputStream) {
+      // Stream the response rather than marshalling it through a transport.
+      InputStream inputStream = (InputStream) entity;
+      try {
+        ByteStreams.copy(inputStream, out);
+      } finally {
+        inputStream.close();
+      }
+    } else if (entity instanceof File) {
+      transfer(new FileInputStream((File) entity).getChannel(), out);
+    } else if (entity instanceof Path) {
+      transfer(FileChannel.open((Path) entity, StandardOpenOption.READ), out);
+    } else if (entity instanceof FileChannel) {
+      transfer((FileChannel) entity, out);
+    } else if (entity instanceof ByteBuffer) {
+      // Don't disturb the caller's buffer, it may be shared between replies.
+      ByteBuffer buffer = ((ByteBuffer) entity).duplicate();
+      WritableByteChannel channel = Channels.newChannel(out);
+      while (buffer.hasRemaining())
+        channel.write(buffer);
+    } else {
+      return false;
+    }
+
+    return true;
+  }
+
+  // Sends from the channel's current position to its end, then closes it.
+  private static void transfer(FileChannel channel, OutputStream out) throws IOException {
+    try {
+      WritableByteChannel target = Channels.newChannel(out);
+      long position = channel.position();
+      long size = channel.size();
+      while (position < size) {
+        // The target blocks, so nothing transferred means the file got shorter.
+        long transferred = channel.transferTo(position, size - position, target);
+        if (transferred <= 0)
+          throw new EOFException("Entity ended after " + position + " of " + size + " bytes");
+
+        position += transferred;
+      }
+    } finally {
+      channel.close();
+    }
+  }
+}
@@ -0,0 +1,55 @@
+package com.google.sitebricks.headless;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * A reply that is not ready yet, i.e. the {@code ListenableFuture<Reply<?>>}
+ * returned by an asynchronous handler, along with how long we're prepared to
+ * wait for it. Used internally by sitebricks.
+ */
+@Immutable
+public final class FutureReply {
+  private final ListenableFuture<?> future;
+  private final long timeout;
+
+  private FutureReply(ListenableFuture<?> future, long timeout) {
+    this.future = future;
+    this.timeout = timeout;
+  }
+
+  /**
+   * @param timeout The time to wait for the reply in milliseconds, or zero to
+   *   wait as long as the container allows.
+   */
+  public static FutureReply of(ListenableFuture<?> future, long timeout) {
+    return new FutureReply(future, timeout);
+  }
+
+  ListenableFuture<?> future() {
+    return future;
+  }
+
+  long timeout() {
+    return timeout;
+  }
+
+  /**
+   * Blocks until the reply is ready, for when we can't reply asynchronously.
+   */
+  Object await() throws TimeoutException {
+    try {
+      return (timeout > 0) ? future.get(timeout, TimeUnit.MILLISECONDS) : future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Interrupted while waiting for reply", e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException("Asynchronous handler failed", e.getCause());
+    }
+  }
+}
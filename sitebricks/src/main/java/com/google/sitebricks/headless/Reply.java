@@ -1,9 +1,9 @@
 package com.google.sitebricks.headless;
 
-import com.google.inject.Injector;
 import com.google.inject.Key;
 import com.google.sitebricks.client.Transport;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.util.Map;
@@ -113,10 +113,17 @@ public abstract class Reply<E> {
    */
   public abstract Reply<E> ok();
 
+  /**
+   * Gzip the body of this reply, if the client says it will accept gzip.
+   * Best used for large, compressible (i.e. text) entities.
+   */
+  public abstract Reply<E> compressed();
+
   /**
    * Used internally by sitebricks. Do NOT call.
    */
-  abstract void populate(Injector injector, HttpServletResponse response) throws IOException;
+  abstract void populate(ReplyBasedHeadlessRenderer renderer, HttpServletRequest request,
+                         HttpServletResponse response) throws IOException;
 
   /**
    * Convenience method to make a reply without any entity or body. Example, to send a redirect:
@@ -133,7 +140,9 @@ public abstract class Reply<E> {
    * transport.
    *
    * @param entity An entity to send back for which a valid transport exists (see
-   *   {@link #as(Class)}).
+   *   {@link #as(Class)}). An {@code InputStream}, {@code File}, {@code Path},
+   *   {@code ByteBuffer} or {@code FileChannel} is sent as-is, without a transport
+   *   (streams and channels are closed once sent).
    */
   public static <E> Reply<E> with(E entity) {
     return new ReplyMaker<E>(entity);
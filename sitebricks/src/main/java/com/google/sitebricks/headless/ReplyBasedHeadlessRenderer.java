@@ -1,11 +1,19 @@
 package com.google.sitebricks.headless;
 
+import com.google.common.collect.MapMaker;
+import com.google.inject.Binding;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.Provider;
 import com.google.inject.Singleton;
+import com.google.sitebricks.client.Transport;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeoutException;
 
 /**
  * A renderer for pages that have no corresponding template, i.e. for headless
@@ -15,12 +23,39 @@ import java.io.IOException;
 public class ReplyBasedHeadlessRenderer implements HeadlessRenderer {
   private final Injector injector;
 
+  // Transports are looked up once per key, rather than on every reply. We keep their
+  // providers, so that transports which aren't singletons are still created afresh.
+  private final ConcurrentMap<Key<? extends Transport>, Provider<? extends Transport>> transports =
+      new MapMaker().makeMap();
+
   @Inject
   public ReplyBasedHeadlessRenderer(Injector injector) {
     this.injector = injector;
   }
 
   public void render(HttpServletResponse response, Object o) throws IOException {
+    render(request(), response, o);
+  }
+
+  void render(HttpServletRequest request, HttpServletResponse response, Object o)
+      throws IOException {
+    // Reply later, releasing this thread if the container lets us.
+    if (o instanceof FutureReply) {
+      FutureReply future = (FutureReply) o;
+      if (null != request && AsyncReplies.supported(request)) {
+        AsyncReplies.start(this, request, response, future);
+        return;
+      }
+
+      try {
+        o = future.await();
+      } catch (TimeoutException e) {
+        future.future().cancel(true);
+        response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        return;
+      }
+    }
+
     if (null == o) {
       throw new RuntimeException("Sitebricks received a null reply from the resource.");
     }
@@ -29,6 +64,28 @@ public class ReplyBasedHeadlessRenderer implements HeadlessRenderer {
     assert o instanceof Reply : o.getClass();
     Reply<?> reply = (Reply<?>)o;
 
-    reply.populate(injector, response);
+    reply.populate(this, request, response);
+  }
+
+  Injector injector() {
+    return injector;
+  }
+
+  Transport transport(Key<? extends Transport> key) {
+    Provider<? extends Transport> transport = transports.get(key);
+    if (null == transport) {
+      transport = injector.getProvider(key);
+      transports.putIfAbsent(key, transport);
+    }
+
+    return transport.get();
+  }
+
+  // Returns the current request, or null if we're not running in a servlet environment.
+  private HttpServletRequest request() {
+    Binding<HttpServletRequest> binding =
+        injector.getExistingBinding(Key.get(HttpServletRequest.class));
+
+    return (null == binding) ? null : binding.getProvider().get();
   }
 }
@@ -2,19 +2,20 @@ package com.google.sitebricks.headless;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Maps;
-import com.google.common.io.ByteStreams;
 import com.google.inject.Injector;
 import com.google.inject.Key;
 import com.google.sitebricks.client.Transport;
 import com.google.sitebricks.client.transport.Text;
+import com.google.sitebricks.http.Encodings;
 import com.google.sitebricks.rendering.Strings;
 import com.google.sitebricks.rendering.Templates;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * A builder implementation of the Reply interface.
@@ -32,6 +33,9 @@ class ReplyMaker<E> extends Reply<E> {
   Key<? extends Transport> transport = Key.get(Text.class);
   E entity;
   Class<?> templateKey;
+  boolean compressed;
+
+  private static final int GZIP_BUFFER_SIZE = 8192;
 
   public ReplyMaker(E entity) {
     this.entity = entity;
@@ -142,16 +146,27 @@ class ReplyMaker<E> extends Reply<E> {
     return this;
   }
 
+  @Override
+  public Reply<E> compressed() {
+    compressed = true;
+    return this;
+  }
+
   @Override @SuppressWarnings("unchecked")
-  void populate(Injector injector, HttpServletResponse response) throws IOException {
+  void populate(ReplyBasedHeadlessRenderer renderer, HttpServletRequest request,
+                HttpServletResponse response) throws IOException {
+    Injector injector = renderer.injector();
+
     // If we should not bother with the chain
     if (Reply.NO_REPLY == this) {
-      injector.getInstance(HttpServletRequest.class).setAttribute(Reply.NO_REPLY_ATTR, Boolean.TRUE);
+      if (null == request)
+        request = injector.getInstance(HttpServletRequest.class);
+      request.setAttribute(Reply.NO_REPLY_ATTR, Boolean.TRUE);
       return;
     }
 
     // This is where we take all the builder values and encode them in the response.
-    Transport transport = injector.getInstance(this.transport);
+    Transport transport = renderer.transport(this.transport);
 
     // Set any headers (we do this first, so we can override any cheekily set headers).
     if (!headers.isEmpty()) {
@@ -183,21 +198,32 @@ class ReplyMaker<E> extends Reply<E> {
     if (null != templateKey) {
       response.getWriter().write(injector.getInstance(Templates.class).render(templateKey, entity));
     } else if (null != entity) {
-      if (entity instanceof InputStream) {
-        // Stream the response rather than marshalling it through a transport.
-        InputStream inputStream = (InputStream) entity;
-        try {
-          ByteStreams.copy(inputStream, response.getOutputStream());
-        } finally {
-          inputStream.close();
-        }
+      boolean gzip = compressed && Encodings.acceptsGzip(request);
+      if (gzip) {
+        response.setHeader("Content-Encoding", "gzip");
+        response.setHeader("Vary", "Accept-Encoding");
       } else {
+        // We only know the length of the body up front if it is not compressed.
+        long length = Entities.lengthOf(entity);
+        if (length >= 0)
+          response.setHeader("Content-Length", Long.toString(length));
+      }
+
+      OutputStream out = response.getOutputStream();
+      GZIPOutputStream gzipOut = null;
+      if (gzip)
+        out = gzipOut = new GZIPOutputStream(out, GZIP_BUFFER_SIZE);
+
+      if (!Entities.write(entity, out)) {
         // TODO(dhanji): This feels wrong to me. We need a better way to obtain the entity type.
-        transport.out(response.getOutputStream(), (Class<E>) entity.getClass(), entity);
+        transport.out(out, (Class<E>) entity.getClass(), entity);
       }
+
+      if (null != gzipOut)
+        gzipOut.finish();
     }
   }
-  
+
   @Override
   public boolean equals(Object other) {
 	  if(!(other instanceof ReplyMaker<?>))
@@ -227,6 +253,9 @@ class ReplyMaker<E> extends Reply<E> {
 	  if(this.templateKey != o.templateKey)
 		  return false;
 
+	  if(this.compressed != o.compressed)
+		  return false;
+
 	  if((this.entity != o.entity)
 	  && (this.entity != null && !this.entity.equals(o.entity))
 	  && (this.entity == null && o.entity != null))
@@ -0,0 +1,25 @@
+package com.google.sitebricks.headless;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Sets how long a headless service that replies asynchronously (i.e. whose
+ * handlers return a {@code ListenableFuture<Reply<?>>}) may take to reply,
+ * in milliseconds. If the future is not done by then, it is cancelled and the
+ * client is sent a 503 (Service Unavailable).
+ * <pre>
+ *  {@literal @}At("/search"){@literal @}Service{@literal @}Timeout(2000)
+ *   public class Search { .. }
+ * </pre>
+ *
+ * A handler method may be annotated too, which overrides its service's timeout.
+ * Without this annotation, the container's default async timeout applies.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.TYPE, ElementType.METHOD })
+public @interface Timeout {
+  long value();
+}
@@ -0,0 +1,37 @@
+package com.google.sitebricks.http;
+
+import java.util.regex.Pattern;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Reads which content codings a client accepts, from its Accept-Encoding header.
+ */
+public final class Encodings {
+  // A quality of zero, i.e. the client does not accept the coding after all.
+  private static final Pattern NOT_ACCEPTABLE = Pattern.compile("q=0(\\.0*)?");
+
+  private Encodings() {
+  }
+
+  /**
+   * Returns true if the given request (which may be null) accepts gzipped responses.
+   */
+  public static boolean acceptsGzip(HttpServletRequest request) {
+    if (null == request)
+      return false;
+
+    String accept = request.getHeader("Accept-Encoding");
+    if (null == accept)
+      return false;
+
+    for (String coding : accept.split(",")) {
+      String[] parts = coding.trim().split(";");
+      if ("gzip".equalsIgnoreCase(parts[0].trim()))
+        return parts.length < 2
+            || !NOT_ACCEPTABLE.matcher(parts[1].trim().replace(" ", "")).matches();
+    }
+
+    return false;
+  }
+}
@@ -0,0 +1,21 @@
+package com.google.sitebricks.http.negotiate;
+
+import com.google.sitebricks.headless.Request;
+
+/**
+ * A request handler's content negotiation rules, compiled once when the handler is
+ * discovered. Rather than a simple yes or no, it says how well a request matches, so
+ * that the best of several candidate handlers can be chosen.
+ */
+public interface CompiledNegotiation {
+  /**
+   * The score of a request that does not pass these rules.
+   */
+  int NO_MATCH = -1;
+
+  /**
+   * Returns {@link #NO_MATCH} if the given request fails these rules, otherwise how
+   * well it matches them (higher is better). A handler with no rules scores zero.
+   */
+  int score(Request request);
+}
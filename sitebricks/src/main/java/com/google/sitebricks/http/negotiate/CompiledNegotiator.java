@@ -0,0 +1,125 @@
+package com.google.sitebricks.http.negotiate;
+
+import java.util.Collection;
+import java.util.Map;
+
+import com.google.common.collect.Multimap;
+import com.google.sitebricks.headless.Request;
+import net.jcip.annotations.Immutable;
+
+/**
+ * A {@link ContentNegotiator} whose rules are compiled once per request handler,
+ * rather than reinterpreted for each request. Each negotiated header must match; a
+ * handler's score is the sum of how well each one did, which is the quality (q value)
+ * the client gave the matching header value, then how specifically it matched.
+ */
+public abstract class CompiledNegotiator implements ContentNegotiator {
+  private static final CompiledNegotiation ANYTHING = new CompiledNegotiation() {
+    public int score(Request request) {
+      return 0;
+    }
+  };
+
+  // How many degrees of specificity there are to a match, see HeaderValue#specificity().
+  private static final int SPECIFICITIES = 3;
+
+  CompiledNegotiator() {
+  }
+
+  /**
+   * Compiles a handler's negotiation rules, see
+   * {@link ContentNegotiator#shouldCall(Map, Request)}.
+   */
+  public CompiledNegotiation compile(Map<String, String> negotiations) {
+    if (negotiations.isEmpty())
+      return ANYTHING;
+
+    String[] headers = new String[negotiations.size()];
+    Rule[] rules = new Rule[negotiations.size()];
+    int i = 0;
+    for (Map.Entry<String, String> negotiate : negotiations.entrySet()) {
+      headers[i] = negotiate.getKey();
+      rules[i] = compile(negotiate.getValue());
+      i++;
+    }
+
+    return new Compiled(headers, rules);
+  }
+
+  public boolean shouldCall(Map<String, String> negotiations, Request request) {
+    return compile(negotiations).score(request) != CompiledNegotiation.NO_MATCH;
+  }
+
+  /**
+   * Returns true if the given negotiator decides by its compiled rules, that is, it
+   * is one of ours and not a subclass that overrides
+   * {@link #shouldCall(Map, Request)} to decide some other way.
+   */
+  public static boolean isCompiled(ContentNegotiator negotiator) {
+    if (!(negotiator instanceof CompiledNegotiator))
+      return false;
+
+    try {
+      return CompiledNegotiator.class == negotiator.getClass()
+          .getMethod("shouldCall", Map.class, Request.class)
+          .getDeclaringClass();
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Compiles the value of a single negotiation annotation.
+   */
+  abstract Rule compile(String expression);
+
+  static int score(int quality, int specificity) {
+    return quality * SPECIFICITIES + specificity;
+  }
+
+  static int bestSpecificity() {
+    return SPECIFICITIES - 1;
+  }
+
+  interface Rule {
+    /**
+     * Returns how well a single value of the negotiated header matches, or
+     * {@link CompiledNegotiation#NO_MATCH}.
+     */
+    int score(String header);
+  }
+
+  @Immutable
+  private static class Compiled implements CompiledNegotiation {
+    private final String[] headers;
+    private final Rule[] rules;
+
+    private Compiled(String[] headers, Rule[] rules) {
+      this.headers = headers;
+      this.rules = rules;
+    }
+
+    public int score(Request request) {
+      Multimap<String, String> requestHeaders = request.headers();
+      int score = 0;
+
+      for (int i = 0; i < headers.length; i++) {
+        Collection<String> values = requestHeaders.get(headers[i]);
+        if (null == values)
+          continue;
+
+        // Everything has to pass for us to say OK.
+        int best = NO_MATCH;
+        for (String value : values) {
+          best = Math.max(best, rules[i].score(value));
+        }
+        if (NO_MATCH == best)
+          return NO_MATCH;
+
+        score += best;
+      }
+
+      return score;
+    }
+  }
+}
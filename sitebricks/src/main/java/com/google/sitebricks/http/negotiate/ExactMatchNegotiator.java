@@ -1,40 +1,34 @@
 package com.google.sitebricks.http.negotiate;
 
-import com.google.common.collect.Iterables;
-import com.google.common.collect.Multimap;
-import com.google.sitebricks.headless.Request;
-
-import java.util.*;
+import net.jcip.annotations.Immutable;
 
 /**
  * A strategy for deciding whether or not a header is acceptable to the given
  * method map header expressions. This strategy literally matches the value in
  * a header annotation to the value of the given header, and is case sensitive.
  */
-class ExactMatchNegotiator implements ContentNegotiator {
-  public boolean shouldCall(Map<String, String> negotiations, Request request) {
-    Multimap<String, String> headers = request.headers();
-    for (Map.Entry<String, String> negotiate : negotiations.entrySet()) {
+class ExactMatchNegotiator extends CompiledNegotiator {
 
-      Collection<String> collectionOfHeader = headers.get(negotiate.getKey());
-      if (null == collectionOfHeader)
-        continue;
-      Iterator<String> headerValues = collectionOfHeader.iterator();
+  @Override
+  Rule compile(String expression) {
+    return new ExactRule(expression);
+  }
 
-      // Guaranteed never to throw NPE.
-      boolean shouldFire = false;
-      while (headerValues.hasNext()) {
-        String value = headerValues.next();
+  @Immutable
+  private static class ExactRule implements Rule {
+    private final String expression;
 
-        // Everything has to pass for us to say OK.
-        shouldFire |= Iterables.contains(Arrays.asList(value.split(",[ ]*")),
-            negotiate.getValue());
-      }
-      if (!shouldFire) {
-        return false;
-      }
+    private ExactRule(String expression) {
+      this.expression = expression;
     }
 
-    return true;
+    public int score(String header) {
+      int best = CompiledNegotiation.NO_MATCH;
+      for (HeaderValue value : HeaderValue.parse(header)) {
+        if (value.quality > 0 && value.raw.equals(expression))
+          best = Math.max(best, CompiledNegotiator.score(value.quality, bestSpecificity()));
+      }
+      return best;
+    }
   }
 }
@@ -0,0 +1,116 @@
+package com.google.sitebricks.http.negotiate;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Lists;
+import net.jcip.annotations.Immutable;
+
+/**
+ * One element of a comma-separated request header (such as Accept), along with its
+ * media range and quality if it has them. Header values are parsed once and shared by
+ * every handler that negotiates on them; clients send the same few headers over and
+ * over, so we keep the most recent ones around.
+ */
+@Immutable
+final class HeaderValue {
+  static final int MAX_QUALITY = 1000;
+
+  private static final Pattern SEPARATOR = Pattern.compile(",[ ]*");
+
+  // Lifted TOKEN, TYPE_PATTERN  from com.google.gdata.util
+  private static final String TOKEN =
+    "[\\p{ASCII}&&[^\\p{Cntrl} ;/=\\[\\]\\(\\)\\<\\>\\@\\,\\:\\\"\\?\\=]]+";
+
+  private static final Pattern TYPE_PATTERN = Pattern.compile(
+    "(" + TOKEN + ")" +         // mediatype (G1)
+    "/" +                       // separator
+    "(" + TOKEN + ")" +         // subtype (G2)
+    "\\s*(.*)\\s*", Pattern.DOTALL);
+
+  private static final Pattern QUALITY = Pattern.compile(";\\s*q\\s*=\\s*([0-9.]+)");
+
+  private static final LoadingCache<String, HeaderValue[]> parsed = CacheBuilder.newBuilder()
+      .maximumSize(512)
+      .build(new CacheLoader<String, HeaderValue[]>() {
+        @Override
+        public HeaderValue[] load(String header) {
+          return split(header);
+        }
+      });
+
+  // The element exactly as it appears between commas.
+  final String raw;
+
+  // Lower-cased media type and subtype, or null if this is not a media range.
+  final String type;
+  final String subtype;
+
+  // The q parameter in thousandths; MAX_QUALITY if absent.
+  final int quality;
+
+  private HeaderValue(String raw, String type, String subtype, int quality) {
+    this.raw = raw;
+    this.type = type;
+    this.subtype = subtype;
+    this.quality = quality;
+  }
+
+  static HeaderValue[] parse(String header) {
+    return parsed.getUnchecked(header);
+  }
+
+  /**
+   * Returns 2 for a full media type, 1 for a range with a wildcard subtype
+   * and 0 for a range that matches anything.
+   */
+  int specificity() {
+    if ("*".equals(type))
+      return 0;
+    return "*".equals(subtype) ? 1 : 2;
+  }
+
+  /**
+   * Returns true if this and the given media range have some media type in common.
+   */
+  boolean overlaps(HeaderValue range) {
+    return (type.equals(range.type) || "*".equals(type) || "*".equals(range.type))
+        && (subtype.equals(range.subtype) || "*".equals(subtype) || "*".equals(range.subtype));
+  }
+
+  private static HeaderValue[] split(String header) {
+    String[] elements = SEPARATOR.split(header);
+    List<HeaderValue> values = Lists.newArrayListWithCapacity(elements.length);
+
+    for (String element : elements) {
+      Matcher mediaType = TYPE_PATTERN.matcher(element);
+      if (mediaType.matches()) {
+        values.add(new HeaderValue(element,
+            mediaType.group(1).toLowerCase(),
+            mediaType.group(2).toLowerCase(),
+            qualityOf(mediaType.group(3))));
+      } else {
+        values.add(new HeaderValue(element, null, null, qualityOf(element)));
+      }
+    }
+
+    return values.toArray(new HeaderValue[values.size()]);
+  }
+
+  private static int qualityOf(String parameters) {
+    Matcher quality = QUALITY.matcher(parameters);
+    if (!quality.find())
+      return MAX_QUALITY;
+
+    try {
+      float q = Float.parseFloat(quality.group(1));
+      return Math.max(0, Math.min(MAX_QUALITY, Math.round(q * MAX_QUALITY)));
+    } catch (NumberFormatException e) {
+      return MAX_QUALITY;
+    }
+  }
+}
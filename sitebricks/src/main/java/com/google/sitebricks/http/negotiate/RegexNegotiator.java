@@ -1,11 +1,8 @@
 package com.google.sitebricks.http.negotiate;
 
-import com.google.common.collect.Multimap;
-import com.google.sitebricks.headless.Request;
+import java.util.regex.Pattern;
 
-import java.util.Collection;
-import java.util.Iterator;
-import java.util.Map;
+import net.jcip.annotations.Immutable;
 
 /**
  * ContentNegotiator that supports one regex match value, for example
@@ -13,32 +10,33 @@ import java.util.Map;
  * HTTP Accept header "text/*" and {@literal @}Referer("(google|yahoo|bing)\\.com") will
  * match requests with HTTP Referer headers from google, yahoo, or bing
  */
-public class RegexNegotiator implements ContentNegotiator {
-
-  public boolean shouldCall(Map<String, String> negotiations, Request request) {
-    Multimap<String, String> headers = request.headers();
-    for (Map.Entry<String, String> negotiate : negotiations.entrySet()) {
-
-      Collection<String> collectionOfHeader = headers.get(negotiate.getKey());
-      if (null == collectionOfHeader)
-        continue;
-      Iterator<String> headerValues = collectionOfHeader.iterator();
-      String match = negotiate.getValue();
-
-      boolean shouldFire = false;       // Guaranteed never to throw NPE
-      while (headerValues.hasNext()) {
-        String value = headerValues.next();
-
-        shouldFire |= value.matches(match);
-        
-        for (String val: value.split(",[ ]*")) {
-         shouldFire |= val.matches(match);
-        }
-      }
-      if (!shouldFire) {
-        return false;
+public class RegexNegotiator extends CompiledNegotiator {
+
+  @Override
+  Rule compile(String expression) {
+    return new RegexRule(Pattern.compile(expression));
+  }
+
+  @Immutable
+  private static class RegexRule implements Rule {
+    private final Pattern pattern;
+
+    private RegexRule(Pattern pattern) {
+      this.pattern = pattern;
+    }
+
+    public int score(String header) {
+      int best = CompiledNegotiation.NO_MATCH;
+      for (HeaderValue value : HeaderValue.parse(header)) {
+        if (value.quality > 0 && pattern.matcher(value.raw).matches())
+          best = Math.max(best, CompiledNegotiator.score(value.quality, bestSpecificity()));
       }
+
+      // The expression may also describe the header as a whole.
+      if (CompiledNegotiation.NO_MATCH == best && pattern.matcher(header).matches())
+        best = CompiledNegotiator.score(HeaderValue.MAX_QUALITY, bestSpecificity());
+
+      return best;
     }
-    return true;
   }
 }
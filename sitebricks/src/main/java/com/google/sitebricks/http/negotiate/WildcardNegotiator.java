@@ -1,13 +1,9 @@
 package com.google.sitebricks.http.negotiate;
 
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimap;
-import com.google.common.collect.Sets;
-import com.google.sitebricks.headless.Request;
+import java.util.List;
 
-import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import com.google.common.collect.Lists;
+import net.jcip.annotations.Immutable;
 
 /**
  * ContentNegotiator that supports comma separated and wildcard matches in Accept header style
@@ -16,84 +12,74 @@ import java.util.regex.Pattern;
  * request with headers "Accept: text/html" or "Accept: text/plain"
  *
  * Notes:
- *   Wildcard for subtypes such as "text/*, image/*" are supported but there is no
- *   wildcard matching on the main media types.   Negotiating on other HTTP request
- *   headers where "/*" might be useful is currently undefined.
- *
- *
+ *   Wildcards such as "text/*, image/*" and "*&#47;*" are supported on either side. Of the
+ *   client's media ranges, the most specific one that matches decides its quality (q value),
+ *   so "text/*;q=0.3, text/html" prefers html over other kinds of text, and a quality of
+ *   zero means the client won't accept that media type at all. Values that aren't media types
+ *   are matched literally. Negotiating on other HTTP request headers where "/*" might be
+ *   useful is currently undefined.
  */
-public class WildcardNegotiator implements ContentNegotiator {
-  // Lifted TOKEN, TYPE_PATTERN  from com.google.gdata.util
-
-  private static String TOKEN =
-    "[\\p{ASCII}&&[^\\p{Cntrl} ;/=\\[\\]\\(\\)\\<\\>\\@\\,\\:\\\"\\?\\=]]+";
+public class WildcardNegotiator extends CompiledNegotiator {
 
-  private static Pattern TYPE_PATTERN = Pattern.compile(
-    "(" + TOKEN + ")" +         // mediatype (G1)
-    "/" +                       // separator
-    "(" + TOKEN + ")" +         // subtype (G2)
-    "\\s*(.*)\\s*", Pattern.DOTALL);
-
-  private HashMultimap<String, String> createMultimatch(List<String> matchlist) {
-    HashMultimap<String, String> multimatch = HashMultimap.create();
-      for (String m : matchlist) {
-        Matcher mediaType = TYPE_PATTERN.matcher(m);
+  @Override
+  Rule compile(String expression) {
+    List<HeaderValue> ranges = Lists.newArrayList();
+    List<String> literals = Lists.newArrayList();
+    for (HeaderValue value : HeaderValue.parse(expression)) {
+      if (null != value.type)
+        ranges.add(value);
+      else
+        literals.add(value.raw);
+    }
 
-        if (mediaType.matches()) {
-          String type = mediaType.group(1).toLowerCase();
-          String subtype = mediaType.group(2).toLowerCase();
-          multimatch.put(type, subtype);
-        }
-      }
-    return multimatch;
+    return new WildcardRule(ranges.toArray(new HeaderValue[ranges.size()]),
+        literals.toArray(new String[literals.size()]));
   }
 
-  public boolean shouldCall(Map<String, String> negotiations, Request request) {
-    Multimap<String, String> headers = request.headers();
-    for (Map.Entry<String, String> negotiate : negotiations.entrySet()) {
+  @Immutable
+  private static class WildcardRule implements Rule {
+    private final HeaderValue[] ranges;
+    private final String[] literals;
 
-      Collection<String> collectionOfHeader = headers.get(negotiate.getKey());
-      if (null == collectionOfHeader)
-        continue;
-      Iterator<String> headerValues = collectionOfHeader.iterator();
-      boolean shouldFire = false;
-
-      List<String> matches = Arrays.asList(negotiate.getValue().split(",[ ]*"));
-      HashMultimap<String,String> mediaMatches = createMultimatch(matches);
+    private WildcardRule(HeaderValue[] ranges, String[] literals) {
+      this.ranges = ranges;
+      this.literals = literals;
+    }
 
-      while (headerValues.hasNext()) {
-        String value = headerValues.next();
+    public int score(String header) {
+      HeaderValue[] values = HeaderValue.parse(header);
+      int best = CompiledNegotiation.NO_MATCH;
 
-        List<String> values = Arrays.asList(value.split(",[ ]*"));
-        HashMultimap<String,String> mediaValues = createMultimatch(values);
+      for (HeaderValue range : ranges) {
+        HeaderValue match = mostSpecificMatch(range, values);
+        if (null != match && match.quality > 0) {
+          int specificity = Math.min(range.specificity(), match.specificity());
+          best = Math.max(best, CompiledNegotiator.score(match.quality, specificity));
+        }
+      }
 
-        if (!mediaMatches.isEmpty()) {
-          Set<String> typeIntersection = Sets.intersection(mediaMatches.keySet(), mediaValues.keySet());
-          if (typeIntersection.isEmpty()) {
-            shouldFire |= typeIntersection.isEmpty();
-          } else {
-            for (String mediaType: typeIntersection) {
-              Set<String> subtypeMatches = mediaMatches.get(mediaType);
-              Set<String> subtypeValues = mediaValues.get(mediaType);
-              
-              shouldFire |= (subtypeMatches.contains("*")
-                  || subtypeValues.contains("*")
-                  || !Sets.intersection(subtypeMatches, subtypeValues).isEmpty());
-            }
-          }
-        } else {
-          shouldFire |= !(Collections.disjoint(Arrays.asList(value.split(",[ ]*")), matches));
+      for (String literal : literals) {
+        for (HeaderValue value : values) {
+          if (value.quality > 0 && literal.equals(value.raw))
+            best = Math.max(best, CompiledNegotiator.score(value.quality, bestSpecificity()));
         }
       }
-      if (!shouldFire) {
-        return false;
+
+      return best;
+    }
+
+    private static HeaderValue mostSpecificMatch(HeaderValue range, HeaderValue[] values) {
+      HeaderValue match = null;
+      for (HeaderValue value : values) {
+        if (null == value.type || !value.overlaps(range))
+          continue;
+
+        if (null == match
+            || value.specificity() > match.specificity()
+            || (value.specificity() == match.specificity() && value.quality > match.quality))
+          match = value;
       }
+      return match;
     }
-    return true;
   }
 }
-
-// TODO - http://www.w3.org/Protocols/rfc2616/rfc2616-sec14.html
-//      Accept: text/*;q=0.3, text/html;q=0.7, text/html;level=1, text/html;level=2;q=0.4, */*;q=0.5
-
-// TODO - other headers with slashes (but not signifying media types)
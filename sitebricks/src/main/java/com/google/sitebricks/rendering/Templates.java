@@ -7,9 +7,11 @@ import com.google.inject.Singleton;
 import com.google.inject.Stage;
 import com.google.sitebricks.Renderable;
 import com.google.sitebricks.StringBuilderRespond;
+import com.google.sitebricks.TemplateWatcher;
 import com.google.sitebricks.compiler.Compilers;
 
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentMap;
 
 /**
@@ -18,37 +20,59 @@ import java.util.concurrent.ConcurrentMap;
 @Singleton
 public class Templates {
   private final Compilers compilers;
+  private final TemplateWatcher watcher;
   private final boolean reloadTemplates;
 
   private final ConcurrentMap<Class<?>, Renderable> templates = new MapMaker().makeMap();
 
-  @Inject
+  /**
+   * Templates compiled without a shared watcher. Nothing they load is watched, so in
+   * the development stage they are recompiled on every render.
+   */
   public Templates(Compilers compilers, Stage stage) {
+    this(compilers, new TemplateWatcher(), stage);
+  }
+
+  @Inject
+  public Templates(Compilers compilers, TemplateWatcher watcher, Stage stage) {
     this.compilers = compilers;
+    this.watcher = watcher;
     this.reloadTemplates = Stage.DEVELOPMENT == stage;
   }
 
   public void loadAll(Set<Descriptor> templates) {
     // If in production mode, force load all the templates.
     for (Descriptor template : templates) {
-      Renderable compiled = compilers.compile(template.clazz);
-      Preconditions.checkArgument(null != compiled, "No template found attached to: %s",
-          template.clazz);
-
-      this.templates.put(template.clazz, compiled);
+      load(template.clazz);
     }
   }
 
-  public String render(Class<?> clazz, Object context) {
-    Renderable compiled;
-    if (reloadTemplates) {
-      compiled = compilers.compile(clazz);
+  /**
+   * Compiles and stores the template attached to the given class. Safe to call from
+   * several threads at once, for different or even the same classes.
+   */
+  public Renderable load(Class<?> clazz) {
+    Renderable compiled = compilers.compile(clazz);
+    Preconditions.checkArgument(null != compiled, "No template found attached to: %s", clazz);
+
+    templates.put(clazz, compiled);
+    return compiled;
+  }
 
-      templates.put(clazz, compiled);
-    } else {
-      compiled = templates.get(clazz);
+  public String render(final Class<?> clazz, Object context) {
+    Renderable compiled = templates.get(clazz);
+    if (reloadTemplates && watcher.isStale(clazz)) {
+      // Recompile only if the template has changed since we last compiled it.
+      compiled = watcher.compile(clazz, new Callable<Renderable>() {
+        @Override
+        public Renderable call() {
+          return load(clazz);
+        }
+      });
+    } else if (null == compiled) {
+      // Not loaded yet, this happens while templates are still compiling in the background.
+      compiled = load(clazz);
     }
-    Preconditions.checkArgument(null != compiled, "No template found attached to: %s", clazz);
 
     StringBuilderRespond respond = new StringBuilderRespond(context);
     //noinspection ConstantConditions
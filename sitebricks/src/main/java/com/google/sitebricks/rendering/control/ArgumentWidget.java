@@ -15,7 +15,7 @@ import java.util.Set;
  * @author Dhanji R. Prasanna (dhanji@gmail com)
  */
 @SelfRendering @Immutable
-class ArgumentWidget implements Renderable {
+class ArgumentWidget implements Renderable, HeadWrites.Scannable {
     private final WidgetChain widgetChain;
     private final String expression;
     private final Evaluator evaluator;
@@ -30,6 +30,10 @@ class ArgumentWidget implements Renderable {
         widgetChain.render(bound, respond);
     }
 
+    public void scan(HeadWrites.Scan scan) {
+        scan.scan(widgetChain);
+    }
+
     public <T extends Renderable> Set<T> collect(Class<T> clazz) {
         return widgetChain.collect(clazz);
     }
@@ -5,6 +5,7 @@ import com.google.inject.Provider;
 import com.google.sitebricks.Evaluator;
 import com.google.sitebricks.Renderable;
 import com.google.sitebricks.Respond;
+import com.google.sitebricks.binding.Choices;
 import com.google.sitebricks.binding.FlashCache;
 import com.google.sitebricks.compiler.Parsing;
 import com.google.sitebricks.rendering.SelfRendering;
@@ -18,7 +19,7 @@ import java.util.Set;
  * @author Dhanji R. Prasanna (dhanji@gmail.com)
  */
 @Immutable @SelfRendering
-class ChooseWidget implements Renderable {
+class ChooseWidget implements Renderable, HeadWrites.Scannable {
     private final WidgetChain widgetChain;
     private final Map<String, String> map;
     private final Evaluator evaluator;
@@ -60,8 +61,12 @@ class ChooseWidget implements Renderable {
 
         respond.write("</select>");
 
-        //store for later retrieval during binding
-        cache.get().put(from, collection);
+        //store for later retrieval during binding (as offered, and indexed for lookup)
+        cache.get().put(from, Choices.of(collection));
+    }
+
+    public void scan(HeadWrites.Scan scan) {
+        scan.scan(widgetChain);
     }
 
     public <T extends Renderable> Set<T> collect(Class<T> clazz) {
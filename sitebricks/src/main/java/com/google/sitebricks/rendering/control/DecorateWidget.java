@@ -14,7 +14,7 @@ import java.util.Set;
 /**
  * @author John Patterson (jdpatterson@gmail.com)
  */
-public class DecorateWidget implements Renderable {
+public class DecorateWidget implements Renderable, HeadWrites.Scannable {
 
   @Inject
   private PageBook book;
@@ -89,6 +89,17 @@ public class DecorateWidget implements Renderable {
     }
   }
 
+  @Override
+  public void scan(HeadWrites.Scan scan) {
+    // Any of the decorated classes above the page may be rendered here, see render().
+    for (Class<?> candidate = scan.pageClass(); null != candidate && Object.class != candidate;
+        candidate = candidate.getSuperclass()) {
+      if (candidate.isAnnotationPresent(Decorated.class))
+        scan.embed(book.forName(embedNameFor(candidate)), scan.pageClass(),
+            Collections.<Renderable>emptySet());
+    }
+  }
+
   @Override
   public <T extends Renderable> Set<T> collect(Class<T> clazz) {
     return Collections.emptySet();
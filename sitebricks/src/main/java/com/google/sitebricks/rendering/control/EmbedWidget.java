@@ -19,7 +19,7 @@ import java.util.Set;
  * @author Dhanji R. Prasanna (dhanji@gmail.com)
  */
 @Immutable
-class EmbedWidget implements Renderable {
+class EmbedWidget implements Renderable, HeadWrites.Scannable {
   private final Map<String, String> bindExpressions;
   private final Map<String, ArgumentWidget> arguments;
   private final Evaluator evaluator;
@@ -72,6 +72,10 @@ class EmbedWidget implements Renderable {
     embed.clear();
   }
 
+  public void scan(HeadWrites.Scan scan) {
+    scan.embed(pageBook.forName(targetPage), arguments.values());
+  }
+
   public <T extends Renderable> Set<T> collect(Class<T> clazz) {
     return Collections.emptySet();
   }
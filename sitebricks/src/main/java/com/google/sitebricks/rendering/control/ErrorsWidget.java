@@ -17,7 +17,7 @@ import com.google.sitebricks.rendering.SelfRendering;
 
 @SelfRendering
 @EmbedAs("errors")
-public class ErrorsWidget implements Renderable {
+public class ErrorsWidget implements Renderable, HeadWrites.Scannable {
 
     @Inject
     private Map<Class<?>, Map<Locale, Localizer.Localization>> localizationsMap;
@@ -62,6 +62,9 @@ public class ErrorsWidget implements Renderable {
     }
 
     @Override
+    public void scan(HeadWrites.Scan scan) {
+    }
+
     public <T extends Renderable> Set<T> collect(Class<T> clazz) {
         return Collections.emptySet();
     }
@@ -0,0 +1,139 @@
+package com.google.sitebricks.rendering.control;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import com.google.common.collect.Lists;
+import com.google.sitebricks.Renderable;
+import com.google.sitebricks.Respond;
+import com.google.sitebricks.compiler.Token;
+import net.jcip.annotations.Immutable;
+
+/**
+ * Utilities for pre-rendering the static parts of a compiled template. Adjacent
+ * runs of static text (and whole subtrees of tags that contain no expressions)
+ * are merged into a single string when the template is compiled, so that only
+ * expressions are evaluated on each render and everything else goes out to the
+ * {@link Respond} in one write.
+ */
+final class Fragments {
+  private Fragments() {
+  }
+
+  /**
+   * A widget that may always render exactly the same text.
+   */
+  interface Fragment {
+    /**
+     * Returns the text this widget always renders, or null if its output depends
+     * on the object it is bound to (or on the request).
+     */
+    String staticText();
+  }
+
+  /**
+   * Returns the text the given widget always renders, or null if it is not static.
+   */
+  static String staticTextOf(Renderable widget) {
+    return (widget instanceof Fragment) ? ((Fragment) widget).staticText() : null;
+  }
+
+  /**
+   * Returns the given tokens with each run of adjacent static tokens merged into one.
+   */
+  static Token[] merge(List<Token> tokens) {
+    List<Token> merged = Lists.newArrayListWithCapacity(tokens.size());
+    StringBuilder text = new StringBuilder();
+
+    for (Token token : tokens) {
+      if (token.isExpression() || token instanceof DynamicText) {
+        if (text.length() > 0) {
+          merged.add(new StaticToken(text.toString()));
+          text.setLength(0);
+        }
+        merged.add(token);
+      } else {
+        text.append(token.render(null));
+      }
+    }
+
+    if (text.length() > 0)
+      merged.add(new StaticToken(text.toString()));
+
+    return merged.toArray(new Token[merged.size()]);
+  }
+
+  /**
+   * Returns the text the given (merged) tokens always render, or null if they
+   * contain any expressions.
+   */
+  static String staticTextOf(Token[] tokens) {
+    if (0 == tokens.length)
+      return "";
+
+    if (1 == tokens.length && tokens[0] instanceof StaticToken)
+      return tokens[0].render(null);
+
+    return null;
+  }
+
+  static void write(Token[] tokens, Object bound, Respond respond) {
+    for (Token token : tokens) {
+      respond.write(token.render(bound));
+    }
+  }
+
+  static Token text(String text) {
+    return new StaticToken(text);
+  }
+
+  static Renderable constant(String text) {
+    return new ConstantWidget(text);
+  }
+
+  /**
+   * Marks a token that is not an expression, but whose text still varies from one
+   * request to the next, and so must not be merged with its neighbours.
+   */
+  interface DynamicText extends Token {
+  }
+
+  @Immutable
+  private static class StaticToken implements Token {
+    private final String text;
+
+    private StaticToken(String text) {
+      this.text = text;
+    }
+
+    public boolean isExpression() {
+      return false;
+    }
+
+    public String render(Object bound) {
+      return text;
+    }
+  }
+
+  @Immutable
+  private static class ConstantWidget implements Renderable, Fragment {
+    private final String text;
+
+    private ConstantWidget(String text) {
+      this.text = text;
+    }
+
+    public void render(Object bound, Respond respond) {
+      respond.write(text);
+    }
+
+    public String staticText() {
+      return text;
+    }
+
+    public <T extends Renderable> Set<T> collect(Class<T> clazz) {
+      return Collections.emptySet();
+    }
+  }
+}
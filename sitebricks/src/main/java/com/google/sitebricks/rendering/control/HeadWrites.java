@@ -0,0 +1,128 @@
+package com.google.sitebricks.rendering.control;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import com.google.sitebricks.Renderable;
+import com.google.sitebricks.routing.PageBook;
+
+/**
+ * Works out from a compiled template whether rendering it may write to the page's
+ * head once the head has been closed (by a {@code @Require} or an embedded page
+ * further down, for example), so that pages which can't may be streamed to the
+ * client in full. Every branch of the template is considered, whether or not it is
+ * rendered on any given request.
+ */
+public final class HeadWrites {
+  private HeadWrites() {
+  }
+
+  /**
+   * A widget that can tell what it may write to the head, and which of its children
+   * it renders. Widgets that don't implement this (custom ones, for instance) are
+   * assumed to write to the head, unless they always render the same text.
+   */
+  interface Scannable {
+    void scan(Scan scan);
+  }
+
+  /**
+   * A widget that stands in for another (until a page's template is compiled, say),
+   * which is scanned in its place.
+   */
+  public interface Deferred {
+    /**
+     * Returns the widget this one stands in for, waiting for it if need be.
+     */
+    Renderable resolve();
+  }
+
+  /**
+   * Returns true if rendering the given page may write to its head after the head
+   * has been closed.
+   */
+  public static boolean afterHead(PageBook.Page page) {
+    Scan scan = new Scan(page.pageClass(), false, newVisiting());
+    scan.scan(page.widget());
+    return scan.writes;
+  }
+
+  private static Set<Renderable> newVisiting() {
+    return Collections.newSetFromMap(new IdentityHashMap<Renderable, Boolean>());
+  }
+
+  static final class Scan {
+    private final Class<?> pageClass;
+    private final Set<Renderable> visiting;
+    private boolean headClosed;
+    private boolean writes;
+
+    private Scan(Class<?> pageClass, boolean headClosed, Set<Renderable> visiting) {
+      this.pageClass = pageClass;
+      this.headClosed = headClosed;
+      this.visiting = visiting;
+    }
+
+    Class<?> pageClass() {
+      return pageClass;
+    }
+
+    void scan(Renderable widget) {
+      if (writes)
+        return;
+
+      if (widget instanceof Deferred)
+        scan(((Deferred) widget).resolve());
+      else if (widget instanceof Scannable)
+        ((Scannable) widget).scan(this);
+      else if (null == Fragments.staticTextOf(widget))
+        writesToHead();
+    }
+
+    void closeHead() {
+      headClosed = true;
+    }
+
+    void writesToHead() {
+      if (headClosed)
+        writes = true;
+    }
+
+    void embed(PageBook.Page page, Collection<? extends Renderable> arguments) {
+      embed(page, null == page ? null : page.pageClass(), arguments);
+    }
+
+    /**
+     * Scans the given page as embedded in this one (bound to an instance of the given
+     * class), along with the arguments passed to it. Anything either of them writes to
+     * the head (at all, as the embedded page's own head is discarded) ends up in this
+     * page's head.
+     */
+    void embed(PageBook.Page page, Class<?> boundClass,
+               Collection<? extends Renderable> arguments) {
+      if (!headClosed || writes)
+        return;
+
+      if (null == page || null == page.widget()) {
+        writesToHead();
+        return;
+      }
+
+      // A page that embeds itself never finishes rendering anyway.
+      if (!visiting.add(page.widget()))
+        return;
+
+      Scan embedded = new Scan(boundClass, true, visiting);
+      embedded.scan(page.widget());
+      for (Renderable argument : arguments) {
+        embedded.scan(argument);
+      }
+      visiting.remove(page.widget());
+
+      if (embedded.writes)
+        writesToHead();
+    }
+  }
+}
@@ -7,7 +7,6 @@ import com.google.sitebricks.compiler.ExpressionCompileException;
 import com.google.sitebricks.compiler.Token;
 import com.google.sitebricks.rendering.SelfRendering;
 
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -15,31 +14,34 @@ import java.util.Set;
  * @author Dhanji R. Prasanna (dhanji@gmail.com)
  */
 @SelfRendering
-class HeaderWidget implements Renderable {
+class HeaderWidget implements Renderable, HeadWrites.Scannable {
   private final WidgetChain widgetChain;
-  private Map<String, List<Token>> attribs;
+  private final Token[] openTag;
 
   public HeaderWidget(WidgetChain widgetChain, Map<String, String> attribs,
                       EvaluatorCompiler compiler) throws ExpressionCompileException {
 
     this.widgetChain = widgetChain;
-    this.attribs = XmlWidget.compile(attribs, compiler);
+    this.openTag = XmlWidget.openTag("head", XmlWidget.compile(attribs, compiler), ">");
   }
 
   public void render(Object bound, Respond respond) {
-    XmlWidget.writeOpenTag(bound, respond, "head", attribs);
-
-    respond.write('>');
+    Fragments.write(openTag, bound, respond);
 
     //render children (as necessary)
     widgetChain.render(bound, respond);
 
     respond.withHtml()
-        .headerPlaceholder(); //TODO replace placeholder with an index?
+        .headerPlaceholder();
     respond.write("</head>");
   }
 
 
+  public void scan(HeadWrites.Scan scan) {
+    scan.scan(widgetChain);
+    scan.closeHead();
+  }
+
   public <T extends Renderable> Set<T> collect(Class<T> clazz) {
     return widgetChain.collect(clazz);
   }
@@ -10,7 +10,7 @@ import java.util.Set;
 /**
  * @author Dhanji R. Prasanna (dhanji@gmail com)
  */
-class IncludeWidget implements Renderable {
+class IncludeWidget implements Renderable, HeadWrites.Scannable {
     private final String name;
     private final Evaluator evaluator;
 
@@ -24,6 +24,10 @@ class IncludeWidget implements Renderable {
                 .render(bound, respond);
     }
 
+    public void scan(HeadWrites.Scan scan) {
+        // What it includes is scanned along with the page that embeds this one.
+    }
+
     public <T extends Renderable> Set<T> collect(Class<T> clazz) {
         return Collections.emptySet();
     }
@@ -13,20 +13,46 @@ import java.util.Set;
  * @author Dhanji R. Prasanna (dhanji@gmail.com)
  */
 @ThreadSafe
-class ProceedingWidgetChain implements WidgetChain {
+class ProceedingWidgetChain implements WidgetChain, Fragments.Fragment, HeadWrites.Scannable {
     private final List<Renderable> widgets = new ArrayList<Renderable>();
 
+    //what we actually render: the widgets above, with adjacent static ones merged
+    private final List<Renderable> rendering = new ArrayList<Renderable>();
+
     public void render(Object bound, Respond respond) {
-        for (Renderable widget : widgets) {
+        for (Renderable widget : rendering) {
             widget.render(bound, respond);
         }
     }
 
     public synchronized WidgetChain addWidget(Renderable renderable) {
         widgets.add(renderable);
+
+        String text = Fragments.staticTextOf(renderable);
+        int last = rendering.size() - 1;
+        if (null == text)
+            rendering.add(renderable);
+        else if (last >= 0 && null != Fragments.staticTextOf(rendering.get(last)))
+            rendering.set(last, Fragments.constant(Fragments.staticTextOf(rendering.get(last)) + text));
+        else
+            rendering.add(Fragments.constant(text));
+
         return this;
     }
 
+    public synchronized String staticText() {
+        if (rendering.isEmpty())
+            return "";
+
+        return (1 == rendering.size()) ? Fragments.staticTextOf(rendering.get(0)) : null;
+    }
+
+    public synchronized void scan(HeadWrites.Scan scan) {
+        for (Renderable widget : rendering) {
+            scan.scan(widget);
+        }
+    }
+
     /**
      * This is an expensive method, never use it when live (used best at startup).
      *
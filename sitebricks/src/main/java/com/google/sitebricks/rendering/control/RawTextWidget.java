@@ -11,7 +11,7 @@ import java.util.Collections;
 import java.util.Set;
 
 @ThreadSafe @SelfRendering
-public class RawTextWidget implements Renderable {
+public class RawTextWidget implements Renderable, Fragments.Fragment, HeadWrites.Scannable {
   private String template;
 
   RawTextWidget(String template, EvaluatorCompiler compiler) throws ExpressionCompileException {
@@ -22,6 +22,13 @@ public class RawTextWidget implements Renderable {
     respond.write(template);
   }
 
+  public String staticText() {
+    return template;
+  }
+
+  public void scan(HeadWrites.Scan scan) {
+  }
+
   public <T extends Renderable> Set<T> collect(Class<T> clazz) {
     return Collections.emptySet();
   }
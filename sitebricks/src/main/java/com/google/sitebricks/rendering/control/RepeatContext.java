@@ -0,0 +1,91 @@
+package com.google.sitebricks.rendering.control;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+import com.google.common.collect.Maps;
+import net.jcip.annotations.NotThreadSafe;
+
+/**
+ * The variables visible to each row of a {@link RepeatWidget}: the current item,
+ * the page, the row's index and whether it is the last row. A single context is
+ * reused for every row of a repeat, and looks its variables up by name rather than
+ * by hashing, which matters when there are thousands of rows.
+ */
+@NotThreadSafe
+class RepeatContext extends AbstractMap<String, Object> {
+  static final String INDEX = "index";
+  static final String IS_LAST = "isLast";
+
+  private final String var;
+  private final String pageVar;
+  private final Object page;
+
+  private Object item;
+  private int index;
+  private boolean last;
+
+  // Anything else that is put into the context (rare).
+  private Map<String, Object> others;
+
+  RepeatContext(String var, String pageVar, Object page) {
+    this.var = var;
+    this.pageVar = pageVar;
+    this.page = page;
+  }
+
+  /**
+   * Moves this context on to the given row.
+   */
+  void row(Object item, int index, boolean last) {
+    this.item = item;
+    this.index = index;
+    this.last = last;
+  }
+
+  @Override
+  public Object get(Object key) {
+    if (var.equals(key))
+      return item;
+    if (pageVar.equals(key))
+      return page;
+    if (INDEX.equals(key))
+      return index;
+    if (IS_LAST.equals(key))
+      return last;
+
+    return (null == others) ? null : others.get(key);
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return var.equals(key) || pageVar.equals(key) || INDEX.equals(key) || IS_LAST.equals(key)
+        || (null != others && others.containsKey(key));
+  }
+
+  @Override
+  public Object put(String key, Object value) {
+    if (var.equals(key) || pageVar.equals(key) || INDEX.equals(key) || IS_LAST.equals(key))
+      throw new UnsupportedOperationException("Cannot reassign repeat variable: " + key);
+
+    if (null == others)
+      others = Maps.newHashMap();
+    return others.put(key, value);
+  }
+
+  // Only for completeness, nothing on the rendering path iterates the context.
+  @Override
+  public Set<Entry<String, Object>> entrySet() {
+    Map<String, Object> entries = Maps.newHashMap();
+    if (null != others)
+      entries.putAll(others);
+    entries.put(var, item);
+    entries.put(pageVar, page);
+    entries.put(INDEX, index);
+    entries.put(IS_LAST, last);
+
+    return Collections.unmodifiableMap(entries).entrySet();
+  }
+}
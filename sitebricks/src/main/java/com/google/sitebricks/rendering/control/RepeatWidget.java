@@ -9,9 +9,12 @@ import com.google.sitebricks.conversion.TypeConverter;
 import com.google.sitebricks.rendering.EmbedAs;
 import net.jcip.annotations.Immutable;
 
+import java.lang.reflect.Array;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.RandomAccess;
 import java.util.Set;
 
 /**
@@ -19,7 +22,7 @@ import java.util.Set;
  */
 @Immutable
 @EmbedAs("Repeat")
-class RepeatWidget implements Renderable {
+class RepeatWidget implements Renderable, HeadWrites.Scannable {
     private final WidgetChain widgetChain;
     private final String items;
     private final String var;
@@ -67,25 +70,105 @@ class RepeatWidget implements Renderable {
     	if (null == value)
     		return;
 
-    	Collection<?> items = converter.convert(value, Collection.class);
-        
-        Map<String, Object> context = new HashMap<String, Object>();
-
-        //set up context variables
-        int i = 0;
-        for (Object thing : items) {
-
-            //decorate with some context
-            context.put(var, thing);
-            context.put(pageVar, respond.pageObject());
-            context.put("index", i++);
-            context.put("isLast", i == items.size());
-            widgetChain.render(context, respond);
+        //one context is reused for every row
+        RepeatContext context = new RepeatContext(var, pageVar, respond.pageObject());
+
+        Loop loop = LOOPS.get(value.getClass());
+        if (null == loop) {
+            value = converter.convert(value, Collection.class);
+            loop = Loop.COLLECTION;
+        }
+
+        loop.render(value, context, widgetChain, respond);
+    }
+
+    // How to loop over each type of items, worked out once per type.
+    private static final ClassValue<Loop> LOOPS = new ClassValue<Loop>() {
+        @Override
+        protected Loop computeValue(Class<?> type) {
+            if (type.isArray())
+                return type.getComponentType().isPrimitive() ? Loop.PRIMITIVE_ARRAY : Loop.ARRAY;
+            if (List.class.isAssignableFrom(type) && RandomAccess.class.isAssignableFrom(type))
+                return Loop.RANDOM_ACCESS_LIST;
+            if (Collection.class.isAssignableFrom(type))
+                return Loop.COLLECTION;
+            if (Iterable.class.isAssignableFrom(type))
+                return Loop.ITERABLE;
+
+            // Leave it to the type converter.
+            return null;
         }
+    };
 
+    private static enum Loop {
+        RANDOM_ACCESS_LIST {
+            @Override
+            void render(Object items, RepeatContext context, WidgetChain chain, Respond respond) {
+                List<?> list = (List<?>) items;
+                for (int i = 0, size = list.size(); i < size; i++) {
+                    context.row(list.get(i), i, i == size - 1);
+                    chain.render(context, respond);
+                }
+            }
+        },
+
+        ARRAY {
+            @Override
+            void render(Object items, RepeatContext context, WidgetChain chain, Respond respond) {
+                Object[] array = (Object[]) items;
+                for (int i = 0; i < array.length; i++) {
+                    context.row(array[i], i, i == array.length - 1);
+                    chain.render(context, respond);
+                }
+            }
+        },
+
+        PRIMITIVE_ARRAY {
+            @Override
+            void render(Object items, RepeatContext context, WidgetChain chain, Respond respond) {
+                for (int i = 0, length = Array.getLength(items); i < length; i++) {
+                    context.row(Array.get(items, i), i, i == length - 1);
+                    chain.render(context, respond);
+                }
+            }
+        },
+
+        COLLECTION {
+            @Override
+            void render(Object items, RepeatContext context, WidgetChain chain, Respond respond) {
+                int size = ((Collection<?>) items).size();
+                int i = 0;
+                for (Object thing : (Collection<?>) items) {
+                    context.row(thing, i, i == size - 1);
+                    chain.render(context, respond);
+                    i++;
+                }
+            }
+        },
+
+        ITERABLE {
+            @Override
+            void render(Object items, RepeatContext context, WidgetChain chain, Respond respond) {
+                Iterator<?> iterator = ((Iterable<?>) items).iterator();
+                for (int i = 0; iterator.hasNext(); i++) {
+                    Object thing = iterator.next();
+                    context.row(thing, i, !iterator.hasNext());
+                    chain.render(context, respond);
+                }
+            }
+        };
+
+        abstract void render(Object items, RepeatContext context, WidgetChain chain,
+                             Respond respond);
     }
 
 
+    public void scan(HeadWrites.Scan scan) {
+        // Twice, as whatever comes last in one pass is followed by the first in the next.
+        scan.scan(widgetChain);
+        scan.scan(widgetChain);
+    }
+
     public <T extends Renderable> Set<T> collect(Class<T> clazz) {
         return widgetChain.collect(clazz);
     }
@@ -15,7 +15,7 @@ import java.util.Set;
  */
 @Immutable
 @SelfRendering
-class RequireWidget implements Renderable {
+class RequireWidget implements Renderable, HeadWrites.Scannable {
   private final XmlWidget widget;
 
   public RequireWidget(XmlWidget child) throws ExpressionCompileException {
@@ -30,6 +30,10 @@ class RequireWidget implements Renderable {
     respond.require(inner.toString());
   }
 
+  public void scan(HeadWrites.Scan scan) {
+    scan.writesToHead();
+  }
+
   public <T extends Renderable> Set<T> collect(Class<T> clazz) {
     return Collections.emptySet();
   }
@@ -13,7 +13,7 @@ import java.util.Set;
  * @author Dhanji R. Prasanna (dhanji@gmail.com)
  */
 @Immutable @EmbedAs("ShowIf")
-class ShowIfWidget implements Renderable {
+class ShowIfWidget implements Renderable, HeadWrites.Scannable {
     private final WidgetChain widgetChain;
     private final String expression;
     private final Evaluator evaluator;
@@ -33,6 +33,10 @@ class ShowIfWidget implements Renderable {
     }
 
 
+    public void scan(HeadWrites.Scan scan) {
+        scan.scan(widgetChain);
+    }
+
     public <T extends Renderable> Set<T> collect(Class<T> clazz) {
         return widgetChain.collect(clazz);
     }
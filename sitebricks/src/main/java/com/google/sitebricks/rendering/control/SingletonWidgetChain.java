@@ -11,7 +11,7 @@ import com.google.sitebricks.Respond;
  * @author Dhanji R. Prasanna (dhanji@gmail.com)
  */
 @Immutable
-class SingletonWidgetChain implements WidgetChain {
+class SingletonWidgetChain implements WidgetChain, Fragments.Fragment, HeadWrites.Scannable {
     private final Renderable widget;
 
     public SingletonWidgetChain(Renderable widget) {
@@ -22,10 +22,18 @@ class SingletonWidgetChain implements WidgetChain {
         widget.render(bound, respond);
     }
 
+    public String staticText() {
+        return Fragments.staticTextOf(widget);
+    }
+
     public WidgetChain addWidget(Renderable renderable) {
         throw new IllegalStateException("Cannot add children to singleton widget chain");
     }
 
+    public void scan(HeadWrites.Scan scan) {
+        scan.scan(widget);
+    }
+
     public synchronized <T extends Renderable> Set<T> collect(Class<T> clazz) {
         return widget.collect(clazz);
     }
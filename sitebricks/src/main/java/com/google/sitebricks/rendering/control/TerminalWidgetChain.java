@@ -16,10 +16,14 @@ import java.util.Set;
  * @author Dhanji R. Prasanna (dhanji@gmail.com)
  */
 @NotThreadSafe
-class TerminalWidgetChain implements WidgetChain {
+class TerminalWidgetChain implements WidgetChain, Fragments.Fragment {
 
     public void render(Object bound, Respond respond) { }
 
+    public String staticText() {
+        return "";
+    }
+
     public <T extends Renderable> Set<T> collect(Class<T> clazz) {
         return Collections.emptySet();
     }
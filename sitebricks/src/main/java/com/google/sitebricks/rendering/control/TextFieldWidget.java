@@ -14,7 +14,7 @@ import java.util.Set;
  */
 @Immutable
 @SelfRendering
-class TextFieldWidget implements Renderable {
+class TextFieldWidget implements Renderable, HeadWrites.Scannable {
     private final WidgetChain widgetChain;
     private final String expression;
     private final Evaluator evaluator;
@@ -30,6 +30,9 @@ class TextFieldWidget implements Renderable {
                 .textField(expression, (String) evaluator.evaluate(expression, bound));
     }
 
+    public void scan(HeadWrites.Scan scan) {
+    }
+
     public <T extends Renderable> Set<T> collect(Class<T> clazz) {
         return Collections.emptySet();
     }
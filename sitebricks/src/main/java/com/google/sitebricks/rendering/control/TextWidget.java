@@ -9,33 +9,41 @@ import com.google.sitebricks.rendering.SelfRendering;
 import net.jcip.annotations.ThreadSafe;
 
 import java.util.Collections;
-import java.util.List;
 import java.util.Set;
 
 /**
  * @author Dhanji R. Prasanna (dhanji@gmail.com)
  */
 @ThreadSafe @SelfRendering
-class TextWidget implements Renderable {
-    private final List<Token> tokenizedTemplate;     //TODO store some metrics to allocate buffers later
+class TextWidget implements Renderable, Fragments.Fragment, HeadWrites.Scannable {
+    private final Token[] tokenizedTemplate;
+
+    //non-null if there are no expressions in this template
+    private final String text;
 
     TextWidget(String template, EvaluatorCompiler compiler) throws ExpressionCompileException {
 
-        //compile token stream
-        tokenizedTemplate = compiler.tokenizeAndCompile(template);
+        //compile token stream, merging adjacent runs of static text
+        tokenizedTemplate = Fragments.merge(compiler.tokenizeAndCompile(template));
+        text = Fragments.staticTextOf(tokenizedTemplate);
     }
 
     public void render(Object bound, Respond respond) {
-
-        //render template from tokens
-        StringBuilder builder = new StringBuilder();
-        for (Token token : tokenizedTemplate) {
-            builder.append(token.render(bound));
+        if (null != text) {
+            respond.write(text);
+            return;
         }
 
-        respond.write(builder.toString());
+        //render template from tokens, straight into the respond
+        Fragments.write(tokenizedTemplate, bound, respond);
     }
 
+    public String staticText() {
+        return text;
+    }
+
+    public void scan(HeadWrites.Scan scan) {
+    }
 
     public <T extends Renderable> Set<T> collect(Class<T> clazz) {
         return Collections.emptySet();
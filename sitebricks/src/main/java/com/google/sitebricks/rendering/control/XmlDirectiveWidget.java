@@ -18,7 +18,7 @@ import java.util.Set;
  */
 @ThreadSafe
 @SelfRendering
-class XmlDirectiveWidget implements Renderable {
+class XmlDirectiveWidget implements Renderable, HeadWrites.Scannable {
   private final List<Token> tokens;
 
   XmlDirectiveWidget(String template, EvaluatorCompiler compiler) throws ExpressionCompileException {
@@ -33,6 +33,9 @@ class XmlDirectiveWidget implements Renderable {
     respond.write(">");
   }
 
+  public void scan(HeadWrites.Scan scan) {
+  }
+
   public <T extends Renderable> Set<T> collect(Class<T> clazz) {
     return Collections.emptySet();
   }
@@ -10,6 +10,7 @@ import com.google.sitebricks.compiler.Token;
 import com.google.sitebricks.headless.Request;
 import com.google.sitebricks.rendering.Attributes;
 import com.google.sitebricks.rendering.SelfRendering;
+import net.jcip.annotations.Immutable;
 import net.jcip.annotations.ThreadSafe;
 
 import java.util.*;
@@ -21,12 +22,19 @@ import java.util.*;
  */
 @ThreadSafe
 @SelfRendering
-class XmlWidget implements Renderable {
+class XmlWidget implements Renderable, Fragments.Fragment, HeadWrites.Scannable {
   private final WidgetChain widgetChain;
   private final boolean selfClosed;
   private final String name;
   private final Map<String, List<Token>> attributes;
 
+  // The open tag, pre-rendered as far as possible (see Fragments), and the close tag.
+  private final Token[] openTag;
+  private final String closeTag;
+
+  // Non-null if this tag and all of its children always render the same text.
+  private final String text;
+
   // HACK Extremely ouch! Replace with Assisted inject.
   private static volatile Provider<Request> request;
 
@@ -52,6 +60,14 @@ class XmlWidget implements Renderable {
     //hacky. Script tags should not be self-closed due to IE insanity.
     this.selfClosed =
         widgetChain instanceof TerminalWidgetChain && !"script".equalsIgnoreCase(name);
+
+    this.openTag = openTag(name, this.attributes, selfClosed ? "/>" : ">");
+    this.closeTag = selfClosed ? "" : "</" + name + '>';
+
+    // Our children are all compiled by now, so see if we can pre-render the lot.
+    String open = Fragments.staticTextOf(openTag);
+    String children = selfClosed ? "" : Fragments.staticTextOf(widgetChain);
+    this.text = (null == open || null == children) ? null : open + children + closeTag;
   }
 
   //compiles a map of name:value attrs into a map of name:token renderables
@@ -68,70 +84,88 @@ class XmlWidget implements Renderable {
     return map;
   }
 
-  public void render(Object bound, Respond respond) {
-    writeOpenTag(bound, respond, name, attributes);
-
-    //write children
-    if (selfClosed) {
-      respond.write("/>");    //write self-closed tag
-    } else {
-      respond.write('>');
-      widgetChain.render(bound, respond);
-
-      //close tag
-      respond.write("</");
-      respond.write(name);
-      respond.write('>');
-    }
-  }
-
-  static void writeOpenTag(Object bound, Respond respond, String name,
-                           Map<String, List<Token>> attributes) {
-    respond.write('<');
-    respond.write(name);
-
-    respond.write(' ');
+  /**
+   * Compiles an open tag with the given attributes, ending in {@code end}, into as
+   * few tokens as possible. Only expressions and attributes that need the request's
+   * context path are left to be rendered per request.
+   */
+  static Token[] openTag(String name, Map<String, List<Token>> attributes, String end) {
+    List<Token> tokens = new ArrayList<Token>();
+    tokens.add(Fragments.text('<' + name));
 
-    //write attributes
     for (Map.Entry<String, List<Token>> attribute : attributes.entrySet()) {
-      respond.write(attribute.getKey());
-      respond.write("=\"");
+      tokens.add(Fragments.text(' ' + attribute.getKey() + "=\""));
 
       final List<Token> tokenList = attribute.getValue();
       for (int i = 0; i < tokenList.size(); i++) {
         Token token = tokenList.get(i);
 
-        if (token.isExpression()) {
-          respond.write(token.render(bound));
-        } else {
-          respond.write(
-              contextualizeIfNeeded(attribute.getKey(), (0 == i), token.render(bound)));
-        }
+        if (!token.isExpression() && needsContext(attribute.getKey(), (0 == i), token.render(null)))
+          tokens.add(new ContextualToken(token.render(null)));
+        else
+          tokens.add(token);
       }
 
-      respond.write("\" ");
+      tokens.add(Fragments.text("\""));
     }
 
-    respond.chew();
+    tokens.add(Fragments.text(end));
+    return Fragments.merge(tokens);
   }
 
-  static String contextualizeIfNeeded(String attribute, boolean isFirstToken, String raw) {
-    if (isFirstToken && CONTEXTUAL_ATTRIBS.contains(attribute)) {
-      //add context to path if needed
-      if (raw.startsWith("/")) {
-        if (!raw.startsWith("//"))    // Ignore protocol-relative paths.
-          raw = request.get().context() + raw;
-      }
+  public void render(Object bound, Respond respond) {
+    if (null != text) {
+      respond.write(text);
+      return;
     }
 
-    return raw;
+    Fragments.write(openTag, bound, respond);
+
+    //write children
+    if (!selfClosed) {
+      widgetChain.render(bound, respond);
+
+      //close tag
+      respond.write(closeTag);
+    }
   }
 
+  public String staticText() {
+    return text;
+  }
+
+  private static boolean needsContext(String attribute, boolean isFirstToken, String raw) {
+    // Ignore protocol-relative paths.
+    return isFirstToken && CONTEXTUAL_ATTRIBS.contains(attribute)
+        && raw.startsWith("/") && !raw.startsWith("//");
+  }
+
+  public void scan(HeadWrites.Scan scan) {
+    scan.scan(widgetChain);
+  }
 
   public <T extends Renderable> Set<T> collect(Class<T> clazz) {
     return widgetChain.collect(clazz);
   }
 
+  //a leading path in a contextual attribute, which is prefixed with the context path
+  @Immutable
+  private static class ContextualToken implements Fragments.DynamicText {
+    private final String path;
+
+    private ContextualToken(String path) {
+      this.path = path;
+    }
+
+    public boolean isExpression() {
+      return false;
+    }
+
+    public String render(Object bound) {
+      return request.get().context() + path;
+    }
+  }
+
   @Inject
   public void setRequestProvider(Provider<Request> requestProvider) {
     XmlWidget.request = requestProvider;
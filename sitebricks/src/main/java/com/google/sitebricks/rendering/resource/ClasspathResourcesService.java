@@ -1,36 +1,102 @@
 package com.google.sitebricks.rendering.resource;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import net.jcip.annotations.Immutable;
 import net.jcip.annotations.ThreadSafe;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Lists;
 import com.google.common.collect.MapMaker;
-import com.google.common.io.CharStreams;
+import com.google.common.collect.Maps;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.inject.Inject;
 import com.google.inject.Singleton;
+import com.google.inject.Stage;
 import com.google.sitebricks.Export;
 import com.google.sitebricks.Renderable;
-import com.google.sitebricks.Respond;
+import com.google.sitebricks.http.Encodings;
 
 /**
+ * Serves {@literal @}{@code Export}ed classpath resources as bytes. Each resource is
+ * read once, on first request, and kept in a bounded in-memory cache along with a
+ * gzipped copy (for text) and a strong ETag. Large resources that live on the file
+ * system (rather than in a jar) are memory-mapped instead of read onto the heap.
+ * <p>
+ * Conditional ({@code If-None-Match}, {@code If-Modified-Since}) and single-range
+ * requests are honored. In development mode nothing is cached, so that changes to
+ * resources show up straight away.
+ *
  * @author Dhanji R. Prasanna (dhanji@gmail com)
  */
 @ThreadSafe
 @Singleton
 class ClasspathResourcesService implements ResourcesService {
+  // Caps the heap spent on cached resources, and the size of a file we'll read onto it.
+  static final long MAX_CACHE_BYTES = 32L * 1024 * 1024;
+  static final long MAX_HEAP_RESOURCE_BYTES = 1024 * 1024;
+
+  // Not worth compressing anything smaller than this.
+  private static final int MIN_GZIP_BYTES = 256;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
   private final Map<String, Resource> resources = new MapMaker().makeMap();
+  private final Cache<Resource, Asset> assets;
+  private final boolean reload;
 
-  private static final AtomicReference<Map<String, String>> mimes =
-      new AtomicReference<Map<String, String>>();
+  private static final AtomicReference<MimeTable> mimes =
+      new AtomicReference<MimeTable>();
 
   private static final String DEFAULT_MIME = "__defaultMimeType";
 
+  static final long[] UNSATISFIABLE = new long[0];
+
   public ClasspathResourcesService() {
+    this(Stage.PRODUCTION);
+  }
+
+  @Inject
+  public ClasspathResourcesService(Stage stage) {
+    this.reload = Stage.DEVELOPMENT == stage;
+    this.assets = CacheBuilder.newBuilder()
+        .maximumWeight(MAX_CACHE_BYTES)
+        .weigher(new Weigher<Resource, Asset>() {
+          public int weigh(Resource resource, Asset asset) {
+            return asset.heapBytes();
+          }
+        })
+        .build();
+
     if (null == mimes.get()) {
       final Properties properties = new Properties();
       try {
@@ -40,8 +106,8 @@ class ClasspathResourcesService implements ResourcesService {
         throw new ResourceLoadingException("Can't find mimetypes.properties", e);
       }
 
-      //noinspection unchecked
-      mimes.compareAndSet(null, (Map) properties);
+      //Concurrent/idempotent
+      mimes.compareAndSet(null, new MimeTable(properties));
     }
   }
 
@@ -49,7 +115,7 @@ class ClasspathResourcesService implements ResourcesService {
     resources.put(export.at(), new Resource(export, clazz));
   }
 
-  public Respond serve(String uri) {
+  public ResourceRespond serve(String uri) {
     final Resource resource = resources.get(uri);
 
     //nothing registered
@@ -58,19 +124,119 @@ class ClasspathResourcesService implements ResourcesService {
     }
 
     //load and render resource to responder
-    return new StaticResourceRespond(resource);
+    return new StaticResourceRespond(resource, this);
   }
 
+  /**
+   * Returns the [start, end) offsets of a single byte range, UNSATISFIABLE if it
+   * lies outside the resource, or null if the header should be ignored (i.e. it is
+   * malformed or asks for several ranges, in which case we send everything).
+   */
+  static long[] parseRange(String header, long length) {
+    if (!header.startsWith("bytes=") || header.indexOf(',') >= 0)
+      return null;
+
+    String spec = header.substring("bytes=".length()).trim();
+    int dash = spec.indexOf('-');
+    if (dash < 0)
+      return null;
+
+    try {
+      String first = spec.substring(0, dash).trim();
+      String last = spec.substring(dash + 1).trim();
+
+      // Suffix range, i.e. the last n bytes.
+      if (first.isEmpty()) {
+        long suffix = Long.parseLong(last);
+        if (suffix <= 0 || 0 == length)
+          return UNSATISFIABLE;
+
+        return new long[] { Math.max(0, length - suffix), length };
+      }
+
+      long start = Long.parseLong(first);
+      long end = last.isEmpty() ? length : Math.min(length, Long.parseLong(last) + 1);
+      if (start >= length)
+        return UNSATISFIABLE;
+      if (end <= start)
+        return null;
+
+      return new long[] { start, end };
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
 
   static String mimeOf(String file) {
-    final Map<String, String> mimeTypes = mimes.get();
-    for (Map.Entry<String, String> mime : mimeTypes.entrySet()) {
-      if (file.matches(mime.getKey()))
-        return mime.getValue();
+    return mimes.get().of(file);
+  }
+
+  Asset assetOf(final Resource resource) {
+    if (reload)
+      return Asset.load(resource);
+
+    try {
+      return assets.get(resource, new Callable<Asset>() {
+        public Asset call() {
+          return Asset.load(resource);
+        }
+      });
+    } catch (ExecutionException e) {
+      throw new ResourceLoadingException(
+          "Error loading static resource specified by: " + resource, e.getCause());
+    } catch (UncheckedExecutionException e) {
+      if (e.getCause() instanceof ResourceLoadingException)
+        throw (ResourceLoadingException) e.getCause();
+
+      throw e;
+    }
+  }
+
+  /**
+   * Mime types keyed by file extension, for the common {@code (.)*\.ext} patterns,
+   * with any other patterns kept as precompiled regexes and tried in turn.
+   */
+  @Immutable
+  static class MimeTable {
+    private static final Pattern EXTENSION_PATTERN =
+        Pattern.compile("(?:\\(\\.\\)\\*|\\.\\*)\\\\\\.([\\w-]+)");
+
+    private final Map<String, String> byExtension = Maps.newHashMap();
+    private final List<Map.Entry<Pattern, String>> patterns = Lists.newArrayList();
+    private final String defaultMime;
+
+    MimeTable(Properties properties) {
+      for (String key : properties.stringPropertyNames()) {
+        String mime = properties.getProperty(key);
+        if (DEFAULT_MIME.equals(key))
+          continue;
+
+        Matcher matcher = EXTENSION_PATTERN.matcher(key);
+        if (matcher.matches())
+          byExtension.put(matcher.group(1), mime);
+        else
+          patterns.add(Maps.immutableEntry(Pattern.compile(key), mime));
+      }
+
+      this.defaultMime = properties.getProperty(DEFAULT_MIME);
     }
 
-    //no match, use the default?
-    return mimeTypes.get(DEFAULT_MIME);
+    String of(String file) {
+      int dot = file.lastIndexOf('.');
+      if (dot >= 0) {
+        String mime = byExtension.get(file.substring(dot + 1));
+        if (null != mime)
+          return mime;
+      }
+
+      for (Map.Entry<Pattern, String> pattern : patterns) {
+        if (pattern.getKey().matcher(file).matches())
+          return pattern.getValue();
+      }
+
+      //no match, use the default
+      return defaultMime;
+    }
   }
 
   private static class Resource {
@@ -97,41 +263,262 @@ class ClasspathResourcesService implements ResourcesService {
     }
   }
 
-  private static class StaticResourceRespond implements Respond {
+  /**
+   * The loaded content of a resource, either on the heap or memory-mapped.
+   */
+  @Immutable
+  static class Asset {
+    private final ByteBuffer content;
+    private final byte[] gzipped;
+    private final boolean mapped;
+
+    final String etag;
+    final String gzipEtag;
+
+    // Rounded down to the second (as HTTP dates are), or zero if unknown.
+    final long lastModified;
+
+    private Asset(ByteBuffer content, boolean mapped, String etag, long lastModified,
+                  byte[] gzipped) {
+      this.content = content;
+      this.mapped = mapped;
+      this.etag = etag;
+      this.lastModified = lastModified / 1000 * 1000;
+      this.gzipped = gzipped;
+      this.gzipEtag = (null == gzipped) ? null : etag.substring(0, etag.length() - 1) + "-gz\"";
+    }
+
+    static Asset load(Resource resource) {
+      URL url = resource.clazz.getResource(resource.export.resource());
+      if (null == url)
+        throw new ResourceLoadingException(
+            "Couldn't find static resource (did you spell it right?) specified by: "
+                + resource);
+
+      try {
+        URLConnection connection = url.openConnection();
+        long lastModified = connection.getLastModified();
+
+        // Map large files, rather than reading them in.
+        if ("file".equals(url.getProtocol())) {
+          File file = new File(url.toURI());
+          if (file.length() > MAX_HEAP_RESOURCE_BYTES)
+            return map(file, lastModified);
+        }
+
+        byte[] bytes;
+        InputStream stream = connection.getInputStream();
+        try {
+          bytes = ByteStreams.toByteArray(stream);
+        } finally {
+          stream.close();
+        }
+
+        return new Asset(ByteBuffer.wrap(bytes), false,
+            '"' + Hashing.md5().hashBytes(bytes).toString() + '"', lastModified,
+            gzipIfWorthwhile(resource.mimeType, bytes));
+      } catch (IOException e) {
+        throw new ResourceLoadingException(
+            "Error loading static resource specified by: " + resource, e);
+      } catch (URISyntaxException e) {
+        throw new ResourceLoadingException(
+            "Error loading static resource specified by: " + resource, e);
+      }
+    }
+
+    private static Asset map(File file, long lastModified) throws IOException {
+      RandomAccessFile raf = new RandomAccessFile(file, "r");
+      try {
+        FileChannel channel = raf.getChannel();
+
+        // The mapping stays valid after the channel is closed.
+        ByteBuffer content = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        String etag = '"' + Long.toHexString(channel.size()) + '-'
+            + Long.toHexString(lastModified) + '"';
+
+        return new Asset(content, true, etag, lastModified, null);
+      } finally {
+        raf.close();
+      }
+    }
+
+    private static byte[] gzipIfWorthwhile(String mimeType, byte[] bytes) throws IOException {
+      if (bytes.length < MIN_GZIP_BYTES || !isText(mimeType))
+        return null;
+
+      ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2);
+      GZIPOutputStream gzip = new GZIPOutputStream(out);
+      gzip.write(bytes);
+      gzip.close();
+
+      return (out.size() < bytes.length) ? out.toByteArray() : null;
+    }
+
+    private static boolean isText(String mimeType) {
+      return null != mimeType
+          && (mimeType.startsWith("text/")
+              || mimeType.contains("javascript")
+              || mimeType.contains("json")
+              || mimeType.contains("xml"));
+    }
+
+    long length() {
+      return content.capacity();
+    }
+
+    int heapBytes() {
+      return (mapped ? 0 : content.capacity()) + (null == gzipped ? 0 : gzipped.length);
+    }
+
+    void write(long start, long end, OutputStream out) throws IOException {
+      if (content.hasArray()) {
+        out.write(content.array(), (int) start, (int) (end - start));
+        return;
+      }
+
+      ByteBuffer slice = content.duplicate();
+      slice.limit((int) end).position((int) start);
+
+      WritableByteChannel channel = Channels.newChannel(out);
+      while (slice.hasRemaining()) {
+        channel.write(slice);
+      }
+    }
+
+    void writeGzipped(OutputStream out) throws IOException {
+      out.write(gzipped);
+    }
+
+    boolean hasGzipped() {
+      return null != gzipped;
+    }
+
+    String text() {
+      return UTF_8.decode(content.duplicate()).toString();
+    }
+  }
+
+  private static class StaticResourceRespond implements ResourceRespond {
     private final Resource resource;
+    private final ClasspathResourcesService service;
 
-    public StaticResourceRespond(Resource resource) {
+    public StaticResourceRespond(Resource resource, ClasspathResourcesService service) {
       this.resource = resource;
+      this.service = service;
     }
 
     public String getContentType() {
       return resource.mimeType;
     }
 
-    @Override
-    public String toString() {
-      //load and render
-      List list;
-      try {
-        final InputStream stream = resource.clazz.getResourceAsStream(resource.export.resource());
+    public void respond(HttpServletRequest request, HttpServletResponse response)
+        throws IOException {
+      Asset asset = service.assetOf(resource);
 
-        if (null == stream)
-          throw new ResourceLoadingException(
-              "Couldn't find static resource (did you spell it right?) specified by: "
-                  + resource);
+      // by checking if a content type was set, we allow users to override content-type
+      if (null == response.getContentType()) {
+        response.setContentType(resource.mimeType);
+      }
+      if (asset.lastModified > 0) {
+        response.setDateHeader("Last-Modified", asset.lastModified);
+      }
+      response.setHeader("Accept-Ranges", "bytes");
+      if (asset.hasGzipped()) {
+        response.setHeader("Vary", "Accept-Encoding");
+      }
 
-        list = CharStreams.readLines(new InputStreamReader(stream));
-      } catch (IOException e) {
-        throw new ResourceLoadingException(
-            "Error loading static resource specified by: " + resource, e);
+      if (notModified(request, asset)) {
+        response.setHeader("ETag", etagFor(request, asset));
+        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        return;
+      }
+
+      long length = asset.length();
+      long[] range = null;
+      String rangeHeader = request.getHeader("Range");
+      if (null != rangeHeader && ifRangeMatches(request, asset)) {
+        range = parseRange(rangeHeader, length);
+      }
+
+      if (UNSATISFIABLE == range) {
+        response.setHeader("Content-Range", "bytes */" + length);
+        response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+        return;
+      }
+
+      boolean head = "HEAD".equalsIgnoreCase(request.getMethod());
+      if (null != range) {
+        // Ranges are always of the unencoded resource.
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setHeader("ETag", asset.etag);
+        response.setHeader("Content-Range",
+            "bytes " + range[0] + '-' + (range[1] - 1) + '/' + length);
+        response.setHeader("Content-Length", Long.toString(range[1] - range[0]));
+
+        if (!head)
+          asset.write(range[0], range[1], response.getOutputStream());
+      } else if (asset.hasGzipped() && Encodings.acceptsGzip(request)) {
+        response.setHeader("ETag", asset.gzipEtag);
+        response.setHeader("Content-Encoding", "gzip");
+        response.setHeader("Content-Length", Long.toString(asset.gzipped.length));
+
+        if (!head)
+          asset.writeGzipped(response.getOutputStream());
+      } else {
+        response.setHeader("ETag", asset.etag);
+        response.setHeader("Content-Length", Long.toString(length));
+
+        if (!head)
+          asset.write(0, length, response.getOutputStream());
       }
+    }
+
+    private static String etagFor(HttpServletRequest request, Asset asset) {
+      return (asset.hasGzipped() && Encodings.acceptsGzip(request)) ? asset.gzipEtag : asset.etag;
+    }
 
-      StringBuilder buffer = new StringBuilder();
-      for (Object o : list) {
-        buffer.append((String) o);
+    // If-None-Match takes precedence over If-Modified-Since, when both are given.
+    private static boolean notModified(HttpServletRequest request, Asset asset) {
+      String ifNoneMatch = request.getHeader("If-None-Match");
+      if (null != ifNoneMatch) {
+        for (String tag : ifNoneMatch.split(",")) {
+          tag = tag.trim();
+          if (tag.startsWith("W/"))
+            tag = tag.substring(2);
+
+          if ("*".equals(tag) || tag.equals(asset.etag) || tag.equals(asset.gzipEtag))
+            return true;
+        }
+
+        return false;
       }
 
-      return buffer.toString();
+      long ifModifiedSince = dateHeader(request, "If-Modified-Since");
+      return asset.lastModified > 0 && ifModifiedSince >= asset.lastModified;
+    }
+
+    private static boolean ifRangeMatches(HttpServletRequest request, Asset asset) {
+      String ifRange = request.getHeader("If-Range");
+      if (null == ifRange)
+        return true;
+
+      if (ifRange.startsWith("\"") || ifRange.startsWith("W/"))
+        return ifRange.equals(asset.etag);
+
+      return asset.lastModified > 0 && dateHeader(request, "If-Range") == asset.lastModified;
+    }
+
+    private static long dateHeader(HttpServletRequest request, String name) {
+      try {
+        return request.getDateHeader(name);
+      } catch (IllegalArgumentException e) {
+        return -1;
+      }
+    }
+
+    @Override
+    public String toString() {
+      return service.assetOf(resource).text();
     }
 
     public void write(String text) {
@@ -186,10 +573,10 @@ class ClasspathResourcesService implements ResourcesService {
     public List<String> getErrors() {
         return null;
     }
-  
+
     @Override
     public void setErrors(List<String> errors) {
     }
-  
+
   }
 }
@@ -0,0 +1,22 @@
+package com.google.sitebricks.rendering.resource;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.google.sitebricks.Respond;
+
+/**
+ * A {@link Respond} for a static resource, which is written straight to the
+ * servlet response as bytes rather than rendered as text. This lets it take part
+ * in conditional requests, range requests and content encoding.
+ */
+public interface ResourceRespond extends Respond {
+
+  /**
+   * Writes this resource (or just its headers, or a 304, or a part of it, as the
+   * request asks) to the given response.
+   */
+  void respond(HttpServletRequest request, HttpServletResponse response) throws IOException;
+}
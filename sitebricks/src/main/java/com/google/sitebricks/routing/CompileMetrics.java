@@ -0,0 +1,22 @@
+package com.google.sitebricks.routing;
+
+import com.google.inject.ImplementedBy;
+
+/**
+ * Keeps track of how long pages took to compile at startup. Kept apart from
+ * {@link SystemMetrics} so that implementations of that can go on as they are.
+ */
+@ImplementedBy(InMemorySystemMetrics.class)
+public interface CompileMetrics {
+    /**
+     * Records how long the given page (or template) took to compile at
+     * startup (in millis). Pages may compile concurrently.
+     */
+    void logPageCompileTime(Class<?> page, long time);
+
+    /**
+     * @return Returns the time the given page took to compile in millis,
+     * or -1 if it has not been compiled yet.
+     */
+    long pageCompileTime(Class<?> page);
+}
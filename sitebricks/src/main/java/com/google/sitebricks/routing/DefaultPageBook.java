@@ -6,6 +6,7 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -21,35 +22,45 @@ import net.jcip.annotations.ThreadSafe;
 
 import org.jetbrains.annotations.Nullable;
 
+import com.google.common.base.Function;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Lists;
 import com.google.common.collect.MapMaker;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.inject.Binding;
 import com.google.inject.BindingAnnotation;
 import com.google.inject.Inject;
 import com.google.inject.Injector;
 import com.google.inject.Key;
+import com.google.inject.Provider;
 import com.google.inject.Singleton;
 import com.google.inject.TypeLiteral;
 import com.google.inject.name.Named;
+import com.google.inject.name.Names;
 import com.google.sitebricks.ActionDescriptor;
 import com.google.sitebricks.At;
 import com.google.sitebricks.Bricks;
 import com.google.sitebricks.Renderable;
 import com.google.sitebricks.Show;
+import com.google.sitebricks.SitebricksModule;
 import com.google.sitebricks.client.Transport;
 import com.google.sitebricks.conversion.TypeConverter;
+import com.google.sitebricks.headless.FutureReply;
 import com.google.sitebricks.headless.Reply;
 import com.google.sitebricks.headless.Request;
 import com.google.sitebricks.headless.Service;
+import com.google.sitebricks.headless.Timeout;
 import com.google.sitebricks.http.As;
 import com.google.sitebricks.http.Get;
 import com.google.sitebricks.http.Head;
 import com.google.sitebricks.http.Select;
 import com.google.sitebricks.http.Trace;
+import com.google.sitebricks.http.negotiate.CompiledNegotiation;
+import com.google.sitebricks.http.negotiate.CompiledNegotiator;
 import com.google.sitebricks.http.negotiate.ContentNegotiator;
 import com.google.sitebricks.http.negotiate.Negotiation;
 import com.google.sitebricks.rendering.Strings;
@@ -63,11 +74,8 @@ import com.google.sitebricks.transport.Form;
  */
 @ThreadSafe @Singleton
 public class DefaultPageBook implements PageBook {
-  //multimaps TODO refactor to multimap?
-
-  @GuardedBy("lock") // All three following fields
-  private final Map<String, List<PageTuple>> pages = Maps.newHashMap();
-  private final List<PageTuple> universalMatchingPages = Lists.newArrayList();
+  @GuardedBy("lock") // Both following fields
+  private final RouteTrie routes = new RouteTrie();
   private final Map<String, PageTuple> pagesByName = Maps.newHashMap();
 
   private final ConcurrentMap<Class<?>, PageTuple> classToPageMap =
@@ -86,6 +94,23 @@ public class DefaultPageBook implements PageBook {
 
   @Override @SuppressWarnings("unchecked")
   public Collection<List<Page>> getPageMap() {
+    // Pages grouped by their first path element, less those for which it is a variable.
+    final Map<String, List<PageTuple>> pages = Maps.newLinkedHashMap();
+    synchronized (lock) {
+      for (PageTuple page : routes.pages()) {
+        String key = firstPathElement(page.getUri());
+        if (key.startsWith(":"))
+          continue;
+
+        List<PageTuple> list = pages.get(key);
+        if (null == list) {
+          list = new ArrayList<PageTuple>();
+          pages.put(key, list);
+        }
+        list.add(page);
+      }
+    }
+
     return (Collection) pages.values();
   }
 
@@ -146,14 +171,8 @@ public class DefaultPageBook implements PageBook {
   }
 
   private void at(PageTuple page) {
-    // Is Universal?
     synchronized (lock) {
-      String key = firstPathElement(page.getUri());
-      if (isVariable(key)) {
-        universalMatchingPages.add(page);
-      } else {
-        multiput(pages, key, page);
-      }
+      routes.add(page);
     }
 
     // Actions are not backed by classes.
@@ -192,17 +211,11 @@ public class DefaultPageBook implements PageBook {
 
   private PageTuple doAt(String uri, Class<?> clazz, boolean headless) {
 
-    final String key = firstPathElement(uri);
     final PageTuple pageTuple =
         new PageTuple(uri, new PathMatcherChain(uri), clazz, injector, headless, false);
 
     synchronized (lock) {
-      //is universal? (i.e. first element is a variable)
-      if (isVariable(key))
-        universalMatchingPages.add(pageTuple);
-      else {
-        multiput(pages, key, pageTuple);
-      }
+      routes.add(pageTuple);
     }
 
     // Does not need to be inside lock, as it is concurrent.
@@ -242,22 +255,6 @@ public class DefaultPageBook implements PageBook {
     return get(uri);
   }
 
-  private static void multiput(Map<String, List<PageTuple>> pages, String key,
-                               PageTuple page) {
-    List<PageTuple> list = pages.get(key);
-
-    if (null == list) {
-      list = new ArrayList<PageTuple>();
-      pages.put(key, list);
-    }
-
-    list.add(page);
-  }
-
-  private static boolean isVariable(String key) {
-    return key.length() > 0 && ':' == key.charAt(0);
-  }
-
   String firstPathElement(String uri) {
     String shortUri = uri.substring(1);
 
@@ -268,28 +265,15 @@ public class DefaultPageBook implements PageBook {
 
   @Nullable
   public Page get(String uri) {
-    final String key = firstPathElement(uri);
-
-    List<PageTuple> tuple = pages.get(key);
-
-    //first try static first piece
-    if (null != tuple) {
-
-      //first try static first piece
-      for (PageTuple pageTuple : tuple) {
-        if (pageTuple.matcher.matches(uri))
-          return pageTuple;
-      }
-    }
-
-    //now try dynamic first piece (how can we make this faster?)
-    for (PageTuple pageTuple : universalMatchingPages) {
-      if (pageTuple.matcher.matches(uri))
-        return pageTuple;
-    }
+    final RouteTrie.Match match = routes.resolve(uri);
 
     //nothing matched
-    return null;
+    if (null == match)
+      return null;
+
+    // Remember the path variables we just captured so they need not be parsed again
+    // when the page's event handlers are fired.
+    return new RoutedPage(match.page(), uri, match.variables());
   }
 
   public Page forName(String name) {
@@ -380,6 +364,91 @@ public class DefaultPageBook implements PageBook {
     }
   }
 
+  /**
+   * A page resolved against a specific request path, carrying the path variables
+   * captured during resolution. These are handed straight to the page's event
+   * handlers when it is dispatched against that same path.
+   */
+  static class RoutedPage implements Page {
+    private final PageTuple delegate;
+    private final String path;
+    private final Map<String, String> pathVariables;
+
+    private RoutedPage(PageTuple delegate, String path, Map<String, String> pathVariables) {
+      this.delegate = delegate;
+      this.path = path;
+      this.pathVariables = pathVariables;
+    }
+
+    public Renderable widget() {
+      return delegate.widget();
+    }
+
+    public Object instantiate() {
+      return delegate.instantiate();
+    }
+
+    public Object doMethod(String httpMethod, Object page, String pathInfo, Request request)
+        throws IOException {
+      if (path.equals(pathInfo))
+        return delegate.doMethod(httpMethod, page, pathVariables, request);
+
+      return delegate.doMethod(httpMethod, page, pathInfo, request);
+    }
+
+    public Class<?> pageClass() {
+      return delegate.pageClass();
+    }
+
+    public void apply(Renderable widget) {
+      delegate.apply(widget);
+    }
+
+    public String getUri() {
+      return delegate.getUri();
+    }
+
+    public boolean isHeadless() {
+      return delegate.isHeadless();
+    }
+
+    @Override
+    public boolean isDecorated() {
+      return delegate.isDecorated();
+    }
+
+    public Set<String> getMethod() {
+      return delegate.getMethod();
+    }
+
+    public int compareTo(Page page) {
+      return delegate.compareTo(page);
+    }
+
+    @Override
+    public Show getShow() {
+      return delegate.getShow();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (o instanceof RoutedPage)
+        o = ((RoutedPage) o).delegate;
+
+      return delegate.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+      return delegate.hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return delegate.toString();
+    }
+  }
+
   @Select("") //the default select (hacky!!)
   public static class PageTuple implements Page {
     private final String uri;
@@ -566,12 +635,21 @@ public class DefaultPageBook implements PageBook {
         return null;
       }
 
+      // Extract injectable pieces of the pathInfo.
+      return doMethod(httpMethod, page, matcher.findMatches(pathInfo), request);
+    }
+
+    Object doMethod(String httpMethod, Object page, Map<String, String> map,
+                    Request request) throws IOException {
+
+      //nothing to fire
+      if (Strings.empty(httpMethod)) {
+        return null;
+      }
+
       // NOTE(dhanji): This slurps the entire Map. It could potentially be optimized...
       Multimap<String, String> params = request.params();
 
-      // Extract injectable pieces of the pathInfo.
-      final Map<String, String> map = matcher.findMatches(pathInfo);
-
       // Find method(s) to dispatch to.
       Collection<String> events = params.get(select.value());
       if (null != events) {
@@ -582,12 +660,10 @@ public class DefaultPageBook implements PageBook {
           Object redirect = null;
 
           if (null != tuples) {
-            for (Action action : tuples) {
-              if (action.shouldCall(request)) {
-                matched = true;
-                redirect = action.call(request, page, map);
-                break;
-              }
+            Action action = bestMatch(tuples, request);
+            if (null != action) {
+              matched = true;
+              redirect = action.call(request, page, map);
             }
           }
 
@@ -619,16 +695,36 @@ public class DefaultPageBook implements PageBook {
       Collection<Action> tuple = methods.get(httpMethod);
       Object redirect = null;
       if (null != tuple) {
-        for (Action action : tuple) {
-          if (action.shouldCall(request)) {
-            redirect = action.call(request, page, pathMap);
-            break;
-          }
+        Action action = bestMatch(tuple, request);
+        if (null != action) {
+          redirect = action.call(request, page, pathMap);
         }
       }
       return redirect;
     }
 
+    /**
+     * Returns the action whose negotiation rules best match the given request, or null if
+     * none of them should be called. Ties go to the action that was registered first.
+     */
+    private static Action bestMatch(Collection<Action> actions, Request request) {
+      Action best = null;
+      int bestScore = CompiledNegotiation.NO_MATCH;
+      for (Action action : actions) {
+        int score;
+        if (action instanceof MethodTuple)
+          score = ((MethodTuple) action).score(request);
+        else
+          score = action.shouldCall(request) ? 0 : CompiledNegotiation.NO_MATCH;
+
+        if (score > bestScore) {
+          best = action;
+          bestScore = score;
+        }
+      }
+      return best;
+    }
+
     public Class<?> pageClass() {
       return clazz;
     }
@@ -662,17 +758,21 @@ public class DefaultPageBook implements PageBook {
 
     @Override
     public boolean equals(Object o) {
+      // A routed page is equal to the page it was routed to.
+      if (o instanceof RoutedPage)
+        o = ((RoutedPage) o).delegate;
+
       if (this == o) return true;
       if (!(o instanceof Page)) return false;
 
       Page that = (Page) o;
 
-      return this.clazz.equals(that.pageClass()) && isDecorated() == that.isDecorated();
+      return Objects.equal(clazz, that.pageClass()) && isDecorated() == that.isDecorated();
     }
 
     @Override
     public int hashCode() {
-      return clazz.hashCode();
+      return null == clazz ? 0 : clazz.hashCode();
     }
 
     @Override
@@ -684,32 +784,61 @@ public class DefaultPageBook implements PageBook {
   }
 
   private static class MethodTuple implements Action {
+    private static final Key<Boolean> REFLECTIVE_DISPATCH_KEY =
+        Key.get(Boolean.class, Names.named(SitebricksModule.REFLECTIVE_DISPATCH));
+
     private final Method method;
     private final Injector injector;
-    private final List<Object> args;
-    private final Map<String, String> negotiates;
-    private final ContentNegotiator negotiator;
-	  private final TypeConverter converter;
+    private final TypeConverter converter;
+    private final Parameter[] args;
+    private final HandlerInvoker invoker;
+    private final CompiledNegotiation negotiation;
     private final As returnAs;
+    private final Timeout timeout;
 
     private MethodTuple(Method method, Injector injector) {
       this.method = method;
       this.injector = injector;
-      this.args = reflect(method);
-      this.negotiates = discoverNegotiates(method, injector);
-      this.negotiator = injector.getInstance(ContentNegotiator.class);
       this.converter = injector.getInstance(TypeConverter.class);
+      this.args = reflect(method);
+      this.invoker = HandlerInvoker.of(method, isReflectiveDispatch(injector));
+      this.negotiation = compile(injector.getInstance(ContentNegotiator.class),
+          discoverNegotiates(method, injector));
       this.returnAs = method.getAnnotation(As.class);
+      this.timeout = method.getAnnotation(Timeout.class);
+    }
+
+    private static CompiledNegotiation compile(final ContentNegotiator negotiator,
+                                               final Map<String, String> negotiates) {
+      if (CompiledNegotiator.isCompiled(negotiator))
+        return ((CompiledNegotiator) negotiator).compile(negotiates);
+
+      // Custom negotiators only say yes or no, so all their matches are equally good.
+      return new CompiledNegotiation() {
+        @Override
+        public int score(Request request) {
+          return negotiator.shouldCall(negotiates, request) ? 0 : NO_MATCH;
+        }
+      };
     }
 
-    private List<Object> reflect(Method method) {
+    private static boolean isReflectiveDispatch(Injector injector) {
+      Binding<Boolean> binding = injector.getExistingBinding(REFLECTIVE_DISPATCH_KEY);
+      return null != binding && binding.getProvider().get();
+    }
+
+    /**
+     * Resolves how to obtain each argument up front, so that calling the method
+     * is simply a matter of walking the resultant plan.
+     */
+    private Parameter[] reflect(Method method) {
 
       final Annotation[][] annotationsGrid = method.getParameterAnnotations();
       
       if (null == annotationsGrid)
-        return Collections.emptyList();
+        return new Parameter[0];
 
-      List<Object> args = new ArrayList<Object>();
+      List<Parameter> args = new ArrayList<Parameter>();
       
       for (int i = 0; i < annotationsGrid.length; i++) {
 
@@ -759,8 +888,6 @@ public class DefaultPageBook implements PageBook {
               ? Key.get(genericParameterType, bindingAnnotation)
               : Key.get(genericParameterType);
 
-          args.add(key);
-          
           if (null == injector.getBindings().get(key)) {
               
               throw new InvalidEventHandlerException(
@@ -769,11 +896,12 @@ public class DefaultPageBook implements PageBook {
 
           }
 
+          args.add(new InjectedParameter(key, injector.getProvider(key)));
         }
         
       }
 
-      return Collections.unmodifiableList(args);
+      return args.toArray(new Parameter[args.size()]);
     }
 
     /**
@@ -782,30 +910,42 @@ public class DefaultPageBook implements PageBook {
      */
     @Override
     public boolean shouldCall(Request request) {
-      return negotiator.shouldCall(negotiates, request);
+      return score(request) != CompiledNegotiation.NO_MATCH;
+    }
+
+    /**
+     * @return how well this method tuple's negotiation rules match the request,
+     * see {@link CompiledNegotiation#score}.
+     */
+    int score(Request request) {
+      return negotiation.score(request);
     }
 
 
     @Override
     public Object call(Request request, Object page, Map<String, String> map) throws IOException {
-      List<Object> arguments = new ArrayList<Object>();
-      for (Object arg : args) {
-        if (arg instanceof AsParameter) {
-          AsParameter as = (AsParameter) arg;
-          arguments.add(request.read(as.type).as(as.transport));
-        } else if (arg instanceof NamedParameter) {
-          NamedParameter np = (NamedParameter) arg;
-          String text = map.get(np.getName());
-          Object value = converter.convert(text, np.getType());
-          arguments.add(value);
-        } else
-          arguments.add(injector.getInstance((Key<?>) arg));
+      Object[] arguments = new Object[args.length];
+      for (int i = 0; i < args.length; i++) {
+        arguments[i] = args[i].resolve(request, map);
       }
 
-      Object result = call(page, method, arguments.toArray());
-      if (returnAs != null && result instanceof Reply) {
-        ((Reply) result).as(returnAs.value());
+      Object result = call(page, arguments);
+      if (returnAs != null) {
+        if (result instanceof Reply) {
+          ((Reply) result).as(returnAs.value());
+        } else if (result instanceof ListenableFuture) {
+          result = Futures.transform((ListenableFuture<?>) result, new Function<Object, Object>() {
+            @Override
+            public Object apply(Object reply) {
+              return (reply instanceof Reply) ? ((Reply) reply).as(returnAs.value()) : reply;
+            }
+          });
+        }
       }
+
+      // Otherwise the dispatcher applies the service's timeout, if any.
+      if (null != timeout && result instanceof ListenableFuture)
+        result = FutureReply.of((ListenableFuture<?>) result, timeout.value());
       return result;
     }
 
@@ -814,25 +954,23 @@ public class DefaultPageBook implements PageBook {
       return this.method;
     }
 
-    private static Object call(Object page, final Method method,
-                               Object[] args) {
+    private Object call(Object page, Object[] args) {
       try {
-        return method.invoke(page, args);
-      } catch (IllegalAccessException e) {
-        throw new EventDispatchException(
-            "Could not access event method (appears to be a security problem): " + method, e);
-      } catch (InvocationTargetException e) {
-        Throwable cause = e.getCause();
-        if (cause instanceof ValidationException) {
-            throw (ValidationException) cause;
-        }
+        return invoker.invoke(page, args);
+      } catch (ValidationException e) {
+        throw e;
+      } catch (EventDispatchException e) {
+        throw e;
+      } catch (Error e) {
+        throw e;
+      } catch (Throwable cause) {
         StackTraceElement[] stackTrace = cause.getStackTrace();
         throw new EventDispatchException(String.format(
             "Exception [%s - \"%s\"] thrown by event method [%s]\n\nat %s\n"
             + "(See below for entire trace.)\n",
             cause.getClass().getSimpleName(),
             cause.getMessage(), method,
-            stackTrace[0]), e);
+            stackTrace.length > 0 ? stackTrace[0] : "(unknown)"), cause);
       }
     }
 
@@ -854,7 +992,14 @@ public class DefaultPageBook implements PageBook {
       return negotiations;
     }
 
-    public class NamedParameter {
+    /**
+     * One step of an event handler's argument plan.
+     */
+    private interface Parameter {
+      Object resolve(Request request, Map<String, String> pathVariables) throws IOException;
+    }
+
+    public class NamedParameter implements Parameter {
       private final String name;
       private final Type type;
 
@@ -870,9 +1015,20 @@ public class DefaultPageBook implements PageBook {
       public Type getType() {
         return type;
       }
+
+      @Override
+      public Object resolve(Request request, Map<String, String> pathVariables) {
+        // Even strings go through the converters, which may have been customized.
+        return converter.convert(pathVariables.get(name), type);
+      }
+
+      @Override
+      public String toString() {
+        return "@Named(\"" + name + "\") " + type;
+      }
     }
 
-    public class AsParameter {
+    public class AsParameter implements Parameter {
       private final Class<? extends Transport> transport;
       private final TypeLiteral<?> type;
 
@@ -880,6 +1036,36 @@ public class DefaultPageBook implements PageBook {
         this.transport = transport;
         this.type = type;
       }
+
+      @Override
+      public Object resolve(Request request, Map<String, String> pathVariables) {
+        return request.read(type).as(transport);
+      }
+
+      @Override
+      public String toString() {
+        return "@As(" + transport.getSimpleName() + ") " + type;
+      }
+    }
+
+    private static class InjectedParameter implements Parameter {
+      private final Key<?> key;
+      private final Provider<?> provider;
+
+      private InjectedParameter(Key<?> key, Provider<?> provider) {
+        this.key = key;
+        this.provider = provider;
+      }
+
+      @Override
+      public Object resolve(Request request, Map<String, String> pathVariables) {
+        return provider.get();
+      }
+
+      @Override
+      public String toString() {
+        return key.toString();
+      }
     }
 
     @Override
@@ -901,7 +1087,7 @@ public class DefaultPageBook implements PageBook {
 
     @Override
     public String toString() {
-        return "MethodTuple [method=" + method + ", args=" + args + "]";
+        return "MethodTuple [method=" + method + ", args=" + Arrays.toString(args) + "]";
     }
 
   }
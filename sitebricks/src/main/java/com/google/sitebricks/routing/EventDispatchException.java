@@ -4,7 +4,7 @@ package com.google.sitebricks.routing;
  * @author Dhanji R. Prasanna (dhanji@gmail com)
  */
 class EventDispatchException extends RuntimeException {
-    public EventDispatchException(String msg, Exception e) {
+    public EventDispatchException(String msg, Throwable e) {
         super(msg, e);
     }
 }
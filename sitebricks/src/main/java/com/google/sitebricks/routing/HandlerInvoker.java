@@ -0,0 +1,86 @@
+package com.google.sitebricks.routing;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * Calls an event handler method (i.e. one marked with {@literal @}{@code Get},
+ * {@literal @}{@code Post} and so on) on a page object. Invokers are built once,
+ * when the page is registered, and reused for every request.
+ * <p>
+ * By default handlers are called through a {@link MethodHandle} adapted to a
+ * single generic call shape, which the JIT can inline much like a direct call.
+ * Reflective dispatch is kept around for debugging, since its stack traces are
+ * closer to what most people expect (see
+ * {@link com.google.sitebricks.SitebricksModule#enableReflectiveDispatch}).
+ */
+@Immutable
+abstract class HandlerInvoker {
+  private static final MethodType GENERIC_CALL =
+      MethodType.methodType(Object.class, Object.class, Object[].class);
+
+  /**
+   * Calls the handler on the given page, throwing whatever the handler itself
+   * threw (i.e. unwrapped from any reflection exceptions).
+   */
+  abstract Object invoke(Object page, Object[] args) throws Throwable;
+
+  static HandlerInvoker of(Method method, boolean reflective) {
+    return reflective ? new ReflectiveInvoker(method) : new CompiledInvoker(method);
+  }
+
+  private static class ReflectiveInvoker extends HandlerInvoker {
+    private final Method method;
+
+    private ReflectiveInvoker(Method method) {
+      this.method = method;
+    }
+
+    @Override
+    Object invoke(Object page, Object[] args) throws Throwable {
+      try {
+        return method.invoke(page, args);
+      } catch (IllegalAccessException e) {
+        throw new EventDispatchException(
+            "Could not access event method (appears to be a security problem): " + method, e);
+      } catch (InvocationTargetException e) {
+        throw e.getCause();
+      }
+    }
+  }
+
+  private static class CompiledInvoker extends HandlerInvoker {
+    private final MethodHandle handle;
+
+    private CompiledInvoker(Method method) {
+      MethodHandle handle;
+      try {
+        // Note that the method has already been made accessible by now.
+        handle = MethodHandles.lookup().unreflect(method);
+      } catch (IllegalAccessException e) {
+        throw new EventDispatchException(
+            "Could not access event method (appears to be a security problem): " + method, e);
+      }
+
+      // Static handlers take no receiver, so ignore the page.
+      if (Modifier.isStatic(method.getModifiers()))
+        handle = MethodHandles.dropArguments(handle, 0, Object.class);
+
+      // Adapt to (Object page, Object[] args) -> Object, boxing and casting as needed.
+      this.handle = handle
+          .asSpreader(Object[].class, method.getParameterTypes().length)
+          .asType(GENERIC_CALL);
+    }
+
+    @Override
+    Object invoke(Object page, Object[] args) throws Throwable {
+      return (Object) handle.invokeExact(page, args);
+    }
+  }
+}
@@ -1,29 +1,42 @@
 package com.google.sitebricks.routing;
 
+import com.google.common.base.Function;
 import com.google.common.collect.MapMaker;
+import com.google.common.collect.Maps;
 import com.google.inject.Singleton;
 import com.google.sitebricks.compiler.CompileError;
 import net.jcip.annotations.ThreadSafe;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * This class is completely lock and wait free. It provides the
- * "last seen" metrics, optimistically.
+ * "last seen" metrics, optimistically, and per-route request
+ * counts and latencies (see {@link RouteMetrics}).
  *
  * @author Dhanji R. Prasanna (dhanji@gmail.com)
  */
 @ThreadSafe
 @Singleton
-class InMemorySystemMetrics implements SystemMetrics {
+class InMemorySystemMetrics implements SystemMetrics, CompileMetrics, RequestMetrics {
   private final ConcurrentMap<Class<?>, Metric> pages = new MapMaker().weakKeys().makeMap();
   private final AtomicBoolean active = new AtomicBoolean(false);
 
+  // Looked up by method and then route on every request, so as not to build a key.
+  private final ConcurrentMap<String, ConcurrentMap<String, RouteMetrics>> routes =
+      new ConcurrentHashMap<String, ConcurrentMap<String, RouteMetrics>>();
+  private final ConcurrentMap<String, RouteMetrics> routesByName =
+      new ConcurrentSkipListMap<String, RouteMetrics>();
+
   private final Logger log = Logger.getLogger(SystemMetrics.class.getName());
 
   public void logPageRenderTime(Class<?> page, long time) {
@@ -33,6 +46,49 @@ class InMemorySystemMetrics implements SystemMetrics {
     metric.lastRenderTime.set(time);
   }
 
+  public void logPageCompileTime(Class<?> page, long time) {
+    putIfAbsent(page).compileTime.set(time);
+
+    if (log.isLoggable(Level.FINE)) {
+      log.fine("Compiled " + page.getName() + " in " + time + " ms");
+    }
+  }
+
+  public long pageCompileTime(Class<?> page) {
+    Metric metric = pages.get(page);
+    return null == metric ? -1 : metric.compileTime.get();
+  }
+
+  public RouteMetrics route(String route, String method) {
+    ConcurrentMap<String, RouteMetrics> byRoute = routes.get(method);
+    if (null == byRoute) {
+      ConcurrentMap<String, RouteMetrics> newByRoute = new ConcurrentHashMap<String, RouteMetrics>();
+      byRoute = routes.putIfAbsent(method, newByRoute);
+      if (null == byRoute)
+        byRoute = newByRoute;
+    }
+
+    RouteMetrics metrics = byRoute.get(route);
+    if (null == metrics) {
+      RouteMetrics newMetrics = new RouteMetrics();
+      metrics = byRoute.putIfAbsent(route, newMetrics);
+      if (null == metrics) {
+        metrics = newMetrics;
+        routesByName.put(method + " " + route, metrics);
+      }
+    }
+    return metrics;
+  }
+
+  public Map<String, Map<String, Object>> routeStats() {
+    return Maps.transformValues(routesByName, new Function<RouteMetrics, Map<String, Object>>() {
+      @Override
+      public Map<String, Object> apply(RouteMetrics metrics) {
+        return metrics.snapshot();
+      }
+    });
+  }
+
   public void logErrorsAndWarnings(Class<?> page, List<CompileError> errors, List<CompileError> warnings) {
     Metric metric = putIfAbsent(page);
 
@@ -80,6 +136,7 @@ class InMemorySystemMetrics implements SystemMetrics {
    */
   private static class Metric {
     private final AtomicLong lastRenderTime = new AtomicLong(0);
+    private final AtomicLong compileTime = new AtomicLong(-1);
     private final AtomicReference<ErrorTuple> lastErrors = new AtomicReference<ErrorTuple>();
 
   }
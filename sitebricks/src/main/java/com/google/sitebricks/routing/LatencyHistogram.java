@@ -0,0 +1,98 @@
+package com.google.sitebricks.routing;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of latencies in microseconds. Values under 16 are counted
+ * exactly, and larger ones in eight buckets per power of two, so that any
+ * percentile read back is within 12.5% of the true value. Recording never
+ * allocates.
+ */
+@ThreadSafe
+final class LatencyHistogram {
+  private static final int EXACT = 16;
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  // Anything longer than 2^36 microseconds (about 19 hours) is counted as that long.
+  private static final int MAX_EXPONENT = 36;
+  private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+  private static final int BUCKETS = EXACT + (MAX_EXPONENT - 3) * SUB_BUCKETS;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+  private final StripedCounter count = new StripedCounter();
+  private final StripedCounter total = new StripedCounter();
+  private final AtomicLong max = new AtomicLong();
+
+  void record(long micros) {
+    long value = Math.max(0, Math.min(micros, MAX_VALUE));
+
+    counts.incrementAndGet(bucketOf(value));
+    count.increment();
+    total.add(value);
+
+    long current;
+    while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+      // Lost a race with another thread recording a larger value, try again.
+    }
+  }
+
+  long count() {
+    return count.sum();
+  }
+
+  long mean() {
+    long count = this.count.sum();
+    return 0 == count ? 0 : total.sum() / count;
+  }
+
+  long max() {
+    return max.get();
+  }
+
+  /**
+   * @param fraction Between 0 and 1, for example 0.99 for the 99th percentile.
+   * @return The (approximate) latency under which the given fraction of recorded
+   *   latencies fall, or 0 if none have been recorded.
+   */
+  long percentile(double fraction) {
+    long[] snapshot = new long[BUCKETS];
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      snapshot[i] = counts.get(i);
+      count += snapshot[i];
+    }
+    if (0 == count)
+      return 0;
+
+    long rank = Math.max(1, (long) Math.ceil(fraction * count));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += snapshot[i];
+      if (seen >= rank)
+        return Math.min(upperBoundOf(i), max.get());
+    }
+    return max.get();
+  }
+
+  static int bucketOf(long value) {
+    if (value < EXACT)
+      return (int) value;
+
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return EXACT + (exponent - 4) * SUB_BUCKETS + subBucket;
+  }
+
+  static long upperBoundOf(int bucket) {
+    if (bucket < EXACT)
+      return bucket;
+
+    int exponent = (bucket - EXACT) / SUB_BUCKETS + 4;
+    int subBucket = (bucket - EXACT) % SUB_BUCKETS;
+    return ((long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+  }
+}
@@ -0,0 +1,130 @@
+package com.google.sitebricks.routing;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import net.jcip.annotations.Immutable;
+
+/**
+ * A read-only map of path variables to their values, backed directly by the
+ * matched request path. Rather than copying each value out into a map, we
+ * record the offsets at which each variable segment begins and ends and only
+ * cut the value out of the path when it is actually asked for (typically once,
+ * by an {@literal @}{@code Named} event handler argument).
+ */
+@Immutable
+class PathMatch extends AbstractMap<String, String> {
+  private final String path;
+
+  // Variable names in template order, null where shadowed by a later variable of the same name.
+  private final String[] names;
+
+  // Pairs of [start, end) offsets into path, one pair per name.
+  private final int[] spans;
+
+  PathMatch(String path, String[] names, int[] spans) {
+    this.path = path;
+    this.names = names;
+    this.spans = spans;
+  }
+
+  @Override
+  public String get(Object key) {
+    int index = indexOf(key);
+    return (index < 0) ? null : valueAt(index);
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return indexOf(key) >= 0;
+  }
+
+  @Override
+  public int size() {
+    int size = 0;
+    for (String name : names) {
+      if (null != name)
+        size++;
+    }
+
+    return size;
+  }
+
+  @Override
+  public Set<Entry<String, String>> entrySet() {
+    return new AbstractSet<Entry<String, String>>() {
+      @Override
+      public Iterator<Entry<String, String>> iterator() {
+        return new Iterator<Entry<String, String>>() {
+          private int index = advance(0);
+
+          private int advance(int from) {
+            while (from < names.length && null == names[from])
+              from++;
+
+            return from;
+          }
+
+          public boolean hasNext() {
+            return index < names.length;
+          }
+
+          public Entry<String, String> next() {
+            if (!hasNext())
+              throw new NoSuchElementException();
+
+            Entry<String, String> entry =
+                new SimpleImmutableEntry<String, String>(names[index], valueAt(index));
+            index = advance(index + 1);
+
+            return entry;
+          }
+
+          public void remove() {
+            throw new UnsupportedOperationException();
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return PathMatch.this.size();
+      }
+    };
+  }
+
+  private int indexOf(Object key) {
+    for (int i = 0; i < names.length; i++) {
+      if (null != names[i] && names[i].equals(key))
+        return i;
+    }
+
+    return -1;
+  }
+
+  private String valueAt(int index) {
+    return path.substring(spans[index * 2], spans[index * 2 + 1]);
+  }
+
+  /**
+   * Returns the names of the given template's variables, in order, with null in
+   * place of any variable that is later redeclared (the last declaration wins).
+   */
+  static String[] namesOf(String[] variables) {
+    String[] names = variables.clone();
+    for (int i = 0; i < names.length; i++) {
+      for (int j = i + 1; j < names.length; j++) {
+        if (names[i].equals(names[j])) {
+          names[i] = null;
+          break;
+        }
+      }
+    }
+
+    return names;
+  }
+}
@@ -8,6 +8,12 @@ import java.util.Map;
 interface PathMatcher {
     boolean matches(String incoming);
 
+    /**
+     * Same as {@link #matches(String)}, but only considers the region of
+     * {@code incoming} between {@code from} (inclusive) and {@code to} (exclusive).
+     */
+    boolean matches(String incoming, int from, int to);
+
     String name();
 
     Map<String, String> findMatches(String incoming);
@@ -10,23 +10,33 @@ import java.util.*;
  */
 @Immutable
 class PathMatcherChain implements PathMatcher {
-    private final List<PathMatcher> path;
+    private final PathMatcher[] path;
+    private final String[] variables;
     private static final String PATH_SEPARATOR = "/";
+    private static final char PATH_SEPARATOR_CHAR = '/';
 
     public PathMatcherChain(String path) {
         this.path = toMatchChain(path);
+
+        List<String> variables = new ArrayList<String>();
+        for (PathMatcher matcher : this.path) {
+            if (null != matcher.name())
+                variables.add(matcher.name());
+        }
+        this.variables = PathMatch.namesOf(variables.toArray(new String[variables.size()]));
     }
 
     //converts a string path to a tree of heterogenous matchers
-    private static List<PathMatcher> toMatchChain(String path) {
+    private static PathMatcher[] toMatchChain(String path) {
         String[] pieces = path.split(PATH_SEPARATOR);
 
-        List<PathMatcher> matchers = new ArrayList<PathMatcher>();
-        for (String piece : pieces) {
-            matchers.add((piece.startsWith(":")) ? new GreedyPathMatcher(piece) : new SimplePathMatcher(piece));
+        PathMatcher[] matchers = new PathMatcher[pieces.length];
+        for (int i = 0; i < pieces.length; i++) {
+            String piece = pieces[i];
+            matchers[i] = (piece.startsWith(":")) ? new GreedyPathMatcher(piece) : new SimplePathMatcher(piece);
         }
 
-        return Collections.unmodifiableList(matchers);
+        return matchers;
     }
 
     public String name() {
@@ -34,41 +44,72 @@ class PathMatcherChain implements PathMatcher {
     }
 
     public boolean matches(String incoming) {
-        final Map<String, String> map = findMatches(incoming);
-        return null != map;
+        return matches(incoming, 0, incoming.length());
     }
 
-    //TODO this whole path matching algorithm is in linear time, could easily be constant time
+    public boolean matches(String incoming, int from, int to) {
+        return scan(incoming, from, to, null);
+    }
+
+    // Walks the incoming path by index, never splitting it (see segmentEnd()).
     public Map<String, String> findMatches(String incoming) {
-        String[] pieces = incoming.split(PATH_SEPARATOR);
-        int i = 0;
+        if (variables.length == 0)
+            return matches(incoming) ? Collections.<String, String>emptyMap() : null;
 
-        //too many matchers, short circuit
-        if (path.size() > pieces.length)
+        int[] spans = new int[variables.length * 2];
+        if (!scan(incoming, 0, incoming.length(), spans))
             return null;
 
-        Map<String, String> values = new HashMap<String, String>();
-        for (PathMatcher pathMatcher : path) {
+        return new PathMatch(incoming, variables, spans);
+    }
 
-            //sanity to prevent fencepost
-            if (i == pieces.length)
-                return pathMatcher.matches("") ? values : null;   //go greedy on index paths
+    // Records the [start, end) offsets of each variable segment into spans, if given.
+    private boolean scan(String incoming, int from, int to, int[] spans) {
+        int end = trimmedEnd(incoming, from, to);
+        int segment = firstSegment(incoming, from, to, end);
+        int captured = 0;
 
-            String piece = pieces[i];
+        for (PathMatcher pathMatcher : path) {
+
+            //too many matchers, short circuit
+            if (segment > end)
+                return false;
 
-            if (!pathMatcher.matches(piece))
-                return null;
+            int segmentEnd = segmentEnd(incoming, segment, end);
+            if (!pathMatcher.matches(incoming, segment, segmentEnd))
+                return false;
 
             //store variable as needed
-            final String name = pathMatcher.name();
-            if (null != name)
-                values.put(name, piece);
+            if (null != spans && null != pathMatcher.name()) {
+                spans[captured * 2] = segment;
+                spans[captured * 2 + 1] = segmentEnd;
+                captured++;
+            }
 
             //next piece
-            i++;
+            segment = segmentEnd + 1;
         }
 
-        return (i == pieces.length) ? values : null;
+        return segment > end;
+    }
+
+    // Trailing separators do not delimit segments (this mirrors String.split()).
+    static int trimmedEnd(String path, int from, int to) {
+        while (to > from && PATH_SEPARATOR_CHAR == path.charAt(to - 1))
+            to--;
+
+        return to;
+    }
+
+    // Returns the start of the first segment, or past the end if a path is made entirely of separators.
+    static int firstSegment(String path, int from, int to, int end) {
+        return (end == from && to > from) ? end + 1 : from;
+    }
+
+    // Returns the end of the segment starting at the given offset.
+    static int segmentEnd(String path, int segment, int end) {
+        int index = path.indexOf(PATH_SEPARATOR_CHAR, segment);
+        return (index < 0 || index > end) ? end : index;
     }
 
     @Immutable
@@ -83,7 +124,10 @@ class PathMatcherChain implements PathMatcher {
             return path.equals(incoming);
         }
 
-        //TODO this whole path matching algorithm is in linear time, could easily be constant time
+        public boolean matches(String incoming, int from, int to) {
+            return path.length() == to - from && incoming.regionMatches(from, path, 0, to - from);
+        }
+
         @NotNull
         public Map<String, String> findMatches(String incoming) {
             return Collections.emptyMap();
@@ -107,6 +151,10 @@ class PathMatcherChain implements PathMatcher {
             return true;
         }
 
+        public boolean matches(String incoming, int from, int to) {
+            return true;
+        }
+
         @NotNull
         public Map<String, String> findMatches(String incoming) {
             return Collections.emptyMap();
@@ -124,6 +172,10 @@ class PathMatcherChain implements PathMatcher {
             return false;
         }
 
+        public boolean matches(String incoming, int from, int to) {
+            return false;
+        }
+
         @NotNull
         public Map<String, String> findMatches(String incoming) {
             return Collections.emptyMap();
@@ -0,0 +1,33 @@
+package com.google.sitebricks.routing;
+
+import com.google.inject.ImplementedBy;
+
+import java.util.Map;
+
+/**
+ * Keeps track of the requests served by each route. Kept apart from
+ * {@link SystemMetrics} so that implementations of that can go on as they are.
+ */
+@ImplementedBy(InMemorySystemMetrics.class)
+public interface RequestMetrics {
+    /**
+     * @param route The URI template of a page or service, as bound.
+     * @param method The HTTP method, in upper case, or "OTHER" for any method the
+     * page does not handle.
+     * @return Returns the metrics of requests to the given route and method,
+     * creating them if this is the first such request. Never null.
+     */
+    RouteMetrics route(String route, String method);
+
+    /**
+     * @return Returns a live, read-only view of the metrics of every route
+     * seen so far, keyed by method and route (for example "GET /people/:id").
+     * Values are plain maps of numbers, so this can be published as is, for
+     * instance by registering it with the sitebricks-stat StatRegistrar:
+     * <pre>
+     *   statRegistrar.registerSingleStat("routes", "Sitebricks routes",
+     *       metrics.routeStats());
+     * </pre>
+     */
+    Map<String, Map<String, Object>> routeStats();
+}
@@ -0,0 +1,128 @@
+package com.google.sitebricks.routing;
+
+import com.google.common.collect.Maps;
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts requests to a single route (URI template) and HTTP method, and keeps
+ * a latency histogram for each phase of handling them. Recording is lock-free
+ * and does not allocate, so this is always on, in production too.
+ *
+ * @see RequestMetrics#route(String, String)
+ */
+@ThreadSafe
+public final class RouteMetrics {
+  /**
+   * The request attribute under which the metrics of the route being served are
+   * kept, for the parts of the pipeline that run after dispatch.
+   */
+  public static final String REQUEST_ATTRIBUTE = RouteMetrics.class.getName();
+
+  /**
+   * The phases of serving a request, each of which is timed separately.
+   */
+  public static enum Phase {
+    /** Binding request parameters to the page or service. */
+    BIND,
+    /** Running the event handler for the request's HTTP method. */
+    HANDLE,
+    /** Rendering the page's template. */
+    RENDER,
+    /** Writing the response out to the client. */
+    WRITE
+  }
+
+  private final LatencyHistogram[] phases = new LatencyHistogram[Phase.values().length];
+  private final StripedCounter requests = new StripedCounter();
+  private final StripedCounter errors = new StripedCounter();
+  private final StripedCounter redirects = new StripedCounter();
+
+  RouteMetrics() {
+    for (int i = 0; i < phases.length; i++) {
+      phases[i] = new LatencyHistogram();
+    }
+  }
+
+  public void requested() {
+    requests.increment();
+  }
+
+  public void failed() {
+    errors.increment();
+  }
+
+  public void redirected() {
+    redirects.increment();
+  }
+
+  /**
+   * Records how long the given phase of a request took, in nanoseconds.
+   */
+  public void record(Phase phase, long nanos) {
+    phases[phase.ordinal()].record(TimeUnit.NANOSECONDS.toMicros(nanos));
+  }
+
+  public long requests() {
+    return requests.sum();
+  }
+
+  public long errors() {
+    return errors.sum();
+  }
+
+  public long redirects() {
+    return redirects.sum();
+  }
+
+  /**
+   * @return The number of times the given phase was recorded.
+   */
+  public long count(Phase phase) {
+    return phases[phase.ordinal()].count();
+  }
+
+  /**
+   * @param fraction Between 0 and 1, for example 0.99 for the 99th percentile.
+   * @return The approximate time (in microseconds) within which the given fraction
+   *   of requests completed the given phase, or 0 if none have.
+   */
+  public long percentile(Phase phase, double fraction) {
+    return phases[phase.ordinal()].percentile(fraction);
+  }
+
+  /**
+   * @return A snapshot of these metrics as plain maps and numbers, in a form
+   *   that any stats publisher can print.
+   */
+  public Map<String, Object> snapshot() {
+    Map<String, Object> snapshot = Maps.newLinkedHashMap();
+    snapshot.put("requests", requests());
+    snapshot.put("errors", errors());
+    snapshot.put("redirects", redirects());
+
+    for (Phase phase : Phase.values()) {
+      LatencyHistogram histogram = phases[phase.ordinal()];
+      if (0 == histogram.count())
+        continue;
+
+      Map<String, Object> latencies = Maps.newLinkedHashMap();
+      latencies.put("count", histogram.count());
+      latencies.put("mean_us", histogram.mean());
+      latencies.put("p50_us", histogram.percentile(0.5));
+      latencies.put("p90_us", histogram.percentile(0.9));
+      latencies.put("p99_us", histogram.percentile(0.99));
+      latencies.put("max_us", histogram.max());
+      snapshot.put(phase.name().toLowerCase(Locale.ENGLISH), latencies);
+    }
+    return snapshot;
+  }
+
+  @Override
+  public String toString() {
+    return snapshot().toString();
+  }
+}
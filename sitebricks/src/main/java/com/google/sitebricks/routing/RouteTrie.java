@@ -0,0 +1,262 @@
+package com.google.sitebricks.routing;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.collect.Lists;
+import com.google.sitebricks.routing.DefaultPageBook.PageTuple;
+
+import static com.google.sitebricks.routing.PathMatcherChain.firstSegment;
+import static com.google.sitebricks.routing.PathMatcherChain.segmentEnd;
+import static com.google.sitebricks.routing.PathMatcherChain.trimmedEnd;
+
+/**
+ * A segment trie over the URI templates of all registered pages. Resolves an
+ * incoming path in a single left-to-right pass over its segments (rather than
+ * testing every registered template in turn), capturing {@code :variable}
+ * segments as it goes. Neither the incoming path nor its segments are ever
+ * copied; literal segments are looked up by their offsets into the path.
+ * <p>
+ * Literal segments are always preferred over variable segments; we only fall
+ * back to a variable branch when the literal branch dead-ends. So of the
+ * templates that match a path, the one with a literal where the others first
+ * differ wins, and only pages registered against the very same template are
+ * chosen between by registration order (the first wins). Note that this is not
+ * how pages were chosen before, which was strictly by registration order: that
+ * order is reflection order for the subpaths of a page, and so varies from one
+ * run to the next. Segments are delimited exactly as {@link PathMatcherChain}
+ * delimits them, i.e. trailing slashes are ignored but empty inner segments are
+ * not.
+ * <p>
+ * Writes must be externally synchronized. Reads are safe once registration
+ * (which happens at startup) is complete.
+ */
+class RouteTrie {
+  private final Node root = new Node();
+
+  // The most variables captured by any registered template.
+  private int maxVariables;
+
+  // How many pages have been registered, to keep track of their order.
+  private int registered;
+
+  void add(PageTuple page) {
+    String uri = page.getUri();
+    int end = trimmedEnd(uri, 0, uri.length());
+
+    int order = registered++;
+    Node node = root;
+    List<String> variables = Lists.newArrayList();
+    for (int from = firstSegment(uri, 0, uri.length(), end); from <= end; ) {
+      int to = segmentEnd(uri, from, end);
+      String segment = uri.substring(from, to);
+
+      if (isVariable(segment)) {
+        if (null == node.variable)
+          node.variable = new Node();
+
+        node = node.variable;
+        variables.add(segment.substring(1));
+      } else {
+        Node literal = node.literals.get(segment, 0, segment.length());
+        if (null == literal) {
+          literal = new Node();
+          node.literals.put(segment, literal);
+        }
+
+        node = literal;
+      }
+
+      from = to + 1;
+    }
+
+    // The first page registered against a template wins, just as it would
+    // have in a linear scan over registration order.
+    if (null == node.route)
+      node.route = new Route(page, order,
+          PathMatch.namesOf(variables.toArray(new String[variables.size()])));
+
+    maxVariables = Math.max(maxVariables, variables.size());
+  }
+
+  /**
+   * Returns the page whose template best matches the given uri (together with
+   * its captured path variables) or null if there is no such page.
+   */
+  Match resolve(String uri) {
+    int end = trimmedEnd(uri, 0, uri.length());
+    int[] spans = (maxVariables == 0) ? null : new int[maxVariables * 2];
+
+    Route route = find(root, uri, firstSegment(uri, 0, uri.length(), end), end, spans, 0);
+    if (null == route)
+      return null;
+
+    if (route.variables.length == 0)
+      return new Match(route.page, Collections.<String, String>emptyMap());
+
+    return new Match(route.page, new PathMatch(uri, route.variables, spans));
+  }
+
+  private static Route find(Node node, String uri, int from, int end, int[] spans,
+                            int captured) {
+    // No more segments, we're done.
+    if (from > end)
+      return node.route;
+
+    int to = segmentEnd(uri, from, end);
+
+    Node literal = node.literals.get(uri, from, to);
+    if (null != literal) {
+      Route route = find(literal, uri, to + 1, end, spans, captured);
+      if (null != route)
+        return route;
+    }
+
+    // Backtrack into the variable branch if the literal one didn't pan out.
+    if (null != node.variable) {
+      spans[captured * 2] = from;
+      spans[captured * 2 + 1] = to;
+      return find(node.variable, uri, to + 1, end, spans, captured + 1);
+    }
+
+    return null;
+  }
+
+  /**
+   * Returns every page that can be resolved, in registration order.
+   */
+  List<PageTuple> pages() {
+    List<Route> routes = Lists.newArrayList();
+    collect(root, routes);
+    Collections.sort(routes, REGISTRATION_ORDER);
+
+    List<PageTuple> pages = Lists.newArrayListWithCapacity(routes.size());
+    for (Route route : routes) {
+      pages.add(route.page);
+    }
+    return pages;
+  }
+
+  private static void collect(Node node, List<Route> routes) {
+    if (null != node.route)
+      routes.add(node.route);
+
+    for (Node literal : node.literals.nodes) {
+      if (null != literal)
+        collect(literal, routes);
+    }
+    if (null != node.variable)
+      collect(node.variable, routes);
+  }
+
+  private static final Comparator<Route> REGISTRATION_ORDER = new Comparator<Route>() {
+    @Override
+    public int compare(Route a, Route b) {
+      return a.order < b.order ? -1 : (a.order == b.order ? 0 : 1);
+    }
+  };
+
+  private static boolean isVariable(String segment) {
+    return segment.length() > 0 && ':' == segment.charAt(0);
+  }
+
+  private static class Node {
+    private final Literals literals = new Literals();
+    private Node variable;
+    private Route route;
+  }
+
+  /**
+   * An open-addressed hash table of literal segments that can be probed with a
+   * region of a string, so that we need not cut each segment out of the path.
+   */
+  private static class Literals {
+    private String[] keys = new String[4];
+    private Node[] nodes = new Node[4];
+    private int size;
+
+    Node get(String path, int from, int to) {
+      int mask = keys.length - 1;
+      for (int i = hash(path, from, to) & mask; ; i = (i + 1) & mask) {
+        String key = keys[i];
+        if (null == key)
+          return null;
+
+        if (key.length() == to - from && key.regionMatches(0, path, from, to - from))
+          return nodes[i];
+      }
+    }
+
+    void put(String key, Node node) {
+      // Keep the load factor at or below one half.
+      if ((size + 1) * 2 > keys.length)
+        resize();
+
+      insert(keys, nodes, key, node);
+      size++;
+    }
+
+    private void resize() {
+      String[] keys = new String[this.keys.length * 2];
+      Node[] nodes = new Node[this.nodes.length * 2];
+      for (int i = 0; i < this.keys.length; i++) {
+        if (null != this.keys[i])
+          insert(keys, nodes, this.keys[i], this.nodes[i]);
+      }
+
+      this.keys = keys;
+      this.nodes = nodes;
+    }
+
+    private static void insert(String[] keys, Node[] nodes, String key, Node node) {
+      int mask = keys.length - 1;
+      int i = hash(key, 0, key.length()) & mask;
+      while (null != keys[i])
+        i = (i + 1) & mask;
+
+      keys[i] = key;
+      nodes[i] = node;
+    }
+
+    private static int hash(String path, int from, int to) {
+      int hash = 0;
+      for (int i = from; i < to; i++)
+        hash = 31 * hash + path.charAt(i);
+
+      // Spread the high bits down, as HashMap does.
+      return hash ^ (hash >>> 16);
+    }
+  }
+
+  private static class Route {
+    private final PageTuple page;
+    private final int order;
+    private final String[] variables;
+
+    private Route(PageTuple page, int order, String[] variables) {
+      this.page = page;
+      this.order = order;
+      this.variables = variables;
+    }
+  }
+
+  static class Match {
+    private final PageTuple page;
+    private final Map<String, String> variables;
+
+    Match(PageTuple page, Map<String, String> variables) {
+      this.page = page;
+      this.variables = variables;
+    }
+
+    PageTuple page() {
+      return page;
+    }
+
+    Map<String, String> variables() {
+      return variables;
+    }
+  }
+}
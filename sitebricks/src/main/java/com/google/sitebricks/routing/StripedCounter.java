@@ -0,0 +1,38 @@
+package com.google.sitebricks.routing;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter that many threads can add to without all contending on the same
+ * value: each thread adds to one of several cells (each on its own cache line),
+ * and reading the counter sums them.
+ */
+@ThreadSafe
+final class StripedCounter {
+  private static final int STRIPES =
+      Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1);
+
+  // Cells are spaced a cache line apart so that neighbouring stripes don't share one.
+  private static final int SPACING = 8;
+
+  private final AtomicLongArray cells = new AtomicLongArray(STRIPES * SPACING);
+
+  void increment() {
+    add(1);
+  }
+
+  void add(long value) {
+    int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+    cells.addAndGet(stripe * SPACING, value);
+  }
+
+  long sum() {
+    long sum = 0;
+    for (int i = 0; i < STRIPES; i++) {
+      sum += cells.get(i * SPACING);
+    }
+    return sum;
+  }
+}
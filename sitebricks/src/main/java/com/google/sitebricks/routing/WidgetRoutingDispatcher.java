@@ -2,36 +2,53 @@ package com.google.sitebricks.routing;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
 import javax.validation.ValidationException;
 
-import net.jcip.annotations.Immutable;
+import net.jcip.annotations.ThreadSafe;
 
+import com.google.common.collect.MapMaker;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.inject.Inject;
 import com.google.inject.Provider;
 import com.google.inject.Singleton;
+import com.google.inject.Stage;
+import com.google.sitebricks.Renderable;
 import com.google.sitebricks.Respond;
+import com.google.sitebricks.StreamingRespond;
 import com.google.sitebricks.StringBuilderRespond;
 import com.google.sitebricks.binding.FlashCache;
 import com.google.sitebricks.binding.RequestBinder;
 import com.google.sitebricks.client.transport.Json;
 import com.google.sitebricks.conversion.ValidationConverter;
+import com.google.sitebricks.headless.FutureReply;
 import com.google.sitebricks.headless.HeadlessRenderer;
 import com.google.sitebricks.headless.Reply;
 import com.google.sitebricks.headless.Request;
+import com.google.sitebricks.headless.Timeout;
+import com.google.sitebricks.rendering.control.HeadWrites;
 import com.google.sitebricks.rendering.resource.ResourcesService;
 import com.google.sitebricks.routing.PageBook.Page;
 
 /**
  * @author Dhanji R. Prasanna (dhanji@gmail.com)
  */
-@Immutable
+@ThreadSafe
 @Singleton
 class WidgetRoutingDispatcher implements RoutingDispatcher {
+  private static final Logger log = Logger.getLogger(WidgetRoutingDispatcher.class.getName());
+
+  static final String OTHER_METHOD = "OTHER";
+
   private final PageBook book;
   private final RequestBinder binder;
   private final ResourcesService resourcesService;
@@ -40,10 +57,24 @@ class WidgetRoutingDispatcher implements RoutingDispatcher {
 
   @Inject
   Provider<HttpServletRequest> httpServletRequestProvider;
+
+  @Inject
+  private Provider<HttpServletResponse> httpServletResponseProvider;
+
+  @Inject
+  private Stage stage;
+
+  // Whether each page's template may be streamed in full, i.e. nothing in it can
+  // write to its head once the head is closed. Worked out when it is first rendered.
+  private final ConcurrentMap<Renderable, Boolean> streamable =
+      new MapMaker().weakKeys().makeMap();
   
   @Inject
   private ValidationConverter validationConvertor;
 
+  @Inject
+  private RequestMetrics metrics;
+
   @Inject
   public WidgetRoutingDispatcher(PageBook book, RequestBinder binder,
                                  ResourcesService resourcesService,
@@ -83,18 +114,35 @@ class WidgetRoutingDispatcher implements RoutingDispatcher {
     if (null == page)
       return null;
 
-    final Object instance = page.instantiate();
-    if (page.isHeadless()) {
-      return bindAndReply(request, page, instance);
-    } else {
-       //fire events and render responder
-      return bindAndRespond(request, page, instance);
+    // Record against the route as bound, so that all URIs it matches count together.
+    RouteMetrics route = metrics.route(page.getUri(), metricsMethod(page, request.method()));
+    route.requested();
+    httpServletRequestProvider.get().setAttribute(RouteMetrics.REQUEST_ATTRIBUTE, route);
+
+    try {
+      final Object instance = page.instantiate();
+      if (page.isHeadless()) {
+        return bindAndReply(request, page, instance, route);
+      } else {
+         //fire events and render responder
+        return bindAndRespond(request, page, instance, route);
+      }
+    } catch (RuntimeException e) {
+      route.failed();
+      throw e;
+    } catch (IOException e) {
+      route.failed();
+      throw e;
     }
   }
 
-  private Object bindAndReply(Request request, Page page, Object instance) throws IOException {
+  private Object bindAndReply(Request request, Page page, Object instance, RouteMetrics route)
+      throws IOException {
     // bind request (sets request params, etc).
+    long start = System.nanoTime();
     binder.bind(request, instance);
+    long bound = System.nanoTime();
+    route.record(RouteMetrics.Phase.BIND, bound - start);
     
     Object response = null;
     try {
@@ -106,14 +154,26 @@ class WidgetRoutingDispatcher implements RoutingDispatcher {
         Set<? extends ConstraintViolation<?>> scv = (Set<? extends ConstraintViolation<?>>) cve.getConstraintViolations();
         List<String> errors = validationConvertor.to(scv);
         response =  Reply.with(errors).as(Json.class).badRequest();
+    } finally {
+      route.record(RouteMetrics.Phase.HANDLE, System.nanoTime() - bound);
+    }
+
+    // Asynchronous handlers reply later, within this service's timeout (if any),
+    // unless their method has its own (see DefaultPageBook).
+    if (response instanceof ListenableFuture) {
+      Timeout timeout = page.pageClass().getAnnotation(Timeout.class);
+      return FutureReply.of((ListenableFuture<?>) response, null == timeout ? 0 : timeout.value());
     }
     return response;
   }
 
-  private Object bindAndRespond(Request request, PageBook.Page page, Object instance)
-      throws IOException {
+  private Object bindAndRespond(Request request, PageBook.Page page, Object instance,
+                                RouteMetrics route) throws IOException {
     //bind request
+    long start = System.nanoTime();
     binder.bind(request, instance);
+    long bound = System.nanoTime();
+    route.record(RouteMetrics.Phase.BIND, bound - start);
 
     // fire get/post events
     Object redirect = null;
@@ -126,12 +186,16 @@ class WidgetRoutingDispatcher implements RoutingDispatcher {
         ConstraintViolationException cve = (ConstraintViolationException) ve.getCause();
         Set<? extends ConstraintViolation<?>> scv = (Set<? extends ConstraintViolation<?>>) cve.getConstraintViolations();
         errors = validationConvertor.to(scv);
+    } finally {
+      route.record(RouteMetrics.Phase.HANDLE, System.nanoTime() - bound);
     }
         
     //render to respond
-    Respond respond = new StringBuilderRespond(instance);
+    Respond respond = newRespond(page, instance);
     respond.setErrors(errors);
     if (null != redirect) {
+      if (!(redirect instanceof Reply<?>))
+        route.redirected();
 
       if (redirect instanceof String)
         respond.redirect((String) redirect);
@@ -155,12 +219,36 @@ class WidgetRoutingDispatcher implements RoutingDispatcher {
         respond.redirect(contextualize(request, targetPage.getUri()));
       }
     } else {
-      page.widget().render(instance, respond);
+      long rendering = System.nanoTime();
+      try {
+        page.widget().render(instance, respond);
+      } catch (RuntimeException e) {
+        if (respond instanceof StreamingRespond && ((StreamingRespond) respond).abort())
+          log.log(Level.SEVERE, "Rendering " + page.getUri() + " failed after part of it was"
+              + " sent, aborting the response", e);
+        throw e;
+      }
+      route.record(RouteMetrics.Phase.RENDER, System.nanoTime() - rendering);
     }
     
     return respond;
   }
 
+  // Pages are streamed straight to the client in production. We don't stream in
+  // development mode, so that errors during rendering can still be reported in full.
+  private Respond newRespond(PageBook.Page page, Object instance) {
+    if (Stage.DEVELOPMENT == stage)
+      return new StringBuilderRespond(instance);
+
+    Renderable widget = page.widget();
+    Boolean streamBody = streamable.get(widget);
+    if (null == streamBody) {
+      streamBody = !HeadWrites.afterHead(page);
+      streamable.put(widget, streamBody);
+    }
+    return new StreamingRespond(instance, httpServletResponseProvider.get(), streamBody);
+  }
+
   // We're sure the request parameter map is a Map<String, String[]>
   @SuppressWarnings("unchecked")
   private Object fireEvent(Request request, PageBook.Page page, Object instance)
@@ -171,6 +259,15 @@ class WidgetRoutingDispatcher implements RoutingDispatcher {
     return page.doMethod(method.toLowerCase(), instance, pathInfo, request);
   }
 
+  // The method is up to the client, so only those the page handles are recorded
+  // separately, lest arbitrary ones grow the metrics without bound.
+  private static String metricsMethod(PageBook.Page page, String method) {
+    String lowerCase = method.toLowerCase(Locale.ENGLISH);
+    if (page.getMethod().contains(lowerCase) || (!page.isHeadless() && "get".equals(lowerCase)))
+      return method.toUpperCase(Locale.ENGLISH);
+    return OTHER_METHOD;
+  }
+
   private static String contextualize(Request request, String targetUri) {
     return request.context() + targetUri;
   }
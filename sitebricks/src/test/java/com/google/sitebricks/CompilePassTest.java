@@ -0,0 +1,148 @@
+package com.google.sitebricks;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import com.google.sitebricks.compiler.CompileError;
+import com.google.sitebricks.compiler.Compilers;
+import com.google.sitebricks.compiler.TemplateCompileException;
+import com.google.sitebricks.rendering.Templates;
+import com.google.sitebricks.routing.DefaultPageBook;
+import com.google.sitebricks.routing.PageBook;
+import com.google.sitebricks.routing.CompileMetrics;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit test for the startup compile pass, in both its blocking and background modes.
+ */
+public class CompilePassTest {
+
+  @Test
+  public final void compilesAllPagesAndCollectsFailures() {
+    Injector injector = Guice.createInjector(new SitebricksModule());
+    CompileMetrics metrics = injector.getInstance(CompileMetrics.class);
+    DefaultPageBook pageBook = new DefaultPageBook(injector);
+    PageBook.Page first = pageBook.at("/first", First.class);
+    PageBook.Page second = pageBook.at("/second", Second.class);
+
+    FakeCompilers compilers = new FakeCompilers(Second.class, null);
+    CompilePass pass = new CompilePass(compilers, null, metrics, 2);
+    pass.compile(ImmutableSet.of(first, second), Collections.<Templates.Descriptor>emptySet());
+
+    assert "First".equals(render(first));
+    assert null == second.widget();
+    assert 1 == pass.failures().size() : pass.failures();
+    assert pass.failures().get(0).getMessage().contains(Second.class.getName());
+
+    assert metrics.pageCompileTime(First.class) >= 0;
+    assert -1 == metrics.pageCompileTime(Second.class);
+    assert compilers.analyzed.containsKey(First.class);
+  }
+
+  @Test
+  public final void requestedPagesCompileOnTheRequestingThread() throws InterruptedException {
+    Injector injector = Guice.createInjector(new SitebricksModule());
+    DefaultPageBook pageBook = new DefaultPageBook(injector);
+    PageBook.Page first = pageBook.at("/first", First.class);
+    PageBook.Page second = pageBook.at("/second", Second.class);
+
+    // Hold up the only worker, so pages can only be compiled by asking for them.
+    CountDownLatch release = new CountDownLatch(1);
+    FakeCompilers compilers = new FakeCompilers(null, release);
+    CompilePass pass = new CompilePass(compilers, null,
+        injector.getInstance(CompileMetrics.class), 1);
+    pass.compileInBackground(ImmutableSet.of(first, second),
+        Collections.<Templates.Descriptor>emptySet());
+
+    assert null != first.widget();
+    assert null != second.widget();
+    assert compilers.started.await(10, TimeUnit.SECONDS);
+
+    PageBook.Page waiting = compilers.compiledBy.containsKey(First.class) ? second : first;
+    assert waiting.pageClass().getSimpleName().equals(render(waiting));
+    assert Thread.currentThread() == compilers.compiledBy.get(waiting.pageClass());
+
+    release.countDown();
+    PageBook.Page other = (waiting == first) ? second : first;
+    assert other.pageClass().getSimpleName().equals(render(other));
+    assert Thread.currentThread() != compilers.compiledBy.get(other.pageClass());
+    assert pass.failures().isEmpty();
+  }
+
+  private static String render(PageBook.Page page) {
+    StringBuilderRespond respond = new StringBuilderRespond(new Object());
+    page.widget().render(null, respond);
+    return respond.toString();
+  }
+
+  public static class First {
+  }
+
+  public static class Second {
+  }
+
+  private static class FakeCompilers implements Compilers {
+    private final Class<?> failing;
+    private final CountDownLatch release;
+    private final Thread requestThread = Thread.currentThread();
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final ConcurrentMap<Class<?>, Thread> compiledBy =
+        new ConcurrentHashMap<Class<?>, Thread>();
+    private final ConcurrentMap<Class<?>, Boolean> analyzed =
+        new ConcurrentHashMap<Class<?>, Boolean>();
+
+    private FakeCompilers(Class<?> failing, CountDownLatch release) {
+      this.failing = failing;
+      this.release = release;
+    }
+
+    @Override
+    public void analyze(Class<?> page) {
+      analyzed.put(page, true);
+    }
+
+    @Override
+    public void compilePage(PageBook.Page page) {
+      compiledBy.put(page.pageClass(), Thread.currentThread());
+
+      if (null != release && Thread.currentThread() != requestThread) {
+        started.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          throw new AssertionError(e);
+        }
+      }
+
+      if (page.pageClass().equals(failing)) {
+        throw new TemplateCompileException(failing, "<html/>",
+            Collections.<CompileError>emptyList(), Collections.<CompileError>emptyList());
+      }
+
+      page.apply(compile(page.pageClass()));
+    }
+
+    @Override
+    public Renderable compile(final Class<?> templateClass) {
+      return new Renderable() {
+        @Override
+        public void render(Object bound, Respond respond) {
+          respond.write(templateClass.getSimpleName());
+        }
+
+        @Override
+        public <T extends Renderable> Set<T> collect(Class<T> clazz) {
+          return Collections.emptySet();
+        }
+      };
+    }
+  }
+}
@@ -19,6 +19,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
 
+import static org.easymock.EasyMock.createMock;
 import static org.easymock.EasyMock.createNiceMock;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
@@ -258,6 +259,61 @@ public class LocalizationTest {
   }
 
 
+  @Test
+  public final void regionalLocalesFallBackToTheirLanguage() {
+    final Map<String, String> englishBundle = Maps.newHashMap();
+    englishBundle.put(LocalizationTest.HELLO, "hello ${name}");
+
+    final Map<String, String> japaneseBundle = Maps.newHashMap();
+    japaneseBundle.put(LocalizationTest.HELLO, "konichiwa ${name}");
+
+    HttpServletRequest request = createNiceMock(HttpServletRequest.class);
+    expect(request.getLocale()).andReturn(Locale.JAPAN);
+    replay(request);
+
+    assert "konichiwa Dude".equals(localize(request, englishBundle, japaneseBundle).hello("Dude"));
+    verify(request);
+  }
+
+  @Test
+  public final void localeIsResolvedOncePerRequest() {
+    final Map<String, String> englishBundle = Maps.newHashMap();
+    englishBundle.put(LocalizationTest.HELLO, "hello ${name}");
+
+    final Map<String, String> japaneseBundle = Maps.newHashMap();
+    japaneseBundle.put(LocalizationTest.HELLO, "konichiwa ${name.toUpperCase()}, ${name}");
+
+    HttpServletRequest request = createMock(HttpServletRequest.class);
+    expect(request.getAttribute(Localizer.LOCALE_ATTRIBUTE)).andReturn(null);
+    expect(request.getLocale()).andReturn(Locale.JAPANESE);
+    request.setAttribute(Localizer.LOCALE_ATTRIBUTE, Locale.JAPANESE);
+    expect(request.getAttribute(Localizer.LOCALE_ATTRIBUTE)).andReturn(Locale.JAPANESE).times(2);
+    replay(request);
+
+    LocalizedTemplate localized = localize(request, englishBundle, japaneseBundle);
+    assert "konichiwa DUDE, Dude".equals(localized.hello("Dude"));
+    assert "konichiwa DUDETTE, Dudette".equals(localized.hello("Dudette"));
+    assert "konichiwa DUDE, Dude".equals(localized.hello("Dude"));
+    verify(request);
+  }
+
+  private static LocalizedTemplate localize(final HttpServletRequest request,
+                                            final Map<String, String> englishBundle,
+                                            final Map<String, String> japaneseBundle) {
+    return Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        Set<Localizer.Localization> locs = Sets.newHashSet();
+        locs.add(new Localizer.Localization(LocalizedTemplate.class, Locale.ENGLISH, englishBundle));
+        locs.add(new Localizer.Localization(LocalizedTemplate.class, Locale.JAPANESE, japaneseBundle));
+
+        Localizer.localizeAll(binder(), locs);
+        bind(HttpServletRequest.class).toInstance(request);
+      }
+    }).getInstance(LocalizedTemplate.class);
+  }
+
+
   public static interface Localized {
     @Message(message = "hello world!")
     String hello();
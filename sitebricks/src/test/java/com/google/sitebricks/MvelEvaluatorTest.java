@@ -0,0 +1,88 @@
+package com.google.sitebricks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for the MVEL-backed evaluator and its caches.
+ */
+public class MvelEvaluatorTest {
+
+  @Test
+  public final void compilesEachExpressionOnce() {
+    MvelEvaluator evaluator = new MvelEvaluator();
+    Map<String, Object> bean = new HashMap<String, Object>();
+    bean.put("name", "Dhanji");
+
+    for (int i = 0; i < 3; i++) {
+      assert "Dhanji".equals(evaluator.evaluate("${name}", bean));
+    }
+
+    assert 1 == evaluator.expressionStats().missCount() : evaluator.expressionStats();
+    assert 2 == evaluator.expressionStats().hitCount() : evaluator.expressionStats();
+  }
+
+  @Test
+  public final void expressionsMayStillAssignVariables() {
+    MvelEvaluator evaluator = new MvelEvaluator();
+    Map<String, Object> bean = new HashMap<String, Object>();
+
+    for (int i = 0; i < 2; i++) {
+      assert Integer.valueOf(3).equals(evaluator.evaluate("x = 1; x + 2", bean));
+    }
+  }
+
+  @Test
+  public final void assigningExpressionsRunOnlyOnce() {
+    MvelEvaluator evaluator = new MvelEvaluator();
+    Map<String, Object> bean = new HashMap<String, Object>();
+    List<String> names = new ArrayList<String>();
+    bean.put("names", names);
+
+    evaluator.evaluate("names.add('Dhanji'); x = names.size(); x", bean);
+
+    assert 1 == names.size() : names;
+  }
+
+  @Test
+  public final void readsAndWritesPropertiesThroughCompiledAccessors() {
+    MvelEvaluator evaluator = new MvelEvaluator();
+    Person person = new Person();
+
+    evaluator.write("name", person, "Dhanji");
+    evaluator.write("age", person, "27");
+    evaluator.write("name", person, "Jason");
+
+    assert "Jason".equals(evaluator.read("name", person));
+    assert Integer.valueOf(27).equals(evaluator.read("age", person));
+    assert 27 == person.getAge();
+
+    assert 4 == evaluator.propertyStats().missCount() : evaluator.propertyStats();
+    assert 1 == evaluator.propertyStats().hitCount() : evaluator.propertyStats();
+  }
+
+  public static class Person {
+    private String name;
+    private int age;
+
+    public String getName() {
+      return name;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+
+    public int getAge() {
+      return age;
+    }
+
+    public void setAge(int age) {
+      this.age = age;
+    }
+  }
+}
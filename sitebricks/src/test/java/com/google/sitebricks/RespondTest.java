@@ -1,7 +1,17 @@
 package com.google.sitebricks;
 
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import javax.servlet.http.HttpServletResponse;
+
 import org.testng.annotations.Test;
 
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+
 /**
  * @author Dhanji R. Prasanna (dhanji@gmail.com)
  */
@@ -27,4 +37,126 @@ public class RespondTest {
 
         assert ("" + null).equals(respond.toString());
     }
+
+    @Test
+    public final void respondWritesHeadAtPlaceholder() throws IOException {
+        final StringBuilderRespond respond = new StringBuilderRespond(new Object());
+        respond.write("<html><head>");
+        respond.withHtml().headerPlaceholder();
+        respond.write("</head><body>");
+        respond.writeToHead("<title>hi</title>");
+        respond.require("<script></script>");
+        respond.write("</body></html>");
+
+        final String expected = "<html><head><title>hi</title><script></script></head><body></body></html>";
+        assert expected.equals(respond.toString()) : respond.toString();
+
+        final StringWriter writer = new StringWriter();
+        new StringBuilderRespond(new Object()) {{
+            write("<html><head>");
+            withHtml().headerPlaceholder();
+            write("</head>");
+            require("<script></script>");
+        }}.writeTo(writer);
+
+        assert "<html><head><script></script></head>".equals(writer.toString()) : writer;
+    }
+
+    @Test
+    public final void streamingRespondFlushesUpToHeadUnlessHeadIsFinal() throws IOException {
+        final String body = bigString('b');
+
+        // Not yet known to be streamable, hold back everything after the head.
+        StringWriter out = new StringWriter();
+        StreamingRespond respond = new StreamingRespond(new Object(), responseWriting(out), false);
+        respond.write("<head>");
+        respond.withHtml().headerPlaceholder();
+        respond.write("</head>");
+        respond.write(body);
+        respond.require("<script></script>");
+
+        assert "<head>".equals(out.toString()) : out;
+        assert respond.wroteToClosedHead();
+
+        respond.writeTo(out);
+        assert ("<head><script></script></head>" + body).equals(out.toString());
+
+        // Streamable, so the head and body go out as they are rendered.
+        out = new StringWriter();
+        respond = new StreamingRespond(new Object(), responseWriting(out), true);
+        respond.write("<head>");
+        respond.require("<script></script>");
+        respond.withHtml().headerPlaceholder();
+        respond.write("</head>");
+        respond.write(body);
+        respond.write('c');
+        respond.write('d');
+        respond.chew();
+
+        // ...all but the last character, which may yet be chewed.
+        final String flushed = "<head><script></script></head>" + body.substring(1);
+        assert flushed.equals(out.toString()) : out;
+        assert !respond.wroteToClosedHead();
+
+        respond.writeTo(out);
+        assert ("<head><script></script></head>" + body + "c").equals(out.toString());
+    }
+
+    @Test
+    public final void streamingRespondIgnoresEmptyHeadWrites() throws IOException {
+        StringWriter out = new StringWriter();
+        StreamingRespond respond = new StreamingRespond(new Object(), responseWriting(out), true);
+        respond.write("<head>");
+        respond.withHtml().headerPlaceholder();
+        respond.write("</head>");
+        respond.write(bigString('b'));
+        respond.writeToHead("");
+        respond.require("");
+
+        assert !respond.wroteToClosedHead();
+    }
+
+    @Test
+    public final void streamingRespondAbortDiscardsWhatIsBuffered() throws IOException {
+        StringWriter out = new StringWriter();
+        StreamingRespond respond = new StreamingRespond(new Object(), responseWriting(out), false);
+        respond.write("<head>");
+        assert !respond.abort();
+
+        respond = new StreamingRespond(new Object(), responseWriting(out), false);
+        respond.write("<head>");
+        respond.withHtml().headerPlaceholder();
+        respond.write("</head>");
+        respond.write(bigString('b'));
+        assert respond.isCommitted();
+
+        assert respond.abort();
+        respond.writeTo(out);
+        assert "<head>".equals(out.toString()) : out;
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public final void streamingRespondCannotRedirectOnceCommitted() throws IOException {
+        final StreamingRespond respond =
+            new StreamingRespond(new Object(), responseWriting(new StringWriter()), true);
+        respond.write(bigString('a'));
+        respond.write('a');
+
+        respond.redirect("/elsewhere");
+    }
+
+    private static String bigString(char c) {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < StreamingRespond.CHUNK_SIZE; i++) {
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    private static HttpServletResponse responseWriting(StringWriter out) throws IOException {
+        final HttpServletResponse response = createNiceMock(HttpServletResponse.class);
+        expect(response.getWriter()).andReturn(new PrintWriter(out, true)).anyTimes();
+        replay(response);
+        return response;
+    }
 }
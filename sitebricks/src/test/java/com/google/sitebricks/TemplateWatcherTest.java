@@ -0,0 +1,133 @@
+package com.google.sitebricks;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.google.common.collect.Sets;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * Unit test for the development stage's template change tracking.
+ */
+public class TemplateWatcherTest {
+  private TemplateWatcher watcher;
+
+  @BeforeMethod
+  public final void pre() {
+    watcher = new TemplateWatcher();
+  }
+
+  @AfterMethod
+  public final void post() {
+    watcher.close();
+  }
+
+  @Test
+  public final void changedTemplatesInvalidateEverythingCompiledFromThem() throws Exception {
+    File directory = Files.createTempDir();
+    File parent = template(directory, "Parent.html");
+    File other = template(directory, "Other.html");
+
+    assert watcher.isStale("parent");
+
+    // A decorated child is compiled from its own template and its parent's.
+    watcher.compile("parent", loading(watcher, parent));
+    watcher.compile("child", loading(watcher, parent, other));
+    watcher.compile("other", loading(watcher, other));
+    assert !watcher.isStale("parent");
+    assert !watcher.isStale("child");
+    assert !watcher.isStale("other");
+
+    Files.write("<html>changed</html>", parent, Charsets.UTF_8);
+    awaitStale(watcher, "parent");
+    awaitStale(watcher, "child");
+    assert !watcher.isStale("other");
+
+    watcher.compile("parent", loading(watcher, parent));
+    assert !watcher.isStale("parent");
+  }
+
+  @Test
+  public final void templatesThatAreNotFilesAreAlwaysRecompiled() {
+    watcher.compile("page", new Callable<Void>() {
+      @Override
+      public Void call() {
+        watcher.loaded(new Template("<html/>"));
+        return null;
+      }
+    });
+    assert watcher.isStale("page");
+  }
+
+  @Test
+  public final void failedCompilesAreRetried() throws IOException {
+    final File file = template(Files.createTempDir(), "Broken.html");
+
+    try {
+      watcher.compile("page", new Callable<Void>() {
+        @Override
+        public Void call() {
+          watcher.loaded(new Template("Broken.html", "<html/>", new FileTemplateSource(file)));
+          throw new IllegalStateException("does not compile");
+        }
+      });
+      assert false;
+    } catch (IllegalStateException expected) {
+    }
+    assert watcher.isStale("page");
+  }
+
+  @Test
+  public final void closingStopsWatching() throws Exception {
+    File file = template(Files.createTempDir(), "Page.html");
+
+    Set<Thread> before = Thread.getAllStackTraces().keySet();
+    watcher.compile("page", loading(watcher, file));
+    assert !watcher.isStale("page");
+
+    Set<Thread> started = Sets.newHashSet();
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (!before.contains(thread) && "sitebricks-template-watcher".equals(thread.getName()))
+        started.add(thread);
+    }
+    assert 1 == started.size() : started;
+
+    watcher.close();
+    Thread thread = started.iterator().next();
+    thread.join(10000);
+    assert !thread.isAlive();
+    assert watcher.isStale("page");
+  }
+
+  private static File template(File directory, String name) throws IOException {
+    File file = new File(directory, name);
+    Files.write("<html/>", file, Charsets.UTF_8);
+    return file;
+  }
+
+  private static Callable<Void> loading(final TemplateWatcher watcher, final File... files) {
+    return new Callable<Void>() {
+      @Override
+      public Void call() {
+        for (File file : files) {
+          watcher.loaded(new Template(file.getName(), "<html/>", new FileTemplateSource(file)));
+        }
+        return null;
+      }
+    };
+  }
+
+  private static void awaitStale(TemplateWatcher watcher, String key) throws InterruptedException {
+    // File change notifications arrive asynchronously (and, on some platforms, by polling).
+    for (int i = 0; i < 300 && !watcher.isStale(key); i++) {
+      Thread.sleep(100);
+    }
+    assert watcher.isStale(key) : key;
+  }
+}
@@ -184,6 +184,83 @@ public class MvelRequestBinderTest {
     assert new AnObject().equals(o) : "Invalid binding was allowed!";
   }
 
+  @Test
+  public final void bindRequestToChoicesByHashCode() {
+    final HttpServletRequest request = createMock(HttpServletRequest.class);
+    final String choice = "AChoice";
+
+    final HttpSessionFlashCache cache = new HttpSessionFlashCache();
+    cache.put("names", Choices.of(Arrays.asList("First", choice, "BobLee", "JasonLee")));
+
+    expect(request.getParameterMap())
+        .andReturn(new HashMap<String, String[]>() {{
+          put("select",
+              new String[]{RequestBinder.COLLECTION_BIND_PREFIX + "names/" + choice.hashCode()});
+          put("name", new String[]{"Dhanji"});
+        }});
+
+    replay(request);
+
+    final AnObject o = new AnObject();
+
+    new MvelRequestBinder(Guice.createInjector().getInstance(Evaluator.class),
+        new Provider<FlashCache>() {
+          public FlashCache get() {
+            return cache;
+          }
+        }).bind(TestRequestCreator.from(request, null), o);
+
+    assert choice.equals(o.getSelect()) : "Choice was not bound: " + o.getSelect();
+    assert "Dhanji".equals(o.getName());
+    verify(request);
+  }
+
+  @Test
+  public final void bindRequestToFieldsFluentSettersAndNestedProperties() {
+    final HttpServletRequest request = createMock(HttpServletRequest.class);
+
+    expect(request.getParameterMap())
+        .andReturn(new HashMap<String, String[]>() {{
+          put("title", new String[]{"Dr"});
+          put("rank", new String[]{"3"});
+          put("inner.name", new String[]{"Dhanji"});
+          put("inner.age", new String[]{"27"});
+          put("missing", new String[]{"ignored"});
+        }});
+
+    replay(request);
+
+    final AFluentObject o = new AFluentObject();
+
+    new MvelRequestBinder(Guice.createInjector().getInstance(Evaluator.class),
+        new Provider<FlashCache>() {
+          public FlashCache get() {
+            return new HttpSessionFlashCache();
+          }
+        }).bind(TestRequestCreator.from(request, null), o);
+
+    assert "Dr".equals(o.title);
+    assert 3 == o.rank;
+    assert "Dhanji".equals(o.inner.getName());
+    assert 27 == o.inner.getAge();
+    verify(request);
+  }
+
+  public static class AFluentObject {
+    public String title;
+    private int rank;
+    private final AnObject inner = new AnObject();
+
+    public AFluentObject setRank(int rank) {
+      this.rank = rank;
+      return this;
+    }
+
+    public AnObject getInner() {
+      return inner;
+    }
+  }
+
   @SuppressWarnings({"UnusedDeclaration"})  
   public static class AnObject {
     private String name;
@@ -207,6 +207,32 @@ public class FreemarkerTemplateCompilerTest {
         .equals(value) : "Did not write expected output, instead: " + value;
   }
 
+  @Test
+  public final void compiledTemplatesRenderRepeatedly() {
+    FreemarkerTemplateCompiler compiler = new FreemarkerTemplateCompiler();
+    Renderable widget = compiler.compile(TestBackingType.class,
+        template("<p><#list 1..id as i>${name}</#list></p>"));
+
+    // The same parsed template serves every render, with whatever is bound to it.
+    for (int i = 1; i <= 3; i++) {
+      final Respond respond = RespondersForTesting.newRespond();
+      widget.render(new TestBackingType("a", "content", i), respond);
+      assertEquals(respond.toString(), "<p>" + "aaa".substring(0, i) + "</p>");
+    }
+
+    assertEquals(compiler.process(TestBackingType.class, new TestBackingType("b", "content", 2),
+        template("<p><#list 1..id as i>${name}</#list></p>")), "<p>bb</p>");
+  }
+
+  @Test(expectedExceptions = RuntimeException.class)
+  public final void failedRendersReachTheDispatcher() {
+    // Which aborts whatever of the response is still buffered.
+    Renderable widget = new FreemarkerTemplateCompiler()
+        .compile(Object.class, template("<p>hello<#stop \"halt\"></p>"));
+
+    widget.render(new Object(), RespondersForTesting.newRespond());
+  }
+
   public static class TestBackingType {
     private String name;
     private String clazz;
@@ -420,7 +420,7 @@ public class HtmlTemplateCompilerTest {
             .andReturn("POST")
             .anyTimes();
         expect(request.getParameterMap())
-            .andReturn(ImmutableMap.of())
+            .andReturn(ImmutableMap.<String, String[]>of())
             .anyTimes();
         replay(request);
 
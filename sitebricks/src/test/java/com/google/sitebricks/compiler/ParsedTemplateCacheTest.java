@@ -0,0 +1,91 @@
+package com.google.sitebricks.compiler;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.jsoup.nodes.Attribute;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Unit test for the on-disk cache of parsed HTML templates.
+ */
+public class ParsedTemplateCacheTest {
+  private static final String TEMPLATE = "<!doctype html>\n"
+      + "<html><head><title>${title}</title>\n"
+      + "<script type='text/javascript'>var a = { name: \"${user.name}\" };</script></head>\n"
+      + "<body><!-- a comment -->\n"
+      + "@ShowIf(true)<p class='greeting'>hello &amp; welcome, ${user.name}</p>\n"
+      + "@Repeat(items=people, var=\"person\")<div><input type='text' name='x'/>${person}</div>\n"
+      + "</body></html>\n";
+
+  @Test
+  public final void rebuildsTheSameNodesItParsed() throws IOException {
+    List<Node> parsed = HtmlParser.parse(TEMPLATE);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ParsedTemplateCache.write(parsed, out);
+    List<Node> read = ParsedTemplateCache.read(new ByteArrayInputStream(out.toByteArray()));
+
+    assert dump(parsed).equals(dump(read)) : dump(read);
+  }
+
+  @Test
+  public final void parsesTemplatesOnceAndReusesThemAcrossRestarts() throws IOException {
+    File directory = Files.createTempDir();
+    String expected = dump(HtmlParser.parse(TEMPLATE));
+
+    assert expected.equals(dump(new ParsedTemplateCache(directory).parse(TEMPLATE)));
+    File cached = new File(directory, ParsedTemplateCache.keyOf(TEMPLATE) + ".parsed");
+    assert cached.isFile();
+    assert 1 == directory.list().length;
+
+    // A new cache (as after a restart) reads it back rather than parsing.
+    assert expected.equals(dump(new ParsedTemplateCache(directory).parse(TEMPLATE)));
+
+    // And parses the template again if the entry can't be read.
+    Files.write("not a template", cached, Charsets.UTF_8);
+    assert expected.equals(dump(new ParsedTemplateCache(directory).parse(TEMPLATE)));
+  }
+
+  @Test
+  public final void parsesTemplatesWithoutAnyCache() {
+    assert dump(HtmlParser.parse(TEMPLATE))
+        .equals(dump(new ParsedTemplateCache((File) null).parse(TEMPLATE)));
+  }
+
+  private static String dump(List<Node> nodes) {
+    StringBuilder builder = new StringBuilder();
+    dump(nodes, builder);
+    return builder.toString();
+  }
+
+  private static void dump(List<Node> nodes, StringBuilder builder) {
+    for (Node node : nodes) {
+      builder.append(node.getClass().getSimpleName()).append(':').append(node.nodeName());
+      if (node instanceof TextNode)
+        builder.append('[').append(((TextNode) node).getWholeText()).append(']');
+
+      for (Attribute attribute : node.attributes()) {
+        builder.append(' ').append(attribute.getKey()).append('=').append(attribute.getValue());
+      }
+      builder.append(" siblingIndex=").append(node.siblingIndex());
+
+      if (node instanceof Element) {
+        builder.append(" {");
+        dump(node.childNodes(), builder);
+        builder.append('}');
+      } else {
+        builder.append(node.outerHtml());
+      }
+      builder.append('\n');
+    }
+  }
+}
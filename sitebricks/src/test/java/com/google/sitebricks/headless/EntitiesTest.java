@@ -0,0 +1,143 @@
+package com.google.sitebricks.headless;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+/**
+ * Unit test for writing raw reply entities.
+ */
+public class EntitiesTest {
+
+  @Test
+  public final void filesAreSentWhole() throws IOException {
+    File file = file("hello there");
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    assert Entities.write(file, out);
+    assert "hello there".equals(out.toString("UTF-8")) : out;
+  }
+
+  @Test(expectedExceptions = EOFException.class)
+  public final void filesThatShrinkWhileBeingSentFail() throws IOException {
+    FileChannel channel = new RandomAccessFile(file("hello there"), "r").getChannel();
+
+    Entities.write(new ShrunkChannel(channel), new ByteArrayOutputStream());
+  }
+
+  private static File file(String content) throws IOException {
+    File file = File.createTempFile("entity", ".txt");
+    file.deleteOnExit();
+    Files.write(content, file, Charsets.UTF_8);
+    return file;
+  }
+
+  // Claims to be longer than the file it reads, as if the file shrank once measured.
+  private static class ShrunkChannel extends FileChannel {
+    private final FileChannel channel;
+
+    private ShrunkChannel(FileChannel channel) {
+      this.channel = channel;
+    }
+
+    @Override
+    public long size() throws IOException {
+      return channel.size() + 10;
+    }
+
+    @Override
+    public long transferTo(long position, long count, WritableByteChannel target)
+        throws IOException {
+      return channel.transferTo(position, count, target);
+    }
+
+    @Override
+    public long position() throws IOException {
+      return channel.position();
+    }
+
+    @Override
+    public FileChannel position(long position) throws IOException {
+      channel.position(position);
+      return this;
+    }
+
+    @Override
+    public int read(ByteBuffer buffer) throws IOException {
+      return channel.read(buffer);
+    }
+
+    @Override
+    public long read(ByteBuffer[] buffers, int offset, int length) throws IOException {
+      return channel.read(buffers, offset, length);
+    }
+
+    @Override
+    public int read(ByteBuffer buffer, long position) throws IOException {
+      return channel.read(buffer, position);
+    }
+
+    @Override
+    public int write(ByteBuffer buffer) throws IOException {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long write(ByteBuffer[] buffers, int offset, int length) throws IOException {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public int write(ByteBuffer buffer, long position) throws IOException {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public FileChannel truncate(long size) throws IOException {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void force(boolean metaData) throws IOException {
+    }
+
+    @Override
+    public long transferFrom(ReadableByteChannel source, long position, long count)
+        throws IOException {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+      return channel.map(mode, position, size);
+    }
+
+    @Override
+    public FileLock lock(long position, long size, boolean shared) throws IOException {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    protected void implCloseChannel() throws IOException {
+      channel.close();
+    }
+  }
+}
@@ -7,18 +7,33 @@ import static org.easymock.EasyMock.verify;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
 import javax.servlet.http.HttpServletResponse;
 
 import org.testng.annotations.Test;
 
+import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.SettableFuture;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import com.google.inject.TypeLiteral;
 import com.google.sitebricks.client.transport.Json;
 import com.google.sitebricks.client.transport.Text;
 import com.google.sitebricks.client.transport.Xml;
@@ -162,6 +177,235 @@ public class HeadlessReplyTest {
     assert maybeByTheInkspots.equals(song);
   }
 
+  @Test
+  public void transportsThatAreNotSingletonsAreNotShared() throws IOException {
+    Injector injector = Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(Text.class).to(CountingText.class);
+      }
+    });
+    HeadlessRenderer renderer = injector.getInstance(HeadlessRenderer.class);
+    HttpServletResponse response = createNiceMock(HttpServletResponse.class);
+    FakeServletOutputStream outputStream = new FakeServletOutputStream();
+
+    expect(response.getOutputStream())
+        .andReturn(outputStream)
+        .anyTimes();
+    replay(response);
+
+    int instances = CountingText.instances.get();
+    renderer.render(response, Reply.with(HELLO_THERE).as(Text.class));
+    renderer.render(response, Reply.with(HELLO_THERE).as(Text.class));
+
+    assert instances + 2 == CountingText.instances.get();
+    assert (HELLO_THERE + HELLO_THERE).equals(outputStream.toString());
+  }
+
+  public static class CountingText extends Text {
+    private static final AtomicInteger instances = new AtomicInteger();
+
+    public CountingText() {
+      instances.incrementAndGet();
+    }
+
+    public <T> T in(InputStream in, Class<T> type) {
+      throw new UnsupportedOperationException();
+    }
+
+    public <T> T in(InputStream in, TypeLiteral<T> type) {
+      throw new UnsupportedOperationException();
+    }
+
+    public <T> void out(OutputStream out, Class<T> type, T data) throws IOException {
+      out.write(data.toString().getBytes());
+    }
+  }
+
+  @Test
+  public void fileReplyWithContentLength() throws IOException {
+    File file = File.createTempFile("sitebricks", ".txt");
+    file.deleteOnExit();
+    Files.write(HELLO_THERE, file, Charsets.UTF_8);
+
+    Injector injector = Guice.createInjector();
+    HeadlessRenderer renderer = injector.getInstance(HeadlessRenderer.class);
+    HttpServletResponse response = createNiceMock(HttpServletResponse.class);
+    ServletOutputStream outputStream = fakeServletOutputStream();
+
+    response.setStatus(HttpServletResponse.SC_OK);
+    response.setHeader("Content-Length", "" + HELLO_THERE.length());
+    expect(response.getOutputStream())
+        .andReturn(outputStream);
+
+    replay(response);
+
+    renderer.render(response, Reply.with(file));
+
+    verify(response);
+
+    assert HELLO_THERE.equals(outputStream.toString());
+  }
+
+  @Test
+  public void byteBufferReplyLeavesBufferAlone() throws IOException {
+    ByteBuffer buffer = ByteBuffer.wrap(HELLO_THERE.getBytes());
+
+    Injector injector = Guice.createInjector();
+    HeadlessRenderer renderer = injector.getInstance(HeadlessRenderer.class);
+    HttpServletResponse response = createNiceMock(HttpServletResponse.class);
+    ServletOutputStream outputStream = fakeServletOutputStream();
+
+    response.setHeader("Content-Length", "" + HELLO_THERE.length());
+    expect(response.getOutputStream())
+        .andReturn(outputStream);
+
+    replay(response);
+
+    renderer.render(response, Reply.with(buffer));
+
+    verify(response);
+
+    assert HELLO_THERE.equals(outputStream.toString());
+    assert HELLO_THERE.length() == buffer.remaining();
+  }
+
+  @Test
+  public void compressedReplyWhenGzipAccepted() throws IOException {
+    final HttpServletRequest request = createNiceMock(HttpServletRequest.class);
+    expect(request.getHeader("Accept-Encoding")).andReturn("gzip, deflate").anyTimes();
+
+    Injector injector = Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(HttpServletRequest.class).toInstance(request);
+      }
+    });
+    HeadlessRenderer renderer = injector.getInstance(HeadlessRenderer.class);
+    HttpServletResponse response = createNiceMock(HttpServletResponse.class);
+    FakeServletOutputStream outputStream = new FakeServletOutputStream();
+
+    response.setHeader("Content-Encoding", "gzip");
+    expect(response.getOutputStream())
+        .andReturn(outputStream);
+
+    replay(request, response);
+
+    renderer.render(response, Reply.with(HELLO_THERE).compressed());
+
+    verify(response);
+
+    byte[] body = ByteStreams.toByteArray(
+        new GZIPInputStream(new ByteArrayInputStream(outputStream.bout.toByteArray())));
+    assert HELLO_THERE.equals(new String(body));
+  }
+
+  @Test
+  public void futureReplyBlocksWhenAsyncUnsupported() throws IOException {
+    Injector injector = Guice.createInjector();
+    HeadlessRenderer renderer = injector.getInstance(HeadlessRenderer.class);
+    HttpServletResponse response = createNiceMock(HttpServletResponse.class);
+    FakeServletOutputStream outputStream = new FakeServletOutputStream();
+
+    expect(response.getOutputStream())
+        .andReturn(outputStream);
+
+    replay(response);
+
+    renderer.render(response, FutureReply.of(Futures.immediateFuture(Reply.with(HELLO_THERE)), 0));
+
+    verify(response);
+    assert HELLO_THERE.equals(new String(outputStream.bout.toByteArray()));
+  }
+
+  @Test
+  public void futureReplyTimesOutWhenAsyncUnsupported() throws IOException {
+    Injector injector = Guice.createInjector();
+    HeadlessRenderer renderer = injector.getInstance(HeadlessRenderer.class);
+    HttpServletResponse response = createNiceMock(HttpServletResponse.class);
+    SettableFuture<Reply<?>> future = SettableFuture.create();
+
+    response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    replay(response);
+
+    renderer.render(response, FutureReply.of(future, 10));
+
+    verify(response);
+    assert future.isCancelled();
+  }
+
+  @Test
+  public void futureReplyBlocksWhenRequestPredatesAsyncApi() throws IOException {
+    // As on a Servlet 2.5 container, with the Servlet 3 API on the classpath.
+    final HttpServletRequest request = new HttpServletRequestWrapper(
+        createNiceMock(HttpServletRequest.class)) {
+      @Override
+      public boolean isAsyncSupported() {
+        throw new AbstractMethodError();
+      }
+    };
+    HttpServletResponse response = createNiceMock(HttpServletResponse.class);
+    FakeServletOutputStream outputStream = new FakeServletOutputStream();
+
+    expect(response.getOutputStream())
+        .andReturn(outputStream)
+        .times(2);
+
+    Injector injector = Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(HttpServletRequest.class).toInstance(request);
+      }
+    });
+    HeadlessRenderer renderer = injector.getInstance(HeadlessRenderer.class);
+
+    replay(response);
+
+    for (int i = 0; i < 2; i++) {
+      renderer.render(response, FutureReply.of(Futures.immediateFuture(Reply.with(HELLO_THERE)), 0));
+    }
+
+    verify(response);
+    assert (HELLO_THERE + HELLO_THERE).equals(new String(outputStream.bout.toByteArray()));
+  }
+
+  @Test
+  public void futureReplyRenderedAsynchronouslyOnCompletion() throws IOException {
+    final HttpServletRequest request = createNiceMock(HttpServletRequest.class);
+    HttpServletResponse response = createNiceMock(HttpServletResponse.class);
+    AsyncContext context = createNiceMock(AsyncContext.class);
+    FakeServletOutputStream outputStream = new FakeServletOutputStream();
+
+    expect(request.isAsyncSupported()).andReturn(true);
+    expect(request.startAsync(request, response)).andReturn(context);
+    context.setTimeout(500L);
+    expect(context.getRequest()).andReturn(request).anyTimes();
+    expect(context.getResponse()).andReturn(response).anyTimes();
+    expect(response.getOutputStream()).andReturn(outputStream);
+    context.complete();
+
+    Injector injector = Guice.createInjector(new AbstractModule() {
+      @Override
+      protected void configure() {
+        bind(HttpServletRequest.class).toInstance(request);
+      }
+    });
+    HeadlessRenderer renderer = injector.getInstance(HeadlessRenderer.class);
+    SettableFuture<Reply<?>> future = SettableFuture.create();
+
+    replay(request, response, context);
+
+    renderer.render(response, FutureReply.of(future, 500));
+
+    // Nothing is written until the reply arrives.
+    assert 0 == outputStream.bout.size();
+
+    future.set(Reply.with(HELLO_THERE));
+
+    verify(request, response, context);
+    assert HELLO_THERE.equals(new String(outputStream.bout.toByteArray()));
+  }
+
   public static class Song {
     private String name;
     private String artist;
@@ -0,0 +1,40 @@
+package com.google.sitebricks.http;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/**
+ * Unit test for reading the Accept-Encoding header.
+ */
+public class EncodingsTest {
+  private static final String ACCEPT_ENCODINGS = "acceptEncodings";
+
+  @DataProvider(name = ACCEPT_ENCODINGS)
+  public Object[][] acceptEncodings() {
+    return new Object[][] {
+        { null, false },
+        { "identity", false },
+        { "gzip", true },
+        { "deflate, GZIP", true },
+        { "gzip;q=0.5", true },
+        { "gzip; q=0", false },
+        { "gzip;q=0.000", false },
+        { "gzip;q=0.001", true },
+    };
+  }
+
+  @Test(dataProvider = ACCEPT_ENCODINGS)
+  public final void acceptsGzipUnlessItsQualityIsZero(String acceptEncoding, boolean accepts) {
+    HttpServletRequest request = createNiceMock(HttpServletRequest.class);
+    expect(request.getHeader("Accept-Encoding")).andReturn(acceptEncoding).anyTimes();
+    replay(request);
+
+    assert accepts == Encodings.acceptsGzip(request) : acceptEncoding;
+  }
+}
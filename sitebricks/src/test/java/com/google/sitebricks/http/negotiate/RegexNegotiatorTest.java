@@ -5,6 +5,7 @@ import com.google.common.collect.Iterators;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
 import com.google.sitebricks.TestRequestCreator;
+import com.google.sitebricks.headless.Request;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
@@ -107,4 +108,18 @@ public class RegexNegotiatorTest {
     assert shouldPass == new RegexNegotiator().shouldCall(negotiations, TestRequestCreator.from(
         request, null));
   }
+
+  @Test
+  public final void subclassesThatOverrideShouldCallAreNotCompiled() {
+    assert CompiledNegotiator.isCompiled(new RegexNegotiator());
+    assert CompiledNegotiator.isCompiled(new RegexNegotiator() {
+    });
+
+    assert !CompiledNegotiator.isCompiled(new RegexNegotiator() {
+      @Override
+      public boolean shouldCall(Map<String, String> negotiations, Request request) {
+        return true;
+      }
+    });
+  }
 }
\ No newline at end of file
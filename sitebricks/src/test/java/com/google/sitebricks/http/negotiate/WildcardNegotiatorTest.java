@@ -5,6 +5,7 @@ import com.google.common.collect.Iterators;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
 import com.google.sitebricks.TestRequestCreator;
+import com.google.sitebricks.headless.Request;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
@@ -113,6 +114,45 @@ public class WildcardNegotiatorTest {
   public final void variousHeadersAndNegotiations(Map<String, String> negotiations,
                                                   final Multimap<String, String> headers,
                                                   boolean shouldPass) {
+    assert shouldPass == new WildcardNegotiator().shouldCall(negotiations, requestWith(headers));
+  }
+
+  @Test
+  public final void prefersMediaTypesTheClientRanksHigher() {
+    Request request = requestWith(Multimaps.forMap(ImmutableMap.of(
+        "Accept", "text/html;q=0.9, application/json")));
+    WildcardNegotiator negotiator = new WildcardNegotiator();
+
+    int html = negotiator.compile(ImmutableMap.of("Accept", "text/html")).score(request);
+    int json = negotiator.compile(ImmutableMap.of("Accept", "application/json")).score(request);
+    int none = negotiator.compile(ImmutableMap.<String, String>of()).score(request);
+
+    assert json > html : json + " vs " + html;
+    assert html > none : html + " vs " + none;
+  }
+
+  @Test
+  public final void mostSpecificMediaRangeDecidesQuality() {
+    Request request = requestWith(Multimaps.forMap(ImmutableMap.of(
+        "Accept", "text/*;q=0.3, text/html, text/plain;q=0, */*;q=0.1")));
+    WildcardNegotiator negotiator = new WildcardNegotiator();
+
+    int html = negotiator.compile(ImmutableMap.of("Accept", "text/html")).score(request);
+    int anyText = negotiator.compile(ImmutableMap.of("Accept", "text/*")).score(request);
+    int csv = negotiator.compile(ImmutableMap.of("Accept", "text/csv")).score(request);
+    int png = negotiator.compile(ImmutableMap.of("Accept", "image/png")).score(request);
+    int plain = negotiator.compile(ImmutableMap.of("Accept", "text/plain")).score(request);
+
+    assert html > anyText : html + " vs " + anyText;
+    assert anyText > csv : anyText + " vs " + csv;
+    assert csv > png : csv + " vs " + png;
+    assert png >= 0;
+
+    // q=0 means "not acceptable"
+    assert CompiledNegotiation.NO_MATCH == plain;
+  }
+
+  private static Request requestWith(final Multimap<String, String> headers) {
     HttpServletRequest request = new HttpServletRequestWrapper(createMock(HttpServletRequest.class)) {
       @Override
       public Enumeration getHeaders(String name) {
@@ -124,7 +164,6 @@ public class WildcardNegotiatorTest {
       }
     };
 
-    assert shouldPass == new WildcardNegotiator().shouldCall(negotiations, TestRequestCreator.from(
-        request, null));
+    return TestRequestCreator.from(request, null);
   }
-}
\ No newline at end of file
+}
@@ -1,17 +1,22 @@
 package com.google.sitebricks.rendering.control;
 
+import com.google.common.collect.ImmutableList;
 import com.google.inject.Provider;
 import com.google.sitebricks.MvelEvaluator;
 import com.google.sitebricks.Respond;
 import com.google.sitebricks.RespondersForTesting;
+import com.google.sitebricks.binding.Choices;
 import com.google.sitebricks.binding.FlashCache;
+import org.easymock.Capture;
 import org.testng.annotations.Test;
 
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 
+import static org.easymock.EasyMock.capture;
 import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
@@ -54,7 +59,8 @@ public class ChooseWidgetTest {
         expect(cacheProvider.get())
               .andReturn(cache);
 
-        cache.put("strings", boundTo);
+        final Capture<Choices> choices = new Capture<Choices>();
+        cache.put(eq("strings"), capture(choices));
 
         replay(cacheProvider, cache);
 
@@ -78,5 +84,8 @@ public class ChooseWidgetTest {
         assert tag.endsWith("</select>");
 
         verify(cacheProvider, cache);
+
+        // the options are kept as they were offered
+        assert boundTo.equals(ImmutableList.copyOf(choices.getValue()));
     }
 }
\ No newline at end of file
@@ -0,0 +1,123 @@
+package com.google.sitebricks.rendering.control;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+
+import java.util.Collections;
+
+import org.testng.annotations.Test;
+
+import com.google.sitebricks.MvelEvaluator;
+import com.google.sitebricks.Renderable;
+import com.google.sitebricks.compiler.EvaluatorCompiler;
+import com.google.sitebricks.compiler.ExpressionCompileException;
+import com.google.sitebricks.compiler.MvelEvaluatorCompiler;
+import com.google.sitebricks.routing.PageBook;
+
+/**
+ * Unit test for working out which templates may write to the head once it is closed.
+ */
+public class HeadWritesTest {
+  private final EvaluatorCompiler compiler = new MvelEvaluatorCompiler(Object.class);
+
+  @Test
+  public final void requiresBeforeTheHeadIsClosedAreFine() throws ExpressionCompileException {
+    WidgetChain page = new ProceedingWidgetChain()
+        .addWidget(header(Chains.singleton(require())))
+        .addWidget(new TextWidget("<p>${toString()}</p>", compiler));
+
+    assert !HeadWrites.afterHead(page(page));
+  }
+
+  @Test
+  public final void requiresAfterTheHeadCountEvenIfNotRendered()
+      throws ExpressionCompileException {
+    WidgetChain page = new ProceedingWidgetChain()
+        .addWidget(header(Chains.terminal()))
+        .addWidget(new ShowIfWidget(Chains.singleton(require()), "false", new MvelEvaluator()));
+
+    assert HeadWrites.afterHead(page(page));
+  }
+
+  @Test
+  public final void embeddedPagesCountOnlyIfTheyWriteToTheHead()
+      throws ExpressionCompileException {
+    PageBook pageBook = createNiceMock(PageBook.class);
+    expect(pageBook.forName("plain"))
+        .andReturn(page(new TextWidget("<p>${toString()}</p>", compiler)))
+        .anyTimes();
+    expect(pageBook.forName("requiring"))
+        .andReturn(page(new ProceedingWidgetChain()
+            .addWidget(header(Chains.terminal()))
+            .addWidget(require())))
+        .anyTimes();
+    replay(pageBook);
+
+    WidgetChain page = new ProceedingWidgetChain()
+        .addWidget(header(Chains.terminal()))
+        .addWidget(embed(pageBook, "plain"));
+    assert !HeadWrites.afterHead(page(page));
+
+    page.addWidget(embed(pageBook, "requiring"));
+    assert HeadWrites.afterHead(page(page));
+  }
+
+  @Test
+  public final void unknownWidgetsAfterTheHeadCount() throws ExpressionCompileException {
+    WidgetChain page = new ProceedingWidgetChain()
+        .addWidget(createMock(Renderable.class))
+        .addWidget(header(Chains.terminal()));
+    assert !HeadWrites.afterHead(page(page));
+
+    page.addWidget(createMock(Renderable.class));
+    assert HeadWrites.afterHead(page(page));
+  }
+
+  @Test
+  public final void deferredWidgetsAreScannedForWhatTheyStandIn()
+      throws ExpressionCompileException {
+    final WidgetChain compiled = new ProceedingWidgetChain()
+        .addWidget(header(Chains.terminal()))
+        .addWidget(require());
+
+    assert HeadWrites.afterHead(page(new Pending(compiled)));
+  }
+
+  // Stands in for a widget, as a page's widget does while it is being compiled.
+  private static class Pending extends TextWidget implements HeadWrites.Deferred {
+    private final Renderable widget;
+
+    private Pending(Renderable widget) throws ExpressionCompileException {
+      super("", new MvelEvaluatorCompiler(Object.class));
+      this.widget = widget;
+    }
+
+    @Override
+    public Renderable resolve() {
+      return widget;
+    }
+  }
+
+  private HeaderWidget header(WidgetChain children) throws ExpressionCompileException {
+    return new HeaderWidget(children, Collections.<String, String>emptyMap(), compiler);
+  }
+
+  private RequireWidget require() throws ExpressionCompileException {
+    return new RequireWidget(new XmlWidget(Chains.terminal(), "script", compiler,
+        Collections.<String, String>emptyMap()));
+  }
+
+  private static EmbedWidget embed(PageBook pageBook, String name) {
+    return new EmbedWidget(Collections.<String, ArgumentWidget>emptyMap(), "", new MvelEvaluator(),
+        pageBook, name);
+  }
+
+  private static PageBook.Page page(Renderable widget) {
+    PageBook.Page page = createNiceMock(PageBook.Page.class);
+    expect(page.widget()).andReturn(widget).anyTimes();
+    replay(page);
+    return page;
+  }
+}
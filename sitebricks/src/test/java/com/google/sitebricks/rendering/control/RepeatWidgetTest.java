@@ -1,5 +1,6 @@
 package com.google.sitebricks.rendering.control;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.sitebricks.Evaluator;
 import com.google.sitebricks.MvelEvaluator;
 import com.google.sitebricks.Respond;
@@ -17,6 +18,11 @@ import java.lang.reflect.Type;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 
 /**
  * @author Dhanji R. Prasanna (dhanji@gmail.com)
@@ -24,6 +30,7 @@ import java.util.HashMap;
 public class RepeatWidgetTest {
     private static final String LISTS_AND_TIMES = "listsAndTimes";
     private static final String EXPRS_AND_OBJECTS = "exprsNObjs";
+    private static final String ITEMS_OF_EACH_KIND = "itemsOfEachKind";
 
     private static final String A_NAME = "Dhanji";
 
@@ -62,6 +69,43 @@ public class RepeatWidgetTest {
         assert times[0] == should : "Did not run expected number of times: " + should;
     }
 
+    @DataProvider(name = ITEMS_OF_EACH_KIND)
+    public Object[][] getItemsOfEachKind() {
+        final List<String> list = Arrays.asList("a", "b", "c");
+        return new Object[][] {
+            { list },
+            { new LinkedList<String>(list) },
+            { new LinkedHashSet<String>(list) },
+            { new String[] { "a", "b", "c" } },
+            { new char[] { 'a', 'b', 'c' } },
+            { new Iterable<String>() {
+                public Iterator<String> iterator() {
+                    return list.iterator();
+                }
+            } },
+        };
+    }
+
+    @Test(dataProvider = ITEMS_OF_EACH_KIND)
+    public final void repeatWithIndexAndLastFlag(Object items) {
+        final StringBuilder rows = new StringBuilder();
+        final WidgetChain mockChain = new ProceedingWidgetChain() {
+            @Override
+            public void render(Object bound, Respond respond) {
+                Map<?, ?> context = (Map<?, ?>) bound;
+                rows.append(context.get("index"))
+                    .append(context.get("item"))
+                    .append(Boolean.TRUE.equals(context.get("isLast")) ? "." : ",");
+            }
+        };
+
+        RepeatWidget widget = new RepeatWidget(mockChain, "items=things, var='item'", new MvelEvaluator());
+        widget.setConverter(new DummyTypeConverter());
+        widget.render(ImmutableMap.of("things", items), RespondersForTesting.newRespond());
+
+        assert "0a,1b,2c.".equals(rows.toString()) : rows;
+    }
+
     @DataProvider(name = EXPRS_AND_OBJECTS)
     public Object[][] getExpressionsAndObjects() {
         return new Object[][] {
@@ -1,6 +1,8 @@
 package com.google.sitebricks.rendering.control;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.sitebricks.Respond;
+import com.google.sitebricks.StringBuilderRespond;
 import com.google.sitebricks.compiler.ExpressionCompileException;
 import com.google.sitebricks.compiler.MvelEvaluatorCompiler;
 import static org.easymock.EasyMock.*;
@@ -67,8 +69,11 @@ public class TextWidgetTest {
     @Test(dataProvider = NAME_VALUES)
     public final void renderATemplateWithObject(final String name) throws ExpressionCompileException {
         final String[] out = new String[1];
-        Respond respond = createMock(Respond.class);
-        respond.write("Hello " + name);
+        Respond respond = createStrictMock(Respond.class);
+
+        // static text and expressions are written straight through, no concatenation
+        respond.write("Hello ");
+        respond.write(name);
 
 
         replay(respond);
@@ -95,9 +100,10 @@ public class TextWidgetTest {
     @Test(dataProvider = MVEL_NAMES)
     public final void renderATemplateWithObjectGraph(final TestBackingType data, String name) throws ExpressionCompileException {
         final String[] out = new String[1];
-        Respond respond = createMock(Respond.class);
+        Respond respond = createStrictMock(Respond.class);
 
-        respond.write("Hello " + name);
+        respond.write("Hello ");
+        respond.write(name);
 
         replay(respond);
 
@@ -107,4 +113,36 @@ public class TextWidgetTest {
 //        assert ("Hello " + name).equals(out[0]) : "template render failed: " + out[0];
         verify(respond);
     }
+
+    @Test
+    public final void preRenderStaticTagsAndText() throws ExpressionCompileException {
+        final MvelEvaluatorCompiler compiler = new MvelEvaluatorCompiler(ATestType.class);
+
+        // <div class="a"><p>Hi</p> there</div>
+        final XmlWidget div = new XmlWidget(Chains.proceeding()
+                .addWidget(new XmlWidget(Chains.proceeding().addWidget(new TextWidget("Hi", compiler)),
+                        "p", compiler, ImmutableMap.<String, String>of()))
+                .addWidget(new TextWidget(" there", compiler)),
+                "div", compiler, ImmutableMap.of("class", "a"));
+
+        assert "<div class=\"a\"><p>Hi</p> there</div>".equals(div.staticText()) : div.staticText();
+
+        Respond respond = createStrictMock(Respond.class);
+        respond.write("<div class=\"a\"><p>Hi</p> there</div>");
+        replay(respond);
+
+        div.render(new ATestType("Dhanji"), respond);
+        verify(respond);
+
+        // Expressions anywhere in the tree mean it has to be rendered per request.
+        final XmlWidget span = new XmlWidget(Chains.proceeding().addWidget(div),
+                "span", compiler, ImmutableMap.of("title", "${name}", "id", "x"));
+        assert null == span.staticText();
+
+        respond = new StringBuilderRespond(new Object());
+        span.render(new ATestType("Dhanji"), respond);
+
+        assert "<span title=\"Dhanji\" id=\"x\"><div class=\"a\"><p>Hi</p> there</div></span>"
+                .equals(respond.toString()) : respond.toString();
+    }
 }
@@ -0,0 +1,160 @@
+package com.google.sitebricks.rendering.resource;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.sitebricks.Export;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+
+/**
+ * Serves mimetypes.properties, which is text and big enough to be gzipped.
+ */
+public class ClasspathResourcesServiceTest {
+  private static final String URI = "/mimes";
+
+  private ClasspathResourcesService service;
+  private byte[] content;
+
+  @Export(at = URI, resource = "mimetypes.properties")
+  public static class Exported {
+  }
+
+  @BeforeMethod
+  public final void pre() throws IOException {
+    service = new ClasspathResourcesService();
+    service.add(Exported.class, Exported.class.getAnnotation(Export.class));
+
+    content = ByteStreams.toByteArray(
+        ClasspathResourcesService.class.getResourceAsStream("mimetypes.properties"));
+  }
+
+  @Test
+  public final void serveBytesVerbatimWithEtag() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    HttpServletRequest request = request(null, null, null);
+    HttpServletResponse response = createNiceMock(HttpServletResponse.class);
+    expect(response.getOutputStream()).andReturn(outputStream(out));
+    response.setHeader("ETag", etag());
+    response.setHeader("Content-Length", Long.toString(content.length));
+    replay(request, response);
+
+    service.serve(URI).respond(request, response);
+
+    verify(response);
+    assert Arrays.equals(content, out.toByteArray()) : "newlines or bytes were lost";
+    assert new String(content, "UTF-8").equals(service.serve(URI).toString());
+  }
+
+  @Test
+  public final void notModifiedWhenEtagMatches() throws IOException {
+    HttpServletRequest request = request(etag(), null, null);
+    HttpServletResponse response = createNiceMock(HttpServletResponse.class);
+    response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    replay(request, response);
+
+    service.serve(URI).respond(request, response);
+    verify(response);
+  }
+
+  @Test
+  public final void serveSingleRange() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    HttpServletRequest request = request(null, "bytes=10-19", null);
+    HttpServletResponse response = createNiceMock(HttpServletResponse.class);
+    expect(response.getOutputStream()).andReturn(outputStream(out));
+    response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+    response.setHeader("Content-Range", "bytes 10-19/" + content.length);
+    replay(request, response);
+
+    service.serve(URI).respond(request, response);
+
+    verify(response);
+    assert Arrays.equals(Arrays.copyOfRange(content, 10, 20), out.toByteArray());
+  }
+
+  @Test
+  public final void rejectUnsatisfiableRange() throws IOException {
+    HttpServletRequest request = request(null, "bytes=" + content.length + "-", null);
+    HttpServletResponse response = createNiceMock(HttpServletResponse.class);
+    response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+    response.setHeader("Content-Range", "bytes */" + content.length);
+    replay(request, response);
+
+    service.serve(URI).respond(request, response);
+    verify(response);
+  }
+
+  @Test
+  public final void serveGzippedWhenAccepted() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    HttpServletRequest request = request(null, null, "deflate, gzip;q=0.8");
+    HttpServletResponse response = createNiceMock(HttpServletResponse.class);
+    expect(response.getOutputStream()).andReturn(outputStream(out));
+    response.setHeader("Content-Encoding", "gzip");
+    response.setHeader("ETag", '"' + Hashing.md5().hashBytes(content).toString() + "-gz\"");
+    replay(request, response);
+
+    service.serve(URI).respond(request, response);
+
+    verify(response);
+    byte[] gunzipped = ByteStreams.toByteArray(
+        new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())));
+    assert Arrays.equals(content, gunzipped);
+  }
+
+  @Test
+  public final void parseRanges() {
+    assert Arrays.equals(new long[] { 0, 10 }, ClasspathResourcesService.parseRange("bytes=0-9", 100));
+    assert Arrays.equals(new long[] { 90, 100 }, ClasspathResourcesService.parseRange("bytes=-10", 100));
+    assert Arrays.equals(new long[] { 50, 100 }, ClasspathResourcesService.parseRange("bytes=50-", 100));
+    assert Arrays.equals(new long[] { 50, 100 }, ClasspathResourcesService.parseRange("bytes=50-500", 100));
+    assert ClasspathResourcesService.UNSATISFIABLE
+        == ClasspathResourcesService.parseRange("bytes=100-", 100);
+    assert ClasspathResourcesService.UNSATISFIABLE
+        == ClasspathResourcesService.parseRange("bytes=-10", 0);
+    assert ClasspathResourcesService.UNSATISFIABLE
+        == ClasspathResourcesService.parseRange("bytes=0-", 0);
+    assert null == ClasspathResourcesService.parseRange("bytes=0-1,5-6", 100);
+    assert null == ClasspathResourcesService.parseRange("bytes=x-1", 100);
+    assert null == ClasspathResourcesService.parseRange("lines=1-2", 100);
+  }
+
+  private String etag() {
+    return '"' + Hashing.md5().hashBytes(content).toString() + '"';
+  }
+
+  private static HttpServletRequest request(String ifNoneMatch, String range, String encoding) {
+    HttpServletRequest request = createNiceMock(HttpServletRequest.class);
+    expect(request.getMethod()).andReturn("GET").anyTimes();
+    expect(request.getHeader("If-None-Match")).andReturn(ifNoneMatch).anyTimes();
+    expect(request.getHeader("Range")).andReturn(range).anyTimes();
+    expect(request.getHeader("Accept-Encoding")).andReturn(encoding).anyTimes();
+    expect(request.getDateHeader("If-Modified-Since")).andReturn(-1L).anyTimes();
+    return request;
+  }
+
+  private static ServletOutputStream outputStream(final ByteArrayOutputStream out) {
+    return new ServletOutputStream() {
+      @Override
+      public void write(int b) throws IOException {
+        out.write(b);
+      }
+    };
+  }
+}
@@ -5,6 +5,8 @@ import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.replay;
 
 import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -18,6 +20,9 @@ import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import com.google.common.collect.Iterators;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.google.inject.name.Named;
@@ -26,8 +31,12 @@ import com.google.sitebricks.Renderable;
 import com.google.sitebricks.Respond;
 import com.google.sitebricks.SitebricksModule;
 import com.google.sitebricks.TestRequestCreator;
+import com.google.sitebricks.conversion.TypeConverter;
+import com.google.sitebricks.headless.FutureReply;
 import com.google.sitebricks.headless.Reply;
 import com.google.sitebricks.headless.Request;
+import com.google.sitebricks.headless.Service;
+import com.google.sitebricks.headless.Timeout;
 import com.google.sitebricks.http.Get;
 import com.google.sitebricks.http.Post;
 import com.google.sitebricks.http.Select;
@@ -473,6 +482,35 @@ public class PageBookImplTest {
         : "@Post method was not fired, on doPost() with the right arg, instead: " + bound.post;
   }
 
+  @Test
+  public final void fireGetMethodWithArgsOnPageReflectively() throws IOException {
+    final PageBook pageBook = new DefaultPageBook(Guice.createInjector(new SitebricksModule() {
+      @Override
+      protected void configureSitebricks() {
+        enableReflectiveDispatch(true);
+      }
+    }));
+    pageBook.at("/wiki/:title/cat/:int/:bool/:float", MyPageWithPrimitivesTemplate.class);
+
+    String targetURL = "/wiki/IMAX/cat/1/true/2.5";
+    PageBook.Page page = pageBook.get(targetURL);
+    final MyPageWithPrimitivesTemplate bound = new MyPageWithPrimitivesTemplate();
+    page.doMethod("get", bound, targetURL, fakeRequestWithParams(new HashMap<String, String[]>()));
+
+    assert "IMAX".equals(bound.title) && bound.id == 1 && bound.bool && bound.flt == 2.5
+        : "@Get method did not bind in args correctly, title: " + bound.title;
+  }
+
+  @Test(expectedExceptions = EventDispatchException.class)
+  public final void wrapExceptionsThrownByEventHandlers() throws IOException {
+    final PageBook pageBook = new DefaultPageBook(injector);
+    pageBook.at("/wiki/:title", MyThrowingPage.class);
+
+    PageBook.Page page = pageBook.get("/wiki/IMAX");
+    page.doMethod("get", new MyThrowingPage(), "/wiki/IMAX",
+        fakeRequestWithParams(new HashMap<String, String[]>()));
+  }
+
   @Test(expectedExceptions = InvalidEventHandlerException.class)
   public final void errorOnPostMethodWithUnnamedArgs() throws IOException {
     Renderable mock = new Renderable() {
@@ -519,6 +557,21 @@ public class PageBookImplTest {
     assert bound.posted : "@Post method was not fired, on doPost()";
   }
 
+  @Test
+  public final void handlerTimeoutsWrapTheirFutures() throws IOException {
+    final PageBook pageBook = new DefaultPageBook(injector);
+    pageBook.serviceAt("/search", MyAsyncService.class);
+
+    PageBook.Page page = pageBook.get("/search");
+    final MyAsyncService bound = new MyAsyncService();
+
+    // Futures from methods without their own timeout are left to the dispatcher.
+    assert page.doMethod("get", bound, "/search", fakeRequestWithParams(new HashMap<String, String[]>()))
+        instanceof FutureReply;
+    assert page.doMethod("post", bound, "/search", fakeRequestWithParams(new HashMap<String, String[]>()))
+        instanceof ListenableFuture;
+  }
+
   @DataProvider(name = URI_TEMPLATES_AND_MATCHES)
   public Object[][] getUriTemplatesAndMatches() {
     return new Object[][]{
@@ -577,11 +630,102 @@ public class PageBookImplTest {
 
   }
 
+  @Test
+  public final void preferLiteralSegmentsOverVariables() {
+    final PageBook pageBook = new DefaultPageBook(injector);
+    pageBook.at("/:tenant/thing", MyPageWithTemplate.class);
+    pageBook.at("/wiki/:title", MyPage.class);
+    pageBook.at("/wiki/new", MyEventSupportingPage.class);
+
+    // Regardless of which was registered first.
+    assert MyEventSupportingPage.class.equals(pageBook.get("/wiki/new").pageClass());
+    assert MyPage.class.equals(pageBook.get("/wiki/old").pageClass());
+    assert MyPage.class.equals(pageBook.get("/wiki/thing").pageClass());
+    assert MyPageWithTemplate.class.equals(pageBook.get("/tiki/thing").pageClass());
+  }
+
+  @Test
+  public final void firstPageRegisteredAgainstATemplateWins() {
+    final PageBook pageBook = new DefaultPageBook(injector);
+    pageBook.at("/wiki/:title", MyPage.class);
+    pageBook.at("/wiki/:name", MyPageWithTemplate.class);
+
+    assert MyPage.class.equals(pageBook.get("/wiki/old").pageClass());
+  }
+
+  @Test
+  public final void pageMapGroupsPagesByFirstSegment() {
+    final PageBook pageBook = new DefaultPageBook(injector);
+    pageBook.at("/wiki/:title", MyPage.class);
+    pageBook.at("/:tenant/thing", MyPageWithTemplate.class);
+    pageBook.at("/wiki/new", MyEventSupportingPage.class);
+
+    Collection<List<PageBook.Page>> pageMap = pageBook.getPageMap();
+    assert 1 == pageMap.size() : pageMap;
+
+    List<PageBook.Page> wiki = pageMap.iterator().next();
+    assert 2 == wiki.size() : wiki;
+    assert MyPage.class.equals(wiki.get(0).pageClass());
+    assert MyEventSupportingPage.class.equals(wiki.get(1).pageClass());
+  }
+
+  @Test
+  public final void routedPagesEqualThePagesTheyWereRoutedTo() {
+    final PageBook pageBook = new DefaultPageBook(injector);
+    final PageBook.Page page = pageBook.at("/wiki/:title", MyPage.class);
+    final PageBook.Page routed = pageBook.get("/wiki/hello");
+
+    assert page.equals(routed);
+    assert routed.equals(page);
+    assert routed.equals(pageBook.get("/wiki/bye"));
+    assert page.hashCode() == routed.hashCode();
+  }
+
+  @Test
+  public final void backtrackFromLiteralIntoVariableSegment() throws IOException {
+    final PageBook pageBook = new DefaultPageBook(injector);
+    pageBook.at("/wiki/hello/page", MyPage.class);
+    pageBook.at("/wiki/:title/cat/:id", MyPageWithTemplate.class);
+
+    PageBook.Page page = pageBook.get("/wiki/hello/cat/12");
+    assert MyPageWithTemplate.class.equals(page.pageClass());
+
+    final MyPageWithTemplate bound = new MyPageWithTemplate();
+    page.doMethod("post", bound, "/wiki/hello/cat/12",
+        fakeRequestWithParams(new HashMap<String, String[]>()));
+
+    assert "hello".equals(bound.post) : bound.post;
+    assert "12".equals(bound.id) : bound.id;
+  }
+
+  @Test
+  public final void stringPathVariablesGoThroughTheTypeConverter() throws IOException {
+    final PageBook pageBook = new DefaultPageBook(Guice.createInjector(new SitebricksModule(),
+        new AbstractModule() {
+          @Override
+          protected void configure() {
+            bind(TypeConverter.class).toInstance(new TypeConverter() {
+              @Override @SuppressWarnings("unchecked")
+              public <T> T convert(Object source, Type type) {
+                return (T) source.toString().toUpperCase();
+              }
+            });
+          }
+        }));
+    pageBook.at("/wiki/:title", MyPageWithTemplate.class);
+
+    final MyPageWithTemplate bound = new MyPageWithTemplate();
+    pageBook.get("/wiki/hello").doMethod("get", bound, "/wiki/hello",
+        fakeRequestWithParams(new HashMap<String, String[]>()));
+
+    assert "HELLO".equals(bound.title) : bound.title;
+  }
+
   public static Request fakeRequestWithParams(Map<String, String[]> map) {
     HttpServletRequest request = createMock(HttpServletRequest.class);
 
     expect(request.getParameterMap()).andReturn(map);
-    expect(request.getHeaderNames()).andReturn(Iterators.asEnumeration(Iterators.<Object>emptyIterator()));
+    expect(request.getHeaderNames()).andReturn(Iterators.asEnumeration(Iterators.<String>emptyIterator()));
     replay(request);
 
     return TestRequestCreator.from(request, null);
@@ -691,6 +835,14 @@ public class PageBookImplTest {
   
   
 
+  public static class MyThrowingPage {
+
+    @Get
+    public void get(@Named("title") String title) {
+      throw new IllegalStateException(title);
+    }
+  }
+
   @At("/wiki/:title/cat/:id")
   @EmbedAs("Hi")
   public static class MyBrokenPageWithTemplate {
@@ -798,6 +950,20 @@ public class PageBookImplTest {
     }
   }
   
+  @At("/search") @Service
+  public static class MyAsyncService {
+
+    @Get @Timeout(100)
+    public ListenableFuture<Reply<String>> get() {
+      return Futures.immediateFuture(Reply.with("found"));
+    }
+
+    @Post
+    public ListenableFuture<Reply<String>> post() {
+      return Futures.immediateFuture(Reply.with("saved"));
+    }
+  }
+
   @At("/forbidden")
   private class MyForbiddenPage {
 
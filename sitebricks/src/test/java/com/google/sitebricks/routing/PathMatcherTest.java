@@ -123,6 +123,21 @@ public class PathMatcherTest {
         }
     }
 
+    @Test
+    public final void findMatchVariablesWithoutCopyingPath() {
+        final Map<String, String> stringMap = new PathMatcherChain("/wiki/:title/page/:title/:id")
+                .findMatches("/wiki//page/there/12/");
+
+        assert null != stringMap;
+        assert stringMap.size() == 2 : stringMap;
+        assert "there".equals(stringMap.get("title")) : stringMap;
+        assert "12".equals(stringMap.get("id")) : stringMap;
+        assert !stringMap.containsKey("page");
+        assert null == new PathMatcherChain("/wiki/:title/page/:title/:id")
+                .findMatches("/wiki/hello/page/there/12/13");
+        assert new PathMatcherChain("/wiki/page").findMatches("/wiki/page/").isEmpty();
+    }
+
     @DataProvider(name = ANTI_VAR_PATHS)
     public Object[][] getAntiVarPaths() {
         return new Object[][] {
@@ -0,0 +1,96 @@
+package com.google.sitebricks.routing;
+
+import org.testng.annotations.Test;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit test for per-route request metrics and their latency histograms.
+ */
+public class RouteMetricsTest {
+
+  @Test
+  public final void bucketsCoverEveryValueWithinAnEighth() {
+    int previous = -1;
+    for (long value = 0; value < (1L << 37); value = value * 2 + 1 + value / 7) {
+      int bucket = LatencyHistogram.bucketOf(value);
+      long upperBound = LatencyHistogram.upperBoundOf(bucket);
+
+      assert bucket >= previous;
+      assert value <= upperBound : value + " > " + upperBound;
+      assert upperBound - value <= value / 8 + 1 : value + " in bucket up to " + upperBound;
+      previous = bucket;
+    }
+  }
+
+  @Test
+  public final void percentilesAreApproximatelyRight() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assert 0 == histogram.percentile(0.5);
+
+    for (long micros = 1; micros <= 10000; micros++) {
+      histogram.record(micros);
+    }
+
+    assert 10000 == histogram.count();
+    assert 5000 == histogram.mean();
+    assert 10000 == histogram.max();
+    assertWithinAnEighth(5000, histogram.percentile(0.5));
+    assertWithinAnEighth(9900, histogram.percentile(0.99));
+    assert 10000 == histogram.percentile(1.0);
+  }
+
+  @Test
+  public final void countsRequestsFromManyThreads() throws InterruptedException {
+    final RouteMetrics metrics = new RouteMetrics();
+    final CountDownLatch done = new CountDownLatch(8);
+
+    for (int i = 0; i < 8; i++) {
+      new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (int j = 0; j < 1000; j++) {
+            metrics.requested();
+            metrics.record(RouteMetrics.Phase.RENDER, TimeUnit.MILLISECONDS.toNanos(2));
+          }
+          done.countDown();
+        }
+      }).start();
+    }
+
+    assert done.await(10, TimeUnit.SECONDS);
+    assert 8000 == metrics.requests();
+    assert 8000 == metrics.count(RouteMetrics.Phase.RENDER);
+    assert 0 == metrics.count(RouteMetrics.Phase.BIND);
+    assertWithinAnEighth(2000, metrics.percentile(RouteMetrics.Phase.RENDER, 0.5));
+  }
+
+  @Test
+  public final void routeStatsAreALiveViewByMethodAndRoute() {
+    RequestMetrics requestMetrics = new InMemorySystemMetrics();
+    Map<String, Map<String, Object>> stats = requestMetrics.routeStats();
+    assert stats.isEmpty();
+
+    RouteMetrics metrics = requestMetrics.route("/people/:id", "GET");
+    assert metrics == requestMetrics.route("/people/:id", "GET");
+    assert metrics != requestMetrics.route("/people/:id", "POST");
+
+    metrics.requested();
+    metrics.redirected();
+    metrics.record(RouteMetrics.Phase.BIND, 1000);
+
+    Map<String, Object> people = stats.get("GET /people/:id");
+    assert Long.valueOf(1).equals(people.get("requests"));
+    assert Long.valueOf(0).equals(people.get("errors"));
+    assert Long.valueOf(1).equals(people.get("redirects"));
+    assert people.containsKey("bind");
+    assert !people.containsKey("render");
+    assert Long.valueOf(0).equals(stats.get("POST /people/:id").get("requests"));
+  }
+
+  private static void assertWithinAnEighth(long expected, long actual) {
+    assert Math.abs(expected - actual) <= expected / 8 : actual + " but expected about " + expected;
+  }
+}